@@ -11,6 +11,7 @@ import com.arabic.aitoolkit.core.database.daos.TextDao;
 import com.arabic.aitoolkit.core.database.entities.ExtractedText;
 import com.arabic.aitoolkit.core.embedding.EmbeddingManager;
 import com.arabic.aitoolkit.core.ocr.OCRManager;
+import com.arabic.aitoolkit.core.search.SearchResult;
 import com.arabic.aitoolkit.core.search.VectorSearchManager;
 
 import java.util.ArrayList;
@@ -128,17 +129,17 @@ public class AIServiceController {
         }
         
         // 2. البحث في فهرس المتجهات
-        List<VectorSearchManager.SearchResult> searchResults = searchManager.search(queryEmbedding, k);
+        List<SearchResult> searchResults = searchManager.search(queryEmbedding, k);
 
         // 3. استرجاع النصوص الكاملة من قاعدة البيانات
         List<ExtractedText> relevantTexts = new ArrayList<>();
-        for (VectorSearchManager.SearchResult result : searchResults) {
+        for (SearchResult result : searchResults) {
             // استخدام ID النتيجة لجلب الكيان الكامل من Room
-            ExtractedText text = textDao.getTextById(result.id);
+            ExtractedText text = textDao.getTextById(result.getExtractedText().getId());
             if (text != null) {
                 // يمكن إضافة درجة التشابه إلى الكائن هنا إذا أردنا
                 relevantTexts.add(text);
-                Log.d(TAG, "Found relevant text with score: " + result.score);
+                Log.d(TAG, "Found relevant text with score: " + result.getSimilarityScore());
             }
         }
         return relevantTexts;
@@ -5,25 +5,55 @@ import android.content.Context;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
+import com.arabic.aitoolkit.core.database.dao.EmbeddingCacheDao;
 import com.arabic.aitoolkit.core.database.dao.ExtractedTextDao;
 import com.arabic.aitoolkit.core.database.dao.SearchDao;
 import com.arabic.aitoolkit.core.database.entities.ExtractedText;
-// يفترض وجود هذا الكيان لتخزين بيانات المتجهات الثنائية
-import com.arabic.aitoolkit.core.database.entities.EmbeddingVector;
+import com.arabic.aitoolkit.core.database.entities.TextPassage;
+import com.arabic.aitoolkit.core.database.entities.EmbeddingCacheEntry;
 
 /**
 * الفئة الرئيسية لقاعدة بيانات Room، المسؤولة عن توفير النسخة الوحيدة
 * من قاعدة البيانات (Singleton).
 */
-@Database(entities = {ExtractedText.class, EmbeddingVector.class}, // يجب إضافة جميع الكيانات هنا
-version = 1,
+@Database(entities = {ExtractedText.class, TextPassage.class, EmbeddingCacheEntry.class}, // يجب إضافة جميع الكيانات هنا
+version = 3,
 exportSchema = false)
 public abstract class AppDatabase extends RoomDatabase {
 	
 	private static final String DATABASE_NAME = "ai_toolkit_db";
 	private static volatile AppDatabase INSTANCE;
 	
+	// الإصدار 2: جدول embedding_cache لذاكرة المتجهات المؤقتة حسب المحتوى (دون المساس بالبيانات الحالية)
+	static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+		@Override
+		public void migrate(SupportSQLiteDatabase database) {
+			database.execSQL("CREATE TABLE IF NOT EXISTS `embedding_cache` ("
+			+ "`contentHash` TEXT NOT NULL, `vectorData` BLOB, `createdTimestamp` INTEGER NOT NULL, "
+			+ "PRIMARY KEY(`contentHash`))");
+		}
+	};
+	
+	// الإصدار 3: متجه لكل مقطع (text_passages) بدل متجه واحد لكل نص (embedding_vectors).
+	// المتجهات القديمة لا تُنقل: ولّدها الترميز السابق (معرفات المحارف) فلا تقارن بمتجهات الأسئلة الحالية.
+	// النصوص تبقى بلا مقاطع فيعيد OCRManager.retryPendingEmbeddings ترميزها، وملفات الفهارس القديمة
+	// يحذفها VectorSearchManager لأنها بلا ختم إصدار (EmbeddingManager.isVersionStampCurrent).
+	static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+		@Override
+		public void migrate(SupportSQLiteDatabase database) {
+			database.execSQL("CREATE TABLE IF NOT EXISTS `text_passages` ("
+			+ "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `textId` INTEGER NOT NULL, "
+			+ "`passageIndex` INTEGER NOT NULL, `startOffset` INTEGER NOT NULL, `endOffset` INTEGER NOT NULL, "
+			+ "`vector_data` BLOB, `generationTimestamp` INTEGER NOT NULL, "
+			+ "FOREIGN KEY(`textId`) REFERENCES `extracted_texts`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+			database.execSQL("CREATE INDEX IF NOT EXISTS `index_text_passages_textId` ON `text_passages` (`textId`)");
+			database.execSQL("DROP TABLE IF EXISTS `embedding_vectors`");
+		}
+	};
+	
 	// ------------------- تعريف DAOs -------------------
 	
 	// DAO للنصوص المستخلصة (يستخدمه OCRManager)
@@ -32,6 +62,9 @@ public abstract class AppDatabase extends RoomDatabase {
 	// DAO للبحث (يستخدمه VectorSearchManager)
 	public abstract SearchDao searchDao();
 	
+	// DAO لذاكرة المتجهات المؤقتة (يستخدمه EmbeddingManager)
+	public abstract EmbeddingCacheDao embeddingCacheDao();
+	
 	// ------------------- آلية Singleton -------------------
 	
 	public static AppDatabase getInstance(final Context context) {
@@ -41,6 +74,7 @@ public abstract class AppDatabase extends RoomDatabase {
 					// إنشاء قاعدة البيانات
 					INSTANCE = Room.databaseBuilder(context.getApplicationContext(),
 					AppDatabase.class, DATABASE_NAME)
+					.addMigrations(MIGRATION_1_2, MIGRATION_2_3)
 					// لا نستخدم allowMainThreadQueries في تطبيق فعلي
 					.build();
 				}
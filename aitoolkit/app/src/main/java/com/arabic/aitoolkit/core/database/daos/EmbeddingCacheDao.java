@@ -0,0 +1,45 @@
+package com.arabic.aitoolkit.core.database.dao;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import com.arabic.aitoolkit.core.database.entities.EmbeddingCacheEntry;
+
+import java.util.List;
+
+/**
+* واجهة وصول البيانات (DAO) للطبقة الدائمة من ذاكرة المتجهات المؤقتة (EmbeddingCache).
+*/
+@Dao
+public interface EmbeddingCacheDao {
+	
+	/**
+	* جلب متجه محفوظ ببصمة محتواه.
+	* @return الكيان المطابق، أو null إذا لم يُرمَّز النص من قبل.
+	*/
+	@Query("SELECT * FROM embedding_cache WHERE contentHash = :contentHash")
+	EmbeddingCacheEntry getByHash(String contentHash);
+	
+	/**
+	* حفظ متجه (أو استبداله إذا كانت البصمة موجودة).
+	*/
+	@Insert(onConflict = OnConflictStrategy.REPLACE)
+	void insert(EmbeddingCacheEntry entry);
+	
+	/**
+	* حفظ متجهات دفعة كاملة في معاملة واحدة (بدل معاملة تلقائية لكل متجه).
+	*/
+	@Insert(onConflict = OnConflictStrategy.REPLACE)
+	void insertAll(List<EmbeddingCacheEntry> entries);
+	
+	/**
+	* يحذف المتجهات الأقدم من olderThan، ثم ما يتجاوز أحدث maxEntries متجهًا حسب وقت توليده.
+	* متجهات إصدار نموذج سابق لا تُقرأ أبدًا (المفتاح يتضمن الإصدار)، فتصبح الأقدم وتُحذف بأحد الشرطين.
+	* @return عدد الصفوف المحذوفة.
+	*/
+	@Query("DELETE FROM embedding_cache WHERE createdTimestamp < :olderThan OR contentHash IN " +
+	"(SELECT contentHash FROM embedding_cache ORDER BY createdTimestamp DESC LIMIT -1 OFFSET :maxEntries)")
+	int prune(long olderThan, int maxEntries);
+}
@@ -6,6 +6,7 @@ import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
 
 import com.arabic.aitoolkit.core.database.entities.ExtractedText;
+import com.arabic.aitoolkit.core.database.entities.TextPassage;
 
 import java.util.List;
 
@@ -24,6 +25,14 @@ public interface ExtractedTextDao {
 	@Insert(onConflict = OnConflictStrategy.REPLACE)
 	long insert(ExtractedText text);
 	
+	/**
+	* إدراج مقاطع نص (مع متجهاتها) دفعة واحدة.
+	* @param passages المقاطع بترتيبها داخل النص.
+	* @return معرفات المقاطع بالترتيب نفسه.
+	*/
+	@Insert
+	List<Long> insertPassages(List<TextPassage> passages);
+	
 	/**
 	* جلب جميع النصوص المستخلصة.
 	* @return قائمة بجميع النصوص المستخلصة.
@@ -37,6 +46,21 @@ public interface ExtractedTextDao {
 	@Query("SELECT * FROM extracted_texts WHERE id = :textId")
 	ExtractedText getTextById(long textId);
 	
+	/**
+	* دفعة من النصوص المخزنة دون أي مقطع، أي التي فشل ترميزها (أو لم تُرمَّز بعد)، بترقيم مفتاحي.
+	* @param afterTextId آخر معرف في الدفعة السابقة (-1 للدفعة الأولى).
+	* @param limit حجم الدفعة.
+	*/
+	@Query("SELECT * FROM extracted_texts t WHERE t.id > :afterTextId AND length(t.textContent) > 0 " +
+	"AND NOT EXISTS (SELECT 1 FROM text_passages p WHERE p.textId = t.id) ORDER BY t.id LIMIT :limit")
+	List<ExtractedText> getTextsWithoutPassages(long afterTextId, int limit);
+	
+	/**
+	* حذف كل المقاطع ومتجهاتها (مع بقاء النصوص) عند تغير إصدار الترميز، فتعود كل النصوص إلى getTextsWithoutPassages.
+	*/
+	@Query("DELETE FROM text_passages")
+	void deleteAllPassages();
+	
 	/**
 	* مسح جميع النصوص.
 	*/
@@ -3,6 +3,8 @@ package com.arabic.aitoolkit.core.database.dao;
 import androidx.room.Dao;
 import androidx.room.Query;
 
+import com.arabic.aitoolkit.core.database.entities.ExtractedText;
+import com.arabic.aitoolkit.core.database.entities.TextPassage;
 import com.arabic.aitoolkit.core.search.TextWithVector;
 
 import java.util.List;
@@ -15,22 +17,74 @@ import java.util.List;
 public interface SearchDao {
 	
 	/**
-	* @Query لتحسين الأداء: تقوم بجلب جميع النصوص والمتجهات المطلوبة
+	* @Query لتحسين الأداء: تقوم بجلب جميع المقاطع ومتجهاتها مع نصوصها
 	* في عملية واحدة (JOIN) لتقليل زمن الاستعلام (Latency).
-	* * يفترض أن هناك جدول اسمه 'embedding_vectors' يربط المتجهات بالنصوص.
+	* * كل صف مقطع واحد من جدول 'text_passages'؛ النص الطويل يظهر في عدة صفوف.
 	*/
 	@Query("SELECT " +
 	"t.id, t.textContent, t.sourceImagePath, t.sourceReference, t.timestamp, " +
-	"v.vector_data AS embeddingVectorBytes " +
-	"FROM extracted_texts t " +
-	"INNER JOIN embedding_vectors v ON t.id = v.textId")
+	"p.id AS passageId, p.startOffset, p.endOffset, p.vector_data AS embeddingVectorBytes " +
+	"FROM text_passages p " +
+	"INNER JOIN extracted_texts t ON t.id = p.textId " +
+	"ORDER BY p.id")
 	List<TextWithVector> getAllTextsWithVectors();
 	
 	/**
-	* استعلام لجلب كيان نصي واحد بناءً على المعرف (ID).
-	* @param textId معرّف النص
-	* @return كيان TextWithVector.
+	* جلب نص واحد دون متجهه، لإضافته إلى فهرس البحث بعد توليد المتجه.
 	*/
 	@Query("SELECT * FROM extracted_texts WHERE id = :textId")
-	TextWithVector getTextWithVectorById(long textId);
-}
\ No newline at end of file
+	ExtractedText getTextById(long textId);
+	
+	/**
+	* جلب مقاطع نص واحد مع متجهاتها بترتيبها داخل النص، لإضافتها إلى فهرس البحث بعد تخزينها.
+	*/
+	@Query("SELECT * FROM text_passages WHERE textId = :textId ORDER BY passageIndex")
+	List<TextPassage> getPassagesByTextId(long textId);
+	
+	/**
+	* جلب دفعة من مواضع المقاطع دون نصوصها ودون BLOB (vectorData = null)، لربطها بمخزن المتجهات
+	* المربوط بالذاكرة؛ النصوص تُجلب مرة واحدة لكل نص عبر getTextsByIds.
+	* @param afterPassageId آخر معرف مقطع في الدفعة السابقة (-1 للدفعة الأولى).
+	* @param upToPassageId آخر معرف مقطع مطلوب (المقاطع الأحدث تُجلب مع متجهاتها).
+	* @param limit حجم الدفعة.
+	*/
+	@Query("SELECT id, textId, passageIndex, startOffset, endOffset, NULL AS vector_data, generationTimestamp " +
+	"FROM text_passages WHERE id > :afterPassageId AND id <= :upToPassageId ORDER BY id LIMIT :limit")
+	List<TextPassage> getPassageRangesPage(long afterPassageId, long upToPassageId, int limit);
+	
+	/**
+	* جلب نصوص بمعرفاتها؛ 999 معرفًا على الأكثر (حد متغيرات SQLite).
+	*/
+	@Query("SELECT * FROM extracted_texts WHERE id IN (:textIds)")
+	List<ExtractedText> getTextsByIds(List<Long> textIds);
+	
+	/**
+	* جلب دفعة من المقاطع والمتجهات بترقيم مفتاحي (Keyset Pagination): الصفوف ذات المعرف
+	* الأكبر من آخر معرف مقطع في الدفعة السابقة. أسرع من OFFSET لأن SQLite يبدأ مباشرة من المفتاح الأساسي.
+	* مقاطع النص الواحد تُدرج معًا فتأتي متجاورة.
+	* @param afterPassageId آخر معرف مقطع في الدفعة السابقة (-1 للدفعة الأولى).
+	* @param limit حجم الدفعة.
+	*/
+	@Query("SELECT " +
+	"t.id, t.textContent, t.sourceImagePath, t.sourceReference, t.timestamp, " +
+	"p.id AS passageId, p.startOffset, p.endOffset, p.vector_data AS embeddingVectorBytes " +
+	"FROM text_passages p " +
+	"INNER JOIN extracted_texts t ON t.id = p.textId " +
+	"WHERE p.id > :afterPassageId ORDER BY p.id LIMIT :limit")
+	List<TextWithVector> getPassagesWithVectorsPage(long afterPassageId, int limit);
+	
+	/**
+	* عدد المقاطع التي لها نصوص (لتقدير سعة الفهرس قبل التحميل على دفعات).
+	*/
+	@Query("SELECT COUNT(*) FROM text_passages p INNER JOIN extracted_texts t ON t.id = p.textId")
+	int countPassagesWithVectors();
+	
+	/**
+	* جلب المتجهات الدقيقة (float32) لمجموعة صغيرة من المقاطع دفعة واحدة.
+	* تستخدم لإعادة ترتيب القائمة المختصرة في أنماط البحث المضغوطة (مثل INT8)
+	* دون الاحتفاظ بجميع المتجهات الدقيقة في الذاكرة.
+	* @param passageIds معرفات المقاطع المطلوبة؛ 999 على الأكثر (حد متغيرات SQLite)، فالقوائم الأطول تُقسم.
+	*/
+	@Query("SELECT * FROM text_passages WHERE id IN (:passageIds)")
+	List<TextPassage> getPassagesByIds(List<Long> passageIds);
+}
@@ -0,0 +1,45 @@
+package com.arabic.aitoolkit.core.database.entities;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+* يمثل متجه تضمين محفوظًا حسب محتوى النص (وليس حسب معرفه)، كي لا يُعاد تشغيل النموذج
+* على نص سبق ترميزه (إعادة مسح الصفحة نفسها، أو نصوص متكررة في المستندات).
+* المفتاح بصمة SHA-256 للنص بعد تطبيعه مع إصدار النموذج، فتغيير النموذج يُبطل المتجهات القديمة تلقائيًا.
+*/
+@Entity(tableName = "embedding_cache")
+public class EmbeddingCacheEntry {
+	
+	@PrimaryKey
+	@NonNull
+	private String contentHash; // بصمة (إصدار النموذج + النص المطبع) بالنظام الست عشري
+	
+	// المتجه كـ BLOB بترتيب البايت الأصلي للجهاز (كما في text_passages)
+	private byte[] vectorData;
+	
+	private long createdTimestamp; // وقت توليد المتجه
+	
+	// المنشئ (Constructor)
+	public EmbeddingCacheEntry(@NonNull String contentHash, byte[] vectorData, long createdTimestamp) {
+		this.contentHash = contentHash;
+		this.vectorData = vectorData;
+		this.createdTimestamp = createdTimestamp;
+	}
+	
+	// المسندات (Getters)
+	
+	@NonNull
+	public String getContentHash() {
+		return contentHash;
+	}
+	
+	public byte[] getVectorData() {
+		return vectorData;
+	}
+	
+	public long getCreatedTimestamp() {
+		return createdTimestamp;
+	}
+}
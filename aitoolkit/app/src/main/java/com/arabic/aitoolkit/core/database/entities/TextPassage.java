@@ -0,0 +1,83 @@
+package com.arabic.aitoolkit.core.database.entities;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+* يمثل مقطعًا من نص مستخلص مع متجه التضمين الخاص به.
+* النص الطويل (صفحة OCR كاملة) لا يتسع في نافذة النموذج (128 Token)، فيُقسم إلى مقاطع متداخلة
+* (PassageChunker) لكل منها متجه، والبحث الدلالي يتم على مستوى المقاطع.
+* المقطع لا يخزن نصه: موضعه [startOffset, endOffset) بمحارف textContent في النص الأصلي.
+*/
+@Entity(tableName = "text_passages",
+// ربط المقطع بـ ExtractedText عبر textId (حذف المقاطع عند حذف النص)
+foreignKeys = @ForeignKey(entity = ExtractedText.class,
+parentColumns = "id",
+childColumns = "textId",
+onDelete = ForeignKey.CASCADE),
+// فهرس على textId لعمليات JOIN وجلب مقاطع نص واحد
+indices = {@Index(value = {"textId"})}
+)
+public class TextPassage {
+
+	@PrimaryKey(autoGenerate = true)
+	private long id;
+
+	private long textId; // النص الأصلي
+	private int passageIndex; // ترتيب المقطع داخل النص (0 للأول)
+	private int startOffset; // أول محرف في textContent
+	private int endOffset; // بعد آخر محرف
+
+	// المتجه كـ BLOB بترتيب البايت الأصلي للجهاز
+	@ColumnInfo(name = "vector_data")
+	private byte[] vectorData;
+
+	private long generationTimestamp; // وقت توليد المتجه
+
+	// المنشئ (Constructor)
+	public TextPassage(long textId, int passageIndex, int startOffset, int endOffset, byte[] vectorData, long generationTimestamp) {
+		this.textId = textId;
+		this.passageIndex = passageIndex;
+		this.startOffset = startOffset;
+		this.endOffset = endOffset;
+		this.vectorData = vectorData;
+		this.generationTimestamp = generationTimestamp;
+	}
+
+	// المسندات والمعدلات (Getters and Setters)
+
+	public long getId() {
+		return id;
+	}
+
+	public void setId(long id) {
+		this.id = id;
+	}
+
+	public long getTextId() {
+		return textId;
+	}
+
+	public int getPassageIndex() {
+		return passageIndex;
+	}
+
+	public int getStartOffset() {
+		return startOffset;
+	}
+
+	public int getEndOffset() {
+		return endOffset;
+	}
+
+	public byte[] getVectorData() {
+		return vectorData;
+	}
+
+	public long getGenerationTimestamp() {
+		return generationTimestamp;
+	}
+}
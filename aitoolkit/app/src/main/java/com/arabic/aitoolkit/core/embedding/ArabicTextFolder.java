@@ -0,0 +1,228 @@
+package com.arabic.aitoolkit.core.embedding;
+
+import java.text.Normalizer;
+
+/**
+* ArabicTextFolder: تطبيع النص العربي في مرور واحد على char[] عبر جدول ثابت (بلا regex ولا نصوص وسيطة).
+* كل قاعدة (RULE) تضيف إلى الجدول تحويل حرف إلى حرف أو حذفه؛ الجدول مقسم إلى كتل من 256 حرفًا
+* والكتل التي لا تغيرها أي قاعدة لا تُخزن أصلًا (null = الحرف كما هو).
+* التطبيع لا يطيل النص أبدًا، لذلك يمكن تنفيذه في المصفوفة نفسها.
+* يُطبق قبل الترميز وبصمة ذاكرة المتجهات (FOR_EMBEDDING) وقبل الفهرسة النصية (FOR_SEARCH).
+* الكائنات غير قابلة للتعديل وآمنة بين الخيوط.
+*/
+public final class ArabicTextFolder {
+
+	public static final int STRIP_DIACRITICS = 1;             // الحركات والتنوين والشدة والسكون والألف الخنجرية وعلامات المصحف
+	public static final int STRIP_TATWEEL = 1 << 1;           // ـ
+	public static final int FOLD_ALEF = 1 << 2;               // أ إ آ ٱ -> ا
+	public static final int FOLD_YAA = 1 << 3;                // ى ئ -> ي
+	public static final int FOLD_WAW_HAMZA = 1 << 4;          // ؤ -> و
+	public static final int FOLD_TAA_MARBUTA = 1 << 5;        // ة -> ه
+	public static final int FOLD_DIGITS = 1 << 6;             // ٠-٩ و ۰-۹ -> 0-9
+	public static final int LOWER_CASE_LATIN = 1 << 7;        // A-Z -> a-z
+	public static final int FOLD_PRESENTATION_FORMS = 1 << 8; // أشكال العرض من OCR (ﺃ ﻛ ...) -> الحروف الأساسية
+	public static final int COLLAPSE_WHITESPACE = 1 << 9;     // المسافات والأسطر المتتالية -> مسافة واحدة، وحذفها من الطرفين
+
+	// مدخلات النموذج: إزالة ضجيج OCR فقط، دون توحيد الحروف التي يفرق بينها النموذج
+	public static final ArabicTextFolder FOR_EMBEDDING = new ArabicTextFolder(
+	STRIP_DIACRITICS | STRIP_TATWEEL | FOLD_PRESENTATION_FORMS | COLLAPSE_WHITESPACE);
+
+	// البحث النصي ومفاتيح الأسئلة: كل قواعد التوحيد لرفع الاستدعاء
+	public static final ArabicTextFolder FOR_SEARCH = new ArabicTextFolder(
+	STRIP_DIACRITICS | STRIP_TATWEEL | FOLD_ALEF | FOLD_YAA | FOLD_WAW_HAMZA | FOLD_TAA_MARBUTA
+	| FOLD_DIGITS | LOWER_CASE_LATIN | FOLD_PRESENTATION_FORMS | COLLAPSE_WHITESPACE);
+
+	private static final char DROP = '\uFFFF'; // ليس حرفًا في Unicode، فلا يتعارض مع أي تحويل
+	private static final int BLOCK_BITS = 8;
+	private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+	private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+	private static final int SCRATCH_CAPACITY = 4096; // أطول نص يُطبع في مخزن الخيط المعاد استخدامه
+
+	private static final ThreadLocal<char[]> scratch = ThreadLocal.withInitial(() -> new char[SCRATCH_CAPACITY]);
+
+	private final int rules;
+	private final char[][] blocks;
+
+	public ArabicTextFolder(int rules) {
+		this(rules, new char[BLOCK_SIZE][]);
+		build();
+	}
+
+	private ArabicTextFolder(int rules, char[][] blocks) {
+		this.rules = rules;
+		this.blocks = blocks;
+	}
+
+	/**
+	* قاعدة مخصصة فوق القواعد الحالية (مثل توحيد حرف فارسي بنظيره العربي: ک -> ك).
+	* @return نسخة جديدة؛ الأصل لا يتغير.
+	*/
+	public ArabicTextFolder withMapping(char from, char to) {
+		ArabicTextFolder copy = new ArabicTextFolder(rules, blocks.clone());
+		int block = from >>> BLOCK_BITS;
+		if (copy.blocks[block] != null) {
+			copy.blocks[block] = copy.blocks[block].clone();
+		}
+		copy.set(from, to);
+		return copy;
+	}
+
+	/**
+	* @return نسخة جديدة تحذف الحرف c.
+	*/
+	public ArabicTextFolder withRemoval(char c) {
+		return withMapping(c, DROP);
+	}
+
+	/**
+	* يطبّع حرفًا واحدًا (دون دمج المسافات)، أو يعيد 0 للحرف المحذوف.
+	*/
+	public char fold(char c) {
+		char[] block = blocks[c >>> BLOCK_BITS];
+		char folded = block == null ? c : block[c & BLOCK_MASK];
+		return folded == DROP ? 0 : folded;
+	}
+
+	/**
+	* يطبّع source[offset, offset + length) إلى target بدءًا من targetOffset في مرور واحد.
+	* يجوز أن يكون target هو source نفسه (targetOffset <= offset) لأن الكتابة لا تسبق القراءة أبدًا.
+	* @return عدد الحروف المكتوبة (<= length).
+	*/
+	public int normalize(char[] source, int offset, int length, char[] target, int targetOffset) {
+		char[][] table = blocks;
+		boolean collapse = (rules & COLLAPSE_WHITESPACE) != 0;
+		boolean pendingSpace = false;
+		int written = targetOffset;
+		for (int i = offset, end = offset + length; i < end; i++) {
+			char c = source[i];
+			char[] block = table[c >>> BLOCK_BITS];
+			if (block != null) {
+				c = block[c & BLOCK_MASK];
+				if (c == DROP) continue;
+			}
+			if (collapse && c == ' ') {
+				pendingSpace = written > targetOffset;
+				continue;
+			}
+			if (pendingSpace) {
+				target[written++] = ' ';
+				pendingSpace = false;
+			}
+			target[written++] = c;
+		}
+		return written - targetOffset;
+	}
+
+	/**
+	* مثل normalize(char[]...) لنص كامل؛ النصوص القصيرة تمر بمخزن الخيط فلا يُخصص إلا النص الناتج.
+	*/
+	public String normalize(String text) {
+		int length = text.length();
+		char[] buffer = length <= SCRATCH_CAPACITY ? scratch.get() : new char[length];
+		text.getChars(0, length, buffer, 0);
+		int written = normalize(buffer, 0, length, buffer, 0);
+		return written == length && sameAs(text, buffer, written) ? text : new String(buffer, 0, written);
+	}
+
+	public int getRules() {
+		return rules;
+	}
+
+	// ------------------- بناء الجدول -------------------
+
+	private void build() {
+		if (has(STRIP_DIACRITICS)) {
+			dropRange('\u064B', '\u065F'); // التنوين والحركات والشدة والسكون والمدة والهمزة فوق/تحت الحرف
+			set('\u0670', DROP); // الألف الخنجرية
+			dropRange('\u06D6', '\u06DC'); // علامات الوقف في المصحف
+			dropRange('\u06DF', '\u06E4');
+			dropRange('\u06E7', '\u06E8');
+			dropRange('\u06EA', '\u06ED');
+		}
+		if (has(STRIP_TATWEEL)) {
+			set('ـ', DROP);
+		}
+		if (has(FOLD_ALEF)) {
+			set('أ', 'ا');
+			set('إ', 'ا');
+			set('آ', 'ا');
+			set('ٱ', 'ا');
+		}
+		if (has(FOLD_YAA)) {
+			set('ى', 'ي');
+			set('ئ', 'ي');
+		}
+		if (has(FOLD_WAW_HAMZA)) {
+			set('ؤ', 'و');
+		}
+		if (has(FOLD_TAA_MARBUTA)) {
+			set('ة', 'ه');
+		}
+		if (has(FOLD_DIGITS)) {
+			for (int digit = 0; digit < 10; digit++) {
+				set((char) ('٠' + digit), (char) ('0' + digit));
+				set((char) ('۰' + digit), (char) ('0' + digit));
+			}
+		}
+		if (has(LOWER_CASE_LATIN)) {
+			for (char c = 'A'; c <= 'Z'; c++) {
+				set(c, (char) (c + ('a' - 'A')));
+			}
+		}
+		if (has(COLLAPSE_WHITESPACE)) {
+			for (int c = 0; c < Character.MIN_SUPPLEMENTARY_CODE_POINT; c++) {
+				if (c != ' ' && (Character.isWhitespace(c) || Character.isSpaceChar(c))) {
+					set((char) c, ' ');
+				}
+			}
+		}
+		// بعد القواعد الأخرى كي يمر الحرف الأساسي الناتج بها أيضًا (ﺃ -> أ -> ا)
+		if (has(FOLD_PRESENTATION_FORMS)) {
+			foldPresentationForms('\uFB50', '\uFDFF');
+			foldPresentationForms('\uFE70', '\uFEFF');
+		}
+	}
+
+	// كل شكل عرض يتحلل (NFKC) إلى حرف واحد يُستبدل بذلك الحرف؛ الأربطة متعددة الحروف (ﻻ، ﷲ) تبقى كما هي
+	private void foldPresentationForms(char first, char last) {
+		for (char c = first; c <= last; c++) {
+			String decomposed = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFKC);
+			if (decomposed.length() == 1 && decomposed.charAt(0) != c) {
+				char base = decomposed.charAt(0);
+				char[] block = blocks[base >>> BLOCK_BITS];
+				set(c, block == null ? base : block[base & BLOCK_MASK]);
+			}
+		}
+	}
+
+	private void dropRange(char first, char last) {
+		for (char c = first; c <= last; c++) {
+			set(c, DROP);
+		}
+	}
+
+	private void set(char c, char folded) {
+		int index = c >>> BLOCK_BITS;
+		char[] block = blocks[index];
+		if (block == null) {
+			block = new char[BLOCK_SIZE];
+			char base = (char) (index << BLOCK_BITS);
+			for (int i = 0; i < BLOCK_SIZE; i++) {
+				block[i] = (char) (base + i);
+			}
+			blocks[index] = block;
+		}
+		block[c & BLOCK_MASK] = folded;
+	}
+
+	private boolean has(int rule) {
+		return (rules & rule) != 0;
+	}
+
+	private static boolean sameAs(String text, char[] buffer, int length) {
+		for (int i = 0; i < length; i++) {
+			if (text.charAt(i) != buffer[i]) return false;
+		}
+		return true;
+	}
+}
@@ -1,103 +1,58 @@
-package com.arabic.aitoolkit.core.embeddings;
-
-import android.util.Log;
-
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+package com.arabic.aitoolkit.core.embedding;
 
 /**
 * ArabicTextNormalizer: مسؤولة عن تطبيع النص العربي وتحويله إلى المدخلات الرقمية
 * (Tensors) المطلوبة بواسطة نموذج TFLite MiniLM (BERT-like model).
-* * ملاحظة: هذا التنفيذ يحاكي عملية Tokenizer ويجب استبداله بـ Hugging Face Tokenizer
-* أو TFLite Support Library Tokenizer في تطبيق الإنتاج.
+* الترميز نفسه يتم بـ WordPieceTokenizer على مفردات النموذج (الأصل vocab.trie).
 */
 public class ArabicTextNormalizer {
 	
-	private static final String TAG = "ArabicTextNormalizer";
 	private static final int MAX_SEQUENCE_LENGTH = 128; // الطول الأقصى للتسلسل
 	
-	// معرفات Tokens القياسية في نماذج BERT
-	private static final int CLS_ID = 101; // [CLS] token ID
-	private static final int SEP_ID = 102; // [SEP] token ID
-	private static final int PAD_ID = 0;   // [PAD] token ID
+	// أطوال التسلسل المسموحة (تصاعديًا)؛ آخرها MAX_SEQUENCE_LENGTH
+	private static final int[] SEQUENCE_BUCKETS = {16, 32, 64, MAX_SEQUENCE_LENGTH};
+	
+	private final WordPieceTokenizer tokenizer;
+	
+	public ArabicTextNormalizer(WordPieceTokenizer tokenizer) {
+		this.tokenizer = tokenizer;
+	}
 	
 	/**
-	* يحول سلسلة نصية عربية إلى ثلاث مصفوفات مدخلات رقمية.
-	* @param text النص العربي المراد ترميزه.
-	* @return مصفوفة من ثلاث مصفوفات: {inputIds, attentionMask, tokenTypeIds}.
+	* يرمّز النص إلى [CLS] tokens... [SEP] مباشرة في مصفوفة المستدعي، بلا أي تخصيص.
+	* @param inputIds مصفوفة الإخراج (تُقص المعرفات عند طولها أو MAX_SEQUENCE_LENGTH).
+	* @return عدد المعرفات المكتوبة؛ بقية المواضع لم تُلمس (تبطين المستدعي بـ padId()).
 	*/
-	public List<float[]> tokenize(String text) {
-		// 1. // محاكاة عملية الترميز (Tokenization)
-		// في تطبيق حقيقي، ستستخدم ملف vocab.txt لتحويل النص إلى قائمة أرقام.
-		// نفترض هنا أن كل حرف/جزء من الكلمة يمثل token (تبسيط مفرط).
-		
-		List<Integer> mockTokens = mockTokenizeText(text);
-		
-		// 2. إضافة Tokens الخاصة (CLS و SEP)
-		// [CLS] token1 token2 ... tokenN [SEP] [PAD]...
-		
-		List<Integer> inputIdsList = new ArrayList<>();
-		inputIdsList.add(CLS_ID);
-		inputIdsList.addAll(mockTokens);
-		inputIdsList.add(SEP_ID);
-		
-		// 3. التبطين (Padding) والقص (Truncation)
-		
-		// يجب ألا يتجاوز الطول النهائي الطول الأقصى
-		if (inputIdsList.size() > MAX_SEQUENCE_LENGTH) {
-			inputIdsList = inputIdsList.subList(0, MAX_SEQUENCE_LENGTH - 1); // حافظ على [CLS] و [SEP] في البداية والنهاية
-			inputIdsList.add(SEP_ID);
-		}
-		
-		int actualLength = inputIdsList.size();
-		
-		// بناء المصفوفات الثلاثة
-		float[] inputIds = new float[MAX_SEQUENCE_LENGTH];
-		float[] attentionMask = new float[MAX_SEQUENCE_LENGTH];
-		float[] tokenTypeIds = new float[MAX_SEQUENCE_LENGTH];
-		
-		// ملء المصفوفات
-		for (int i = 0; i < MAX_SEQUENCE_LENGTH; i++) {
-			if (i < actualLength) {
-				// Tokens الفعلية
-				inputIds[i] = inputIdsList.get(i);
-				attentionMask[i] = 1.0f; // انتبه لهذه الـ Token
-				tokenTypeIds[i] = 0.0f;  // (جملة واحدة دائماً)
-				} else {
-				// Tokens التبطين (Padding)
-				inputIds[i] = PAD_ID;
-				attentionMask[i] = 0.0f; // تجاهل هذه الـ Token
-				tokenTypeIds[i] = 0.0f;
-			}
-		}
-		
-		Log.d(TAG, "Tokenized input length: " + actualLength);
-		
-		return Arrays.asList(inputIds, attentionMask, tokenTypeIds);
+	public int encode(String text, int[] inputIds) {
+		return tokenizer.encode(text, inputIds, MAX_SEQUENCE_LENGTH);
+	}
+	
+	/**
+	* مثل encode(text, inputIds) مع بدء الكتابة من inputIds[offset] (عدة نصوص في مصفوفة واحدة).
+	*/
+	public int encode(String text, int[] inputIds, int offset) {
+		return tokenizer.encode(text, inputIds, offset, MAX_SEQUENCE_LENGTH);
+	}
+	
+	public int padId() {
+		return tokenizer.padId();
+	}
+	
+	public static int bucketCount() {
+		return SEQUENCE_BUCKETS.length;
+	}
+	
+	public static int bucketLength(int bucket) {
+		return SEQUENCE_BUCKETS[bucket];
 	}
 	
 	/**
-	* وظيفة محاكاة بسيطة للترميز (في التطبيق الحقيقي يجب استبدالها)
-	* تحول كل حرف إلى معرف رمزي افتراضي (Random ID).
+	* @return رقم أصغر طول في SEQUENCE_BUCKETS يتسع لـ sequenceLength (أو -1 إذا تجاوز الأقصى).
 	*/
-	private List<Integer> mockTokenizeText(String text) {
-		// نستخدم تبسيطاً مفرطاً لإنشاء قائمة tokens IDs.
-		// هذا ليس ترميزاً حقيقياً ولكنه يلبي متطلبات الإدخال للنموذج.
-		
-		List<Integer> mockIds = new ArrayList<>();
-		// نبدأ من 103 وهو أول ID بعد IDs الخاصة
-		int mockIdCounter = 103;
-		
-		// نستخدم النص كنواة لتوليد معرفات فريدة افتراضية
-		for (char c : text.toCharArray()) {
-			if (!Character.isWhitespace(c)) {
-				// في تطبيق حقيقي: يجب استخدام lookup table هنا.
-				// هنا، نستخدم معرفات بسيطة متزايدة لأغراض المحاكاة.
-				mockIds.add(mockIdCounter % 30000 + 103); // IDs في مجال معقول
-				mockIdCounter++;
-			}
+	public static int bucketOf(int sequenceLength) {
+		for (int bucket = 0; bucket < SEQUENCE_BUCKETS.length; bucket++) {
+			if (sequenceLength <= SEQUENCE_BUCKETS[bucket]) return bucket;
 		}
-		return mockIds;
+		return -1;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,223 @@
+package com.arabic.aitoolkit.core.embedding;
+
+import android.os.Looper;
+import android.util.Log;
+
+import com.arabic.aitoolkit.core.database.dao.EmbeddingCacheDao;
+import com.arabic.aitoolkit.core.database.entities.EmbeddingCacheEntry;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+* EmbeddingCache: ذاكرة مؤقتة لمتجهات التضمين حسب محتوى النص (Content-Addressed) بطبقتين:
+* - طبقة LRU في الذاكرة لأحدث النصوص (بلا أي وصول لقاعدة البيانات).
+* - طبقة دائمة في جدول embedding_cache بجانب text_passages، تبقى بعد إعادة تشغيل التطبيق.
+* المفتاح SHA-256 لـ (إصدار النموذج + النص بعد تطبيع المسافات)، فالنص المكرر لا يمر بالنموذج مرة ثانية
+* وتغيير النموذج لا يعيد متجهات قديمة.
+* الطبقة الدائمة محدودة: prune() (عند بدء التشغيل) يحذف ما هو أقدم من PERSISTENT_MAX_AGE_MS وما يتجاوز
+* أحدث DEFAULT_PERSISTENT_CAPACITY متجهًا، ومعها متجهات إصدارات النموذج السابقة ونسخ المقاطع المحفوظة
+* أصلًا في text_passages.
+* المتجهات المعادة نسخ مستقلة يمكن للمستدعي تعديلها.
+*/
+public class EmbeddingCache {
+
+	public static final int DEFAULT_MEMORY_CAPACITY = 512; // ~0.8 ميجابايت لمتجهات 384
+	public static final int DEFAULT_PERSISTENT_CAPACITY = 4096; // ~6 ميجابايت لمتجهات 384
+	public static final long PERSISTENT_MAX_AGE_MS = TimeUnit.DAYS.toMillis(30);
+
+	private static final String TAG = "EmbeddingCache";
+
+	private final String modelVersion;
+	private final EmbeddingCacheDao cacheDao; // null = الذاكرة فقط
+	private final Map<String, float[]> memory;
+
+	/**
+	* @param modelVersion معرف النموذج وإصداره (جزء من المفتاح).
+	* @param cacheDao الطبقة الدائمة، أو null للاكتفاء بالذاكرة.
+	* @param memoryCapacity عدد المتجهات في طبقة الذاكرة.
+	*/
+	public EmbeddingCache(String modelVersion, EmbeddingCacheDao cacheDao, final int memoryCapacity) {
+		this.modelVersion = modelVersion;
+		this.cacheDao = cacheDao;
+		this.memory = new LinkedHashMap<String, float[]>(memoryCapacity * 2, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, float[]> eldest) {
+				return size() > memoryCapacity;
+			}
+		};
+	}
+
+	/**
+	* بصمة النص: المسافات المتتالية (بما فيها أسطر OCR) تُدمج في مسافة واحدة وتُحذف من الطرفين،
+	* لأنها لا تغير مخرجات الترميز. بقية الحروف تبقى كما هي لأن النموذج يراها.
+	*/
+	public String key(String text) {
+		StringBuilder normalized = new StringBuilder(modelVersion.length() + 1 + text.length());
+		normalized.append(modelVersion).append('\n');
+		boolean pendingSpace = false;
+		int start = normalized.length();
+		for (int i = 0, length = text.length(); i < length; i++) {
+			char c = text.charAt(i);
+			if (Character.isWhitespace(c)) {
+				pendingSpace = normalized.length() > start;
+				continue;
+			}
+			if (pendingSpace) {
+				normalized.append(' ');
+				pendingSpace = false;
+			}
+			normalized.append(c);
+		}
+		return sha256Hex(normalized.toString());
+	}
+
+	/**
+	* @return نسخة من المتجه المحفوظ، أو null إذا لم يُرمَّز النص من قبل.
+	*/
+	public float[] get(String key) {
+		float[] vector;
+		synchronized (memory) {
+			vector = memory.get(key);
+		}
+		if (vector != null) {
+			return vector.clone();
+		}
+		if (!canUseDatabase()) return null;
+
+		try {
+			EmbeddingCacheEntry entry = cacheDao.getByHash(key);
+			if (entry == null || entry.getVectorData() == null) return null;
+			vector = fromBytes(entry.getVectorData());
+			synchronized (memory) {
+				memory.put(key, vector);
+			}
+			return vector.clone();
+			} catch (Exception e) {
+			Log.w(TAG, "Embedding cache lookup failed: " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	* مثل get(key) لكن المتجه يُنسخ في مصفوفة المستدعي (بلا تخصيص عند وجوده في الذاكرة).
+	* @return false إذا لم يُرمَّز النص من قبل.
+	*/
+	public boolean get(String key, float[] target) {
+		synchronized (memory) {
+			float[] vector = memory.get(key);
+			if (vector != null) {
+				System.arraycopy(vector, 0, target, 0, vector.length);
+				return true;
+			}
+		}
+		float[] vector = get(key);
+		if (vector == null) return false;
+		System.arraycopy(vector, 0, target, 0, vector.length);
+		return true;
+	}
+
+	/**
+	* يحفظ نسخة من المتجه في الطبقتين.
+	*/
+	public void put(String key, float[] vector) {
+		float[] copy = vector.clone();
+		synchronized (memory) {
+			memory.put(key, copy);
+		}
+		if (!canUseDatabase()) return;
+
+		try {
+			cacheDao.insert(new EmbeddingCacheEntry(key, toBytes(copy), System.currentTimeMillis()));
+			} catch (Exception e) {
+			Log.w(TAG, "Failed to persist embedding: " + e.getMessage());
+		}
+	}
+
+	/**
+	* مثل put لكل زوج، مع حفظ الدفعة كلها في الطبقة الدائمة بمعاملة واحدة.
+	*/
+	public void putAll(List<String> keys, List<float[]> vectors) {
+		long now = System.currentTimeMillis();
+		List<EmbeddingCacheEntry> entries = new ArrayList<>(keys.size());
+		synchronized (memory) {
+			for (int i = 0; i < keys.size(); i++) {
+				float[] copy = vectors.get(i).clone();
+				memory.put(keys.get(i), copy);
+				entries.add(new EmbeddingCacheEntry(keys.get(i), toBytes(copy), now));
+			}
+		}
+		if (entries.isEmpty() || !canUseDatabase()) return;
+
+		try {
+			cacheDao.insertAll(entries);
+			} catch (Exception e) {
+			Log.w(TAG, "Failed to persist " + entries.size() + " embeddings: " + e.getMessage());
+		}
+	}
+
+	/**
+	* يقلص الطبقة الدائمة إلى حدودها (العمر وعدد المتجهات). يُستدعى على خيط خلفي.
+	*/
+	public void prune() {
+		if (!canUseDatabase()) return;
+
+		try {
+			int removed = cacheDao.prune(System.currentTimeMillis() - PERSISTENT_MAX_AGE_MS, DEFAULT_PERSISTENT_CAPACITY);
+			if (removed > 0) {
+				Log.i(TAG, "Pruned " + removed + " persisted embeddings");
+			}
+			} catch (Exception e) {
+			Log.w(TAG, "Embedding cache pruning failed: " + e.getMessage());
+		}
+	}
+
+	public void clearMemory() {
+		synchronized (memory) {
+			memory.clear();
+		}
+	}
+
+	// Room يرفض الاستعلامات على الخيط الرئيسي؛ هناك تكفي طبقة الذاكرة
+	private boolean canUseDatabase() {
+		return cacheDao != null && Looper.myLooper() != Looper.getMainLooper();
+	}
+
+	// ------------------- وظائف مساعدة -------------------
+
+	private static String sha256Hex(String value) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+			StringBuilder hex = new StringBuilder(digest.length * 2);
+			for (byte b : digest) {
+				hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+			return hex.toString();
+			} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+
+	/**
+	* float[] إلى BLOB بترتيب البايت الأصلي للجهاز (كما يقرؤه VectorSearchManager).
+	*/
+	public static byte[] toBytes(float[] vector) {
+		ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.nativeOrder());
+		buffer.asFloatBuffer().put(vector);
+		return buffer.array();
+	}
+
+	static float[] fromBytes(byte[] bytes) {
+		float[] vector = new float[bytes.length / Float.BYTES];
+		ByteBuffer.wrap(bytes).order(ByteOrder.nativeOrder()).asFloatBuffer().get(vector);
+		return vector;
+	}
+}
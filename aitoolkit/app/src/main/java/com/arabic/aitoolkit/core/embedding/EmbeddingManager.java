@@ -3,137 +3,384 @@ package com.arabic.aitoolkit.core.embedding;
 import android.content.Context;
 import android.util.Log;
 
+import com.arabic.aitoolkit.core.database.AppDatabase;
+import com.arabic.aitoolkit.core.database.dao.EmbeddingCacheDao;
 import com.arabic.aitoolkit.core.models.ModelLoader;
+import com.arabic.aitoolkit.core.models.ModelRegistry;
 
-import org.tensorflow.lite.Interpreter;
-
+import java.io.File;
 import java.io.IOException;
-import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 
 /**
 * EmbeddingManager: يدير تحميل نموذج TFLite MiniLM ويشغله لتحويل النصوص
 * العربية إلى متجهات تضمين (Embeddings).
+* النموذج المحمّل (EmbeddingModel) مشترك بين كل النسخ عبر ModelRegistry: كل نسخة تملك مقبضًا واحدًا له،
+* وunloadModel تحرر المقبض فقط، فإنشاء نسخة جديدة في شاشة أخرى لا يعيد التحميل.
 */
-public class EmbeddingManager implements ModelLoader.ModelLoadListener {
+public class EmbeddingManager {
 	
 	private static final String TAG = "EmbeddingManager";
-	private static final String MODEL_PATH = "all-mpnet-base-v2-ar.tflite"; // مثال لاسم نموذج تضمين
+	private static final String MODEL_PATH = ModelLoader.EMBEDDING_MODEL_FILE; // MiniLM (384 بعدًا)
+	private static final String VOCAB_PATH = "vocab.trie"; // مفردات النموذج مترجمة وقت البناء (VocabTrie)
 	private static final int MAX_SEQUENCE_LENGTH = 128; // الطول الأقصى للتسلسل
 	private static final int EMBEDDING_DIMENSION = 384; // حجم متجه الإخراج (MiniLM-like)
+	public static final int DEFAULT_MAX_BATCH_SIZE = 32; // نصوص في كل استدعاء للنموذج
+	private static final String MODEL_VERSION = MODEL_PATH + "#2"; // يُرفع مع أي تغيير في النموذج أو الترميز لإبطال المتجهات المحفوظة (isVersionStampCurrent)
 	
 	private final Context context;
 	private final ExecutorService backgroundExecutor;
 	private final ModelLoader modelLoader;
-	private final ArabicTextNormalizer normalizer;
+	private final ModelRegistry modelRegistry;
+	private final EmbeddingCache embeddingCache;
+	
+	// مسارات الاستدلال: كل استدلال يستعير مسارًا (مترجم واحد يُعاد تشكيله إلى [حجم الدفعة،
+	// ArabicTextNormalizer.bucketLength]) ويعيده، فتعمل الطلبات المتزامنة بالتوازي حتى poolSize.
+	private final InterpreterPool.Config poolConfig;
+	private volatile ModelRegistry.Handle<EmbeddingModel> model; // null حتى يجهز النموذج أو بعد unloadModel
+	private boolean unloaded; // محمية بـ this: unloadModel قبل انتهاء التحميل
 	
-	private Interpreter embeddingInterpreter;
-	private boolean isModelReady = false;
+	// معرفات النص الواحد لكل خيط، تُملأ قبل استعارة المسار
+	private final ThreadLocal<int[]> tokenBuffer = ThreadLocal.withInitial(() -> new int[MAX_SEQUENCE_LENGTH]);
+	private volatile int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
 	
 	// ------------------- المُنشئ -------------------
 	
 	public EmbeddingManager(Context context, ExecutorService backgroundExecutor, ModelLoader modelLoader) {
+		this(context, backgroundExecutor, modelLoader, AppDatabase.getInstance(context).embeddingCacheDao());
+	}
+	
+	/**
+	* @param cacheDao الطبقة الدائمة لذاكرة المتجهات المؤقتة (أو null للاكتفاء بالذاكرة).
+	*/
+	public EmbeddingManager(Context context, ExecutorService backgroundExecutor, ModelLoader modelLoader,
+	EmbeddingCacheDao cacheDao) {
+		this(context, backgroundExecutor, modelLoader, cacheDao, InterpreterPool.Config.DEFAULT);
+	}
+	
+	/**
+	* @param poolConfig عدد المترجمات المتزامنة وخيوط كل منها وحدود الانتظار.
+	*/
+	public EmbeddingManager(Context context, ExecutorService backgroundExecutor, ModelLoader modelLoader,
+	EmbeddingCacheDao cacheDao, InterpreterPool.Config poolConfig) {
 		this.context = context;
+		this.poolConfig = poolConfig;
 		this.backgroundExecutor = backgroundExecutor;
 		this.modelLoader = modelLoader;
-		this.normalizer = new ArabicTextNormalizer(); // تهيئة Normalizer
+		this.modelRegistry = ModelRegistry.getInstance(context);
+		this.embeddingCache = new EmbeddingCache(MODEL_VERSION, cacheDao, EmbeddingCache.DEFAULT_MEMORY_CAPACITY);
 		
-		// بدء عملية التحميل غير المتزامنة
+		// بدء عملية التحميل غير المتزامنة (أو الحصول على النموذج المحمّل مسبقًا من السجل)
 		Log.i(TAG, "Attempting to load MiniLM model...");
-		modelLoader.loadTfLiteModelAsync(MODEL_PATH, this);
-	}
-	
-	// ------------------- callbacks تحميل النموذج -------------------
-	
-	@Override
-	public void onModelLoaded(MappedByteBuffer modelBuffer) {
-		backgroundExecutor.execute(() -> {
-			try {
-				// إعداد المترجم (Interpreter)
-				Interpreter.Options options = new Interpreter.Options();
-				options.setNumThreads(4); // استخدام 4 خيوط لتحسين الأداء
-				embeddingInterpreter = new Interpreter(modelBuffer, options);
-				
-				isModelReady = true;
-				Log.i(TAG, "Embedding model loaded and ready. Dims: " + EMBEDDING_DIMENSION);
-				
-				} catch (Exception e) {
-				Log.e(TAG, "Failed to initialize TFLite Interpreter: " + e.getMessage());
-				isModelReady = false;
-			}
-		});
+		backgroundExecutor.execute(this::acquireModel);
+		backgroundExecutor.execute(embeddingCache::prune);
 	}
 	
-	@Override
-	public void onModelLoadFailed(String errorMessage) {
-		isModelReady = false;
-		Log.e(TAG, "Failed to load Embedding model: " + errorMessage);
+	// ------------------- تحميل النموذج -------------------
+	
+	private void acquireModel() {
+		String key = "embedding:" + MODEL_VERSION + "|" + poolConfig;
+		try {
+			ModelRegistry.Handle<EmbeddingModel> handle = modelRegistry.acquire(key, () -> EmbeddingModel.load(
+			context, modelRegistry, MODEL_PATH, VOCAB_PATH, modelLoader.getBackendAutotuner(), poolConfig,
+			EMBEDDING_DIMENSION));
+			synchronized (this) {
+				if (unloaded) {
+					handle.close();
+					return;
+				}
+				model = handle;
+			}
+			Log.i(TAG, "Embedding model loaded and ready. Dims: " + EMBEDDING_DIMENSION
+			+ ", interpreters: " + poolConfig.getPoolSize());
+			
+			} catch (IOException | RuntimeException e) {
+			Log.e(TAG, "Failed to load Embedding model: " + e.getMessage());
+		}
 	}
 	
 	// ------------------- وظيفة الخدمة الرئيسية -------------------
 	
 	/**
 	* يولد متجه تضمين لنص عربي محدد باستخدام نموذج TFLite.
+	* النص يُطبَّع أولًا (ArabicTextFolder.FOR_EMBEDDING: التشكيل والتطويل وأشكال العرض والمسافات) قبل البصمة والترميز،
+	* والنص الذي سبق ترميزه (بالنموذج نفسه) يُعاد متجهه من EmbeddingCache دون تشغيل النموذج.
 	* @param text النص المراد تحويله.
 	* @return مصفوفة float[] تمثل المتجه (أو null في حالة الفشل).
 	*/
 	public float[] generateEmbedding(String text) {
-		if (!isModelReady) {
-			Log.e(TAG, "Embedding model is not yet loaded or ready.");
-			return null;
+		float[] vector = new float[EMBEDDING_DIMENSION];
+		return generateEmbedding(text, vector) ? vector : null;
+	}
+	
+	/**
+	* مثل generateEmbedding(text) لكن المتجه يُنسخ في مصفوفة المستدعي، فلا يخصص الاستدلال نفسه أي كائن Java:
+	* المعرفات تُكتب من مخزن الخيط إلى مخازن الجلسة المباشرة، والإخراج يُقرأ منها إلى target.
+	* @param target مصفوفة بطول EMBEDDING_DIMENSION.
+	* @return false في حالة الفشل (target حينها غير محدد).
+	*/
+	public boolean generateEmbedding(String text, float[] target) {
+		if (target.length != EMBEDDING_DIMENSION) {
+			throw new IllegalArgumentException("Target length " + target.length + " != " + EMBEDDING_DIMENSION);
+		}
+		String normalized = text == null ? "" : ArabicTextFolder.FOR_EMBEDDING.normalize(text);
+		if (normalized.isEmpty()) {
+			Arrays.fill(target, 0, EMBEDDING_DIMENSION, 0f); // متجه صفري للنصوص الفارغة
+			return true;
+		}
+		
+		// 0. البحث في الذاكرة المؤقتة حسب المحتوى (يعمل حتى قبل جاهزية النموذج)
+		String cacheKey = embeddingCache.key(normalized);
+		if (embeddingCache.get(cacheKey, target)) {
+			return true;
 		}
 		
-		if (text == null || text.trim().isEmpty()) {
-			return new float[EMBEDDING_DIMENSION]; // مصفوفة صفرية للنصوص الفارغة
+		ModelRegistry.Handle<EmbeddingModel> currentModel = model;
+		if (currentModel == null) {
+			Log.e(TAG, "Embedding model is not yet loaded or ready.");
+			return false;
 		}
+		ArabicTextNormalizer currentNormalizer = currentModel.get().normalizer();
+		InterpreterPool pool = currentModel.get().pool();
 		
-		// 1. الترميز والمعالجة المسبقة باستخدام Normalizer
-		// تتوقع [inputIds, attentionMask, tokenTypeIds]
-		List<float[]> inputs = normalizer.tokenize(text);
+		// 1. الترميز إلى [CLS] tokens... [SEP] واختيار أقرب bucket لعدد الـ Tokens الفعلي
+		int[] ids = tokenBuffer.get();
+		int tokenCount = currentNormalizer.encode(normalized, ids);
+		int bucket = ArabicTextNormalizer.bucketOf(tokenCount);
 		
-		if (inputs == null || inputs.size() != 3 || inputs.get(0).length != MAX_SEQUENCE_LENGTH) {
-			Log.e(TAG, "Tokenization failed or returned incorrect length.");
-			return null;
+		// 2. تنفيذ النموذج على دفعة [1, طول الـ bucket] في مسار مستعار
+		InterpreterPool.Lane lane = pool.checkout();
+		if (lane == null) return false;
+		try {
+			InferenceSession session = lane.session(bucket, 1);
+			session.writeRow(0, ids, 0, tokenCount, currentNormalizer.padId());
+			session.run();
+			session.readRow(0, target, 0);
+			} catch (Exception e) {
+			Log.e(TAG, "Error running TFLite inference: ", e);
+			return false;
+			} finally {
+			pool.release(lane);
 		}
 		
-		// يجب أن تكون المدخلات في مصفوفة ثنائية الأبعاد [1, MAX_SEQUENCE_LENGTH]
-		Object[] inputsArray = new Object[] {
-			new float[][] {inputs.get(0)}, // Input IDs
-			new float[][] {inputs.get(1)}, // Attention Mask
-			new float[][] {inputs.get(2)}  // Token Type IDs
-		};
+		embeddingCache.put(cacheKey, target);
+		return true;
+	}
+	
+	/**
+	* يولد متجهات تضمين لعدة نصوص، مع تشغيل النموذج مرة واحدة لكل دفعة [N, طول الـ bucket]
+	* بدلًا من مرة لكل نص (N <= getMaxBatchSize()). مخصص للإدخال الجماعي وإعادة الترميز.
+	* النصوص تُجمع حسب طولها بعد الترميز (16/32/64/128) فلا تُبطَّن الجمل القصيرة لطول أطول جملة.
+	* النصوص الفارغة تعطي متجهًا صفريًا، والنصوص المحفوظة في EmbeddingCache (أو المكررة داخل القائمة)
+	* لا تدخل الدفعة أصلًا.
+	* @param texts النصوص المراد تحويلها.
+	* @return قائمة بالترتيب نفسه؛ العنصر null يعني فشل ترميز ذلك النص (أو عدم جاهزية النموذج).
+	*/
+	public List<float[]> generateEmbeddings(List<String> texts) {
+		int count = texts.size();
+		float[][] vectors = new float[count][];
 		
-		// 2. إعداد مصفوفة الإخراج
-		// الإخراج المتوقع: [1] (batch size) x [EMBEDDING_DIMENSION] (384)
-		float[][] output = new float[1][EMBEDDING_DIMENSION];
+		// 1. المتجهات المعروفة مسبقًا، وتجميع النصوص الجديدة (مرة واحدة لكل مفتاح)
+		String[] keys = new String[count];
+		Map<String, Integer> firstIndexByKey = new HashMap<>();
+		int[] pending = new int[count];
+		int pendingCount = 0;
+		String[] normalized = new String[count];
+		for (int i = 0; i < count; i++) {
+			String text = texts.get(i);
+			normalized[i] = text == null ? "" : ArabicTextFolder.FOR_EMBEDDING.normalize(text);
+			if (normalized[i].isEmpty()) {
+				vectors[i] = new float[EMBEDDING_DIMENSION];
+				continue;
+			}
+			keys[i] = embeddingCache.key(normalized[i]);
+			if (firstIndexByKey.containsKey(keys[i])) continue; // يُنسخ بعد ترميز أول ظهور
+			firstIndexByKey.put(keys[i], i);
+			vectors[i] = embeddingCache.get(keys[i]);
+			if (vectors[i] == null) {
+				pending[pendingCount++] = i;
+			}
+		}
 		
-		try {
-			// 3. تنفيذ النموذج
-			// نستخدم HashMap لربط مؤشر الإخراج بالمصفوفة التي تستقبله
-			embeddingInterpreter.runForMultipleInputsOutputs(inputsArray, new HashMap<Integer, Object>() {{
-					put(0, output); // نفترض أن المتجه يخرج من المؤشر 0
-			}});
+		ModelRegistry.Handle<EmbeddingModel> currentModel = model;
+		if (pendingCount > 0 && currentModel == null) {
+			Log.e(TAG, "Embedding model is not yet loaded or ready.");
+			} else if (pendingCount > 0) {
+			// 2. الترميز في مصفوفة واحدة، ثم ترتيب النصوص حسب الـ bucket (ترتيب بالعد) وتشغيل كل bucket على دفعات
+			ArabicTextNormalizer currentNormalizer = currentModel.get().normalizer();
+			InterpreterPool pool = currentModel.get().pool();
+			int[] tokenIds = new int[pendingCount * MAX_SEQUENCE_LENGTH];
+			int[] tokenCounts = new int[pendingCount];
+			int[] bucketSizes = new int[ArabicTextNormalizer.bucketCount()];
+			for (int p = 0; p < pendingCount; p++) {
+				tokenCounts[p] = currentNormalizer.encode(normalized[pending[p]], tokenIds, p * MAX_SEQUENCE_LENGTH);
+				bucketSizes[ArabicTextNormalizer.bucketOf(tokenCounts[p])]++;
+			}
 			
-			// نأخذ الصف الأول والوحيد من الإخراج
-			return output[0];
+			int[] bucketStarts = new int[bucketSizes.length + 1];
+			for (int bucket = 0; bucket < bucketSizes.length; bucket++) {
+				bucketStarts[bucket + 1] = bucketStarts[bucket] + bucketSizes[bucket];
+			}
+			int[] grouped = new int[pendingCount]; // مواضع في pending مرتبة حسب الـ bucket
+			int[] fill = Arrays.copyOf(bucketStarts, bucketSizes.length);
+			for (int p = 0; p < pendingCount; p++) {
+				grouped[fill[ArabicTextNormalizer.bucketOf(tokenCounts[p])]++] = p;
+			}
 			
+			int batchLimit = maxBatchSize;
+			for (int bucket = 0; bucket < bucketSizes.length; bucket++) {
+				for (int start = bucketStarts[bucket]; start < bucketStarts[bucket + 1]; start += batchLimit) {
+					int batchSize = Math.min(batchLimit, bucketStarts[bucket + 1] - start);
+					runBatch(pool, bucket, grouped, start, batchSize, pending, tokenIds, tokenCounts,
+					currentNormalizer.padId(), vectors);
+				}
+			}
+			
+			// حفظ المتجهات الجديدة كلها في الذاكرة المؤقتة بمعاملة واحدة
+			List<String> newKeys = new ArrayList<>(pendingCount);
+			List<float[]> newVectors = new ArrayList<>(pendingCount);
+			for (int p = 0; p < pendingCount; p++) {
+				int index = pending[p];
+				if (vectors[index] == null) continue;
+				newKeys.add(keys[index]);
+				newVectors.add(vectors[index]);
+			}
+			embeddingCache.putAll(newKeys, newVectors);
+		}
+		
+		// 3. النصوص المكررة تأخذ نسخة من متجه أول ظهور
+		for (int i = 0; i < count; i++) {
+			if (vectors[i] != null || keys[i] == null) continue;
+			float[] first = vectors[firstIndexByKey.get(keys[i])];
+			vectors[i] = first == null ? null : first.clone();
+		}
+		return Arrays.asList(vectors);
+	}
+	
+	/**
+	* يشغل دفعة واحدة من bucket واحد: صفوف المعرفات تُكتب مباشرة في مخازن الجلسة، وكل صف من الإخراج
+	* [N, 384] يُنسخ إلى متجه النص.
+	* @param grouped مواضع في pending (ومعها في tokenIds/tokenCounts) للصفوف [start, start + batchSize).
+	*/
+	private void runBatch(InterpreterPool pool, int bucket, int[] grouped, int start, int batchSize, int[] pending,
+	int[] tokenIds, int[] tokenCounts, int padId, float[][] vectors) {
+		InterpreterPool.Lane lane = pool.checkout();
+		if (lane == null) return;
+		
+		float[][] batchVectors = new float[batchSize][EMBEDDING_DIMENSION];
+		try {
+			InferenceSession session = lane.session(bucket, batchSize);
+			for (int row = 0; row < batchSize; row++) {
+				int p = grouped[start + row];
+				session.writeRow(row, tokenIds, p * MAX_SEQUENCE_LENGTH, tokenCounts[p], padId);
+			}
+			session.run();
+			for (int row = 0; row < batchSize; row++) {
+				session.readRow(row, batchVectors[row], 0);
+			}
 			} catch (Exception e) {
-			Log.e(TAG, "Error running TFLite inference: ", e);
-			return null;
+			Log.e(TAG, "Error running batched TFLite inference (" + batchSize + " texts): ", e);
+			return;
+			} finally {
+			pool.release(lane);
+		}
+		
+		for (int row = 0; row < batchSize; row++) {
+			int index = pending[grouped[start + row]];
+			vectors[index] = batchVectors[row];
+		}
+	}
+	
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+	
+	/**
+	* @param maxBatchSize أقصى عدد نصوص في استدعاء واحد؛ الدفعات الأكبر أسرع لكنها تستهلك ذاكرة
+	* أكثر للمدخلات والتنشيطات الوسيطة.
+	*/
+	public void setMaxBatchSize(int maxBatchSize) {
+		if (maxBatchSize < 1) {
+			throw new IllegalArgumentException("Batch size must be positive: " + maxBatchSize);
+		}
+		this.maxBatchSize = maxBatchSize;
+	}
+	
+	// ------------------- تقسيم النصوص الطويلة -------------------
+	
+	/**
+	* عدد الـ Tokens للنص بعد تطبيعه (كما في generateEmbedding) دون [CLS] و [SEP]، مقصوصًا عند getMaxPassageTokens().
+	* قبل جاهزية النموذج يُقدَّر من طول النص (نحو ثلاثة محارف لكل Token).
+	*/
+	public int countTokens(String text) {
+		String normalized = text == null ? "" : ArabicTextFolder.FOR_EMBEDDING.normalize(text);
+		if (normalized.isEmpty()) return 0;
+		ModelRegistry.Handle<EmbeddingModel> currentModel = model;
+		if (currentModel == null) {
+			return Math.min(getMaxPassageTokens(), (normalized.length() + 2) / 3);
 		}
+		return currentModel.get().normalizer().encode(normalized, tokenBuffer.get()) - 2;
+	}
+	
+	/**
+	* سعة المقطع الذي يُرمَّز كاملًا دون قص: MAX_SEQUENCE_LENGTH دون [CLS] و [SEP].
+	*/
+	public static int getMaxPassageTokens() {
+		return MAX_SEQUENCE_LENGTH - 2;
 	}
 	
+	/**
+	* مقسم مقاطع بعدد Tokens هذا النموذج، لتقسيم النصوص الطويلة قبل generateEmbeddings
+	* (وإلا يُقص كل نص عند MAX_SEQUENCE_LENGTH).
+	*/
+	public PassageChunker newPassageChunker() {
+		return new PassageChunker(this::countTokens, getMaxPassageTokens(), PassageChunker.DEFAULT_OVERLAP_TOKENS);
+	}
+
+	// ------------------- إصدار المتجهات المحفوظة -------------------
+
+	/**
+	* رفع MODEL_VERSION يبطل EmbeddingCache وحدها؛ المتجهات المحفوظة خارجها (مقاطع text_passages وملفات الفهارس)
+	* يتحقق مالكها من ختم الإصدار عند التشغيل ويتخلص مما بُني بإصدار سابق قبل writeVersionStamp.
+	* @return true إذا كان الملف يحمل الإصدار الحالي (false إذا لم يوجد أو تعذرت قراءته).
+	*/
+	public static boolean isVersionStampCurrent(File stampFile) {
+		try {
+			return MODEL_VERSION.equals(new String(Files.readAllBytes(stampFile.toPath()), StandardCharsets.UTF_8));
+			} catch (IOException e) {
+			return false;
+		}
+	}
+
+	public static void writeVersionStamp(File stampFile) throws IOException {
+		Files.write(stampFile.toPath(), MODEL_VERSION.getBytes(StandardCharsets.UTF_8));
+	}
+
 	// ------------------- تنظيف الموارد -------------------
 	
+	/**
+	* يحرر مقبض هذه النسخة للنموذج. النموذج نفسه يبقى في ModelRegistry حتى انتهاء مهلة الخمول أو ضغط الذاكرة،
+	* فالشاشة التالية تحصل عليه دون إعادة تحميل.
+	*/
 	public void unloadModel() {
-		if (embeddingInterpreter != null) {
-			embeddingInterpreter.close();
-			embeddingInterpreter = null;
-			isModelReady = false;
-			Log.i(TAG, "Embedding Interpreter closed.");
+		ModelRegistry.Handle<EmbeddingModel> handle;
+		synchronized (this) {
+			unloaded = true;
+			handle = model;
+			model = null;
+		}
+		if (handle != null) {
+			handle.close();
+			Log.i(TAG, "Embedding model released.");
 		}
 	}
+
+
 }
\ No newline at end of file
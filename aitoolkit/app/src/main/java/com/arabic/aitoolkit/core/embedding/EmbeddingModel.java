@@ -0,0 +1,84 @@
+package com.arabic.aitoolkit.core.embedding;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.arabic.aitoolkit.core.models.BackendAutotuner;
+import com.arabic.aitoolkit.core.models.ModelLoader;
+import com.arabic.aitoolkit.core.models.ModelRegistry;
+
+import org.tensorflow.lite.Interpreter;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+
+/**
+* EmbeddingModel: كل ما يحتاجه الاستدلال بعد تحميل النموذج (المفردات ومجمع المترجمات)، مورد واحد في
+* ModelRegistry تتشاركه كل نسخ EmbeddingManager في العملية، فلا تعيد الشاشات بناءه عند التنقل بينها.
+* ملف النموذج نفسه مقبض مستقل في السجل (acquireModelBuffer) يُحرر عند إغلاق هذا المورد.
+*/
+final class EmbeddingModel implements AutoCloseable {
+
+	private static final String TAG = "EmbeddingModel";
+
+	private final ModelRegistry.Handle<MappedByteBuffer> modelBuffer;
+	private final ArabicTextNormalizer normalizer;
+	private final InterpreterPool pool;
+
+	private EmbeddingModel(ModelRegistry.Handle<MappedByteBuffer> modelBuffer, ArabicTextNormalizer normalizer,
+	InterpreterPool pool) {
+		this.modelBuffer = modelBuffer;
+		this.normalizer = normalizer;
+		this.pool = pool;
+	}
+
+	/**
+	* يربط النموذج والمفردات بالذاكرة ويبني مجمع المترجمات (على خيط الخلفية).
+	* @param autotuner مصدر عدد الخيوط و XNNPACK (أو null لاستخدام poolConfig.getThreadsPerInterpreter()).
+	*/
+	static EmbeddingModel load(Context context, ModelRegistry registry, String modelPath, String vocabPath,
+	BackendAutotuner autotuner, InterpreterPool.Config poolConfig, int dimension) throws IOException {
+		ModelRegistry.Handle<MappedByteBuffer> modelBuffer = registry.acquireModelBuffer(modelPath);
+		try {
+			// المفردات تُربط بالذاكرة كما هي، بلا تحليل لـ vocab.txt عند كل تشغيل
+			ArabicTextNormalizer normalizer = new ArabicTextNormalizer(new WordPieceTokenizer(VocabTrie.map(
+			ModelLoader.mapModelFile(context, vocabPath))));
+
+			// الخيوط و XNNPACK حسب القياس على هذا الجهاز، دون تجاوز نصيب كل مترجم في المجمع من الأنوية
+			// (المترجمات تعمل بالتوازي)
+			Interpreter.Options options = new Interpreter.Options();
+			if (autotuner != null) {
+				int threadLimit = Math.max(1, Runtime.getRuntime().availableProcessors() / poolConfig.getPoolSize());
+				BackendAutotuner.Backend backend = autotuner.tune(modelPath, modelBuffer.get(), threadLimit);
+				backend.applyTo(options);
+				Log.i(TAG, "Embedding backend: " + backend);
+			} else {
+				options.setNumThreads(poolConfig.getThreadsPerInterpreter());
+			}
+
+			long start = System.nanoTime();
+			Interpreter interpreter = new Interpreter(modelBuffer.get(), options);
+			ModelLoader.recordInterpreterLoad(modelPath, System.nanoTime() - start);
+			InterpreterPool pool = new InterpreterPool(modelBuffer.get(), options, interpreter, dimension, poolConfig);
+			return new EmbeddingModel(modelBuffer, normalizer, pool);
+			} catch (IOException | RuntimeException e) {
+			modelBuffer.close();
+			throw e;
+		}
+	}
+
+	ArabicTextNormalizer normalizer() {
+		return normalizer;
+	}
+
+	InterpreterPool pool() {
+		return pool;
+	}
+
+	@Override
+	public void close() {
+		pool.close(); // المسارات المستعارة تُغلق عند إعادتها
+		modelBuffer.close();
+		Log.i(TAG, "Embedding Interpreters closed.");
+	}
+}
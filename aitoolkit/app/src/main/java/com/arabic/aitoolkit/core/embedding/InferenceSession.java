@@ -0,0 +1,170 @@
+package com.arabic.aitoolkit.core.embedding;
+
+import org.tensorflow.lite.DataType;
+import org.tensorflow.lite.Interpreter;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+* InferenceSession: مترجم TFLite واحد يُعاد تشكيله لكل (طول تسلسل، حجم دفعة) مع مخازن إدخال/إخراج مباشرة (direct, native order)
+* يُعاد استخدامها في كل استدعاء، فلا تُنشأ مصفوفات float[][] ولا كائنات تغليف لكل عملية استدلال
+* ويمر المخزن إلى JNI بعنوانه دون تحويل عنصرًا بعنصر.
+* المعرفات تُكتب بنوع موتر النموذج نفسه (int32 أو int64 أو float32)، فلا تُحوَّل إلى float إلا إذا طلبها النموذج.
+* غير آمنة بين الخيوط: كل جلسة تخص مسارًا واحدًا في InterpreterPool يستعيره خيط واحد في كل مرة.
+*/
+final class InferenceSession implements AutoCloseable {
+
+	static final int INPUT_COUNT = 3; // inputIds, attentionMask, tokenTypeIds
+
+	private final Interpreter interpreter;
+	private final int dimension;
+	private final DataType[] inputTypes = new DataType[INPUT_COUNT];
+
+	private int tokenCapacity; // المعرفات التي تتسع لها مخازن الإدخال
+	private int rowCapacity;   // المتجهات التي يتسع لها مخزن الإخراج
+	private ByteBuffer[] inputBuffers;
+	private ByteBuffer outputBuffer;
+	private FloatBuffer outputFloats; // عرض float للإخراج بكامل السعة، للقراءة بالجملة
+
+	// عروض بحجم الدفعة الحالية بالضبط (TFLite يشترط تطابق السعة مع حجم الموتر)
+	private final Object[] inputs = new Object[INPUT_COUNT];
+	private final Map<Integer, Object> outputs = new HashMap<>();
+	private ByteBuffer outputView;
+	private int sequenceLength;
+	private int batchSize;
+
+	/**
+	* @param boundSequenceLength و boundBatchSize الشكل الحالي لمدخلات المترجم ([1, أطول bucket] لشكل
+	* النموذج الأصلي، أو 0 إذا لم يُعرف بعد فيُعاد التشكيل في أول prepare).
+	*/
+	InferenceSession(Interpreter interpreter, int dimension, int boundSequenceLength, int boundBatchSize) {
+		this.interpreter = interpreter;
+		this.dimension = dimension;
+		for (int input = 0; input < INPUT_COUNT; input++) {
+			inputTypes[input] = interpreter.getInputTensor(input).dataType();
+		}
+		if (boundSequenceLength > 0 && boundBatchSize > 0) {
+			ensureCapacity(boundSequenceLength, boundBatchSize);
+			bindViews(boundSequenceLength, boundBatchSize);
+			this.sequenceLength = boundSequenceLength;
+			this.batchSize = boundBatchSize;
+		}
+	}
+
+	int sequenceLength() {
+		return sequenceLength;
+	}
+
+	/**
+	* يجهز المترجم والمخازن لدفعة [batchSize, sequenceLength]. لا يعيد تشكيل المترجم ولا ينشئ عروضًا إلا
+	* عند تغير الشكل، والمخازن تكبر فقط فتُستخدم من جديد للأشكال الأصغر.
+	*/
+	void prepare(int sequenceLength, int batchSize) {
+		if (sequenceLength == this.sequenceLength && batchSize == this.batchSize) return;
+		this.sequenceLength = 0; // إذا فشل إعادة التشكيل لا نفترض أي شكل في الاستدعاء التالي
+		this.batchSize = 0;
+		for (int input = 0; input < INPUT_COUNT; input++) {
+			interpreter.resizeInput(input, new int[] {batchSize, sequenceLength});
+		}
+		interpreter.allocateTensors();
+		ensureCapacity(sequenceLength, batchSize);
+		bindViews(sequenceLength, batchSize);
+		this.sequenceLength = sequenceLength;
+		this.batchSize = batchSize;
+	}
+
+	/**
+	* يكتب صفًا: المعرفات ids[offset, offset + count) ثم التبطين حتى sequenceLength.
+	*/
+	void writeRow(int row, int[] ids, int offset, int count, int padId) {
+		int base = row * sequenceLength;
+		for (int i = 0; i < sequenceLength; i++) {
+			boolean token = i < count;
+			put(0, base + i, token ? ids[offset + i] : padId);
+			put(1, base + i, token ? 1 : 0); // Attention Mask
+			put(2, base + i, 0);             // Token Type IDs (جملة واحدة دائماً)
+		}
+	}
+
+	void run() {
+		outputView.rewind(); // TFLite يكتب الإخراج بالموضع النسبي
+		for (int input = 0; input < INPUT_COUNT; input++) {
+			((ByteBuffer) inputs[input]).rewind();
+		}
+		interpreter.runForMultipleInputsOutputs(inputs, outputs);
+	}
+
+	/**
+	* ينسخ متجه الصف row إلى target[targetOffset, targetOffset + dimension).
+	*/
+	void readRow(int row, float[] target, int targetOffset) {
+		outputFloats.position(row * dimension);
+		outputFloats.get(target, targetOffset, dimension);
+	}
+
+	@Override
+	public void close() {
+		interpreter.close();
+	}
+
+	private void put(int input, int index, int value) {
+		ByteBuffer buffer = inputBuffers[input];
+		switch (inputTypes[input]) {
+			case INT32:
+				buffer.putInt(index * Integer.BYTES, value);
+				break;
+			case INT64:
+				buffer.putLong(index * Long.BYTES, value);
+				break;
+			default:
+				buffer.putFloat(index * Float.BYTES, value);
+				break;
+		}
+	}
+
+	private void ensureCapacity(int sequenceLength, int rows) {
+		int tokens = rows * sequenceLength;
+		if (tokens > tokenCapacity) {
+			inputBuffers = new ByteBuffer[INPUT_COUNT];
+			for (int input = 0; input < INPUT_COUNT; input++) {
+				inputBuffers[input] = ByteBuffer.allocateDirect(tokens * byteSize(inputTypes[input]))
+				.order(ByteOrder.nativeOrder());
+			}
+			tokenCapacity = tokens;
+		}
+		if (rows > rowCapacity) {
+			outputBuffer = ByteBuffer.allocateDirect(rows * dimension * Float.BYTES).order(ByteOrder.nativeOrder());
+			outputFloats = outputBuffer.asFloatBuffer();
+			rowCapacity = rows;
+		}
+	}
+
+	// عروض تبدأ من أول المخزن بسعة الدفعة بالضبط، تشترك في الذاكرة نفسها
+	private void bindViews(int sequenceLength, int rows) {
+		for (int input = 0; input < INPUT_COUNT; input++) {
+			inputs[input] = view(inputBuffers[input], rows * sequenceLength * byteSize(inputTypes[input]));
+		}
+		outputView = view(outputBuffer, rows * dimension * Float.BYTES);
+		outputs.put(0, outputView); // نفترض أن المتجه يخرج من المؤشر 0
+	}
+
+	private static ByteBuffer view(ByteBuffer buffer, int bytes) {
+		ByteBuffer whole = buffer.duplicate();
+		whole.clear();
+		whole.limit(bytes);
+		return whole.slice().order(ByteOrder.nativeOrder());
+	}
+
+	private static int byteSize(DataType type) {
+		switch (type) {
+			case INT64:
+				return Long.BYTES;
+			default:
+				return Integer.BYTES; // INT32 و FLOAT32
+		}
+	}
+}
@@ -0,0 +1,204 @@
+package com.arabic.aitoolkit.core.embedding;
+
+import android.util.Log;
+
+import org.tensorflow.lite.Interpreter;
+
+import java.nio.MappedByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+* InterpreterPool: عدد ثابت من "المسارات" (Lane) فوق ملف النموذج المربوط بالذاكرة نفسه، يستعير كل استدلال
+* مسارًا كاملًا ويعيده بعد انتهائه، فيعمل سؤال المحادثة وترميز الإدخال الجماعي بالتوازي دون أن يلمس أحدهما
+* مترجم الآخر (مترجمات TFLite غير آمنة بين الخيوط).
+* كل مسار مترجم واحد (InferenceSession) يُعاد تشكيله عند تغير الـ bucket أو حجم الدفعة، فعدد المترجمات
+* يساوي poolSize لا poolSize * عدد الـ buckets. ملف النموذج المربوط بالذاكرة مشترك، لكن كل مترجم يحمل
+* ذاكرة تنشيطاته، ومع XNNPACK نسخة معاد ترتيبها من الأوزان (~حجم النموذج) لكل مترجم.
+* ثمن ذلك إعادة تشكيل (allocateTensors) عند الانتقال بين الـ buckets؛ generateEmbeddings يجمع النصوص
+* حسب الـ bucket فيحدث ذلك مرة لكل bucket في الاستدعاء، لا لكل نص.
+* طابور الانتظار محدود: إذا كان كل المسارات مشغولًا وامتلأ الطابور يُرفض الطلب فورًا بدل تراكم الخيوط،
+* وclose() يوقظ المنتظرين فورًا بدل أن ينتظروا المهلة كاملة.
+*/
+public final class InterpreterPool {
+
+	private static final String TAG = "InterpreterPool";
+
+	private final MappedByteBuffer modelBuffer;
+	private final Interpreter.Options options;
+	private final int dimension;
+	private final Config config;
+	private final ArrayDeque<Lane> idle; // محمي بقفل المجمع
+	private int waiters;
+	private boolean closed;
+
+	/**
+	* @param nativeInterpreter مترجم جاهز بالشكل الأصلي للنموذج [1, أطول bucket]، يصبح جلسة أول مسار.
+	*/
+	InterpreterPool(MappedByteBuffer modelBuffer, Interpreter.Options options, Interpreter nativeInterpreter,
+	int dimension, Config config) {
+		this.modelBuffer = modelBuffer;
+		this.options = options;
+		this.dimension = dimension;
+		this.config = config;
+		this.idle = new ArrayDeque<>(config.getPoolSize());
+		for (int i = 0; i < config.getPoolSize(); i++) {
+			idle.add(new Lane());
+		}
+		int largest = ArabicTextNormalizer.bucketCount() - 1;
+		idle.peekFirst().session = new InferenceSession(nativeInterpreter, dimension,
+		ArabicTextNormalizer.bucketLength(largest), 1);
+	}
+
+	/**
+	* يستعير مسارًا، منتظرًا حتى getCheckoutTimeoutMillis() إذا كانت كلها مشغولة.
+	* @return المسار (يجب إعادته بـ release في finally)، أو null إذا امتلأ طابور الانتظار أو انتهت المهلة.
+	*/
+	synchronized Lane checkout() {
+		Lane lane = idle.poll();
+		if (lane != null || closed) return lane;
+
+		if (waiters >= config.getMaxWaiters()) {
+			Log.w(TAG, "Embedding wait queue is full (" + config.getMaxWaiters() + "), rejecting request.");
+			return null;
+		}
+		waiters++;
+		try {
+			long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getCheckoutTimeoutMillis());
+			while (!closed && (lane = idle.poll()) == null) {
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0) {
+					Log.w(TAG, "Timed out waiting for an embedding interpreter.");
+					return null;
+				}
+				TimeUnit.NANOSECONDS.timedWait(this, remaining);
+			}
+			return lane; // null إذا أُغلق المجمع أثناء الانتظار
+			} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+			} finally {
+			waiters--;
+		}
+	}
+
+	synchronized void release(Lane lane) {
+		if (closed) {
+			lane.close();
+			return;
+		}
+		idle.offer(lane);
+		notify();
+	}
+
+	/**
+	* يغلق المسارات الخاملة فورًا، والمستعارة عند إعادتها، ويوقظ كل من ينتظر مسارًا (يعود بـ null).
+	*/
+	synchronized void close() {
+		closed = true;
+		Lane lane;
+		while ((lane = idle.poll()) != null) {
+			lane.close();
+		}
+		notifyAll();
+	}
+
+	Config getConfig() {
+		return config;
+	}
+
+	/**
+	* مسار استدلال واحد: مترجم واحد لكل الـ buckets. يستخدمه خيط واحد في كل مرة (بين checkout و release).
+	*/
+	final class Lane {
+
+		private InferenceSession session;
+
+		/**
+		* جلسة المسار بمدخلات [batchSize, طول الـ bucket]؛ تُنشأ عند أول استخدام وتُعاد تهيئتها عند تغير الشكل فقط.
+		*/
+		InferenceSession session(int bucket, int batchSize) {
+			if (session == null) {
+				// الشكل يُحدد في prepare
+				session = new InferenceSession(new Interpreter(modelBuffer, options), dimension, 0, 0);
+			}
+			session.prepare(ArabicTextNormalizer.bucketLength(bucket), batchSize);
+			return session;
+		}
+
+		private void close() {
+			if (session != null) {
+				session.close();
+				session = null;
+			}
+		}
+	}
+
+	/**
+	* إعدادات المجمع (غير قابلة للتعديل).
+	* مجموع الخيوط poolSize * threadsPerInterpreter يُفضل ألا يتجاوز أنوية المعالج الكبيرة
+	* (مع BackendAutotuner يُقاس عدد خيوط كل مترجم تلقائيًا حتى الأنوية / poolSize).
+	*/
+	public static final class Config {
+
+		public static final Config DEFAULT = new Config(2, 2, 16, 10_000);
+
+		private final int poolSize;
+		private final int threadsPerInterpreter;
+		private final int maxWaiters;
+		private final long checkoutTimeoutMillis;
+
+		/**
+		* @param poolSize عدد المسارات (الاستدلالات المتزامنة).
+		* @param threadsPerInterpreter خيوط TFLite لكل مترجم (setNumThreads) إذا لم يتوفر BackendAutotuner.
+		* @param maxWaiters أقصى عدد من الطلبات المنتظرة لمسار.
+		* @param checkoutTimeoutMillis أقصى انتظار لمسار قبل الرفض.
+		*/
+		public Config(int poolSize, int threadsPerInterpreter, int maxWaiters, long checkoutTimeoutMillis) {
+			if (poolSize < 1 || threadsPerInterpreter < 1 || maxWaiters < 0 || checkoutTimeoutMillis < 0) {
+				throw new IllegalArgumentException("Invalid interpreter pool config");
+			}
+			this.poolSize = poolSize;
+			this.threadsPerInterpreter = threadsPerInterpreter;
+			this.maxWaiters = maxWaiters;
+			this.checkoutTimeoutMillis = checkoutTimeoutMillis;
+		}
+
+		public Config withPoolSize(int poolSize) {
+			return new Config(poolSize, threadsPerInterpreter, maxWaiters, checkoutTimeoutMillis);
+		}
+
+		public Config withThreadsPerInterpreter(int threadsPerInterpreter) {
+			return new Config(poolSize, threadsPerInterpreter, maxWaiters, checkoutTimeoutMillis);
+		}
+
+		public Config withMaxWaiters(int maxWaiters) {
+			return new Config(poolSize, threadsPerInterpreter, maxWaiters, checkoutTimeoutMillis);
+		}
+
+		public Config withCheckoutTimeoutMillis(long checkoutTimeoutMillis) {
+			return new Config(poolSize, threadsPerInterpreter, maxWaiters, checkoutTimeoutMillis);
+		}
+
+		public int getPoolSize() {
+			return poolSize;
+		}
+
+		public int getThreadsPerInterpreter() {
+			return threadsPerInterpreter;
+		}
+
+		public int getMaxWaiters() {
+			return maxWaiters;
+		}
+
+		public long getCheckoutTimeoutMillis() {
+			return checkoutTimeoutMillis;
+		}
+
+		@Override
+		public String toString() {
+			return poolSize + "x" + threadsPerInterpreter + ", waiters=" + maxWaiters + ", timeout=" + checkoutTimeoutMillis;
+		}
+	}
+}
@@ -0,0 +1,220 @@
+package com.arabic.aitoolkit.core.embedding;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+* PassageChunker: يقسم النص الطويل (صفحة OCR كاملة) إلى مقاطع متداخلة يتسع كل منها في نافذة النموذج،
+* بدل قصه عند MAX_SEQUENCE_LENGTH وإهمال بقيته.
+* 1. تقسيم إلى جمل عند . ! ? ؟ ؛ … (متبوعة بمسافة أو نهاية النص) وعند الفقرات (سطر فارغ)؛
+*    فاصل السطر المفرد من تخطيط الصفحة وليس نهاية جملة.
+* 2. الجملة التي لا تتسع في مقطع واحد تُقسم إلى كلمات.
+* 3. الجمل (أو الكلمات) تُجمع بالترتيب حتى سعة المقطع بعدد الـ Tokens الفعلي، وكل مقطع يبدأ بآخر
+*    جمل المقطع السابق حتى overlapTokens، فلا تنقطع الفكرة الواقعة على حد المقطع. إذا كانت آخر جملة
+*    أطول من التداخل يبدأ المقطع التالي بآخر كلماتها بدلًا منها.
+* المواضع بمحارف النص الأصلي (قبل التطبيع)، فيُعاد كل مقطع إلى مكانه في ExtractedText.
+*/
+public final class PassageChunker {
+
+	public static final int DEFAULT_OVERLAP_TOKENS = 24; // نحو جملة قصيرة مشتركة بين كل مقطعين متتاليين
+
+	/**
+	* عدد الـ Tokens لجزء من النص دون [CLS] و [SEP]. يجوز قصه عند سعة المقطع
+	* (أي قيمة >= maxTokens تعني أن الجزء لا يتسع).
+	*/
+	public interface TokenCounter {
+		int countTokens(String text);
+	}
+
+	private final TokenCounter counter;
+	private final int maxTokens;
+	private final int overlapTokens;
+
+	/**
+	* @param maxTokens سعة المقطع بالـ Tokens (دون [CLS] و [SEP]).
+	* @param overlapTokens أقصى تداخل بين مقطعين متتاليين (أصغر من maxTokens).
+	*/
+	public PassageChunker(TokenCounter counter, int maxTokens, int overlapTokens) {
+		if (maxTokens < 1 || overlapTokens < 0 || overlapTokens >= maxTokens) {
+			throw new IllegalArgumentException("Invalid passage size " + maxTokens + " / overlap " + overlapTokens);
+		}
+		this.counter = counter;
+		this.maxTokens = maxTokens;
+		this.overlapTokens = overlapTokens;
+	}
+
+	/**
+	* @return مواضع المقاطع بالترتيب (قائمة فارغة لنص فارغ). النص القصير مقطع واحد.
+	*/
+	public List<Span> split(String text) {
+		List<Unit> units = new ArrayList<>();
+		for (int start = 0, length = text.length(); start < length; ) {
+			int end = sentenceEnd(text, start);
+			addUnits(text, start, end, units);
+			start = end;
+		}
+		return pack(text, units);
+	}
+
+	// -------------------------------------------------------------
+	// الجمل والكلمات
+	// -------------------------------------------------------------
+
+	/**
+	* @return نهاية الجملة التي تبدأ من start (بعد علامة النهاية أو السطر الفارغ، أو نهاية النص).
+	*/
+	private static int sentenceEnd(String text, int start) {
+		int length = text.length();
+		for (int i = start; i < length; i++) {
+			char c = text.charAt(i);
+			if (isSentenceTerminator(c) && (i + 1 == length || Character.isWhitespace(text.charAt(i + 1)))) {
+				return i + 1;
+			}
+			if (c == '\n') {
+				int next = i + 1;
+				while (next < length && text.charAt(next) != '\n' && Character.isWhitespace(text.charAt(next))) {
+					next++;
+				}
+				if (next < length && text.charAt(next) == '\n') {
+					return next + 1; // فقرة جديدة
+				}
+			}
+		}
+		return length;
+	}
+
+	private static boolean isSentenceTerminator(char c) {
+		switch (c) {
+			case '.':
+			case '!':
+			case '?':
+			case '؟':
+			case '؛':
+			case '۔': // النقطة الأردية
+			case '…':
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	* يضيف الجملة [start, end) (دون المسافات المحيطة) وحدة واحدة، أو كلماتها إذا لم تتسع في مقطع.
+	*/
+	private void addUnits(String text, int start, int end, List<Unit> units) {
+		while (start < end && Character.isWhitespace(text.charAt(start))) start++;
+		while (end > start && Character.isWhitespace(text.charAt(end - 1))) end--;
+		if (start == end) return;
+
+		int tokens = counter.countTokens(text.substring(start, end));
+		if (tokens < maxTokens) {
+			units.add(new Unit(start, end, tokens));
+			return;
+		}
+		// الكلمة الأطول من المقطع (نادرة) تبقى وحدة واحدة ويقصها النموذج
+		for (int i = start; i < end; ) {
+			int wordEnd = i;
+			while (wordEnd < end && !Character.isWhitespace(text.charAt(wordEnd))) wordEnd++;
+			units.add(new Unit(i, wordEnd, counter.countTokens(text.substring(i, wordEnd))));
+			i = wordEnd;
+			while (i < end && Character.isWhitespace(text.charAt(i))) i++;
+		}
+	}
+
+	// -------------------------------------------------------------
+	// التجميع في مقاطع
+	// -------------------------------------------------------------
+
+	private List<Span> pack(String text, List<Unit> units) {
+		List<Span> passages = new ArrayList<>();
+		int first = 0;
+		int start = units.isEmpty() ? 0 : units.get(0).start;
+		int carried = 0; // Tokens ذيل المقطع السابق الذي يبدأ به هذا المقطع (قبل الوحدة first)
+		while (first < units.size()) {
+			int last = first;
+			int tokens = carried + units.get(first).tokens;
+			while (last + 1 < units.size() && tokens + units.get(last + 1).tokens <= maxTokens) {
+				tokens += units.get(++last).tokens;
+			}
+			passages.add(new Span(start, units.get(last).end));
+			if (last + 1 == units.size()) break;
+
+			// المقطع التالي يبدأ بآخر وحدات هذا المقطع، بشرط أن يتسع معها أول وحدة جديدة (فيتقدم دائمًا)
+			int budget = Math.min(overlapTokens, maxTokens - units.get(last + 1).tokens);
+			int next = last + 1;
+			int overlap = 0;
+			while (next - 1 > first && overlap + units.get(next - 1).tokens <= budget) {
+				overlap += units.get(--next).tokens;
+			}
+			if (next <= last) {
+				first = next;
+				start = units.get(next).start;
+				carried = 0;
+				continue;
+			}
+
+			// لا تتسع أي وحدة كاملة: يبدأ بآخر كلمات الوحدة الأخيرة
+			Unit tail = units.get(last);
+			int tailStart = budget > 0 ? tailStart(text, tail, budget) : tail.end;
+			first = last + 1;
+			if (tailStart < tail.end) {
+				start = tailStart;
+				carried = counter.countTokens(text.substring(tailStart, tail.end));
+			} else {
+				start = units.get(first).start;
+				carried = 0;
+			}
+		}
+		return passages;
+	}
+
+	/**
+	* @return بداية أطول ذيل من كلمات الوحدة (دون الوحدة كلها) لا يتجاوز budget، أو unit.end إذا لم تتسع كلمة.
+	*/
+	private int tailStart(String text, Unit unit, int budget) {
+		int best = unit.end;
+		for (int i = unit.end; ; ) {
+			while (i > unit.start && Character.isWhitespace(text.charAt(i - 1))) i--;
+			while (i > unit.start && !Character.isWhitespace(text.charAt(i - 1))) i--;
+			if (i <= unit.start || counter.countTokens(text.substring(i, unit.end)) > budget) {
+				return best;
+			}
+			best = i;
+		}
+	}
+
+	/**
+	* موضع مقطع في النص الأصلي: [start, end).
+	*/
+	public static final class Span {
+
+		private final int start;
+		private final int end;
+
+		Span(int start, int end) {
+			this.start = start;
+			this.end = end;
+		}
+
+		public int getStart() {
+			return start;
+		}
+
+		public int getEnd() {
+			return end;
+		}
+	}
+
+	private static final class Unit {
+
+		final int start;
+		final int end;
+		final int tokens;
+
+		Unit(int start, int end, int tokens) {
+			this.start = start;
+			this.end = end;
+			this.tokens = tokens;
+		}
+	}
+}
@@ -0,0 +1,232 @@
+package com.arabic.aitoolkit.core.embedding;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+* VocabTrie: مفردات WordPiece (vocab.txt) مترجمة إلى شجرة بادئات ثنائية مضغوطة تُقرأ مباشرة
+* من ملف مربوط بالذاكرة، بلا تحليل للنص ولا كائنات لكل Token عند بدء التطبيق.
+* تُبنى وقت البناء (مهمة compileVocabTrie في app/build.gradle عبر buildSrc) من vocab.txt إلى الأصل vocab.trie،
+* لذلك لا تعتمد هذه الفئة على أي واجهة من أندرويد.
+*
+* الصيغة (little-endian):
+* - رأس من HEADER_INTS عددًا صحيحًا: MAGIC, VERSION, flags, nodeCount, edgeCount, unk, cls, sep, pad, maxCharsPerWord.
+* - firstEdge[nodeCount + 1]: أول حافة لكل عقدة (حواف العقدة متصلة ومرتبة حسب الحرف).
+* - tokenIds[nodeCount]: معرف الـ Token المنتهي عند العقدة، أو -1.
+* - edgeTargets[edgeCount] ثم edgeChars[edgeCount] (char).
+* الـ Tokens التكميلية ("##xx") مسارها '#', '#', 'x', 'x' من الجذر نفسه.
+*/
+public final class VocabTrie {
+
+	public static final int ROOT = 0;
+	public static final int NO_NODE = -1;
+	public static final int NO_TOKEN = -1;
+	public static final int FLAG_LOWER_CASE = 1; // المفردات بلا حروف كبيرة ولا علامات تشكيل (uncased)
+
+	private static final int MAGIC = 0x57505431; // "WPT1"
+	private static final int VERSION = 1;
+	private static final int HEADER_INTS = 10;
+	private static final int DEFAULT_MAX_CHARS_PER_WORD = 100;
+
+	private final int flags;
+	private final int nodeCount;
+	private final int unkId;
+	private final int clsId;
+	private final int sepId;
+	private final int padId;
+	private final int maxCharsPerWord;
+	private final IntBuffer firstEdge;
+	private final IntBuffer tokenIds;
+	private final IntBuffer edgeTargets;
+	private final CharBuffer edgeChars;
+
+	private VocabTrie(ByteBuffer buffer) {
+		ByteBuffer data = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		data.position(0);
+		if (data.getInt() != MAGIC || data.getInt() != VERSION) {
+			throw new IllegalArgumentException("Not a vocab trie (version " + VERSION + ")");
+		}
+		flags = data.getInt();
+		nodeCount = data.getInt();
+		int edgeCount = data.getInt();
+		unkId = data.getInt();
+		clsId = data.getInt();
+		sepId = data.getInt();
+		padId = data.getInt();
+		maxCharsPerWord = data.getInt();
+
+		firstEdge = slice(data, (nodeCount + 1) * Integer.BYTES).asIntBuffer();
+		tokenIds = slice(data, nodeCount * Integer.BYTES).asIntBuffer();
+		edgeTargets = slice(data, edgeCount * Integer.BYTES).asIntBuffer();
+		edgeChars = slice(data, edgeCount * Character.BYTES).asCharBuffer();
+	}
+
+	/**
+	* يقرأ شجرة مترجمة من مخزن (عادة MappedByteBuffer للأصل vocab.trie) دون نسخ محتواها.
+	*/
+	public static VocabTrie map(ByteBuffer buffer) {
+		return new VocabTrie(buffer);
+	}
+
+	/**
+	* @return العقدة التالية من node عبر الحرف c، أو NO_NODE. بحث ثنائي في حواف العقدة.
+	*/
+	public int child(int node, char c) {
+		int low = firstEdge.get(node);
+		int high = firstEdge.get(node + 1) - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			char edge = edgeChars.get(middle);
+			if (edge < c) {
+				low = middle + 1;
+			} else if (edge > c) {
+				high = middle - 1;
+			} else {
+				return edgeTargets.get(middle);
+			}
+		}
+		return NO_NODE;
+	}
+
+	/**
+	* @return معرف الـ Token الذي ينتهي عند node، أو NO_TOKEN.
+	*/
+	public int tokenId(int node) {
+		return tokenIds.get(node);
+	}
+
+	public boolean isLowerCase() {
+		return (flags & FLAG_LOWER_CASE) != 0;
+	}
+
+	public int nodeCount() {
+		return nodeCount;
+	}
+
+	public int unkId() {
+		return unkId;
+	}
+
+	public int clsId() {
+		return clsId;
+	}
+
+	public int sepId() {
+		return sepId;
+	}
+
+	public int padId() {
+		return padId;
+	}
+
+	public int maxCharsPerWord() {
+		return maxCharsPerWord;
+	}
+
+	// ------------------- الترجمة (وقت البناء) -------------------
+
+	/**
+	* يترجم vocab.txt (Token في كل سطر، ومعرفه رقم السطر) إلى صيغة الشجرة.
+	* @param lowerCase هل المفردات uncased (تُصغّر الحروف وتُحذف علامات التشكيل قبل البحث).
+	*/
+	public static void compile(File vocabFile, File trieFile, boolean lowerCase) throws IOException {
+		File parent = trieFile.getParentFile();
+		if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+			throw new IOException("Cannot create " + parent);
+		}
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+		Files.newInputStream(vocabFile.toPath()), StandardCharsets.UTF_8));
+		OutputStream out = new FileOutputStream(trieFile)) {
+			List<String> tokens = new ArrayList<>();
+			String line;
+			while ((line = reader.readLine()) != null) {
+				tokens.add(line.trim());
+			}
+			out.write(compile(tokens, lowerCase));
+		}
+	}
+
+	static byte[] compile(List<String> tokens, boolean lowerCase) {
+		// 1. شجرة مؤقتة بأبناء مرتبين حسب الحرف
+		List<TreeMap<Character, Integer>> children = new ArrayList<>();
+		List<Integer> terminals = new ArrayList<>();
+		children.add(new TreeMap<>());
+		terminals.add(NO_TOKEN);
+		int unk = NO_TOKEN, cls = NO_TOKEN, sep = NO_TOKEN, pad = NO_TOKEN;
+		for (int id = 0; id < tokens.size(); id++) {
+			String token = tokens.get(id);
+			if (token.isEmpty()) continue;
+			switch (token) {
+				case "[UNK]": unk = id; continue;
+				case "[CLS]": cls = id; continue;
+				case "[SEP]": sep = id; continue;
+				case "[PAD]": pad = id; continue;
+			}
+			int node = ROOT;
+			for (int i = 0; i < token.length(); i++) {
+				Integer next = children.get(node).get(token.charAt(i));
+				if (next == null) {
+					next = children.size();
+					children.add(new TreeMap<>());
+					terminals.add(NO_TOKEN);
+					children.get(node).put(token.charAt(i), next);
+				}
+				node = next;
+			}
+			if (terminals.get(node) == NO_TOKEN) {
+				terminals.set(node, id); // أول ظهور يفوز عند التكرار
+			}
+		}
+		if (unk == NO_TOKEN || cls == NO_TOKEN || sep == NO_TOKEN || pad == NO_TOKEN) {
+			throw new IllegalArgumentException("Vocabulary must contain [UNK], [CLS], [SEP] and [PAD]");
+		}
+
+		// 2. تسطيح الحواف بترتيب العقد
+		int nodes = children.size();
+		int edges = nodes - 1;
+		ByteBuffer out = ByteBuffer.allocate(HEADER_INTS * Integer.BYTES
+		+ (2 * nodes + 1 + edges) * Integer.BYTES + edges * Character.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		out.putInt(MAGIC).putInt(VERSION).putInt(lowerCase ? FLAG_LOWER_CASE : 0).putInt(nodes).putInt(edges)
+		.putInt(unk).putInt(cls).putInt(sep).putInt(pad).putInt(DEFAULT_MAX_CHARS_PER_WORD);
+		int edge = 0;
+		for (int node = 0; node < nodes; node++) {
+			out.putInt(edge);
+			edge += children.get(node).size();
+		}
+		out.putInt(edge);
+		for (int node = 0; node < nodes; node++) {
+			out.putInt(terminals.get(node));
+		}
+		for (TreeMap<Character, Integer> nodeChildren : children) {
+			for (int target : nodeChildren.values()) {
+				out.putInt(target);
+			}
+		}
+		for (TreeMap<Character, Integer> nodeChildren : children) {
+			for (char c : nodeChildren.keySet()) {
+				out.putChar(c);
+			}
+		}
+		return out.array();
+	}
+
+	private static ByteBuffer slice(ByteBuffer data, int bytes) {
+		ByteBuffer section = data.slice().order(ByteOrder.LITTLE_ENDIAN);
+		section.limit(bytes);
+		data.position(data.position() + bytes);
+		return section;
+	}
+}
@@ -0,0 +1,194 @@
+package com.arabic.aitoolkit.core.embedding;
+
+import java.text.Normalizer;
+
+/**
+* WordPieceTokenizer: ترميز WordPiece (أطول تطابق جشع) كما في BERT، فوق VocabTrie.
+* 1. تقسيم أولي: المسافات وأحرف التحكم تفصل الكلمات، وكل علامة ترقيم كلمة مستقلة.
+*    في المفردات uncased تُصغّر الحروف وتُفكك (NFD) وتُحذف علامات التشكيل (Mn)، بجدول محسوب مسبقًا (UncasedFolding).
+* 2. كل كلمة تُقسم إلى أطول Token يبدأ بها ثم "##" لبقيتها؛ الكلمة التي لا يمكن تقسيمها كاملة تصبح [UNK].
+* الترميز يكتب في مصفوفة int[] يمررها المستدعي ولا يخصص أي كائن (سوى مخزن الكلمة لكل خيط مرة واحدة).
+* آمنة للاستخدام من عدة خيوط.
+*/
+public final class WordPieceTokenizer {
+
+	private final VocabTrie trie;
+	private final int continuationRoot; // العقدة بعد "##"
+	private final ThreadLocal<char[]> wordBuffer;
+
+	public WordPieceTokenizer(VocabTrie trie) {
+		this.trie = trie;
+		int node = trie.child(VocabTrie.ROOT, '#');
+		this.continuationRoot = node == VocabTrie.NO_NODE ? VocabTrie.NO_NODE : trie.child(node, '#');
+		final int maxChars = trie.maxCharsPerWord();
+		this.wordBuffer = ThreadLocal.withInitial(() -> new char[maxChars + 1]);
+	}
+
+	/**
+	* يرمّز النص إلى [CLS] tokens... [SEP] مع القص عند maxTokens.
+	* @param ids مصفوفة الإخراج (يُكتب أول maxTokens موضع منها على الأكثر).
+	* @param maxTokens الطول الأقصى شاملًا [CLS] و [SEP] (>= 2).
+	* @return عدد المواضع المكتوبة.
+	*/
+	public int encode(CharSequence text, int[] ids, int maxTokens) {
+		return encode(text, ids, 0, maxTokens);
+	}
+
+	/**
+	* مثل encode(text, ids, maxTokens) لكن الكتابة تبدأ من ids[offset] (عدة نصوص في مصفوفة واحدة).
+	*/
+	public int encode(CharSequence text, int[] ids, int offset, int maxTokens) {
+		int limit = offset + Math.min(maxTokens, ids.length - offset) - 1; // موضع محجوز لـ [SEP]
+		int count = offset;
+		ids[count++] = trie.clsId();
+
+		char[] word = wordBuffer.get();
+		int wordLength = 0;
+		boolean wordTooLong = false;
+		boolean lowerCase = trie.isLowerCase();
+		for (int i = 0, length = text.length(); i <= length && count < limit; i++) {
+			char c = i < length ? text.charAt(i) : ' ';
+			if (lowerCase) {
+				int folded = UncasedFolding.TABLE[c];
+				if (folded == UncasedFolding.REMOVED) continue;
+				if (folded > Character.MAX_VALUE) {
+					// تفكيك إلى عدة حروف (ليس بينها فاصل ولا ترقيم): تُلحق كلها بالكلمة الجارية
+					for (int j = folded & 0xFFFF, end = j + (folded >>> 16); j < end; j++) {
+						if (wordLength < word.length) {
+							word[wordLength++] = UncasedFolding.EXPANSIONS[j];
+						} else {
+							wordTooLong = true;
+						}
+					}
+					continue;
+				}
+				c = (char) folded;
+			}
+			boolean separator = Character.isWhitespace(c) || Character.isISOControl(c) || c == '\uFFFD';
+			boolean punctuation = !separator && isPunctuation(c);
+			if (!separator && !punctuation) {
+				if (wordLength < word.length) {
+					word[wordLength++] = c;
+				} else {
+					wordTooLong = true;
+				}
+				continue;
+			}
+			if (wordLength > 0 || wordTooLong) {
+				count = wordTooLong ? append(ids, count, limit, trie.unkId()) : encodeWord(word, wordLength, ids, count, limit);
+				wordLength = 0;
+				wordTooLong = false;
+			}
+			if (punctuation) {
+				word[0] = c;
+				count = encodeWord(word, 1, ids, count, limit);
+			}
+		}
+
+		ids[count++] = trie.sepId();
+		return count - offset;
+	}
+
+	/**
+	* أطول تطابق جشع لكلمة واحدة. إذا تعذر تقسيم جزء منها تُستبدل الكلمة كاملة بـ [UNK].
+	* @return الموضع التالي في ids.
+	*/
+	private int encodeWord(char[] word, int length, int[] ids, int count, int limit) {
+		if (length > trie.maxCharsPerWord()) {
+			return append(ids, count, limit, trie.unkId());
+		}
+		int start = 0;
+		int written = count;
+		while (start < length) {
+			int node = start == 0 ? VocabTrie.ROOT : continuationRoot;
+			int matchEnd = -1;
+			int matchId = VocabTrie.NO_TOKEN;
+			for (int end = start; end < length && node != VocabTrie.NO_NODE; end++) {
+				node = trie.child(node, word[end]);
+				if (node != VocabTrie.NO_NODE && trie.tokenId(node) != VocabTrie.NO_TOKEN) {
+					matchEnd = end + 1;
+					matchId = trie.tokenId(node);
+				}
+			}
+			if (matchEnd < 0) {
+				return append(ids, count, limit, trie.unkId()); // تجاهل الأجزاء المكتوبة
+			}
+			if (written >= limit) {
+				return written; // قص: لا مكان لبقية الكلمة
+			}
+			ids[written++] = matchId;
+			start = matchEnd;
+		}
+		return written;
+	}
+
+	private static int append(int[] ids, int count, int limit, int id) {
+		if (count < limit) {
+			ids[count++] = id;
+		}
+		return count;
+	}
+
+	// علامات ترقيم BERT: كل رموز ASCII غير الحرفية الرقمية، وفئات الترقيم في Unicode (مثل ، ؛ ؟)
+	private static boolean isPunctuation(char c) {
+		if ((c >= 33 && c <= 47) || (c >= 58 && c <= 64) || (c >= 91 && c <= 96) || (c >= 123 && c <= 126)) {
+			return true;
+		}
+		switch (Character.getType(c)) {
+			case Character.CONNECTOR_PUNCTUATION:
+			case Character.DASH_PUNCTUATION:
+			case Character.START_PUNCTUATION:
+			case Character.END_PUNCTUATION:
+			case Character.INITIAL_QUOTE_PUNCTUATION:
+			case Character.FINAL_QUOTE_PUNCTUATION:
+			case Character.OTHER_PUNCTUATION:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	public int padId() {
+		return trie.padId();
+	}
+
+	/**
+	* طي المفردات uncased لكل محارف BMP كما في BERT: تصغير ثم تفكيك NFD ثم حذف Mn
+	* (أ إ آ ← ا، ؤ ← و، ئ ← ي، é ← e). يُحسب مرة واحدة عند أول ترميز uncased، فلا يخصص encode أي سلسلة.
+	* القيمة محرف واحد، أو REMOVED لعلامة تشكيل، أو (الطول << 16 | الموضع) في EXPANSIONS للتفكيك إلى عدة حروف
+	* (مقاطع الهانغول وبعض حروف العلة الهندية، ثلاثة محارف على الأكثر).
+	*/
+	private static final class UncasedFolding {
+
+		static final int REMOVED = -1;
+		static final int[] TABLE = new int[Character.MAX_VALUE + 1];
+		static final char[] EXPANSIONS;
+
+		static {
+			StringBuilder expansions = new StringBuilder();
+			StringBuilder folded = new StringBuilder(4);
+			for (int c = 0; c <= Character.MAX_VALUE; c++) {
+				folded.setLength(0);
+				String decomposed = Normalizer.normalize(String.valueOf(Character.toLowerCase((char) c)), Normalizer.Form.NFD);
+				for (int i = 0; i < decomposed.length(); i++) {
+					char d = decomposed.charAt(i);
+					if (Character.getType(d) != Character.NON_SPACING_MARK) {
+						folded.append(Character.toLowerCase(d));
+					}
+				}
+				if (folded.length() == 0) {
+					TABLE[c] = REMOVED;
+				} else if (folded.length() == 1) {
+					TABLE[c] = folded.charAt(0);
+				} else {
+					TABLE[c] = folded.length() << 16 | expansions.length();
+					expansions.append(folded);
+				}
+			}
+			EXPANSIONS = expansions.toString().toCharArray();
+		}
+
+		private UncasedFolding() {
+		}
+	}
+}
@@ -0,0 +1,392 @@
+package com.arabic.aitoolkit.core.models;
+
+import org.tensorflow.lite.DataType;
+import org.tensorflow.lite.Interpreter;
+import org.tensorflow.lite.Tensor;
+import org.tensorflow.lite.TensorFlowLite;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.CRC32;
+
+/**
+ * يختار إعداد تشغيل TFLite الأسرع لكل نموذج على الجهاز الحالي عند أول تحميل، ويحفظه لإعادة استخدامه.
+ * المرشحات كلها على المعالج (لا يحتاج GPU): عدد الخيوط من 1 إلى الحد الأقصى، مع XNNPACK وبدونه،
+ * إضافة إلى المسار المرجعي (خيارات TFLite الافتراضية كما كان ModelLoader يبنيها).
+ * كل مرشح يُشغَّل على مدخلات ثابتة ويؤخذ وسيط زمنه؛ ويُستبعد إذا ابتعد إخراجه عن إخراج المسار المرجعي.
+ * النتيجة تُحفظ في ملف Properties بمفتاح يجمع النموذج (اسمه وحجمه وCRC32) والجهاز وإصدار TFLite،
+ * فأي تحديث للنموذج أو للمكتبة يعيد القياس. البصمة تُحسب مرة واحدة لكل مخزن نموذج محمّل (الملف المربوط
+ * بالذاكرة لا يتغير)، فالاستدعاءات التالية للمخزن نفسه لا تقرأ النموذج كله.
+ * لا تعتمد على واجهات أندرويد (بصمة الجهاز يمررها المستدعي)، فيمكن تشغيلها على JVM مع مكتبة TFLite لسطح المكتب.
+ */
+public final class BackendAutotuner {
+
+    public static final String DEFAULT_FILE_NAME = "backend_tuning.properties";
+
+    private static final int FORMAT_VERSION = 1; // يُرفع مع أي تغيير في المرشحات أو طريقة القياس
+    private static final int WARMUP_RUNS = 2;
+    private static final int MEASURED_RUNS = 5;
+    private static final float OUTPUT_TOLERANCE = 1e-3f; // أقصى فرق نسبي مسموح عن الإخراج المرجعي
+
+    private final File storeFile;
+    private final String deviceId;
+    private final int maxThreads;
+    private final Measurer measurer;
+    private final Map<String, Backend> tuned = new HashMap<>();
+    private final Map<String, ModelSignature> signatures = new HashMap<>(); // اسم النموذج ← بصمة آخر مخزن له
+    private Properties stored; // يُقرأ من الملف عند أول حاجة
+
+    /**
+     * @param storeFile ملف حفظ النتائج (مثل new File(context.getFilesDir(), DEFAULT_FILE_NAME)).
+     * @param deviceId بصمة الجهاز (الطراز والمعالج وإصدار النظام)؛ تغيرها يعيد القياس.
+     */
+    public BackendAutotuner(File storeFile, String deviceId) {
+        this(storeFile, deviceId, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param maxThreads أكبر عدد خيوط يُجرَّب (عادة عدد الأنوية).
+     */
+    public BackendAutotuner(File storeFile, String deviceId, int maxThreads) {
+        this(storeFile, deviceId, maxThreads, TFLITE);
+    }
+
+    BackendAutotuner(File storeFile, String deviceId, int maxThreads, Measurer measurer) {
+        if (maxThreads < 1) {
+            throw new IllegalArgumentException("maxThreads must be positive: " + maxThreads);
+        }
+        this.storeFile = storeFile;
+        this.deviceId = deviceId;
+        this.maxThreads = maxThreads;
+        this.measurer = measurer;
+    }
+
+    /**
+     * مثل tune(modelName, model, maxThreads).
+     */
+    public Backend tune(String modelName, ByteBuffer model) {
+        return tune(modelName, model, maxThreads);
+    }
+
+    /**
+     * يعيد الإعداد المحفوظ لهذا النموذج على هذا الجهاز، أو يقيس كل المرشحات ويحفظ الأسرع.
+     * القياس يستغرق عدة ثوانٍ للنماذج الكبيرة، لذلك يُستدعى من خيط الخلفية فقط.
+     * @param threadLimit أكبر عدد خيوط يُجرَّب لهذا الاستخدام (مثل الأنوية مقسومة على المترجمات المتزامنة).
+     * @return الإعداد الفائز، أو Backend.REFERENCE إذا تعذر تشغيل كل المرشحات.
+     */
+    public synchronized Backend tune(String modelName, ByteBuffer model, int threadLimit) {
+        int limit = Math.max(1, Math.min(threadLimit, maxThreads));
+        String key = modelName + "|" + signatureOf(modelName, model) + "|" + deviceId + "|tflite-"
+                + measurer.runtimeVersion() + "|threads-" + limit + "|v" + FORMAT_VERSION;
+
+        Backend backend = tuned.get(key);
+        if (backend != null) return backend;
+
+        backend = Backend.decode(loadStored().getProperty(key));
+        if (backend == null) {
+            backend = measurer.measure(model, limit);
+            if (backend != Backend.REFERENCE) {
+                stored.setProperty(key, backend.encode());
+                save(); // إذا فشل الحفظ تبقى النتيجة في الذاكرة لهذه الجلسة
+            }
+        }
+        tuned.put(key, backend);
+        return backend;
+    }
+
+    // ------------------- القياس -------------------
+
+    /**
+     * القياس الفعلي وإصدار المكتبة؛ يُستبدل في الاختبارات لفحص الحفظ وإبطاله دون تشغيل TFLite.
+     */
+    interface Measurer {
+        String runtimeVersion();
+
+        Backend measure(ByteBuffer model, int threadLimit);
+    }
+
+    private static final Measurer TFLITE = new Measurer() {
+        @Override
+        public String runtimeVersion() {
+            return TensorFlowLite.runtimeVersion();
+        }
+
+        @Override
+        public Backend measure(ByteBuffer model, int threadLimit) {
+            return measureAll(model, threadLimit);
+        }
+    };
+
+    private static Backend measureAll(ByteBuffer model, int limit) {
+        Trial reference = Trial.run(model, Backend.REFERENCE);
+        if (reference == null) {
+            return Backend.REFERENCE; // النموذج لا يعمل أصلًا؛ يظهر الخطأ عند إنشاء المترجم الفعلي
+        }
+        Trial best = reference;
+        for (int xnnpack = 0; xnnpack < 2; xnnpack++) {
+            for (int threads = 1; threads <= limit; threads++) {
+                Trial trial = Trial.run(model, new Backend(threads, xnnpack == 1, false, 0));
+                if (trial != null && trial.latencyNanos < best.latencyNanos && trial.matches(reference)) {
+                    best = trial;
+                }
+            }
+        }
+        Backend winner = best.backend;
+        return new Backend(winner.threads, winner.useXnnpack, winner.reference, best.latencyNanos);
+    }
+
+    /**
+     * تشغيل مرشح واحد: مترجم جديد، تشغيلات إحماء، ثم وسيط أزمنة MEASURED_RUNS تشغيلًا.
+     */
+    private static final class Trial {
+
+        final Backend backend;
+        final long latencyNanos;
+        final float[] output; // الإخراج الأول إذا كان float32، للمقارنة بالمرجع
+
+        private Trial(Backend backend, long latencyNanos, float[] output) {
+            this.backend = backend;
+            this.latencyNanos = latencyNanos;
+            this.output = output;
+        }
+
+        /**
+         * @return نتيجة التشغيل، أو null إذا فشل إنشاء المترجم أو تشغيله بهذا الإعداد.
+         */
+        static Trial run(ByteBuffer model, Backend backend) {
+            try (Interpreter interpreter = new Interpreter(model, backend.applyTo(new Interpreter.Options()))) {
+                Object[] inputs = new Object[interpreter.getInputTensorCount()];
+                for (int i = 0; i < inputs.length; i++) {
+                    inputs[i] = fill(interpreter.getInputTensor(i));
+                }
+                Map<Integer, Object> outputs = new HashMap<>();
+                for (int i = 0; i < interpreter.getOutputTensorCount(); i++) {
+                    outputs.put(i, ByteBuffer.allocateDirect(interpreter.getOutputTensor(i).numBytes())
+                            .order(ByteOrder.nativeOrder()));
+                }
+
+                long[] times = new long[MEASURED_RUNS];
+                for (int run = -WARMUP_RUNS; run < MEASURED_RUNS; run++) {
+                    rewind(inputs, outputs);
+                    long start = System.nanoTime();
+                    interpreter.runForMultipleInputsOutputs(inputs, outputs);
+                    if (run >= 0) {
+                        times[run] = System.nanoTime() - start;
+                    }
+                }
+                Arrays.sort(times);
+                return new Trial(backend, times[MEASURED_RUNS / 2], snapshot(interpreter, outputs));
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+
+        boolean matches(Trial reference) {
+            if (output == null || reference.output == null) return true;
+            if (output.length != reference.output.length) return false;
+            for (int i = 0; i < output.length; i++) {
+                float expected = reference.output[i];
+                if (Math.abs(output[i] - expected) > OUTPUT_TOLERANCE * Math.max(1f, Math.abs(expected))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // مدخلات صالحة لأي نموذج نصي أو صوري: 1 للأعداد الصحيحة (معرف وقناع ونوع جملة صالحة)، 0.5 للأعداد العشرية
+        private static ByteBuffer fill(Tensor tensor) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(tensor.numBytes()).order(ByteOrder.nativeOrder());
+            DataType type = tensor.dataType();
+            while (buffer.hasRemaining()) {
+                switch (type) {
+                    case INT32:
+                        buffer.putInt(1);
+                        break;
+                    case INT64:
+                        buffer.putLong(1L);
+                        break;
+                    case FLOAT32:
+                        buffer.putFloat(0.5f);
+                        break;
+                    default:
+                        buffer.put((byte) 1);
+                        break;
+                }
+            }
+            return buffer;
+        }
+
+        private static void rewind(Object[] inputs, Map<Integer, Object> outputs) {
+            for (Object input : inputs) {
+                ((ByteBuffer) input).rewind();
+            }
+            for (Object output : outputs.values()) {
+                ((ByteBuffer) output).rewind();
+            }
+        }
+
+        private static float[] snapshot(Interpreter interpreter, Map<Integer, Object> outputs) {
+            if (outputs.isEmpty() || interpreter.getOutputTensor(0).dataType() != DataType.FLOAT32) {
+                return null;
+            }
+            ByteBuffer buffer = (ByteBuffer) outputs.get(0);
+            buffer.rewind();
+            float[] values = new float[buffer.capacity() / Float.BYTES];
+            buffer.asFloatBuffer().get(values);
+            return values;
+        }
+    }
+
+    // ------------------- الحفظ -------------------
+
+    private Properties loadStored() {
+        if (stored == null) {
+            stored = new Properties();
+            if (storeFile.isFile()) {
+                try (InputStream in = new FileInputStream(storeFile)) {
+                    stored.load(in);
+                } catch (IOException | IllegalArgumentException e) {
+                    stored.clear(); // ملف تالف: يُعاد القياس ويُستبدل
+                }
+            }
+        }
+        return stored;
+    }
+
+    private void save() {
+        File temp = new File(storeFile.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp)) {
+            stored.store(out, "TFLite backend autotuning results");
+        } catch (IOException e) {
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(storeFile)) {
+            temp.delete();
+        }
+    }
+
+    // بصمة المخزن المحمّل حاليًا لهذا النموذج إن وُجدت، وإلا تُحسب مرة واحدة وتُحفظ
+    private String signatureOf(String modelName, ByteBuffer model) {
+        ModelSignature cached = signatures.get(modelName);
+        if (cached != null && cached.model.get() == model) {
+            return cached.value;
+        }
+        String value = signature(model);
+        signatures.put(modelName, new ModelSignature(model, value));
+        return value;
+    }
+
+    // حجم النموذج مع CRC32 لمحتواه: يتغير مع أي إصدار جديد للملف بالاسم نفسه
+    private static String signature(ByteBuffer model) {
+        ByteBuffer data = model.duplicate();
+        data.clear();
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return data.capacity() + "-" + Long.toHexString(crc.getValue());
+    }
+
+    /**
+     * بصمة مخزن نموذج بعينه؛ المرجع ضعيف كي لا يبقى الملف المربوط في الذاكرة بعد تحريره.
+     */
+    private static final class ModelSignature {
+        final WeakReference<ByteBuffer> model;
+        final String value;
+
+        ModelSignature(ByteBuffer model, String value) {
+            this.model = new WeakReference<>(model);
+            this.value = value;
+        }
+    }
+
+    // --------------- إعداد التشغيل (Backend) ---------------
+
+    /**
+     * إعداد تشغيل على المعالج: عدد الخيوط وتفعيل XNNPACK، أو المسار المرجعي (خيارات TFLite الافتراضية).
+     */
+    public static final class Backend {
+
+        public static final Backend REFERENCE = new Backend(0, false, true, 0);
+
+        private final int threads;
+        private final boolean useXnnpack;
+        private final boolean reference;
+        private final long latencyNanos;
+
+        Backend(int threads, boolean useXnnpack, boolean reference, long latencyNanos) {
+            this.threads = threads;
+            this.useXnnpack = useXnnpack;
+            this.reference = reference;
+            this.latencyNanos = latencyNanos;
+        }
+
+        /**
+         * يطبق الإعداد على options ويعيدها (المسار المرجعي لا يغير شيئًا).
+         */
+        public Interpreter.Options applyTo(Interpreter.Options options) {
+            if (!reference) {
+                options.setNumThreads(threads);
+                options.setUseXNNPACK(useXnnpack);
+            }
+            return options;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public boolean isUseXnnpack() {
+            return useXnnpack;
+        }
+
+        public boolean isReference() {
+            return reference;
+        }
+
+        /**
+         * @return وسيط زمن الاستدلال المقاس (0 إذا لم يُقس).
+         */
+        public long getLatencyNanos() {
+            return latencyNanos;
+        }
+
+        String encode() {
+            return reference ? "reference," + latencyNanos
+                    : threads + "," + (useXnnpack ? "xnnpack" : "builtin") + "," + latencyNanos;
+        }
+
+        static Backend decode(String value) {
+            if (value == null) return null;
+            String[] parts = value.split(",");
+            try {
+                if (parts.length == 2 && parts[0].equals("reference")) {
+                    return new Backend(0, false, true, Long.parseLong(parts[1]));
+                }
+                if (parts.length == 3) {
+                    return new Backend(Integer.parseInt(parts[0]), parts[1].equals("xnnpack"), false,
+                            Long.parseLong(parts[2]));
+                }
+            } catch (NumberFormatException e) {
+                // قيمة تالفة: يُعاد القياس
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            String name = reference ? "reference" : threads + " threads" + (useXnnpack ? " + XNNPACK" : "");
+            return latencyNanos > 0 ? name + " (" + latencyNanos / 1000 + " µs)" : name;
+        }
+    }
+}
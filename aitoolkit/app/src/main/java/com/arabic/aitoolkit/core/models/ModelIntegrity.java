@@ -0,0 +1,129 @@
+package com.arabic.aitoolkit.core.models;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+/**
+ * يتحقق من سلامة ملفات النماذج مرة واحدة لكل تثبيت: SHA-256 للملف المربوط بالذاكرة يُقارن بالقيمة المولدة
+ * وقت البناء (الأصل CHECKSUMS_ASSET من مهمة generateModelChecksums في app/build.gradle).
+ * بعد نجاح التحقق يُحفظ ختم التثبيت (lastUpdateTime) في VERIFIED_FILE فلا يُعاد حساب البصمة في كل تشغيل؛
+ * تحديث التطبيق يغير الختم فيعاد التحقق مرة واحدة.
+ * الملفات غير المدرجة في CHECKSUMS_ASSET (مثل بناء بلا مهمة البصمات) تُقبل دون تحقق.
+ */
+final class ModelIntegrity {
+
+    private static final String TAG = "ModelIntegrity";
+    static final String CHECKSUMS_ASSET = "model_checksums.properties";
+    private static final String VERIFIED_FILE = "model_integrity.properties";
+
+    private final Context context;
+    private Properties expected; // يُقرأ من الأصول عند أول حاجة
+    private Properties verified;
+
+    ModelIntegrity(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * @return true إذا حُسبت البصمة الآن (أول تحميل بعد التثبيت)، false إذا سبق التحقق أو لا توجد بصمة متوقعة.
+     * @throws IOException إذا لم تطابق البصمة (ملف ناقص أو تالف)؛ النموذج لا يُستخدم حينها.
+     */
+    synchronized boolean verifyOnce(String assetPath, ByteBuffer model) throws IOException {
+        String checksum = expected().getProperty(assetPath);
+        if (checksum == null) return false;
+
+        String installStamp = installStamp();
+        String stamp = installStamp + ":" + checksum;
+        if (stamp.equals(verified().getProperty(assetPath))) return false;
+
+        String actual = sha256(model);
+        if (!actual.equalsIgnoreCase(checksum)) {
+            throw new IOException("Checksum mismatch for " + assetPath + ": expected " + checksum + ", got " + actual);
+        }
+        verified.setProperty(assetPath, stamp);
+        saveVerified();
+        return true;
+    }
+
+    private Properties expected() {
+        if (expected == null) {
+            expected = new Properties();
+            try (InputStream in = context.getAssets().open(CHECKSUMS_ASSET)) {
+                expected.load(in);
+            } catch (FileNotFoundException e) {
+                Log.w(TAG, CHECKSUMS_ASSET + " not packaged; model checksums are not verified.");
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to read " + CHECKSUMS_ASSET, e);
+            }
+        }
+        return expected;
+    }
+
+    private Properties verified() {
+        if (verified == null) {
+            verified = new Properties();
+            File file = new File(context.getFilesDir(), VERIFIED_FILE);
+            if (file.isFile()) {
+                try (InputStream in = new FileInputStream(file)) {
+                    verified.load(in);
+                } catch (IOException | IllegalArgumentException e) {
+                    verified.clear(); // ملف تالف: يعاد التحقق
+                }
+            }
+        }
+        return verified;
+    }
+
+    private void saveVerified() {
+        File file = new File(context.getFilesDir(), VERIFIED_FILE);
+        File temp = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp)) {
+            verified.store(out, "Verified model checksums per install");
+        } catch (IOException e) {
+            temp.delete();
+            return; // يعاد التحقق في التشغيل التالي
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+        }
+    }
+
+    private String installStamp() {
+        try {
+            return Long.toString(context.getPackageManager()
+                    .getPackageInfo(context.getPackageName(), 0).lastUpdateTime);
+        } catch (PackageManager.NameNotFoundException e) {
+            return "0";
+        }
+    }
+
+    private static String sha256(ByteBuffer model) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // مضمونة في كل JVM وأندرويد
+        }
+        ByteBuffer data = model.duplicate();
+        data.clear();
+        digest.update(data);
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -1,20 +1,27 @@
 package com.arabic.aitoolkit.core.models;
 
 import android.content.Context;
+import android.os.Build;
 import android.util.Log;
 
 import org.tensorflow.lite.Interpreter;
 import org.tensorflow.lite.support.common.FileUtil;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.MappedByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * فئة مسؤولة عن تحميل وتفريغ نماذج TensorFlow Lite (TFLite) و OCR (مثل Tesseract)
  * في الخلفية لإدارة موارد الذاكرة بكفاءة.
+ * المحمّل الوحيد في التطبيق: أسماء النماذج مسارات نسبية داخل assets، وكل ملف يُربط بالذاكرة دون نسخ
+ * (mapModelFile)، ويُتحقق من بصمته مرة لكل تثبيت (ModelIntegrity)، وتُسجل مدة تحميله وحجمه (getLoadMetrics).
  */
 public class ModelLoader {
 
@@ -27,74 +34,281 @@ public class ModelLoader {
 
     private final Context context;
     private final ExecutorService executor;
-    // Map لتخزين النماذج المُحمّلة
-    private final Map<String, Interpreter> loadedTfLiteModels = new HashMap<>();
+    private final BackendAutotuner backendAutotuner;
+    private final ModelRegistry modelRegistry;
+    // تحميل واحد جارٍ أو مكتمل لكل نموذج في هذا الـ Loader (المترجم نفسه مشترك عبر ModelRegistry):
+    // الطلبات المتزامنة للنموذج نفسه تنتظر الـ Future نفسه بدل تحميله مرتين
+    private final Map<String, CompletableFuture<ModelRegistry.Handle<LoadedModel>>> loadedTfLiteModels =
+            new ConcurrentHashMap<>();
+
+    // قياسات التحميل لكل ملف في العملية، لرصد تراجع زمن البدء البارد
+    private static final Map<String, LoadMetrics> loadMetrics = new ConcurrentHashMap<>();
+    private static ModelIntegrity integrity; // محمية بـ ModelLoader.class
+    // نتائج القياس مشتركة في العملية: كل Loader يرى ما قاسه غيره، ولا يكتب اثنان الملف نفسه بالتوازي
+    private static BackendAutotuner sharedAutotuner; // محمية بـ ModelLoader.class
 
     public ModelLoader(Context context, ExecutorService executor) {
         this.context = context;
         this.executor = executor;
+        this.backendAutotuner = backendAutotuner(context);
+        this.modelRegistry = ModelRegistry.getInstance(context);
     }
 
     /**
      * تحميل نموذج TFLite معين بشكل غير متزامن.
+     * المترجم مشترك مع كل Loader آخر في العملية حمّل النموذج نفسه (ModelRegistry)، فإذا كان محمّلًا يُعاد فورًا.
+     * مترجمات TFLite غير آمنة بين الخيوط: من يستخدمه من عدة خيوط أو شاشات يزامن عليه (synchronized (interpreter)).
      * @param modelName اسم ملف النموذج (مثل EMBEDDING_MODEL_FILE).
      * @param listener واجهة رد الاتصال للإبلاغ عن النجاح أو الفشل.
      */
     public void loadTfLiteModelAsync(final String modelName, final ModelLoadListener listener) {
-        if (loadedTfLiteModels.containsKey(modelName)) {
-            Log.d(TAG, modelName + " is already loaded.");
-            listener.onModelLoaded(modelName, loadedTfLiteModels.get(modelName));
-            return;
-        }
-
-        executor.execute(() -> {
-            try {
-                // قراءة ملف النموذج مباشرة من assets
-                MappedByteBuffer modelBuffer = FileUtil.loadMappedFile(context, modelName);
-                
-                // إعداد المفسّر (Interpreter)
-                Interpreter.Options options = new Interpreter.Options();
-                // يمكن إضافة خيارات التسريع هنا (مثل XNNPACK أو GPU Delegate)
-                // options.setNumThreads(Runtime.getRuntime().availableProcessors()); 
-
-                Interpreter interpreter = new Interpreter(modelBuffer, options);
-                
-                loadedTfLiteModels.put(modelName, interpreter);
-                Log.i(TAG, modelName + " loaded successfully.");
-                
-                // إرجاع النتيجة على خيط رد الاتصال (يفترض أن listener سيتعامل مع الـ Threading)
+        // إرجاع النتيجة على خيط التحميل، أو فورًا إذا كان محمّلًا (يفترض أن listener سيتعامل مع الـ Threading)
+        loadTfLiteModel(modelName).whenComplete((interpreter, error) -> {
+            if (error == null) {
                 listener.onModelLoaded(modelName, interpreter);
-                
-            } catch (IOException e) {
-                Log.e(TAG, "Failed to load TFLite model: " + modelName, e);
-                listener.onModelLoadFailed(modelName, e.getMessage());
+            } else {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                listener.onModelLoadFailed(modelName, cause.getMessage());
             }
         });
     }
 
     /**
-     * تفريغ نموذج TFLite معين من الذاكرة (إغلاق المفسّر).
+     * مثل loadTfLiteModelAsync لكن بـ Future: كل الطلبات للنموذج نفسه (حتى المتزامنة) تشترك في تحميل واحد.
+     * التحميل الفاشل لا يُحفظ، فالطلب التالي يعيد المحاولة.
+     */
+    public CompletableFuture<Interpreter> loadTfLiteModel(String modelName) {
+        CompletableFuture<ModelRegistry.Handle<LoadedModel>> future = loadedTfLiteModels.get(modelName);
+        if (future == null) {
+            CompletableFuture<ModelRegistry.Handle<LoadedModel>> created = new CompletableFuture<>();
+            future = loadedTfLiteModels.putIfAbsent(modelName, created);
+            if (future == null) {
+                future = created;
+                startLoad(modelName, created);
+            }
+        }
+        if (future.isDone() && !future.isCompletedExceptionally()) {
+            Log.d(TAG, modelName + " is already loaded.");
+        }
+        return future.thenApply(handle -> handle.get().interpreter);
+    }
+
+    private void startLoad(String modelName, CompletableFuture<ModelRegistry.Handle<LoadedModel>> future) {
+        try {
+            executor.execute(() -> {
+                try {
+                    ModelRegistry.Handle<LoadedModel> handle = modelRegistry.acquire("interpreter:" + modelName,
+                            () -> LoadedModel.load(modelRegistry, backendAutotuner, modelName));
+                    Log.i(TAG, modelName + " loaded successfully.");
+                    future.complete(handle);
+                } catch (IOException | RuntimeException e) {
+                    Log.e(TAG, "Failed to load TFLite model: " + modelName, e);
+                    loadedTfLiteModels.remove(modelName, future);
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            loadedTfLiteModels.remove(modelName, future);
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * يربط ملف نموذج من assets بالذاكرة دون نسخه (يجب أن يكون غير مضغوط في الـ APK، انظر aaptOptions)،
+     * ويتحقق من بصمته عند أول تحميل بعد التثبيت، ويسجل قياسات التحميل.
+     * يُفضل ModelRegistry.acquireModelBuffer لمشاركة الملف نفسه بين المستخدمين.
+     * @param assetPath المسار النسبي داخل assets (مثل EMBEDDING_MODEL_FILE أو "paddleocr/det_arabic.tflite").
+     * @throws IOException إذا لم يوجد الملف أو كان مضغوطًا أو لم تطابق بصمته.
+     */
+    public static MappedByteBuffer mapModelFile(Context context, String assetPath) throws IOException {
+        long start = System.nanoTime();
+        MappedByteBuffer buffer = FileUtil.loadMappedFile(context, assetPath);
+        long mapped = System.nanoTime();
+        boolean verified = integrity(context).verifyOnce(assetPath, buffer);
+        long checked = System.nanoTime();
+
+        LoadMetrics metrics = new LoadMetrics(assetPath, buffer.capacity(), mapped - start,
+                verified ? checked - mapped : 0, verified, -1);
+        loadMetrics.put(assetPath, metrics);
+        Log.i(TAG, "Load metrics: " + metrics);
+        return buffer;
+    }
+
+    /**
+     * يضيف مدة إنشاء المترجم إلى قياسات الملف (لمن ينشئ مترجماته بنفسه، مثل EmbeddingManager).
+     */
+    public static void recordInterpreterLoad(String assetPath, long nanos) {
+        LoadMetrics metrics = loadMetrics.computeIfPresent(assetPath, (path, old) -> old.withInterpreterNanos(nanos));
+        if (metrics != null) {
+            Log.i(TAG, "Load metrics: " + metrics);
+        }
+    }
+
+    /**
+     * @return آخر قياسات تحميل لكل ملف في هذه العملية.
+     */
+    public static Map<String, LoadMetrics> getLoadMetrics() {
+        return new HashMap<>(loadMetrics);
+    }
+
+    private static synchronized ModelIntegrity integrity(Context context) {
+        if (integrity == null) {
+            integrity = new ModelIntegrity(context.getApplicationContext());
+        }
+        return integrity;
+    }
+
+    private static synchronized BackendAutotuner backendAutotuner(Context context) {
+        if (sharedAutotuner == null) {
+            sharedAutotuner = new BackendAutotuner(
+                    new File(context.getApplicationContext().getFilesDir(), BackendAutotuner.DEFAULT_FILE_NAME),
+                    deviceId());
+        }
+        return sharedAutotuner;
+    }
+
+    /**
+     * الإعدادات المقاسة لكل نموذج (نسخة واحدة في العملية)، لمن ينشئ مترجماته بنفسه (مثل EmbeddingManager).
+     */
+    public BackendAutotuner getBackendAutotuner() {
+        return backendAutotuner;
+    }
+
+    /**
+     * تحرير نموذج TFLite معين. المفسّر يُغلق عند إخلائه من ModelRegistry (بعد مهلة الخمول إذا لم يعد مستخدمًا).
      * @param modelName اسم ملف النموذج المراد تفريغه.
      */
     public void unloadTfLiteModel(String modelName) {
-        Interpreter interpreter = loadedTfLiteModels.remove(modelName);
-        if (interpreter != null) {
-            interpreter.close();
+        CompletableFuture<ModelRegistry.Handle<LoadedModel>> future = loadedTfLiteModels.remove(modelName);
+        if (future != null) {
+            future.thenAccept(ModelRegistry.Handle::close); // التحميل الجاري يُحرر فور انتهائه
             Log.i(TAG, modelName + " unloaded successfully.");
         }
     }
 
     /**
-     * تفريغ جميع النماذج المُحمّلة.
+     * تحرير جميع النماذج المُحمّلة بهذا الـ Loader.
      */
     public void unloadAllTfLiteModels() {
-        for (Interpreter interpreter : loadedTfLiteModels.values()) {
-            interpreter.close();
+        for (String modelName : loadedTfLiteModels.keySet()) {
+            CompletableFuture<ModelRegistry.Handle<LoadedModel>> future = loadedTfLiteModels.remove(modelName);
+            if (future != null) {
+                future.thenAccept(ModelRegistry.Handle::close);
+            }
         }
-        loadedTfLiteModels.clear();
         Log.i(TAG, "All TFLite models unloaded.");
     }
 
+    // بصمة الجهاز لمفتاح نتائج القياس: نفس الطراز والمعالج وإصدار النظام يعطي نفس الأداء تقريبًا
+    private static String deviceId() {
+        return Build.MANUFACTURER + "/" + Build.MODEL + "/" + Build.HARDWARE + "/" + Build.BOARD
+                + "/api-" + Build.VERSION.SDK_INT + "/cores-" + Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * مفسّر مع مقبض ملف نموذجه المربوط بالذاكرة، كمورد واحد في ModelRegistry.
+     */
+    private static final class LoadedModel implements AutoCloseable {
+
+        final Interpreter interpreter;
+        final ModelRegistry.Handle<MappedByteBuffer> modelBuffer;
+
+        private LoadedModel(Interpreter interpreter, ModelRegistry.Handle<MappedByteBuffer> modelBuffer) {
+            this.interpreter = interpreter;
+            this.modelBuffer = modelBuffer;
+        }
+
+        static LoadedModel load(ModelRegistry registry, BackendAutotuner autotuner, String modelName)
+                throws IOException {
+            // ملف النموذج من assets، مشترك مع أي مستخدم آخر له (مثل مجمع مترجمات EmbeddingManager)
+            ModelRegistry.Handle<MappedByteBuffer> modelBuffer = registry.acquireModelBuffer(modelName);
+            try {
+                // إعداد المفسّر (Interpreter): عدد الخيوط و XNNPACK حسب القياس على هذا الجهاز (أول تحميل فقط)
+                BackendAutotuner.Backend backend = autotuner.tune(modelName, modelBuffer.get());
+                Interpreter.Options options = backend.applyTo(new Interpreter.Options());
+                Log.i(TAG, modelName + " backend: " + backend);
+
+                long start = System.nanoTime();
+                Interpreter interpreter = new Interpreter(modelBuffer.get(), options);
+                recordInterpreterLoad(modelName, System.nanoTime() - start);
+                return new LoadedModel(interpreter, modelBuffer);
+            } catch (RuntimeException e) {
+                modelBuffer.close();
+                throw e;
+            }
+        }
+
+        @Override
+        public void close() {
+            interpreter.close();
+            modelBuffer.close();
+        }
+    }
+
+    /**
+     * قياسات تحميل ملف نموذج واحد (غير قابلة للتعديل).
+     */
+    public static final class LoadMetrics {
+
+        private final String assetPath;
+        private final long mappedBytes;
+        private final long mapNanos;
+        private final long checksumNanos;
+        private final boolean checksumVerified;
+        private final long interpreterNanos;
+
+        LoadMetrics(String assetPath, long mappedBytes, long mapNanos, long checksumNanos, boolean checksumVerified,
+                    long interpreterNanos) {
+            this.assetPath = assetPath;
+            this.mappedBytes = mappedBytes;
+            this.mapNanos = mapNanos;
+            this.checksumNanos = checksumNanos;
+            this.checksumVerified = checksumVerified;
+            this.interpreterNanos = interpreterNanos;
+        }
+
+        LoadMetrics withInterpreterNanos(long nanos) {
+            return new LoadMetrics(assetPath, mappedBytes, mapNanos, checksumNanos, checksumVerified, nanos);
+        }
+
+        public String getAssetPath() {
+            return assetPath;
+        }
+
+        public long getMappedBytes() {
+            return mappedBytes;
+        }
+
+        public long getMapNanos() {
+            return mapNanos;
+        }
+
+        /**
+         * @return مدة حساب البصمة (0 إذا لم تُحسب في هذا التحميل).
+         */
+        public long getChecksumNanos() {
+            return checksumNanos;
+        }
+
+        public boolean isChecksumVerified() {
+            return checksumVerified;
+        }
+
+        /**
+         * @return مدة إنشاء أول مترجم من الملف، أو -1 إذا لم يُسجل.
+         */
+        public long getInterpreterNanos() {
+            return interpreterNanos;
+        }
+
+        @Override
+        public String toString() {
+            return assetPath + ": " + mappedBytes / 1024 + " KB mapped in " + mapNanos / 1_000_000 + " ms"
+                    + (checksumVerified ? ", checksum " + checksumNanos / 1_000_000 + " ms" : "")
+                    + (interpreterNanos >= 0 ? ", interpreter " + interpreterNanos / 1_000_000 + " ms" : "");
+        }
+    }
+
     // --------------- واجهة رد الاتصال (Listener Interface) ---------------
     
     public interface ModelLoadListener {
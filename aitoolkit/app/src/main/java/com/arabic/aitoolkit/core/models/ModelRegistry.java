@@ -0,0 +1,266 @@
+package com.arabic.aitoolkit.core.models;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.util.Log;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * سجل النماذج على مستوى العملية (نسخة واحدة للتطبيق): كل مورد (ملف نموذج مربوط بالذاكرة، مترجم، مجمع مترجمات)
+ * يُحمّل مرة واحدة ويُشارك بين كل الشاشات عبر مقابض (Handle) بعدّاد مراجع.
+ * إغلاق آخر مقبض لا يفرغ المورد فورًا، بل بعد مهلة خمول (getIdleTimeoutMillis)، فالعودة إلى شاشة أخرى
+ * خلال المهلة لا تعيد تحميل النموذج. الموارد الخاملة تُفرغ فورًا عند ضغط الذاكرة (onTrimMemory/onLowMemory)،
+ * والموارد المستخدمة لا تُفرغ أبدًا.
+ */
+public final class ModelRegistry implements ComponentCallbacks2 {
+
+    private static final String TAG = "ModelRegistry";
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 5 * 60 * 1000L;
+
+    private static volatile ModelRegistry INSTANCE;
+
+    private final Context context;
+    private final ScheduledExecutorService evictor;
+    private final Map<String, Entry<?>> entries = new HashMap<>(); // محمية بـ this
+    private volatile long idleTimeoutMillis = DEFAULT_IDLE_TIMEOUT_MILLIS;
+
+    private ModelRegistry(Context context) {
+        this.context = context;
+        this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, TAG);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static ModelRegistry getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (ModelRegistry.class) {
+                if (INSTANCE == null) {
+                    Context application = context.getApplicationContext();
+                    ModelRegistry registry = new ModelRegistry(application);
+                    application.registerComponentCallbacks(registry);
+                    INSTANCE = registry;
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * ملف نموذج من assets مربوطًا بالذاكرة، مشتركًا بين كل من يبني مترجمًا منه.
+     */
+    public Handle<MappedByteBuffer> acquireModelBuffer(String assetPath) throws IOException {
+        return acquire("asset:" + assetPath, () -> ModelLoader.mapModelFile(context, assetPath), null);
+    }
+
+    /**
+     * يعيد مقبضًا للمورد key، محمّلًا بـ loader إذا لم يكن في السجل (مرة واحدة حتى لو طلبه عدة خيوط معًا).
+     * التحميل يتم على خيط المستدعي، لذلك يُستدعى من خيط الخلفية.
+     * @param key معرف فريد للمورد وإعداداته (موردان بإعدادات مختلفة يحتاجان مفتاحين مختلفين).
+     * @return مقبض يجب إغلاقه عند انتهاء الحاجة إليه؛ المورد يُغلق (close) عند إخلائه من السجل.
+     */
+    public <T extends AutoCloseable> Handle<T> acquire(String key, Loader<T> loader) throws IOException {
+        return acquire(key, loader, resource -> {
+            try {
+                resource.close();
+            } catch (Exception e) {
+                Log.w(TAG, "Failed to close " + key + ": " + e.getMessage());
+            }
+        });
+    }
+
+    private <T> Handle<T> acquire(String key, Loader<T> loader, Closer<T> closer) throws IOException {
+        Entry<T> entry;
+        synchronized (this) {
+            @SuppressWarnings("unchecked")
+            Entry<T> existing = (Entry<T>) entries.get(key);
+            entry = existing;
+            if (entry == null) {
+                entry = new Entry<>(key, closer);
+                entries.put(key, entry);
+            }
+            entry.references++;
+            if (entry.pendingEviction != null) {
+                entry.pendingEviction.cancel(false);
+                entry.pendingEviction = null;
+            }
+        }
+
+        // التحميل خارج قفل السجل كي لا يوقف تحميلُ نموذج كبير الحصولَ على النماذج الجاهزة
+        synchronized (entry) {
+            if (entry.resource == null) {
+                try {
+                    long start = System.nanoTime();
+                    entry.resource = loader.load();
+                    Log.i(TAG, key + " loaded in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+                } catch (IOException | RuntimeException e) {
+                    release(entry);
+                    throw e;
+                }
+            }
+            return new Handle<>(this, entry, entry.resource);
+        }
+    }
+
+    private synchronized void release(Entry<?> entry) {
+        if (--entry.references > 0) return;
+        if (entry.resource == null) {
+            entries.remove(entry.key); // فشل التحميل: لا شيء لإبقائه
+            return;
+        }
+        entry.pendingEviction = evictor.schedule(() -> evictIfIdle(entry), idleTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void evictIfIdle(Entry<?> entry) {
+        synchronized (this) {
+            if (entry.references > 0 || entries.get(entry.key) != entry) return;
+            entries.remove(entry.key);
+            entry.pendingEviction = null;
+        }
+        entry.close();
+        Log.i(TAG, entry.key + " evicted.");
+    }
+
+    /**
+     * يفرغ فورًا كل الموارد التي لا يملك أحد مقبضًا لها، ومعها ما تحرره من موارد (مثل ملف نموذج مترجم مفرغ).
+     * @return عدد الموارد المفرغة.
+     */
+    public int trimIdle() {
+        int total = 0;
+        int trimmed;
+        while ((trimmed = trimIdleOnce()) > 0) {
+            total += trimmed;
+        }
+        if (total > 0) {
+            Log.i(TAG, "Trimmed " + total + " idle model(s).");
+        }
+        return total;
+    }
+
+    private int trimIdleOnce() {
+        List<Entry<?>> idle = new ArrayList<>();
+        synchronized (this) {
+            for (Entry<?> entry : entries.values()) {
+                if (entry.references == 0) {
+                    idle.add(entry);
+                }
+            }
+            for (Entry<?> entry : idle) {
+                entries.remove(entry.key);
+                if (entry.pendingEviction != null) {
+                    entry.pendingEviction.cancel(false);
+                    entry.pendingEviction = null;
+                }
+            }
+        }
+        for (Entry<?> entry : idle) {
+            entry.close();
+        }
+        return idle.size();
+    }
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    /**
+     * @param idleTimeoutMillis مدة بقاء المورد بعد إغلاق آخر مقبض له (تطبق على الإخلاءات القادمة).
+     */
+    public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+        if (idleTimeoutMillis < 0) {
+            throw new IllegalArgumentException("Idle timeout must not be negative: " + idleTimeoutMillis);
+        }
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    // ------------------- ضغط الذاكرة (ComponentCallbacks2) -------------------
+
+    @Override
+    public void onTrimMemory(int level) {
+        // TRIM_MEMORY_UI_HIDDEN يعني فقط أن التطبيق خرج من الواجهة؛ يكفي الإخلاء بعد مهلة الخمول
+        if (level >= TRIM_MEMORY_RUNNING_LOW && level != TRIM_MEMORY_UI_HIDDEN) {
+            trimIdle();
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        trimIdle();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    // --------------- المقابض والمداخل ---------------
+
+    /**
+     * مرجع واحد لمورد في السجل. close() تحرر المرجع (مرة واحدة فقط)؛ بعدها لا يُستخدم get().
+     */
+    public static final class Handle<T> implements AutoCloseable {
+
+        private final ModelRegistry registry;
+        private final Entry<T> entry;
+        private final T resource;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Handle(ModelRegistry registry, Entry<T> entry, T resource) {
+            this.registry = registry;
+            this.entry = entry;
+            this.resource = resource;
+        }
+
+        public T get() {
+            return resource;
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                registry.release(entry);
+            }
+        }
+    }
+
+    public interface Loader<T> {
+        T load() throws IOException;
+    }
+
+    private interface Closer<T> {
+        void close(T resource);
+    }
+
+    private static final class Entry<T> {
+
+        final String key;
+        final Closer<T> closer; // null: لا يحتاج المورد إغلاقًا (مثل MappedByteBuffer)
+        T resource;
+        int references;
+        ScheduledFuture<?> pendingEviction;
+
+        Entry(String key, Closer<T> closer) {
+            this.key = key;
+            this.closer = closer;
+        }
+
+        synchronized void close() {
+            if (resource != null && closer != null) {
+                closer.close(resource);
+            }
+            resource = null;
+        }
+    }
+}
@@ -4,9 +4,13 @@ import android.content.Context;
 import android.graphics.Bitmap;
 import android.util.Log;
 
+import com.arabic.aitoolkit.core.database.AppDatabase;
 import com.arabic.aitoolkit.core.database.dao.ExtractedTextDao;
 import com.arabic.aitoolkit.core.database.entities.ExtractedText;
+import com.arabic.aitoolkit.core.database.entities.TextPassage;
+import com.arabic.aitoolkit.core.embedding.EmbeddingCache;
 import com.arabic.aitoolkit.core.embedding.EmbeddingManager;
+import com.arabic.aitoolkit.core.embedding.PassageChunker;
 import com.googlecode.tesseract.android.TessBaseAPI;
 
 import java.io.File;
@@ -14,6 +18,8 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 
 /**
@@ -26,26 +32,50 @@ public class OCRManager {
     private static final String TESS_DATA_DIR = "tessdata";
     private static final String LANG = "ara"; // اللغة العربية
     private static final String TESS_ASSET = LANG + ".traineddata";
+    private static final int RETRY_PAGE_SIZE = 16; // نصوص بلا مقاطع تُعاد محاولة ترميزها في كل دفعة
+    private static final String PASSAGES_VERSION_FILE = "passages.version"; // إصدار الترميز الذي ولّد text_passages
 
     private final Context context;
     private final ExecutorService backgroundExecutor;
+    private final AppDatabase database;
     private final ExtractedTextDao textDao;
     private final EmbeddingManager embeddingManager;
+    private final PassageChunker passageChunker;
     
     private TessBaseAPI tessApi;
     private String dataPath;
+    private volatile OnTextEmbeddedListener embeddedListener;
 
-    public OCRManager(Context context, ExecutorService backgroundExecutor, ExtractedTextDao textDao, EmbeddingManager embeddingManager) {
+    /**
+     * يُبلَّغ في خيط الخلفية بعد حفظ مقاطع نص ومتجهاتها (تخزين جديد أو إعادة ترميز)، مثل
+     * VectorSearchManager::addTextToIndex لإظهار النص في البحث دون انتظار إعادة التحميل.
+     */
+    public interface OnTextEmbeddedListener {
+        void onTextEmbedded(long textId);
+    }
+
+    public OCRManager(Context context, ExecutorService backgroundExecutor, AppDatabase database, EmbeddingManager embeddingManager) {
         this.context = context;
         this.backgroundExecutor = backgroundExecutor;
-        this.textDao = textDao;
+        this.database = database;
+        this.textDao = database.extractedTextDao();
         this.embeddingManager = embeddingManager;
+        this.passageChunker = embeddingManager.newPassageChunker();
         this.dataPath = context.getFilesDir() + "/tesseract/"; 
         
         // يجب أن يتم تهيئة Tesseract في الخيط الخلفي
         initializeTesseract();
+        // بعد تحميل النموذج المجدول في EmbeddingManager على المنفذ نفسه
+        backgroundExecutor.execute(this::refreshStaleEmbeddings);
     }
     
+    /**
+     * @param listener يُستدعى بعد كل معاملة حفظ مقاطع ناجحة (أو null لإيقافه).
+     */
+    public void setOnTextEmbeddedListener(OnTextEmbeddedListener listener) {
+        this.embeddedListener = listener;
+    }
+
     // -------------------------------------------------------------
     // التهيئة وتحميل البيانات
     // -------------------------------------------------------------
@@ -145,25 +175,120 @@ public class OCRManager {
     // التخزين وتوليد المتجهات
     // -------------------------------------------------------------
 
+    /**
+     * يخزن النص ثم مقاطعه مع متجهاتها في text_passages.
+     * صفحة OCR أطول عادة من نافذة النموذج (128 Token)، فتُقسم إلى مقاطع متداخلة (PassageChunker)
+     * تُرمَّز دفعة واحدة، بدل متجه واحد لا يرى إلا بداية الصفحة.
+     * الترميز يسبق المعاملة (لا تُحجز قاعدة البيانات أثناء الاستدلال)، ثم يُدرج النص ومقاطعه معًا أو لا شيء.
+     * إذا فشل ترميز أي مقطع يُخزن النص وحده: النص بلا مقاطع هو سجل الفشل، وتعيد retryPendingEmbeddings ترميزه.
+     */
     private void storeExtractedTextAndEmbedding(String text, String sourcePath, String sourceRef) {
-        // 1. إنشاء كيان النص المستخلص
+        // 1. تقسيم النص إلى مقاطع وتوليد متجهاتها دفعة واحدة
+        List<PassageChunker.Span> spans = passageChunker.split(text);
+        List<float[]> vectors = embedPassages(text, spans);
+
+        // 2. إدراج النص ومقاطعه في معاملة واحدة (لا يبقى نص نصف مخزن إذا انقطعت العملية)
         ExtractedText newText = new ExtractedText(text, sourcePath, sourceRef, System.currentTimeMillis());
-        
-        // 2. إدخال النص في قاعدة البيانات والحصول على الـ ID
-        // (نفترض أن ExtractedTextDao لديها طريقة لإرجاع الـ ID المُنشأ تلقائيًا)
-        long textId = textDao.insert(newText); 
-        
-        // 3. توليد متجه التضمين
-        float[] embeddingVector = embeddingManager.generateEmbedding(text);
-        
-        if (embeddingVector != null) {
-            // 4. تخزين المتجه المرتبط بـ textId
-            // [TODO: يجب إنشاء EmbeddingVector Entity و DAO لتخزين المتجه الفعلي]
-            // vectorDao.insertVector(textId, embeddingVector); 
-            Log.i(TAG, String.format("Text (ID: %d) stored and embedding generated (Dim: %d).", textId, embeddingVector.length));
-        } else {
-            Log.e(TAG, "Failed to generate embedding for text ID: " + textId);
+        long textId = database.runInTransaction(() -> {
+            long id = textDao.insert(newText);
+            if (vectors != null) {
+                textDao.insertPassages(toPassages(id, spans, vectors));
+            }
+            return id;
+        });
+
+        if (vectors == null) {
+            Log.e(TAG, String.format("Failed to generate embeddings for text ID: %d; will retry.", textId));
+            return;
+        }
+        Log.i(TAG, String.format("Text (ID: %d) stored with %d embedded passages.", textId, spans.size()));
+        notifyEmbedded(textId);
+
+        // النموذج يعمل الآن: فرصة لترميز النصوص التي فشلت سابقًا
+        retryPendingEmbeddings();
+    }
+
+    /**
+     * يحذف المقاطع إذا ولّدها إصدار ترميز سابق (ختم PASSAGES_VERSION_FILE لا يطابق EmbeddingManager)،
+     * فمتجهاتها لا تقارن بمتجهات الأسئلة الحالية، ثم يعيد ترميز كل نص بلا مقاطع.
+     */
+    private void refreshStaleEmbeddings() {
+        File stamp = new File(context.getFilesDir(), PASSAGES_VERSION_FILE);
+        if (!EmbeddingManager.isVersionStampCurrent(stamp)) {
+            textDao.deleteAllPassages();
+            try {
+                EmbeddingManager.writeVersionStamp(stamp);
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to write " + PASSAGES_VERSION_FILE + ": " + e.getMessage());
+            }
+            Log.i(TAG, "Embedding version changed; re-embedding all stored texts.");
+        }
+        retryPendingEmbeddings();
+    }
+
+    /**
+     * يعيد ترميز النصوص المخزنة دون مقاطع (فشل ترميزها سابقًا، مثل تشغيل OCR قبل جاهزية النموذج)
+     * ويخزن مقاطعها. يُستدعى في خيط الخلفية؛ النص الذي يفشل مجددًا يبقى للمحاولة التالية.
+     * @return عدد النصوص التي رُمّزت الآن.
+     */
+    public synchronized int retryPendingEmbeddings() {
+        int recovered = 0;
+        long afterTextId = -1;
+        List<ExtractedText> page;
+        do {
+            page = textDao.getTextsWithoutPassages(afterTextId, RETRY_PAGE_SIZE);
+            for (ExtractedText pending : page) {
+                String text = pending.getTextContent();
+                List<PassageChunker.Span> spans = passageChunker.split(text);
+                List<float[]> vectors = embedPassages(text, spans);
+                if (vectors == null) continue;
+                textDao.insertPassages(toPassages(pending.getId(), spans, vectors));
+                notifyEmbedded(pending.getId());
+                recovered++;
+            }
+            if (!page.isEmpty()) {
+                afterTextId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == RETRY_PAGE_SIZE);
+
+        if (recovered > 0) {
+            Log.i(TAG, String.format("Embedded %d previously failed texts.", recovered));
+        }
+        return recovered;
+    }
+
+    private void notifyEmbedded(long textId) {
+        OnTextEmbeddedListener listener = embeddedListener;
+        if (listener != null) {
+            listener.onTextEmbedded(textId);
+        }
+    }
+
+    /**
+     * @return متجهات المقاطع بترتيبها، أو null إذا فشل ترميز أي منها (أو لم يكن للنص مقاطع).
+     */
+    private List<float[]> embedPassages(String text, List<PassageChunker.Span> spans) {
+        if (spans.isEmpty()) return null;
+        List<String> contents = new ArrayList<>(spans.size());
+        for (PassageChunker.Span span : spans) {
+            contents.add(text.substring(span.getStart(), span.getEnd()));
+        }
+        List<float[]> vectors = embeddingManager.generateEmbeddings(contents);
+        for (float[] vector : vectors) {
+            if (vector == null) return null;
+        }
+        return vectors;
+    }
+
+    private static List<TextPassage> toPassages(long textId, List<PassageChunker.Span> spans, List<float[]> vectors) {
+        long now = System.currentTimeMillis();
+        List<TextPassage> passages = new ArrayList<>(spans.size());
+        for (int i = 0; i < spans.size(); i++) {
+            PassageChunker.Span span = spans.get(i);
+            passages.add(new TextPassage(textId, i, span.getStart(), span.getEnd(),
+                    EmbeddingCache.toBytes(vectors.get(i)), now));
         }
+        return passages;
     }
 
     public void close() {
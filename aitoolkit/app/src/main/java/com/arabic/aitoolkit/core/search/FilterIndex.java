@@ -0,0 +1,134 @@
+package com.arabic.aitoolkit.core.search;
+
+import com.arabic.aitoolkit.core.database.entities.ExtractedText;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+* FilterIndex: يحول قيود SearchOptions (المصدر، الفترة الزمنية) إلى BitSet بترتيبات الفهرس الأساسي.
+* يُبنى مرة واحدة لكل فهرس أساسي عند أول بحث مقيد، ثم تكلف كل عملية تحويل O(عدد المطابقات) فقط:
+* - ترتيبات كل مصدر في مصفوفة int[] مرتبة.
+* - الترتيبات مرتبة حسب الوقت، فالفترة الزمنية بحث ثنائي ثم نطاق متصل.
+* النصوص null (محذوفة من قاعدة البيانات) لا تظهر في أي مرشح.
+*/
+final class FilterIndex {
+
+	private final List<ExtractedText> documents;
+	private volatile Tables tables; // يُبنى عند أول استخدام
+
+	FilterIndex(List<ExtractedText> documents) {
+		this.documents = documents;
+	}
+
+	/**
+	* @return ترتيبات النصوص الأساسية التي تحقق القيود (BitSet جديد يمكن تعديله).
+	*/
+	BitSet select(SearchOptions options) {
+		Tables current = tables();
+		BitSet accepted = new BitSet(documents.size());
+		String source = options.getSourceReference();
+		long from = options.getFromTimestamp();
+		long to = options.getToTimestamp();
+
+		if (source != null) {
+			int[] ordinals = current.ordinalsBySource.get(source);
+			if (ordinals == null) return accepted;
+			for (int ordinal : ordinals) {
+				long timestamp = current.timestamps[ordinal];
+				if (timestamp >= from && timestamp < to) {
+					accepted.set(ordinal);
+				}
+			}
+			return accepted;
+		}
+
+		int start = lowerBound(current.sortedTimestamps, from);
+		int end = lowerBound(current.sortedTimestamps, to);
+		for (int i = start; i < end; i++) {
+			accepted.set(current.ordinalsByTime[i]);
+		}
+		return accepted;
+	}
+
+	private Tables tables() {
+		Tables current = tables;
+		if (current == null) {
+			synchronized (this) {
+				current = tables;
+				if (current == null) {
+					current = new Tables(documents);
+					tables = current;
+				}
+			}
+		}
+		return current;
+	}
+
+	/**
+	* @return أول موضع قيمته >= key في المصفوفة المرتبة.
+	*/
+	private static int lowerBound(long[] sorted, long key) {
+		int low = 0;
+		int high = sorted.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (sorted[middle] < key) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	private static final class Tables {
+		final Map<String, int[]> ordinalsBySource = new HashMap<>();
+		final long[] timestamps; // حسب الترتيب
+		final long[] sortedTimestamps;
+		final int[] ordinalsByTime;
+
+		Tables(List<ExtractedText> documents) {
+			int size = documents.size();
+			timestamps = new long[size];
+			Map<String, List<Integer>> sources = new HashMap<>();
+			List<Integer> live = new ArrayList<>(size);
+			for (int ordinal = 0; ordinal < size; ordinal++) {
+				ExtractedText text = documents.get(ordinal);
+				if (text == null) continue;
+				timestamps[ordinal] = text.getTimestamp();
+				live.add(ordinal);
+				if (text.getSourceReference() != null) {
+					List<Integer> ordinals = sources.get(text.getSourceReference());
+					if (ordinals == null) {
+						ordinals = new ArrayList<>();
+						sources.put(text.getSourceReference(), ordinals);
+					}
+					ordinals.add(ordinal);
+				}
+			}
+			for (Map.Entry<String, List<Integer>> entry : sources.entrySet()) {
+				ordinalsBySource.put(entry.getKey(), toArray(entry.getValue()));
+			}
+
+			Collections.sort(live, (a, b) -> Long.compare(timestamps[a], timestamps[b]));
+			ordinalsByTime = toArray(live);
+			sortedTimestamps = new long[ordinalsByTime.length];
+			for (int i = 0; i < ordinalsByTime.length; i++) {
+				sortedTimestamps[i] = timestamps[ordinalsByTime[i]];
+			}
+		}
+
+		private static int[] toArray(List<Integer> values) {
+			int[] array = new int[values.size()];
+			for (int i = 0; i < array.length; i++) {
+				array[i] = values.get(i);
+			}
+			return array;
+		}
+	}
+}
@@ -0,0 +1,179 @@
+package com.arabic.aitoolkit.core.search;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+* FlatVectorIndex: فهرس بحث دقيق (Brute Force) يخزن جميع المتجهات في مصفوفة float[] واحدة متصلة.
+* المتجه رقم i يشغل الخانات [i * dimension, (i + 1) * dimension).
+* تُطبَّع المتجهات إلى طول الوحدة عند الإضافة، فيصبح تشابه جيب التمام مجرد ضرب نقطي واحد
+* دون إعادة حساب الأطوال (Norms) مع كل استعلام.
+*/
+public class FlatVectorIndex implements VectorIndex {
+
+	private static final int DEFAULT_INITIAL_CAPACITY = 1024; // عدد المتجهات المبدئي
+
+	private final int dimension;
+	private float[] matrix;
+	private int size;
+
+	public FlatVectorIndex(int dimension) {
+		this(dimension, DEFAULT_INITIAL_CAPACITY);
+	}
+
+	public FlatVectorIndex(int dimension, int initialCapacity) {
+		if (dimension <= 0) {
+			throw new IllegalArgumentException("Dimension must be positive: " + dimension);
+		}
+		this.dimension = dimension;
+		this.matrix = new float[dimension * Math.max(1, initialCapacity)];
+	}
+
+	private FlatVectorIndex(int dimension, float[] matrix, int size) {
+		this.dimension = dimension;
+		this.matrix = matrix;
+		this.size = size;
+	}
+
+	/**
+	* عرض للقراءة فقط يشارك المصفوفة الحالية ويثبت عدد المتجهات لحظة الاستدعاء.
+	* الإضافات اللاحقة إلى هذا الفهرس لا تغير العرض لأنها تُكتب بعد نهايته أو في مصفوفة جديدة عند التوسعة.
+	* لا يجوز استدعاء add على العرض نفسه.
+	*/
+	FlatVectorIndex view() {
+		return new FlatVectorIndex(dimension, matrix, size);
+	}
+
+	// -------------------------------------------------------------
+	// الإضافة
+	// -------------------------------------------------------------
+
+	/**
+	* ينسخ متجهًا إلى نهاية المصفوفة ويطبعه.
+	* @return ترتيب (Ordinal) المتجه داخل الفهرس.
+	*/
+	@Override
+	public int add(float[] vector) {
+		if (vector.length != dimension) {
+			throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + vector.length);
+		}
+		int offset = reserveRow();
+		System.arraycopy(vector, 0, matrix, offset, dimension);
+		normalize(matrix, offset, dimension);
+		return size++;
+	}
+
+	/**
+	* ينسخ متجهًا مباشرة من FloatBuffer (مثل BLOB قاعدة البيانات) دون مصفوفة وسيطة.
+	* @return ترتيب المتجه داخل الفهرس.
+	*/
+	public int add(FloatBuffer vector) {
+		if (vector.remaining() != dimension) {
+			throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + vector.remaining());
+		}
+		int offset = reserveRow();
+		vector.get(matrix, offset, dimension);
+		normalize(matrix, offset, dimension);
+		return size++;
+	}
+
+	// -------------------------------------------------------------
+	// البحث
+	// -------------------------------------------------------------
+
+	/**
+	* مسح خطي لكل المتجهات مع الاحتفاظ بأفضل النتائج في الكومة.
+	* @param unitQuery متجه الاستعلام بعد تطبيعه (انظر normalize).
+	* @param results كومة النتائج؛ تحدد سعتها عدد النتائج K.
+	*/
+	@Override
+	public void search(float[] unitQuery, TopKHeap results) {
+		searchRange(unitQuery, results, 0, size);
+	}
+
+	/**
+	* مسح خطي لجزء متصل من المتجهات [from, to).
+	*/
+	void searchRange(float[] unitQuery, TopKHeap results, int from, int to) {
+		final float[] data = matrix;
+		final int dim = dimension;
+		for (int ordinal = from, offset = from * dim; ordinal < to; ordinal++, offset += dim) {
+			float score = dot(unitQuery, data, offset, dim);
+			if (score > results.threshold()) {
+				results.offer(ordinal, score);
+			}
+		}
+	}
+
+	/**
+	* يمسح الترتيبات المسموحة فقط بالقفز بين البتات المفعلة.
+	*/
+	@Override
+	public void search(float[] unitQuery, TopKHeap results, SearchOptions options, BitSet accepted) {
+		final float[] data = matrix;
+		final int dim = dimension;
+		final int count = size;
+		for (int ordinal = accepted.nextSetBit(0); ordinal >= 0 && ordinal < count; ordinal = accepted.nextSetBit(ordinal + 1)) {
+			float score = dot(unitQuery, data, ordinal * dim, dim);
+			if (score > results.threshold()) {
+				results.offer(ordinal, score);
+			}
+		}
+	}
+
+	/**
+	* تشابه جيب التمام بين الاستعلام المطبع ومتجه مخزن.
+	*/
+	public float similarity(float[] unitQuery, int ordinal) {
+		return dot(unitQuery, matrix, ordinal * dimension, dimension);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public int dimension() {
+		return dimension;
+	}
+
+	// -------------------------------------------------------------
+	// وظائف مساعدة رياضية
+	// -------------------------------------------------------------
+
+	/**
+	* يطبّع المتجه في مكانه إلى طول الوحدة. المتجه الصفري يبقى صفريًا (تشابهه 0 مع أي استعلام).
+	*/
+	public static void normalize(float[] vector) {
+		normalize(vector, 0, vector.length);
+	}
+
+	static void normalize(float[] data, int offset, int length) {
+		float sum = 0f;
+		for (int i = offset, end = offset + length; i < end; i++) {
+			sum += data[i] * data[i];
+		}
+		if (sum == 0f) return;
+		float inverseNorm = (float) (1.0 / Math.sqrt(sum));
+		for (int i = offset, end = offset + length; i < end; i++) {
+			data[i] *= inverseNorm;
+		}
+	}
+
+	/**
+	* الضرب النقطي المشترك لكل الفهارس عبر أسرع SimilarityKernel على الجهاز.
+	*/
+	static float dot(float[] query, float[] data, int offset, int length) {
+		return SimilarityKernel.fastest().dot(query, data, offset, length);
+	}
+
+	private int reserveRow() {
+		int offset = size * dimension;
+		if (offset + dimension > matrix.length) {
+			matrix = Arrays.copyOf(matrix, Math.max(matrix.length * 2, offset + dimension));
+		}
+		return offset;
+	}
+}
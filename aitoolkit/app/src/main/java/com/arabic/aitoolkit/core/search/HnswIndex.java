@@ -0,0 +1,580 @@
+package com.arabic.aitoolkit.core.search;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+* HnswIndex: فهرس تقريبي لأقرب الجيران (Approximate Nearest Neighbor) مبني على رسم بياني
+* هرمي متعدد الطبقات (Hierarchical Navigable Small World) بلغة Java خالصة.
+* - M: عدد الروابط لكل عقدة في الطبقات العليا (وضعفه في الطبقة 0).
+* - efConstruction: عرض قائمة المرشحين أثناء البناء (جودة الرسم البياني).
+* - efSearch: عرض قائمة المرشحين أثناء البحث (موازنة الدقة مقابل الزمن).
+* يدعم الإضافة التدريجية والحفظ/التحميل من ملف، ولا يعتمد على Android.
+* ملاحظة: الإضافة والبحث يجب ألا يتزامنا على نفس النسخة (كاتب واحد).
+*/
+public class HnswIndex implements PersistentVectorIndex {
+
+	public static final int DEFAULT_M = 16;
+	public static final int DEFAULT_EF_CONSTRUCTION = 100;
+	public static final int DEFAULT_EF_SEARCH = 64;
+	// موازنة المسح الدقيق للمرشح مع التنقل في الرسم البياني (انظر search مع accepted)
+	private static final int FILTER_EXACT_FACTOR = 16;
+
+	private static final int FILE_MAGIC = 0x484E5357; // "HNSW"
+	private static final int FILE_VERSION = 1;
+	private static final int HEADER_BYTES = 9 * 4;
+	// حدود معقولة لقيم الملف المحفوظ؛ ما يتجاوزها يعني ملفًا تالفًا
+	private static final int MAX_LOADED_M = 1024;
+	private static final int MAX_LEVEL = 64;
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private final int dimension;
+	private final int m;
+	private final int maxM0; // الحد الأقصى للروابط في الطبقة 0
+	private final int efConstruction;
+	private volatile int efSearch;
+	private final double levelMultiplier;
+	private final Random random = new Random(42);
+
+	// المتجهات المطبعة في مصفوفة متصلة (كما في FlatVectorIndex)
+	private float[] vectors;
+	// معرف خارجي لكل عقدة (مثل ExtractedText.id)
+	private long[] labels;
+	private int[] levels;
+	// روابط كل عقدة لجميع طبقاتها في مصفوفة واحدة: [count, ids...] لكل طبقة
+	private int[][] links;
+	private int size;
+	private int entryPoint = -1;
+	private int maxLevel = -1;
+
+	private final ThreadLocal<VisitedSet> visitedSets = ThreadLocal.withInitial(VisitedSet::new);
+
+	public HnswIndex(int dimension) {
+		this(dimension, DEFAULT_M, DEFAULT_EF_CONSTRUCTION, DEFAULT_EF_SEARCH);
+	}
+
+	public HnswIndex(int dimension, int m, int efConstruction, int efSearch) {
+		if (dimension <= 0 || m < 2 || efConstruction < 1 || efSearch < 1) {
+			throw new IllegalArgumentException("Invalid HNSW parameters: dim=" + dimension
+			+ ", M=" + m + ", efConstruction=" + efConstruction + ", efSearch=" + efSearch);
+		}
+		this.dimension = dimension;
+		this.m = m;
+		this.maxM0 = m * 2;
+		this.efConstruction = efConstruction;
+		this.efSearch = efSearch;
+		this.levelMultiplier = 1.0 / Math.log(m);
+		allocate(INITIAL_CAPACITY);
+	}
+
+	// -------------------------------------------------------------
+	// الإضافة التدريجية
+	// -------------------------------------------------------------
+
+	@Override
+	public int add(float[] vector) {
+		return add(vector, size);
+	}
+
+	/**
+	* يضيف متجهًا إلى الرسم البياني ويربطه بجيرانه في كل طبقة.
+	* @param vector المتجه (يُنسخ ويُطبَّع داخليًا).
+	* @param label معرف خارجي يُحفظ مع العقدة (مثل معرف النص).
+	* @return ترتيب العقدة داخل الفهرس.
+	*/
+	@Override
+	public int add(float[] vector, long label) {
+		if (vector.length != dimension) {
+			throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + vector.length);
+		}
+		int node = size;
+		ensureCapacity(node + 1);
+		int offset = node * dimension;
+		System.arraycopy(vector, 0, vectors, offset, dimension);
+		FlatVectorIndex.normalize(vectors, offset, dimension);
+		float[] query = Arrays.copyOfRange(vectors, offset, offset + dimension);
+
+		int level = randomLevel();
+		labels[node] = label;
+		levels[node] = level;
+		links[node] = new int[linkArrayLength(level)];
+		size++;
+
+		if (entryPoint < 0) {
+			entryPoint = node;
+			maxLevel = level;
+			return node;
+		}
+
+		// 1. نزول جشع (Greedy) عبر الطبقات الأعلى من مستوى العقدة الجديدة
+		int current = entryPoint;
+		TopKHeap closest = new TopKHeap(1);
+		for (int l = maxLevel; l > level; l--) {
+			closest.clear();
+			searchLayer(query, current, l, closest);
+			current = closest.ordinalAt(0);
+		}
+
+		// 2. ربط العقدة بجيرانها في كل طبقة من مستواها حتى الطبقة 0
+		TopKHeap candidates = new TopKHeap(efConstruction);
+		int[] candidateIds = new int[efConstruction];
+		float[] candidateScores = new float[efConstruction];
+		for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+			candidates.clear();
+			searchLayer(query, current, l, candidates);
+			int count = candidates.sortDescending();
+			for (int i = 0; i < count; i++) {
+				candidateIds[i] = candidates.ordinalAt(i);
+				candidateScores[i] = candidates.scoreAt(i);
+			}
+
+			int[] selected = selectNeighbors(candidateIds, candidateScores, count, m);
+			int base = blockOffset(l);
+			int[] block = links[node];
+			block[base] = selected.length;
+			System.arraycopy(selected, 0, block, base + 1, selected.length);
+
+			for (int neighbor : selected) {
+				connect(neighbor, node, l);
+			}
+			current = candidateIds[0];
+		}
+
+		if (level > maxLevel) {
+			maxLevel = level;
+			entryPoint = node;
+		}
+		return node;
+	}
+
+	// -------------------------------------------------------------
+	// البحث
+	// -------------------------------------------------------------
+
+	@Override
+	public void search(float[] unitQuery, TopKHeap results) {
+		search(unitQuery, results, efSearch);
+	}
+
+	@Override
+	public void search(float[] unitQuery, TopKHeap results, SearchOptions options) {
+		search(unitQuery, results, efSearchFor(options));
+	}
+
+	/**
+	* @param efSearch عرض قائمة المرشحين لهذا الاستعلام فقط (لا يغير getEfSearch()).
+	*/
+	public void search(float[] unitQuery, TopKHeap results, int efSearch) {
+		if (entryPoint < 0) return;
+
+		int current = entryPoint;
+		TopKHeap closest = new TopKHeap(1);
+		for (int l = maxLevel; l > 0; l--) {
+			closest.clear();
+			searchLayer(unitQuery, current, l, closest);
+			current = closest.ordinalAt(0);
+		}
+
+		TopKHeap layerResults = new TopKHeap(Math.max(efSearch, results.capacity()));
+		searchLayer(unitQuery, current, 0, layerResults);
+		for (int i = 0, count = layerResults.size(); i < count; i++) {
+			results.offer(layerResults.ordinalAt(i), layerResults.scoreAt(i));
+		}
+	}
+
+	/**
+	* بحث مقيد: التنقل يمر بكل العقد كالمعتاد (كي يبقى الرسم البياني مترابطًا)، لكن العقد غير
+	* المسموحة لا تدخل النتائج. إذا سمح المرشح بنسبة p من العقد فالتنقل يزور نحو efSearch / p عقدة
+	* قبل أن يمتلئ (والمرشح الانتقائي جدًا يجعله يمر بالرسم البياني كله)، بينما المسح الدقيق يكلف
+	* عدد المسموحين فقط؛ لذلك يُمسح المرشح مسحًا دقيقًا ما دام
+	* المسموحون² <= efSearch * FILTER_EXACT_FACTOR * size.
+	*/
+	@Override
+	public void search(float[] unitQuery, TopKHeap results, SearchOptions options, BitSet accepted) {
+		if (entryPoint < 0) return;
+		int efSearch = efSearchFor(options);
+		int count = size;
+		long cardinality = accepted.cardinality();
+		if (cardinality * cardinality <= (long) efSearch * FILTER_EXACT_FACTOR * count) {
+			for (int node = accepted.nextSetBit(0); node >= 0 && node < count; node = accepted.nextSetBit(node + 1)) {
+				float score = similarity(unitQuery, node);
+				if (score > results.threshold()) {
+					results.offer(node, score);
+				}
+			}
+			return;
+		}
+
+		int current = entryPoint;
+		TopKHeap closest = new TopKHeap(1);
+		for (int l = maxLevel; l > 0; l--) {
+			closest.clear();
+			searchLayer(unitQuery, current, l, closest);
+			current = closest.ordinalAt(0);
+		}
+
+		TopKHeap layerResults = new TopKHeap(Math.max(efSearch, results.capacity()));
+		searchLayer(unitQuery, current, 0, layerResults, accepted);
+		for (int i = 0, n = layerResults.size(); i < n; i++) {
+			results.offer(layerResults.ordinalAt(i), layerResults.scoreAt(i));
+		}
+	}
+
+	private int efSearchFor(SearchOptions options) {
+		return options.getEfSearch() > 0 ? options.getEfSearch() : efSearch;
+	}
+
+	private void searchLayer(float[] query, int entry, int level, TopKHeap results) {
+		searchLayer(query, entry, level, results, null);
+	}
+
+	/**
+	* بحث شره (Beam Search) داخل طبقة واحدة؛ سعة results تمثل قيمة ef.
+	* @param accepted العقد المسموح دخولها النتائج (null = كل العقد)؛ كل العقد تبقى قابلة للتنقل.
+	*/
+	private void searchLayer(float[] query, int entry, int level, TopKHeap results, BitSet accepted) {
+		VisitedSet visited = visitedSets.get();
+		visited.reset(size);
+		NeighborQueue candidates = new NeighborQueue(results.capacity() * 2);
+
+		float entryScore = similarity(query, entry);
+		visited.visit(entry);
+		candidates.push(entry, entryScore);
+		if (accepted == null || accepted.get(entry)) {
+			results.offer(entry, entryScore);
+		}
+
+		int base = blockOffset(level);
+		while (!candidates.isEmpty()) {
+			if (candidates.topScore() < results.threshold()) break;
+			int[] block = links[candidates.pop()];
+			int count = block[base];
+			for (int i = 1; i <= count; i++) {
+				int neighbor = block[base + i];
+				if (!visited.visit(neighbor)) continue;
+				float score = similarity(query, neighbor);
+				if (score > results.threshold()) {
+					candidates.push(neighbor, score);
+					if (accepted == null || accepted.get(neighbor)) {
+						results.offer(neighbor, score);
+					}
+				}
+			}
+		}
+	}
+
+	// -------------------------------------------------------------
+	// إدارة الروابط
+	// -------------------------------------------------------------
+
+	/**
+	* يضيف رابطًا عكسيًا من neighbor إلى node، ويقلص قائمة الجيران بالاستدلال إذا امتلأت.
+	*/
+	private void connect(int neighbor, int node, int level) {
+		int capacity = level == 0 ? maxM0 : m;
+		int base = blockOffset(level);
+		int[] block = links[neighbor];
+		int count = block[base];
+		if (count < capacity) {
+			block[base + 1 + count] = node;
+			block[base] = count + 1;
+			return;
+		}
+
+		// القائمة ممتلئة: إعادة اختيار أفضل الجيران من بين الحاليين والعقدة الجديدة
+		TopKHeap pool = new TopKHeap(count + 1);
+		pool.offer(node, similarityBetween(neighbor, node));
+		for (int i = 1; i <= count; i++) {
+			int existing = block[base + i];
+			pool.offer(existing, similarityBetween(neighbor, existing));
+		}
+		int poolSize = pool.sortDescending();
+		int[] ids = new int[poolSize];
+		float[] scores = new float[poolSize];
+		for (int i = 0; i < poolSize; i++) {
+			ids[i] = pool.ordinalAt(i);
+			scores[i] = pool.scoreAt(i);
+		}
+		int[] selected = selectNeighbors(ids, scores, poolSize, capacity);
+		block[base] = selected.length;
+		System.arraycopy(selected, 0, block, base + 1, selected.length);
+	}
+
+	/**
+	* استدلال اختيار الجيران (Heuristic) من ورقة HNSW الأصلية: يُقبل المرشح فقط إذا كان أقرب
+	* إلى العقدة الأساسية منه إلى أي جار تم اختياره، ثم تُكمَل القائمة بالمرشحين المستبعدين
+	* للحفاظ على ترابط الرسم البياني.
+	* @param ids المرشحون مرتبون تنازليًا حسب التشابه.
+	*/
+	private int[] selectNeighbors(int[] ids, float[] scores, int count, int maxCount) {
+		int[] selected = new int[Math.min(count, maxCount)];
+		boolean[] taken = new boolean[count];
+		int selectedCount = 0;
+		for (int i = 0; i < count && selectedCount < selected.length; i++) {
+			boolean diverse = true;
+			for (int j = 0; j < selectedCount; j++) {
+				if (similarityBetween(ids[i], selected[j]) > scores[i]) {
+					diverse = false;
+					break;
+				}
+			}
+			if (diverse) {
+				selected[selectedCount++] = ids[i];
+				taken[i] = true;
+			}
+		}
+		for (int i = 0; i < count && selectedCount < selected.length; i++) {
+			if (!taken[i]) {
+				selected[selectedCount++] = ids[i];
+			}
+		}
+		return selected;
+	}
+
+	private int randomLevel() {
+		double uniform = 1.0 - random.nextDouble(); // (0, 1]
+		return (int) (-Math.log(uniform) * levelMultiplier);
+	}
+
+	private int blockOffset(int level) {
+		return level == 0 ? 0 : (maxM0 + 1) + (level - 1) * (m + 1);
+	}
+
+	private int linkArrayLength(int level) {
+		return (maxM0 + 1) + level * (m + 1);
+	}
+
+	// -------------------------------------------------------------
+	// المسندات والضبط
+	// -------------------------------------------------------------
+
+	public void setEfSearch(int efSearch) {
+		if (efSearch < 1) {
+			throw new IllegalArgumentException("efSearch must be positive: " + efSearch);
+		}
+		this.efSearch = efSearch;
+	}
+
+	public int getEfSearch() {
+		return efSearch;
+	}
+
+	public int getM() {
+		return m;
+	}
+
+	public int getEfConstruction() {
+		return efConstruction;
+	}
+
+	@Override
+	public long label(int ordinal) {
+		return labels[ordinal];
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public int dimension() {
+		return dimension;
+	}
+
+	// -------------------------------------------------------------
+	// الحفظ والتحميل
+	// -------------------------------------------------------------
+
+	/**
+	* يحفظ الفهرس كاملاً (المتجهات والروابط والمعرفات) في ملف.
+	* الكتابة تتم في ملف مؤقت ثم يُعاد تسميته لتجنب ترك ملف تالف عند الانقطاع.
+	*/
+	@Override
+	public void save(File file) throws IOException {
+		File tempFile = new File(file.getPath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), IndexFiles.IO_CHUNK_BYTES))) {
+			out.writeInt(FILE_MAGIC);
+			out.writeInt(FILE_VERSION);
+			out.writeInt(dimension);
+			out.writeInt(m);
+			out.writeInt(efConstruction);
+			out.writeInt(efSearch);
+			out.writeInt(size);
+			out.writeInt(entryPoint);
+			out.writeInt(maxLevel);
+			IndexFiles.writeFloats(out, vectors, size * dimension);
+			for (int node = 0; node < size; node++) {
+				out.writeLong(labels[node]);
+				out.writeInt(levels[node]);
+				int[] block = links[node];
+				for (int value : block) {
+					out.writeInt(value);
+				}
+			}
+		}
+		if (!tempFile.renameTo(file)) {
+			throw new IOException("Failed to replace index file: " + file);
+		}
+	}
+
+	/**
+	* يحمل فهرسًا محفوظًا مسبقًا بواسطة save.
+	* كل عدد ومستوى ومعرف جار يُتحقق منه مقابل طول الملف قبل أي تخصيص، فالملف التالف أو المقطوع
+	* يعطي IOException (فيُعاد البناء) لا OutOfMemoryError أو ArrayIndexOutOfBoundsException أثناء البحث.
+	* @throws IOException إذا كان الملف تالفًا أو من إصدار غير مدعوم.
+	*/
+	public static HnswIndex load(File file) throws IOException {
+		long remaining = file.length();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), IndexFiles.IO_CHUNK_BYTES))) {
+			if (remaining < HEADER_BYTES || in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+				throw new IOException("Unsupported HNSW index file: " + file);
+			}
+			remaining -= HEADER_BYTES;
+			int dimension = in.readInt();
+			int m = in.readInt();
+			int efConstruction = in.readInt();
+			int efSearch = in.readInt();
+			int size = in.readInt();
+			int entryPoint = in.readInt();
+			int maxLevel = in.readInt();
+			if (dimension <= 0 || m < 2 || m > MAX_LOADED_M || efConstruction < 1 || efSearch < 1
+			|| size < 0 || maxLevel < -1 || maxLevel > MAX_LEVEL
+			|| (size == 0 ? entryPoint != -1 || maxLevel != -1 : entryPoint < 0 || entryPoint >= size || maxLevel < 0)) {
+				throw new IOException("Corrupt HNSW index header: " + file);
+			}
+			// لكل عقدة: المتجه + المعرف + المستوى + روابط الطبقة 0 على الأقل
+			long minNodeBytes = dimension * 4L + 8 + 4 + (2L * m + 1) * 4;
+			if (size * minNodeBytes > remaining) {
+				throw new IOException("Truncated HNSW index file: " + file);
+			}
+
+			HnswIndex index = new HnswIndex(dimension, m, efConstruction, efSearch);
+			index.ensureCapacity(size);
+			index.entryPoint = entryPoint;
+			index.maxLevel = maxLevel;
+			IndexFiles.readFloats(in, index.vectors, size * dimension);
+			remaining -= size * dimension * 4L;
+			for (int node = 0; node < size; node++) {
+				index.labels[node] = in.readLong();
+				int level = in.readInt();
+				if (level < 0 || level > maxLevel) {
+					throw new IOException("Corrupt HNSW node level " + level + " at node " + node);
+				}
+				int blockLength = index.linkArrayLength(level);
+				remaining -= 12 + blockLength * 4L;
+				if (remaining < 0) {
+					throw new IOException("Truncated HNSW index file: " + file);
+				}
+				index.levels[node] = level;
+				int[] block = new int[blockLength];
+				for (int i = 0; i < block.length; i++) {
+					block[i] = in.readInt();
+				}
+				index.links[node] = block;
+			}
+			if (size > 0 && index.levels[entryPoint] != maxLevel) {
+				throw new IOException("Corrupt HNSW entry point: " + file);
+			}
+			index.size = size;
+			index.validateLinks();
+			return index;
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Corrupt HNSW index file: " + file, e);
+		}
+	}
+
+	/**
+	* يتحقق من أن عدد الروابط في كل طبقة ضمن سعتها وأن كل جار عقدة موجودة في الطبقة نفسها.
+	*/
+	private void validateLinks() throws IOException {
+		for (int node = 0; node < size; node++) {
+			int[] block = links[node];
+			for (int level = 0; level <= levels[node]; level++) {
+				int base = blockOffset(level);
+				int count = block[base];
+				if (count < 0 || count > (level == 0 ? maxM0 : m)) {
+					throw new IOException("Corrupt HNSW link count " + count + " at node " + node);
+				}
+				for (int i = 1; i <= count; i++) {
+					int neighbor = block[base + i];
+					if (neighbor < 0 || neighbor >= size || levels[neighbor] < level) {
+						throw new IOException("Corrupt HNSW link " + neighbor + " at node " + node);
+					}
+				}
+			}
+		}
+	}
+
+	// -------------------------------------------------------------
+	// وظائف مساعدة
+	// -------------------------------------------------------------
+
+	private float similarity(float[] query, int ordinal) {
+		return FlatVectorIndex.dot(query, vectors, ordinal * dimension, dimension);
+	}
+
+	private float similarityBetween(int a, int b) {
+		final float[] data = vectors;
+		int offsetA = a * dimension;
+		int offsetB = b * dimension;
+		float sum = 0f;
+		for (int i = 0; i < dimension; i++) {
+			sum += data[offsetA + i] * data[offsetB + i];
+		}
+		return sum;
+	}
+
+	private void allocate(int capacity) {
+		vectors = new float[capacity * dimension];
+		labels = new long[capacity];
+		levels = new int[capacity];
+		links = new int[capacity][];
+	}
+
+	private void ensureCapacity(int required) {
+		if (required <= levels.length) return;
+		int capacity = Math.max(levels.length * 2, required);
+		vectors = Arrays.copyOf(vectors, capacity * dimension);
+		labels = Arrays.copyOf(labels, capacity);
+		levels = Arrays.copyOf(levels, capacity);
+		links = Arrays.copyOf(links, capacity);
+	}
+
+	/**
+	* مجموعة العقد المزارة؛ تستخدم علامة جيل (Tag) لتجنب مسح المصفوفة مع كل بحث.
+	*/
+	private static final class VisitedSet {
+		private int[] marks = new int[0];
+		private int tag;
+
+		void reset(int capacity) {
+			if (marks.length < capacity) {
+				marks = new int[Math.max(capacity, marks.length * 2)];
+				tag = 0;
+			}
+			if (++tag == Integer.MAX_VALUE) {
+				Arrays.fill(marks, 0);
+				tag = 1;
+			}
+		}
+
+		/**
+		* @return true إذا كانت هذه أول زيارة للعقدة.
+		*/
+		boolean visit(int ordinal) {
+			if (marks[ordinal] == tag) return false;
+			marks[ordinal] = tag;
+			return true;
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package com.arabic.aitoolkit.core.search;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+* وظائف مساعدة مشتركة لقراءة وكتابة ملفات الفهارس.
+* تنقل مصفوفات float على دفعات عبر ByteBuffer بدل استدعاء writeFloat لكل عنصر.
+*/
+final class IndexFiles {
+
+	static final int IO_CHUNK_BYTES = 1 << 16;
+
+	private IndexFiles() {
+	}
+
+	static void writeFloats(DataOutputStream out, float[] values, int count) throws IOException {
+		ByteBuffer chunk = ByteBuffer.allocate(IO_CHUNK_BYTES);
+		int floatsPerChunk = IO_CHUNK_BYTES / 4;
+		for (int start = 0; start < count; start += floatsPerChunk) {
+			int length = Math.min(floatsPerChunk, count - start);
+			chunk.clear();
+			chunk.asFloatBuffer().put(values, start, length);
+			out.write(chunk.array(), 0, length * 4);
+		}
+	}
+
+	static void readFloats(DataInputStream in, float[] values, int count) throws IOException {
+		byte[] chunk = new byte[IO_CHUNK_BYTES];
+		int floatsPerChunk = IO_CHUNK_BYTES / 4;
+		for (int start = 0; start < count; start += floatsPerChunk) {
+			int length = Math.min(floatsPerChunk, count - start);
+			in.readFully(chunk, 0, length * 4);
+			ByteBuffer.wrap(chunk, 0, length * 4).asFloatBuffer().get(values, start, length);
+		}
+	}
+}
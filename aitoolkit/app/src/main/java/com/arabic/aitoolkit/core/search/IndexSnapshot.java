@@ -0,0 +1,388 @@
+package com.arabic.aitoolkit.core.search;
+
+import com.arabic.aitoolkit.core.database.entities.ExtractedText;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+* IndexSnapshot: لقطة غير قابلة للتعديل من حالة البحث ينشرها VectorSearchManager عبر AtomicReference.
+* تتكون من:
+* - فهرس أساسي (Base) يُبنى عند تحميل قاعدة المعرفة ولا يُعدَّل بعد نشره.
+* - جزء دلتا صغير للنصوص المضافة أو المحدثة بعد التحميل، يُمسح مسحًا دقيقًا.
+* - شواهد حذف (Tombstones) للترتيبات المحذوفة أو المستبدلة.
+* - فهرس نصي (LexicalIndex) للنصوص نفسها. هو الجزء الوحيد المشترك القابل للتعديل: يُحدَّث في مكانه
+*   مع كل إضافة أو حذف، وقراءته آمنة بلا أقفال (انظر LexicalIndex)، فلا يُنسخ مع كل لقطة.
+* كل تعديل ينشئ لقطة جديدة، فالقارئ لا ينتظر أبدًا ولا يرى فهرسًا نصف مبني.
+* مصفوفات الدلتا مشتركة بين اللقطات المتتالية: الكاتب (واحد فقط، من أحدث لقطة) يكتب بعد نهاية
+* الجزء المرئي لأي لقطة سابقة، والنشر عبر AtomicReference يضمن رؤية البيانات المكتوبة.
+* الترتيب العام: [0, base.size()) للفهرس الأساسي، ثم الدلتا.
+* كل ترتيب مقطع (Passage) من نص، وللنص الواحد عدة ترتيبات متتالية؛ الإضافة والتحديث والحذف تتم لكل النص
+* (كل مقاطعه معًا)، أما الفهرس النصي فيحوي النص كاملًا مرة واحدة.
+*/
+final class IndexSnapshot {
+
+	private static final int INITIAL_DELTA_CAPACITY = 64;
+
+	private final long generation;
+	private final VectorIndex base;
+	private final List<Passage> basePassages; // null للمقاطع المحذوفة من قاعدة البيانات
+	private final int hiddenBaseCount; // ترتيبات أساسية غير مرئية (null أو محذوفة)
+	private final float[] deltaVectors; // مطبعة ومتجاورة
+	private final Passage[] deltaPassages;
+	private final int deltaSize;
+	private final BitSet deleted; // ترتيبات عامة محذوفة
+	private final Set<Long> deletedIds; // معرفات حُذفت منذ بناء الفهرس الأساسي (لإعادة تطبيقها بعد إعادة البناء)
+	private final LexicalIndex lexical;
+	private final FilterIndex baseFilter; // مشترك بين اللقطات ذات الفهرس الأساسي نفسه
+	private final Map<Long, int[]> baseOrdinals; // معرف النص ← ترتيباته الأساسية (مشترك كذلك)
+	private final boolean loading; // الفهرس الأساسي معاينة جزئية أثناء التحميل الأول
+
+	private IndexSnapshot(long generation, VectorIndex base, List<Passage> basePassages, int hiddenBaseCount,
+	float[] deltaVectors, Passage[] deltaPassages, int deltaSize, BitSet deleted, Set<Long> deletedIds,
+	LexicalIndex lexical, FilterIndex baseFilter, Map<Long, int[]> baseOrdinals, boolean loading) {
+		this.generation = generation;
+		this.base = base;
+		this.basePassages = basePassages;
+		this.hiddenBaseCount = hiddenBaseCount;
+		this.deltaVectors = deltaVectors;
+		this.deltaPassages = deltaPassages;
+		this.deltaSize = deltaSize;
+		this.deleted = deleted;
+		this.deletedIds = deletedIds;
+		this.lexical = lexical;
+		this.baseFilter = baseFilter;
+		this.baseOrdinals = baseOrdinals;
+		this.loading = loading;
+	}
+
+	/**
+	* لقطة فارغة تُستخدم قبل اكتمال التحميل الأول.
+	*/
+	static IndexSnapshot empty(VectorIndex emptyBase) {
+		List<Passage> noPassages = Collections.emptyList();
+		return new IndexSnapshot(0, emptyBase, noPassages, 0,
+		new float[INITIAL_DELTA_CAPACITY * emptyBase.dimension()], new Passage[INITIAL_DELTA_CAPACITY], 0,
+		new BitSet(), Collections.<Long>emptySet(), new LexicalIndex(), new FilterIndex(textsOf(noPassages)),
+		Collections.<Long, int[]>emptyMap(), true);
+	}
+
+	// -------------------------------------------------------------
+	// القراءة
+	// -------------------------------------------------------------
+
+	/**
+	* يبحث في الفهرس الأساسي ثم في الدلتا، متجاوزًا الترتيبات غير المرئية.
+	* @param results كومة النتائج بالترتيب العام.
+	*/
+	void search(float[] unitQuery, TopKHeap results, SearchOptions options) {
+		if (options.hasFilter()) {
+			searchFiltered(unitQuery, results, options);
+			return;
+		}
+		int baseSize = base.size();
+		if (baseSize > 0) {
+			if (hiddenBaseCount == 0) {
+				base.search(unitQuery, results, options);
+			} else {
+				// توسيع الكومة بعدد المخفيين كي لا يستهلكوا خانات النتائج
+				TopKHeap candidates = new TopKHeap(Math.min(baseSize, results.capacity() + hiddenBaseCount));
+				base.search(unitQuery, candidates, options);
+				for (int i = 0, n = candidates.size(); i < n; i++) {
+					int ordinal = candidates.ordinalAt(i);
+					if (passageAt(ordinal) != null) {
+						results.offer(ordinal, candidates.scoreAt(i));
+					}
+				}
+			}
+		}
+
+		final int dimension = base.dimension();
+		for (int i = 0, offset = 0; i < deltaSize; i++, offset += dimension) {
+			int ordinal = baseSize + i;
+			if (deleted.get(ordinal)) continue;
+			float score = FlatVectorIndex.dot(unitQuery, deltaVectors, offset, dimension);
+			if (score > results.threshold()) {
+				results.offer(ordinal, score);
+			}
+		}
+	}
+
+	/**
+	* بحث مقيد بالمصدر أو الفترة الزمنية: يُحول القيد إلى BitSet بالترتيبات العامة المسموحة
+	* (بعد استبعاد المحذوفين)، ويُمرر إلى الفهرس الأساسي ليطبقه داخل المسح، ثم تُمسح الدلتا المطابقة فقط.
+	* لا حاجة لتوسيع الكومة هنا لأن المخفيين مستبعدون من المرشح نفسه.
+	*/
+	private void searchFiltered(float[] unitQuery, TopKHeap results, SearchOptions options) {
+		BitSet accepted = baseFilter.select(options);
+		accepted.andNot(deleted);
+		int baseSize = base.size();
+		if (!accepted.isEmpty()) {
+			base.search(unitQuery, results, options, accepted);
+		}
+
+		final int dimension = base.dimension();
+		for (int i = 0; i < deltaSize; i++) {
+			if (deleted.get(baseSize + i) || !options.matches(deltaPassages[i].getText())) continue;
+			float score = FlatVectorIndex.dot(unitQuery, deltaVectors, i * dimension, dimension);
+			if (score > results.threshold()) {
+				results.offer(baseSize + i, score);
+			}
+		}
+	}
+
+	/**
+	* الفهرس النصي لنصوص اللقطة؛ ترتيباته مستقلة عن الترتيب العام، فتُربط النتائج بالنص مباشرة.
+	*/
+	LexicalIndex lexical() {
+		return lexical;
+	}
+
+	/**
+	* @return المقطع المقابل للترتيب العام (ونصه getText())، أو null إذا كان محذوفًا.
+	*/
+	Passage passageAt(int ordinal) {
+		if (deleted.get(ordinal)) return null;
+		int baseSize = base.size();
+		return ordinal < baseSize ? basePassages.get(ordinal) : deltaPassages[ordinal - baseSize];
+	}
+
+	/**
+	* عدد المتجهات (المقاطع) القابلة للبحث.
+	*/
+	int size() {
+		return base.size() - hiddenBaseCount + deltaSize - deleted.get(base.size(), base.size() + deltaSize).cardinality();
+	}
+
+	int deltaSize() {
+		return deltaSize;
+	}
+
+	long generation() {
+		return generation;
+	}
+
+	/**
+	* @return true إذا كانت اللقطة مبنية على جزء مما حُمّل من قاعدة المعرفة فقط.
+	*/
+	boolean isLoading() {
+		return loading;
+	}
+
+	/**
+	* @return true إذا وُجدت إضافات أو حذوفات لم تُدمج بعد في الفهرس الأساسي.
+	*/
+	boolean hasPendingChanges() {
+		return deltaSize > 0 || !deletedIds.isEmpty();
+	}
+
+	// -------------------------------------------------------------
+	// الكتابة (تُستدعى من أحدث لقطة فقط وتحت قفل الكاتب)
+	// -------------------------------------------------------------
+
+	/**
+	* يضيف نصًا مع متجهات مقاطعه، أو يستبدل كل مقاطعه السابقة إذا كان معرفه موجودًا (تحديث).
+	* @param passages مقاطع النص (كلها من text).
+	* @param vectors المتجهات الخام بترتيب passages؛ تُنسخ وتُطبَّع.
+	*/
+	IndexSnapshot withDocument(ExtractedText text, List<Passage> passages, List<float[]> vectors) {
+		int dimension = base.dimension();
+		if (passages.size() != vectors.size()) {
+			throw new IllegalArgumentException(passages.size() + " passages but " + vectors.size() + " vectors");
+		}
+		for (float[] vector : vectors) {
+			if (vector.length != dimension) {
+				throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + vector.length);
+			}
+		}
+		BitSet nextDeleted = deleted;
+		int nextHidden = hiddenBaseCount;
+		int baseSize = base.size();
+		for (int ordinal : visibleOrdinalsOf(text.getId())) {
+			if (nextDeleted == deleted) nextDeleted = (BitSet) deleted.clone();
+			nextDeleted.set(ordinal);
+			if (ordinal < baseSize) nextHidden++;
+		}
+
+		float[] nextVectors = deltaVectors;
+		Passage[] nextPassages = deltaPassages;
+		int nextSize = deltaSize + passages.size();
+		if (nextSize > nextPassages.length) {
+			int capacity = Math.max(nextPassages.length * 2, nextSize);
+			nextVectors = Arrays.copyOf(nextVectors, capacity * dimension);
+			nextPassages = Arrays.copyOf(nextPassages, capacity);
+		}
+		for (int i = 0; i < passages.size(); i++) {
+			int offset = (deltaSize + i) * dimension;
+			System.arraycopy(vectors.get(i), 0, nextVectors, offset, dimension);
+			FlatVectorIndex.normalize(nextVectors, offset, dimension);
+			nextPassages[deltaSize + i] = passages.get(i);
+		}
+		lexical.add(text);
+
+		return new IndexSnapshot(generation + 1, base, basePassages, nextHidden,
+		nextVectors, nextPassages, nextSize, nextDeleted, deletedIds, lexical, baseFilter, baseOrdinals, loading);
+	}
+
+	/**
+	* يخفي كل الترتيبات المرتبطة بمعرف النص.
+	*/
+	IndexSnapshot withoutDocument(long textId) {
+		BitSet nextDeleted = (BitSet) deleted.clone();
+		int nextHidden = hiddenBaseCount;
+		for (int ordinal : visibleOrdinalsOf(textId)) {
+			nextDeleted.set(ordinal);
+			if (ordinal < base.size()) nextHidden++;
+		}
+		Set<Long> nextDeletedIds = new HashSet<>(deletedIds);
+		nextDeletedIds.add(textId);
+		lexical.remove(textId);
+		return new IndexSnapshot(generation + 1, base, basePassages, nextHidden,
+		deltaVectors, deltaPassages, deltaSize, nextDeleted, Collections.unmodifiableSet(nextDeletedIds), lexical, baseFilter,
+		baseOrdinals, loading);
+	}
+
+	/**
+	* ينشئ لقطة فوق فهرس أساسي أُعيد بناؤه، ثم يعيد تطبيق ما حدث أثناء البناء ولم يظهر فيه:
+	* - نص في الدلتا كل مقاطعه الحية موجودة في newPassages (بمعرف المقطع؛ أو بمعرف النص للمقاطع غير المحفوظة
+	*   ذات المعرف 0، إذ قاعدة البيانات هي المرجع بعد إعادة البناء) يُسقط من الدلتا، وإلا يبقى ويستبدل مقاطعه الأساسية.
+	* - المعرف المحذوف الذي لا مقاطع له في newPassages يُنسى، وإلا تُخفى مقاطعه ويبقى معلقًا حتى البناء التالي.
+	* فتفرغ الدلتا وشواهد الحذف بعد كل إعادة بناء تعكسها، ولا يتضخم hiddenBaseCount.
+	* @param newPassages مقاطع newBase بترتيبها (null للمحذوفة).
+	* @param newLexical الفهرس النصي لنصوص newPassages؛ تُطبق عليه التعديلات نفسها.
+	* @param loading true لمعاينة جزئية؛ تبقى المعرفات المحذوفة محفوظة لإعادة تطبيقها على الفهرس الكامل.
+	*/
+	IndexSnapshot rebase(VectorIndex newBase, List<Passage> newPassages, LexicalIndex newLexical, boolean loading) {
+		Map<Long, int[]> newOrdinals = ordinalsByText(newPassages);
+		Set<Long> newPassageIds = new HashSet<>();
+		for (Passage passage : newPassages) {
+			if (passage != null) newPassageIds.add(passage.getId());
+		}
+
+		// نصوص الدلتا التي لا يعكسها الفهرس الجديد (مقاطعها الحية أحدث من أي حذف سابق لها)
+		int oldBaseSize = base.size();
+		Set<Long> deltaIds = new HashSet<>();
+		Set<Long> staleIds = new HashSet<>();
+		for (int i = 0; i < deltaSize; i++) {
+			if (deleted.get(oldBaseSize + i)) continue;
+			Passage passage = deltaPassages[i];
+			long textId = passage.getText().getId();
+			deltaIds.add(textId);
+			boolean reflected = passage.getId() != 0
+			? newPassageIds.contains(passage.getId())
+			: newOrdinals.containsKey(textId);
+			if (!reflected) staleIds.add(textId);
+		}
+
+		// النصوص التي تُخفى مقاطعها الأساسية: المحذوفة الباقية فيه، والمعاد إضافتها في الدلتا
+		Set<Long> replacedIds = new HashSet<>(staleIds);
+		Set<Long> pendingDeletedIds = new HashSet<>();
+		for (Long textId : deletedIds) {
+			if (deltaIds.contains(textId)) continue;
+			newLexical.remove(textId);
+			if (loading || newOrdinals.containsKey(textId)) {
+				replacedIds.add(textId);
+				pendingDeletedIds.add(textId);
+			}
+		}
+
+		int dimension = newBase.dimension();
+		int capacity = Math.max(INITIAL_DELTA_CAPACITY, deltaSize);
+		float[] vectors = new float[capacity * dimension];
+		Passage[] passages = new Passage[capacity];
+		int count = 0;
+		ExtractedText lastText = null;
+		for (int i = 0; i < deltaSize; i++) {
+			if (deleted.get(oldBaseSize + i)) continue;
+			Passage passage = deltaPassages[i];
+			if (!staleIds.contains(passage.getText().getId())) continue;
+			System.arraycopy(deltaVectors, i * dimension, vectors, count * dimension, dimension);
+			passages[count++] = passage;
+			if (passage.getText() != lastText) {
+				lastText = passage.getText();
+				newLexical.add(lastText);
+			}
+		}
+
+		int hidden = 0;
+		BitSet nextDeleted = new BitSet();
+		for (int ordinal = 0; ordinal < newPassages.size(); ordinal++) {
+			if (newPassages.get(ordinal) == null) hidden++;
+		}
+		for (Long textId : replacedIds) {
+			int[] ordinals = newOrdinals.get(textId);
+			if (ordinals == null) continue;
+			for (int ordinal : ordinals) {
+				nextDeleted.set(ordinal);
+			}
+			hidden += ordinals.length;
+		}
+		return new IndexSnapshot(generation + 1, newBase, newPassages, hidden,
+		vectors, passages, count, nextDeleted, Collections.unmodifiableSet(pendingDeletedIds), newLexical,
+		new FilterIndex(textsOf(newPassages)), newOrdinals, loading);
+	}
+
+	private int[] visibleOrdinalsOf(long textId) {
+		int[] baseMatches = baseOrdinals.get(textId);
+		int[] ordinals = new int[baseMatches == null ? 0 : baseMatches.length];
+		int count = 0;
+		if (baseMatches != null) {
+			for (int ordinal : baseMatches) {
+				if (!deleted.get(ordinal)) ordinals[count++] = ordinal;
+			}
+		}
+		int baseSize = base.size();
+		for (int i = 0; i < deltaSize; i++) {
+			if (deltaPassages[i].getText().getId() != textId || deleted.get(baseSize + i)) continue;
+			if (count == ordinals.length) ordinals = Arrays.copyOf(ordinals, Math.max(4, count * 2));
+			ordinals[count++] = baseSize + i;
+		}
+		return Arrays.copyOf(ordinals, count);
+	}
+
+	/**
+	* ترتيبات كل نص في passages، لتحديث نص أو حذفه دون مسح الفهرس الأساسي كله.
+	*/
+	private static Map<Long, int[]> ordinalsByText(List<Passage> passages) {
+		Map<Long, int[]> ordinals = new HashMap<>();
+		for (int ordinal = 0; ordinal < passages.size(); ordinal++) {
+			Passage passage = passages.get(ordinal);
+			if (passage == null) continue;
+			int[] previous = ordinals.get(passage.getText().getId());
+			int[] next;
+			if (previous == null) {
+				next = new int[] { ordinal };
+			} else {
+				next = Arrays.copyOf(previous, previous.length + 1);
+				next[previous.length] = ordinal;
+			}
+			ordinals.put(passage.getText().getId(), next);
+		}
+		return ordinals;
+	}
+
+	/**
+	* نصوص المقاطع بالترتيب نفسه (عرض دون نسخ)، لمرشحات المصدر والوقت وهي خصائص النص.
+	*/
+	private static List<ExtractedText> textsOf(final List<Passage> passages) {
+		return new AbstractList<ExtractedText>() {
+			@Override
+			public ExtractedText get(int ordinal) {
+				Passage passage = passages.get(ordinal);
+				return passage == null ? null : passage.getText();
+			}
+
+			@Override
+			public int size() {
+				return passages.size();
+			}
+		};
+	}
+}
@@ -0,0 +1,394 @@
+package com.arabic.aitoolkit.core.search;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+* IvfIndex: فهرس الملفات المقلوبة (Inverted File) يقسم المتجهات إلى مجموعات k-means.
+* متجهات كل مجموعة مخزنة متجاورة في مصفوفة خاصة بها لتحسين محلية الذاكرة المؤقتة (Cache Locality).
+* البحث يختار أقرب nprobe مركزًا للاستعلام ويمسح مجموعاتها فقط:
+* nprobe أكبر = دقة أعلى وزمن أطول. الدرجات دقيقة (float32) للمتجهات التي تم مسحها.
+* المراكز مدربة على المتجهات الموجودة وقت التدريب؛ مع نمو المجموعة أو ميلها تختل أحجام المجموعات
+* وتنخفض الدقة، فيُعاد التدريب عندما يتجاوز النمو أو عدم التوازن حده (انظر needsRetraining و retrain).
+*/
+public class IvfIndex implements PersistentVectorIndex {
+
+	public static final int DEFAULT_NPROBE = 8;
+
+	private static final int FILE_MAGIC = 0x49564649; // "IVFI"
+	private static final int FILE_VERSION = 2; // الإصدار 2: عدد المتجهات وقت التدريب
+	private static final int HEADER_BYTES = 5 * 4;
+	private static final int TRAINING_ITERATIONS = 10;
+	private static final int INITIAL_CAPACITY = 1024;
+	private static final int INITIAL_CLUSTER_CAPACITY = 16;
+	// إعادة التدريب عند تضاعف عدد المتجهات منذ التدريب، أو عند تجاوز عامل عدم التوازن هذا الحد
+	private static final double RETRAIN_GROWTH_FACTOR = 2.0;
+	private static final double RETRAIN_IMBALANCE_FACTOR = 3.0;
+
+	private final int dimension;
+	private final int clusterCount;
+	private final float[] centroids; // مراكز مطبعة في مصفوفة متصلة
+	private final float[][] clusterVectors; // متجهات كل مجموعة متجاورة
+	private final int[][] clusterOrdinals; // الترتيب العام لكل متجه داخل المجموعة
+	private final int[] clusterSizes;
+	private final float[] scratch;
+	private long[] labels;
+	private int size;
+	private int trainedSize; // عدد المتجهات في المجموعة كلها وقت تدريب المراكز
+	private volatile int defaultNprobe = DEFAULT_NPROBE;
+
+	private IvfIndex(int dimension, float[] centroids, int trainedSize) {
+		this.dimension = dimension;
+		this.clusterCount = centroids.length / dimension;
+		this.centroids = centroids;
+		this.trainedSize = trainedSize;
+		this.clusterVectors = new float[clusterCount][];
+		this.clusterOrdinals = new int[clusterCount][];
+		this.clusterSizes = new int[clusterCount];
+		this.scratch = new float[dimension];
+		this.labels = new long[INITIAL_CAPACITY];
+		for (int c = 0; c < clusterCount; c++) {
+			clusterVectors[c] = new float[INITIAL_CLUSTER_CAPACITY * dimension];
+			clusterOrdinals[c] = new int[INITIAL_CLUSTER_CAPACITY];
+		}
+	}
+
+	/**
+	* يدرب مراكز المجموعات (k-means كروي) على عينة من المتجهات المطبعة.
+	* @param sample العينة في مصفوفة متصلة.
+	* @param count عدد متجهات العينة.
+	* @param clusterCount عدد المجموعات (انظر suggestClusterCount).
+	* @param corpusSize عدد المتجهات الكلي وقت التدريب (أساس قياس النمو في needsRetraining).
+	*/
+	public static IvfIndex train(float[] sample, int count, int dimension, int clusterCount, int corpusSize, long seed) {
+		float[] centroids = KMeans.train(sample, count, dimension, clusterCount, TRAINING_ITERATIONS, true, new Random(seed));
+		return new IvfIndex(dimension, centroids, corpusSize);
+	}
+
+	/**
+	* عدد مجموعات مقترح (الجذر التربيعي لعدد المتجهات، وهو توازن شائع بين المسح والمراكز).
+	*/
+	public static int suggestClusterCount(int vectorCount) {
+		return Math.max(1, Math.min(4096, (int) Math.round(Math.sqrt(vectorCount))));
+	}
+
+	// -------------------------------------------------------------
+	// الإضافة
+	// -------------------------------------------------------------
+
+	@Override
+	public int add(float[] vector) {
+		return add(vector, size);
+	}
+
+	/**
+	* يطبّع المتجه ويلحقه بنهاية مجموعة أقرب مركز إليه.
+	*/
+	@Override
+	public int add(float[] vector, long label) {
+		if (vector.length != dimension) {
+			throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + vector.length);
+		}
+		System.arraycopy(vector, 0, scratch, 0, dimension);
+		FlatVectorIndex.normalize(scratch);
+		int cluster = nearestCentroid(scratch);
+
+		int position = clusterSizes[cluster];
+		if (position == clusterOrdinals[cluster].length) {
+			int capacity = position * 2;
+			clusterVectors[cluster] = Arrays.copyOf(clusterVectors[cluster], capacity * dimension);
+			clusterOrdinals[cluster] = Arrays.copyOf(clusterOrdinals[cluster], capacity);
+		}
+		System.arraycopy(scratch, 0, clusterVectors[cluster], position * dimension, dimension);
+		clusterOrdinals[cluster][position] = size;
+		clusterSizes[cluster] = position + 1;
+
+		if (size == labels.length) {
+			labels = Arrays.copyOf(labels, size * 2);
+		}
+		labels[size] = label;
+		return size++;
+	}
+
+	// -------------------------------------------------------------
+	// البحث
+	// -------------------------------------------------------------
+
+	@Override
+	public void search(float[] unitQuery, TopKHeap results) {
+		search(unitQuery, results, defaultNprobe);
+	}
+
+	@Override
+	public void search(float[] unitQuery, TopKHeap results, SearchOptions options) {
+		search(unitQuery, results, options.getNprobe());
+	}
+
+	/**
+	* يمسح أقرب nprobe مجموعة فقط.
+	* @param nprobe عدد المجموعات المراد مسحها (يُقص إلى عدد المجموعات).
+	*/
+	public void search(float[] unitQuery, TopKHeap results, int nprobe) {
+		TopKHeap probes = new TopKHeap(Math.max(1, Math.min(nprobe, clusterCount)));
+		for (int c = 0; c < clusterCount; c++) {
+			probes.offer(c, FlatVectorIndex.dot(unitQuery, centroids, c * dimension, dimension));
+		}
+
+		for (int p = 0, probeCount = probes.size(); p < probeCount; p++) {
+			int cluster = probes.ordinalAt(p);
+			final float[] vectors = clusterVectors[cluster];
+			final int[] ordinals = clusterOrdinals[cluster];
+			final int count = clusterSizes[cluster];
+			for (int i = 0, offset = 0; i < count; i++, offset += dimension) {
+				float score = FlatVectorIndex.dot(unitQuery, vectors, offset, dimension);
+				if (score > results.threshold()) {
+					results.offer(ordinals[i], score);
+				}
+			}
+		}
+	}
+
+	/**
+	* بحث مقيد: البت يُفحص قبل الضرب النقطي داخل كل مجموعة. إذا كان عدد المسموحين أقل مما ستمسحه
+	* nprobe مجموعة، تُمسح كل المجموعات (فحص بت رخيص لكل متجه وضرب نقطي للمسموحين فقط)، لأن
+	* المرشح الضيق قد لا يقع في أقرب المجموعات إطلاقًا.
+	*/
+	@Override
+	public void search(float[] unitQuery, TopKHeap results, SearchOptions options, BitSet accepted) {
+		int nprobe = Math.max(1, Math.min(options.getNprobe(), clusterCount));
+		long expectedScan = (long) size * nprobe / clusterCount;
+		if (accepted.cardinality() <= expectedScan) {
+			for (int cluster = 0; cluster < clusterCount; cluster++) {
+				searchCluster(unitQuery, results, cluster, accepted);
+			}
+			return;
+		}
+
+		TopKHeap probes = new TopKHeap(nprobe);
+		for (int c = 0; c < clusterCount; c++) {
+			probes.offer(c, FlatVectorIndex.dot(unitQuery, centroids, c * dimension, dimension));
+		}
+		for (int p = 0, probeCount = probes.size(); p < probeCount; p++) {
+			searchCluster(unitQuery, results, probes.ordinalAt(p), accepted);
+		}
+	}
+
+	private void searchCluster(float[] unitQuery, TopKHeap results, int cluster, BitSet accepted) {
+		final float[] vectors = clusterVectors[cluster];
+		final int[] ordinals = clusterOrdinals[cluster];
+		final int count = clusterSizes[cluster];
+		for (int i = 0; i < count; i++) {
+			if (!accepted.get(ordinals[i])) continue;
+			float score = FlatVectorIndex.dot(unitQuery, vectors, i * dimension, dimension);
+			if (score > results.threshold()) {
+				results.offer(ordinals[i], score);
+			}
+		}
+	}
+
+	public void setDefaultNprobe(int nprobe) {
+		if (nprobe < 1) {
+			throw new IllegalArgumentException("nprobe must be positive: " + nprobe);
+		}
+		this.defaultNprobe = nprobe;
+	}
+
+	public int clusterCount() {
+		return clusterCount;
+	}
+
+	@Override
+	public long label(int ordinal) {
+		return labels[ordinal];
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public int dimension() {
+		return dimension;
+	}
+
+	// -------------------------------------------------------------
+	// إعادة التدريب
+	// -------------------------------------------------------------
+
+	/**
+	* عامل عدم التوازن: clusterCount * مجموع (حجم المجموعة²) / size².
+	* 1 يعني مجموعات متساوية؛ قيمته تساوي متوسط ما يمسحه الاستعلام نسبة إلى التوزيع المتساوي.
+	*/
+	public double imbalanceFactor() {
+		if (size == 0) return 1.0;
+		double sumOfSquares = 0;
+		for (int c = 0; c < clusterCount; c++) {
+			sumOfSquares += (double) clusterSizes[c] * clusterSizes[c];
+		}
+		return clusterCount * sumOfSquares / ((double) size * size);
+	}
+
+	/**
+	* @return true إذا تضاعف عدد المتجهات منذ التدريب (فلم يعد عدد المجموعات مناسبًا) أو اختل توازن المجموعات.
+	*/
+	public boolean needsRetraining() {
+		return size > trainedSize * RETRAIN_GROWTH_FACTOR || imbalanceFactor() > RETRAIN_IMBALANCE_FACTOR;
+	}
+
+	/**
+	* يدرب مراكز جديدة (بعدد suggestClusterCount(size())) على عينة من المتجهات المخزنة نفسها،
+	* ثم يعيد إسناد كل المتجهات بترتيبها ومعرفاتها، فتبقى الترتيبات العامة صالحة دون الرجوع إلى قاعدة البيانات.
+	* @param maxSamples الحد الأقصى لعينة التدريب.
+	* @return فهرس جديد؛ هذه النسخة لا تتغير.
+	*/
+	public IvfIndex retrain(int maxSamples, long seed) {
+		// موضع كل ترتيب عام: المجموعة والخانة داخلها
+		int[] clusterOf = new int[size];
+		int[] positionOf = new int[size];
+		for (int c = 0; c < clusterCount; c++) {
+			for (int i = 0; i < clusterSizes[c]; i++) {
+				clusterOf[clusterOrdinals[c][i]] = c;
+				positionOf[clusterOrdinals[c][i]] = i;
+			}
+		}
+
+		int step = Math.max(1, size / maxSamples);
+		int sampleCount = Math.min(maxSamples, (size + step - 1) / step);
+		float[] sample = new float[sampleCount * dimension];
+		for (int i = 0; i < sampleCount; i++) {
+			int ordinal = i * step;
+			System.arraycopy(clusterVectors[clusterOf[ordinal]], positionOf[ordinal] * dimension, sample, i * dimension, dimension);
+		}
+
+		IvfIndex retrained = train(sample, sampleCount, dimension, suggestClusterCount(size), size, seed);
+		retrained.labels = new long[Math.max(INITIAL_CAPACITY, size)];
+		float[] vector = new float[dimension];
+		for (int ordinal = 0; ordinal < size; ordinal++) {
+			System.arraycopy(clusterVectors[clusterOf[ordinal]], positionOf[ordinal] * dimension, vector, 0, dimension);
+			retrained.add(vector, labels[ordinal]);
+		}
+		retrained.defaultNprobe = defaultNprobe;
+		return retrained;
+	}
+
+	// -------------------------------------------------------------
+	// الحفظ والتحميل
+	// -------------------------------------------------------------
+
+	@Override
+	public void save(File file) throws IOException {
+		File tempFile = new File(file.getPath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), IndexFiles.IO_CHUNK_BYTES))) {
+			out.writeInt(FILE_MAGIC);
+			out.writeInt(FILE_VERSION);
+			out.writeInt(dimension);
+			out.writeInt(clusterCount);
+			out.writeInt(trainedSize);
+			IndexFiles.writeFloats(out, centroids, centroids.length);
+			out.writeInt(size);
+			for (int i = 0; i < size; i++) {
+				out.writeLong(labels[i]);
+			}
+			for (int c = 0; c < clusterCount; c++) {
+				int count = clusterSizes[c];
+				out.writeInt(count);
+				for (int i = 0; i < count; i++) {
+					out.writeInt(clusterOrdinals[c][i]);
+				}
+				IndexFiles.writeFloats(out, clusterVectors[c], count * dimension);
+			}
+		}
+		if (!tempFile.renameTo(file)) {
+			throw new IOException("Failed to replace index file: " + file);
+		}
+	}
+
+	/**
+	* يحمل فهرسًا محفوظًا مسبقًا بواسطة save.
+	* كل عدد يُتحقق منه مقابل طول الملف قبل أي تخصيص، وأعداد المجموعات يجب أن يكون مجموعها size
+	* وكل ترتيب فيها أقل من size ولا يتكرر، فالملف التالف يعطي IOException (فيُعاد التدريب)
+	* لا NegativeArraySizeException أو OutOfMemoryError أو ArrayIndexOutOfBoundsException.
+	* @throws IOException إذا كان الملف تالفًا أو من إصدار غير مدعوم.
+	*/
+	public static IvfIndex load(File file) throws IOException {
+		long remaining = file.length();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), IndexFiles.IO_CHUNK_BYTES))) {
+			if (remaining < HEADER_BYTES || in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+				throw new IOException("Unsupported IVF index file: " + file);
+			}
+			remaining -= HEADER_BYTES;
+			int dimension = in.readInt();
+			int clusterCount = in.readInt();
+			int trainedSize = in.readInt();
+			long centroidBytes = (long) clusterCount * dimension * 4;
+			if (dimension <= 0 || clusterCount <= 0 || trainedSize < 0 || centroidBytes + 4 > remaining) {
+				throw new IOException("Corrupt IVF index header: " + file);
+			}
+			float[] centroids = new float[clusterCount * dimension];
+			IndexFiles.readFloats(in, centroids, centroids.length);
+			IvfIndex index = new IvfIndex(dimension, centroids, trainedSize);
+			remaining -= centroidBytes + 4;
+			int size = in.readInt();
+			// المعرف + عدد كل مجموعة + الترتيب والمتجه لكل عنصر
+			if (size < 0 || size * (8L + 4 + dimension * 4L) + clusterCount * 4L > remaining) {
+				throw new IOException("Truncated IVF index file: " + file);
+			}
+			index.labels = new long[Math.max(INITIAL_CAPACITY, size)];
+			for (int i = 0; i < size; i++) {
+				index.labels[i] = in.readLong();
+			}
+			BitSet seen = new BitSet(size);
+			int total = 0;
+			for (int c = 0; c < clusterCount; c++) {
+				int count = in.readInt();
+				if (count < 0 || count > size - total) {
+					throw new IOException("Corrupt IVF cluster size " + count + " in cluster " + c);
+				}
+				total += count;
+				int capacity = Math.max(INITIAL_CLUSTER_CAPACITY, count);
+				int[] ordinals = new int[capacity];
+				for (int i = 0; i < count; i++) {
+					int ordinal = in.readInt();
+					if (ordinal < 0 || ordinal >= size || seen.get(ordinal)) {
+						throw new IOException("Corrupt IVF ordinal " + ordinal + " in cluster " + c);
+					}
+					seen.set(ordinal);
+					ordinals[i] = ordinal;
+				}
+				float[] vectors = new float[capacity * dimension];
+				IndexFiles.readFloats(in, vectors, count * dimension);
+				index.clusterOrdinals[c] = ordinals;
+				index.clusterVectors[c] = vectors;
+				index.clusterSizes[c] = count;
+			}
+			if (total != size) {
+				throw new IOException("IVF clusters hold " + total + " of " + size + " vectors: " + file);
+			}
+			index.size = size;
+			return index;
+		}
+	}
+
+	private int nearestCentroid(float[] unitVector) {
+		int best = 0;
+		float bestScore = Float.NEGATIVE_INFINITY;
+		for (int c = 0; c < clusterCount; c++) {
+			float score = FlatVectorIndex.dot(unitVector, centroids, c * dimension, dimension);
+			if (score > bestScore) {
+				bestScore = score;
+				best = c;
+			}
+		}
+		return best;
+	}
+}
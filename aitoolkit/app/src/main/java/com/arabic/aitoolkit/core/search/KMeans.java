@@ -0,0 +1,118 @@
+package com.arabic.aitoolkit.core.search;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+* KMeans: تجميع k-means (خوارزمية Lloyd) على متجهات مخزنة في مصفوفة متصلة.
+* يستخدم لتدريب دفاتر رموز التكميم الجزئي (Product Quantization) ومراكز فهرس IVF.
+*/
+final class KMeans {
+
+	private KMeans() {
+	}
+
+	/**
+	* يدرب k مركزًا على بيانات متصلة.
+	* @param data المتجهات، المتجه i يبدأ عند i * dimension.
+	* @param count عدد المتجهات.
+	* @param dimension أبعاد كل متجه.
+	* @param k عدد المراكز المطلوب.
+	* @param iterations عدد تكرارات Lloyd.
+	* @param spherical إذا كان true تُطبَّع المراكز بعد كل تكرار (مناسب لتشابه جيب التمام).
+	* @param random مولد الأرقام العشوائية للتهيئة.
+	* @return المراكز في مصفوفة متصلة بطول k * dimension.
+	*/
+	static float[] train(float[] data, int count, int dimension, int k, int iterations, boolean spherical, Random random) {
+		if (count <= 0) {
+			throw new IllegalArgumentException("Cannot train k-means on an empty sample.");
+		}
+		float[] centroids = new float[k * dimension];
+
+		// التهيئة: عينات عشوائية مختلفة (أو مكررة إذا كانت البيانات أقل من k)
+		int[] order = shuffledOrdinals(count, random);
+		for (int c = 0; c < k; c++) {
+			System.arraycopy(data, order[c % count] * dimension, centroids, c * dimension, dimension);
+		}
+
+		int[] assignments = new int[count];
+		int[] clusterSizes = new int[k];
+		float[] sums = new float[k * dimension];
+		for (int iteration = 0; iteration < iterations; iteration++) {
+			// 1. إسناد كل متجه إلى أقرب مركز
+			for (int i = 0; i < count; i++) {
+				assignments[i] = nearest(centroids, k, dimension, data, i * dimension);
+			}
+
+			// 2. إعادة حساب المراكز كمتوسط لأعضائها
+			Arrays.fill(sums, 0f);
+			Arrays.fill(clusterSizes, 0);
+			for (int i = 0; i < count; i++) {
+				int cluster = assignments[i];
+				clusterSizes[cluster]++;
+				int source = i * dimension;
+				int target = cluster * dimension;
+				for (int d = 0; d < dimension; d++) {
+					sums[target + d] += data[source + d];
+				}
+			}
+			for (int c = 0; c < k; c++) {
+				int offset = c * dimension;
+				if (clusterSizes[c] == 0) {
+					// مجموعة فارغة: إعادة تهيئتها بعينة عشوائية
+					System.arraycopy(data, random.nextInt(count) * dimension, centroids, offset, dimension);
+					continue;
+				}
+				float inverse = 1f / clusterSizes[c];
+				for (int d = 0; d < dimension; d++) {
+					centroids[offset + d] = sums[offset + d] * inverse;
+				}
+				if (spherical) {
+					FlatVectorIndex.normalize(centroids, offset, dimension);
+				}
+			}
+		}
+		return centroids;
+	}
+
+	/**
+	* أقرب مركز بالمسافة الإقليدية لمتجه داخل مصفوفة متصلة.
+	*/
+	static int nearest(float[] centroids, int k, int dimension, float[] data, int offset) {
+		return nearest(centroids, 0, k, dimension, data, offset);
+	}
+
+	/**
+	* @param centroidsOffset موضع المركز الأول داخل centroids (لدفاتر رموز متعددة في مصفوفة واحدة).
+	*/
+	static int nearest(float[] centroids, int centroidsOffset, int k, int dimension, float[] data, int offset) {
+		int best = 0;
+		float bestDistance = Float.MAX_VALUE;
+		for (int c = 0, centroidOffset = centroidsOffset; c < k; c++, centroidOffset += dimension) {
+			float distance = 0f;
+			for (int d = 0; d < dimension; d++) {
+				float diff = data[offset + d] - centroids[centroidOffset + d];
+				distance += diff * diff;
+			}
+			if (distance < bestDistance) {
+				bestDistance = distance;
+				best = c;
+			}
+		}
+		return best;
+	}
+
+	private static int[] shuffledOrdinals(int count, Random random) {
+		int[] order = new int[count];
+		for (int i = 0; i < count; i++) {
+			order[i] = i;
+		}
+		for (int i = count - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int tmp = order[i];
+			order[i] = order[j];
+			order[j] = tmp;
+		}
+		return order;
+	}
+}
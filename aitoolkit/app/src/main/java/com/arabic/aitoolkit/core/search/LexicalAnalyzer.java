@@ -0,0 +1,74 @@
+package com.arabic.aitoolkit.core.search;
+
+import com.arabic.aitoolkit.core.embedding.ArabicTextFolder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+* LexicalAnalyzer: يقسم النص العربي إلى مصطلحات مطبعة للفهرس النصي (BM25).
+* التطبيع (ArabicTextFolder.FOR_SEARCH): حذف التشكيل والتطويل، توحيد الألف (أ إ آ ٱ -> ا) والياء (ى -> ي)
+* والتاء المربوطة (ة -> ه) والهمزات على الواو والياء وأشكال العرض، وتحويل الأرقام العربية الهندية إلى أرقام لاتينية،
+* وتصغير الحروف اللاتينية.
+* يُزال "ال" التعريف وما يسبقه من حروف (و، ف، ب، ك، ل) كتجذيع خفيف.
+* الأرقام والرموز مثل أرقام القطع تبقى كما هي لأنها أهم ما يفوته البحث الدلالي.
+*/
+final class LexicalAnalyzer {
+
+	private static final int MIN_STEMMED_LENGTH = 2;
+	private static final ArabicTextFolder FOLDER = ArabicTextFolder.FOR_SEARCH;
+
+	private LexicalAnalyzer() {
+	}
+
+	/**
+	* @return المصطلحات بترتيب ظهورها (مع التكرار).
+	*/
+	static List<String> tokenize(String text) {
+		List<String> terms = new ArrayList<>();
+		if (text == null) return terms;
+		StringBuilder term = new StringBuilder();
+		for (int i = 0, length = text.length(); i < length; i++) {
+			char c = normalize(text.charAt(i));
+			if (c == 0) continue; // تشكيل أو تطويل: لا يفصل الكلمة
+			if (Character.isLetterOrDigit(c)) {
+				term.append(c);
+			} else if (term.length() > 0) {
+				addTerm(terms, term);
+			}
+		}
+		if (term.length() > 0) {
+			addTerm(terms, term);
+		}
+		return terms;
+	}
+
+	/**
+	* يطبّع حرفًا واحدًا، أو يعيد 0 للحروف التي تُحذف.
+	*/
+	static char normalize(char c) {
+		return FOLDER.fold(c);
+	}
+
+	private static void addTerm(List<String> terms, StringBuilder term) {
+		int start = definiteArticleLength(term);
+		terms.add(term.substring(start));
+		term.setLength(0);
+	}
+
+	/**
+	* طول البادئة "ال" (مع و/ف/ب/ك/ل قبلها، أو "لل") إذا بقي بعدها جذع كافٍ.
+	*/
+	private static int definiteArticleLength(CharSequence term) {
+		int length = term.length();
+		int prefix = 0;
+		if (length > 2 && "وفبكل".indexOf(term.charAt(0)) >= 0 && term.charAt(1) == 'ا' && term.charAt(2) == 'ل') {
+			prefix = 3;
+		} else if (length > 1 && term.charAt(0) == 'ا' && term.charAt(1) == 'ل') {
+			prefix = 2;
+		} else if (length > 1 && term.charAt(0) == 'ل' && term.charAt(1) == 'ل') {
+			prefix = 2;
+		}
+		return length - prefix >= MIN_STEMMED_LENGTH ? prefix : 0;
+	}
+}
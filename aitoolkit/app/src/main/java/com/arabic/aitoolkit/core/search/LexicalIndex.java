@@ -0,0 +1,281 @@
+package com.arabic.aitoolkit.core.search;
+
+import com.arabic.aitoolkit.core.database.entities.ExtractedText;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+* LexicalIndex: فهرس مقلوب (Inverted Index) في الذاكرة على محتوى النصوص مع ترتيب BM25.
+* قائمة كل مصطلح مصفوفة byte[] مضغوطة بـ VByte: كل مطابقة فرق ترتيب المستند عن سابقه (Delta) ثم تكرار
+* المصطلح، كل منهما 7 بتات في البايت وأعلى بت يعني أن بعده بايتًا آخر. الفروق في مجموعة كثيفة صغيرة
+* والتكرار غالبًا 1، فتكلف المطابقة عادة بايتين بلا حد أعلى للتكرار أو لعدد المستندات.
+* الإضافة تدريجية وتلحق بنهاية القوائم فقط، والقراءة بلا أقفال: كل قائمة وجدول المستندات
+* يُنشران ككائنات غير قابلة للتعديل تحدد الطول المرئي، والكاتب يكتب بعد ذلك الطول أو في مصفوفة جديدة.
+*/
+public class LexicalIndex {
+
+	private static final float K1 = 1.2f;
+	private static final float B = 0.75f;
+	private static final int INITIAL_CAPACITY = 256;
+	private static final int INITIAL_POSTINGS_CAPACITY = 8; // بايت
+	private static final int MAX_VARINT_BYTES = 5;
+
+	// مجمّع درجات لكل خيط لتجنب تخصيص مصفوفة بحجم المجموعة مع كل استعلام
+	private static final ThreadLocal<Accumulator> ACCUMULATOR = new ThreadLocal<Accumulator>() {
+		@Override
+		protected Accumulator initialValue() {
+			return new Accumulator();
+		}
+	};
+
+	private final ConcurrentHashMap<String, Postings> postings = new ConcurrentHashMap<>();
+	private volatile Documents documents = new Documents(new ExtractedText[INITIAL_CAPACITY],
+	new int[INITIAL_CAPACITY], 0, 0L, new BitSet());
+	private final Map<Long, Integer> ordinalsById = new HashMap<>(); // للكاتب فقط
+
+	// -------------------------------------------------------------
+	// الكتابة (متزامنة؛ القراء لا ينتظرونها)
+	// -------------------------------------------------------------
+
+	/**
+	* يفهرس نصًا، أو يستبدل نسخته السابقة إذا كان معرفه مفهرسًا.
+	*/
+	public synchronized void add(ExtractedText text) {
+		remove(text.getId());
+		Documents current = documents;
+		int ordinal = current.count;
+
+		// تكرار كل مصطلح في النص مع الحفاظ على ترتيب الظهور
+		List<String> terms = LexicalAnalyzer.tokenize(text.getTextContent());
+		Map<String, Integer> frequencies = new LinkedHashMap<>();
+		for (String term : terms) {
+			Integer frequency = frequencies.get(term);
+			frequencies.put(term, frequency == null ? 1 : frequency + 1);
+		}
+		for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+			Postings list = postings.get(entry.getKey());
+			postings.put(entry.getKey(), list == null
+			? Postings.first(ordinal, entry.getValue())
+			: list.append(ordinal, entry.getValue()));
+		}
+
+		ExtractedText[] texts = current.texts;
+		int[] lengths = current.lengths;
+		if (ordinal == texts.length) {
+			texts = Arrays.copyOf(texts, ordinal * 2);
+			lengths = Arrays.copyOf(lengths, ordinal * 2);
+		}
+		texts[ordinal] = text;
+		lengths[ordinal] = terms.size();
+		ordinalsById.put(text.getId(), ordinal);
+		documents = new Documents(texts, lengths, ordinal + 1, current.totalLength + terms.size(), current.deleted);
+	}
+
+	/**
+	* يخفي النص من النتائج (القائمة تحتفظ بمطابقاته حتى إعادة البناء التالية).
+	*/
+	public synchronized void remove(long textId) {
+		Integer ordinal = ordinalsById.remove(textId);
+		if (ordinal == null) return;
+		Documents current = documents;
+		BitSet deleted = (BitSet) current.deleted.clone();
+		deleted.set(ordinal);
+		documents = new Documents(current.texts, current.lengths, current.count,
+		current.totalLength - current.lengths[ordinal], deleted);
+	}
+
+	// -------------------------------------------------------------
+	// البحث
+	// -------------------------------------------------------------
+
+	/**
+	* ترتيب BM25 لمصطلحات الاستعلام (كل مصطلح مرة واحدة).
+	* @param results كومة النتائج بترتيب المستندات داخل هذا الفهرس (انظر documentAt).
+	*/
+	public void search(String query, TopKHeap results) {
+		search(query, results, SearchOptions.DEFAULT);
+	}
+
+	/**
+	* @param options قيود المصدر والفترة الزمنية؛ تُطبق على المستندات المطابقة قبل دخولها الكومة.
+	*/
+	public void search(String query, TopKHeap results, SearchOptions options) {
+		search(query, results, options, 0f);
+	}
+
+	/**
+	* @param minTermFraction أدنى نسبة من مصطلحات الاستعلام المختلفة يجب أن يحويها المستند ليدخل الكومة
+	* (0 لقبول أي مطابقة)، كي لا تكفي مطابقة كلمة شائعة واحدة من سؤال طويل.
+	*/
+	public void search(String query, TopKHeap results, SearchOptions options, float minTermFraction) {
+		Set<String> terms = distinctTerms(query);
+		int minMatches = Math.max(1, (int) Math.ceil(minTermFraction * terms.size()));
+		Documents docs = documents;
+		int count = docs.count;
+		int liveCount = count - docs.deleted.cardinality();
+		if (liveCount <= 0) return;
+		float averageLength = Math.max(1f, (float) docs.totalLength / liveCount);
+
+		Accumulator accumulator = ACCUMULATOR.get();
+		accumulator.reset(count);
+		for (String term : terms) {
+			Postings list = postings.get(term);
+			if (list == null) continue;
+			float idf = (float) Math.log(1.0 + (liveCount - list.count + 0.5) / (list.count + 0.5));
+			final byte[] data = list.data;
+			int document = 0;
+			for (int position = 0, end = list.length; position < end; ) {
+				int b = data[position++];
+				int gap = b & 0x7F;
+				for (int shift = 7; b < 0; shift += 7) {
+					b = data[position++];
+					gap |= (b & 0x7F) << shift;
+				}
+				b = data[position++];
+				int frequency = b & 0x7F;
+				for (int shift = 7; b < 0; shift += 7) {
+					b = data[position++];
+					frequency |= (b & 0x7F) << shift;
+				}
+				document += gap;
+				if (document >= count) break; // أضيف بعد لقطة جدول المستندات
+				if (docs.deleted.get(document)) continue;
+				float norm = K1 * (1f - B + B * docs.lengths[document] / averageLength);
+				accumulator.add(document, idf * frequency * (K1 + 1f) / (frequency + norm));
+			}
+		}
+		accumulator.drainTo(results, options.hasFilter() ? options : null, docs.texts, minMatches);
+	}
+
+	/**
+	* @return النص ذو الترتيب المعطى، أو null إذا حُذف.
+	*/
+	public ExtractedText documentAt(int ordinal) {
+		Documents docs = documents;
+		return docs.deleted.get(ordinal) ? null : docs.texts[ordinal];
+	}
+
+	public int size() {
+		Documents docs = documents;
+		return docs.count - docs.deleted.cardinality();
+	}
+
+	private static Set<String> distinctTerms(String query) {
+		return new LinkedHashSet<>(LexicalAnalyzer.tokenize(query));
+	}
+
+	// -------------------------------------------------------------
+	// البنى الداخلية
+	// -------------------------------------------------------------
+
+	/**
+	* قائمة مطابقات مصطلح واحد؛ الكائن غير قابل للتعديل، والإلحاق ينشئ كائنًا جديدًا يشارك المصفوفة
+	* ويكتب بعد length فقط.
+	*/
+	private static final class Postings {
+		final byte[] data;
+		final int length; // البايتات المستخدمة
+		final int count;  // عدد المستندات (لـ idf)
+		final int lastDocument;
+
+		Postings(byte[] data, int length, int count, int lastDocument) {
+			this.data = data;
+			this.length = length;
+			this.count = count;
+			this.lastDocument = lastDocument;
+		}
+
+		static Postings first(int document, int frequency) {
+			return new Postings(new byte[INITIAL_POSTINGS_CAPACITY], 0, 0, 0).append(document, frequency);
+		}
+
+		Postings append(int document, int frequency) {
+			byte[] target = data;
+			if (length + 2 * MAX_VARINT_BYTES > target.length) {
+				target = Arrays.copyOf(data, Math.max(data.length * 2, length + 2 * MAX_VARINT_BYTES));
+			}
+			int end = writeVarint(target, length, document - lastDocument);
+			end = writeVarint(target, end, frequency);
+			return new Postings(target, end, count + 1, document);
+		}
+
+		// 7 بتات في كل بايت، الأدنى أولًا؛ أعلى بت = يتبعه بايت
+		private static int writeVarint(byte[] target, int position, int value) {
+			while ((value & ~0x7F) != 0) {
+				target[position++] = (byte) (value & 0x7F | 0x80);
+				value >>>= 7;
+			}
+			target[position++] = (byte) value;
+			return position;
+		}
+	}
+
+	/**
+	* جدول المستندات المرئي للقراء: النصوص وأطوالها بالمصطلحات حتى count.
+	*/
+	private static final class Documents {
+		final ExtractedText[] texts;
+		final int[] lengths;
+		final int count;
+		final long totalLength; // مجموع أطوال المستندات غير المحذوفة
+		final BitSet deleted;
+
+		Documents(ExtractedText[] texts, int[] lengths, int count, long totalLength, BitSet deleted) {
+			this.texts = texts;
+			this.lengths = lengths;
+			this.count = count;
+			this.totalLength = totalLength;
+			this.deleted = deleted;
+		}
+	}
+
+	/**
+	* مجمّع درجات متفرق: مصفوفة درجات (وعدد المصطلحات المطابقة) بحجم المجموعة وقائمة بالمستندات
+	* الملموسة لتصفيرها فقط.
+	*/
+	private static final class Accumulator {
+		private float[] scores = new float[0];
+		private int[] matches = new int[0];
+		private int[] touched = new int[INITIAL_CAPACITY];
+		private int touchedCount;
+
+		void reset(int documentCount) {
+			if (scores.length < documentCount) {
+				scores = new float[Math.max(documentCount, scores.length * 2)];
+				matches = new int[scores.length];
+			}
+			touchedCount = 0;
+		}
+
+		void add(int document, float score) {
+			if (matches[document] == 0) {
+				if (touchedCount == touched.length) {
+					touched = Arrays.copyOf(touched, touchedCount * 2);
+				}
+				touched[touchedCount++] = document;
+			}
+			scores[document] += score;
+			matches[document]++;
+		}
+
+		void drainTo(TopKHeap results, SearchOptions filter, ExtractedText[] texts, int minMatches) {
+			for (int i = 0; i < touchedCount; i++) {
+				int document = touched[i];
+				if (matches[document] >= minMatches && (filter == null || filter.matches(texts[document]))) {
+					results.offer(document, scores[document]);
+				}
+				scores[document] = 0f;
+				matches[document] = 0;
+			}
+			touchedCount = 0;
+		}
+	}
+}
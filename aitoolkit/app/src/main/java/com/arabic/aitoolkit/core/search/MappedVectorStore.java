@@ -0,0 +1,339 @@
+package com.arabic.aitoolkit.core.search;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+* MappedVectorStore: مخزن متجهات على القرص يُقرأ عبر FileChannel.map، فيجري البحث الدقيق مباشرة
+* على صفحات الملف دون نسخ المتجهات إلى الكومة (Heap) ودون المرور بـ CursorWindow الخاصة بـ SQLite.
+* تخطيط الملف (Little Endian):
+* [ترويسة 32 بايت: magic, version, dimension, dtype, count] ثم count صفًا، كل صف [dimension float32 مطبعة][long معرف المقطع].
+* الصف يحمل معرفه، فالمتجهات الجديدة تُلحق بنهاية الملف ثم يُحدَّث count في الترويسة (انظر save)
+* دون إعادة كتابة ما سبقها؛ البايتات بعد آخر صف معلن (إلحاق انقطع قبل تحديث الترويسة) تُتجاهل.
+* الملف يُربط على مقاطع (Segments) لا يتجاوز كل منها MAX_SEGMENT_BYTES (حد FileChannel.map)، فلا حد
+* لحجم المخزن غير عدد الصفوف (Integer.MAX_VALUE، لأن الترتيبات int).
+* المتجهات المضافة بعد التحميل تبقى في الذاكرة حتى الحفظ التالي.
+*/
+public class MappedVectorStore implements PersistentVectorIndex {
+
+	public static final int DTYPE_FLOAT32 = 1;
+
+	private static final int FILE_MAGIC = 0x4D565354; // "MVST"
+	private static final int FILE_VERSION = 2; // الإصدار 2: صفوف متجه + معرف (الإصدار 1 يُعاد بناؤه)
+	private static final int HEADER_BYTES = 32;
+	private static final int COUNT_OFFSET = 16;
+	private static final int INITIAL_PENDING_CAPACITY = 256;
+	private static final long MAX_SEGMENT_BYTES = Integer.MAX_VALUE; // أقصى ما يربطه FileChannel.map مرة واحدة
+
+	private final int dimension;
+	private final int rowBytes; // dimension * 4 + 8
+	private final int rowFloats; // طول الصف بوحدات float (المعرف يشغل خانتين)
+	// الجزء المربوط بالملف (للقراءة فقط)، مقسم على مقاطع من rowsPerSegment صفًا
+	private final Segment[] segments;
+	private final int rowsPerSegment;
+	private final int mappedCount;
+	// المتجهات المضافة منذ آخر تحميل (مطبعة)
+	private float[] pendingVectors;
+	private long[] pendingLabels;
+	private int pendingCount;
+	// الملف الذي تطابق صفوفه أول savedCount صفًا من هذا المخزن (لإلحاق الباقي فقط عند الحفظ)
+	private File savedFile;
+	private int savedCount;
+
+	/**
+	* مخزن فارغ غير مربوط بملف بعد.
+	*/
+	public MappedVectorStore(int dimension) {
+		this(dimension, new Segment[0], 1, 0, null);
+	}
+
+	private MappedVectorStore(int dimension, Segment[] segments, int rowsPerSegment, int mappedCount, File file) {
+		if (dimension <= 0) {
+			throw new IllegalArgumentException("Dimension must be positive: " + dimension);
+		}
+		this.dimension = dimension;
+		this.rowBytes = dimension * Float.BYTES + Long.BYTES;
+		this.rowFloats = rowBytes / Float.BYTES;
+		this.segments = segments;
+		this.rowsPerSegment = rowsPerSegment;
+		this.mappedCount = mappedCount;
+		this.pendingVectors = new float[INITIAL_PENDING_CAPACITY * dimension];
+		this.pendingLabels = new long[INITIAL_PENDING_CAPACITY];
+		this.savedFile = file;
+		this.savedCount = mappedCount;
+	}
+
+	/**
+	* يربط ملف المخزن بالذاكرة للقراءة فقط. لا تُقرأ المتجهات نفسها حتى يلمسها البحث.
+	*/
+	public static MappedVectorStore open(File file) throws IOException {
+		return open(file, MAX_SEGMENT_BYTES);
+	}
+
+	static MappedVectorStore open(File file, long maxSegmentBytes) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+		FileChannel channel = raf.getChannel()) {
+			long fileSize = channel.size();
+			if (fileSize < HEADER_BYTES) {
+				throw new IOException("Vector store file is truncated: " + file);
+			}
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			readFully(channel, header, 0);
+			if (header.getInt(0) != FILE_MAGIC || header.getInt(4) != FILE_VERSION) {
+				throw new IOException("Unsupported vector store file: " + file);
+			}
+			int dimension = header.getInt(8);
+			int dtype = header.getInt(12);
+			int count = header.getInt(COUNT_OFFSET);
+			if (dtype != DTYPE_FLOAT32) {
+				throw new IOException("Unsupported vector store dtype: " + dtype);
+			}
+			long rowBytes = dimension * (long) Float.BYTES + Long.BYTES;
+			if (dimension <= 0 || rowBytes > maxSegmentBytes || count < 0 || fileSize < HEADER_BYTES + count * rowBytes) {
+				throw new IOException("Corrupt vector store header: dim=" + dimension + ", count=" + count + ", size=" + fileSize);
+			}
+
+			// المربوط يبقى صالحًا بعد إغلاق القناة
+			int rowsPerSegment = (int) (maxSegmentBytes / rowBytes);
+			Segment[] segments = new Segment[(int) ((count + (long) rowsPerSegment - 1) / rowsPerSegment)];
+			for (int s = 0; s < segments.length; s++) {
+				int rows = Math.min(rowsPerSegment, count - s * rowsPerSegment);
+				MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY,
+				HEADER_BYTES + (long) s * rowsPerSegment * rowBytes, rows * rowBytes);
+				segments[s] = new Segment(mapped, rows);
+			}
+			return new MappedVectorStore(dimension, segments, rowsPerSegment, count, file);
+		}
+	}
+
+	// -------------------------------------------------------------
+	// الإضافة
+	// -------------------------------------------------------------
+
+	@Override
+	public int add(float[] vector) {
+		return add(vector, size());
+	}
+
+	/**
+	* يضيف متجهًا إلى الجزء المؤقت في الذاكرة؛ يُكتب إلى الملف عند استدعاء save.
+	*/
+	@Override
+	public int add(float[] vector, long label) {
+		if (vector.length != dimension) {
+			throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + vector.length);
+		}
+		if (size() == Integer.MAX_VALUE) {
+			throw new IllegalStateException("Vector store is full: " + Integer.MAX_VALUE + " rows");
+		}
+		if (pendingCount == pendingLabels.length) {
+			pendingVectors = Arrays.copyOf(pendingVectors, pendingVectors.length * 2);
+			pendingLabels = Arrays.copyOf(pendingLabels, pendingLabels.length * 2);
+		}
+		int offset = pendingCount * dimension;
+		System.arraycopy(vector, 0, pendingVectors, offset, dimension);
+		FlatVectorIndex.normalize(pendingVectors, offset, dimension);
+		pendingLabels[pendingCount] = label;
+		return mappedCount + pendingCount++;
+	}
+
+	// -------------------------------------------------------------
+	// البحث
+	// -------------------------------------------------------------
+
+	/**
+	* مسح خطي دقيق على مقاطع الملف المربوط ثم على المتجهات المؤقتة.
+	*/
+	@Override
+	public void search(float[] unitQuery, TopKHeap results) {
+		final int dim = dimension;
+		final int stride = rowFloats;
+		for (int s = 0; s < segments.length; s++) {
+			final FloatBuffer data = segments[s].vectors;
+			final int base = s * rowsPerSegment;
+			for (int row = 0, rows = segments[s].count, offset = 0; row < rows; row++, offset += stride) {
+				float score = dot(unitQuery, data, offset, dim);
+				if (score > results.threshold()) {
+					results.offer(base + row, score);
+				}
+			}
+		}
+		final float[] pending = pendingVectors;
+		for (int i = 0, offset = 0; i < pendingCount; i++, offset += dim) {
+			float score = FlatVectorIndex.dot(unitQuery, pending, offset, dim);
+			if (score > results.threshold()) {
+				results.offer(mappedCount + i, score);
+			}
+		}
+	}
+
+	@Override
+	public void search(float[] unitQuery, TopKHeap results, SearchOptions options, BitSet accepted) {
+		final float[] pending = pendingVectors;
+		final int dim = dimension;
+		final int count = mappedCount + pendingCount;
+		for (int ordinal = accepted.nextSetBit(0); ordinal >= 0 && ordinal < count; ordinal = accepted.nextSetBit(ordinal + 1)) {
+			float score = ordinal < mappedCount
+			? dot(unitQuery, segments[ordinal / rowsPerSegment].vectors, (ordinal % rowsPerSegment) * rowFloats, dim)
+			: FlatVectorIndex.dot(unitQuery, pending, (ordinal - mappedCount) * dim, dim);
+			if (score > results.threshold()) {
+				results.offer(ordinal, score);
+			}
+		}
+	}
+
+	@Override
+	public long label(int ordinal) {
+		if (ordinal >= mappedCount) {
+			return pendingLabels[ordinal - mappedCount];
+		}
+		int row = ordinal % rowsPerSegment;
+		return segments[ordinal / rowsPerSegment].bytes.getLong(row * rowBytes + dimension * Float.BYTES);
+	}
+
+	@Override
+	public int size() {
+		return mappedCount + pendingCount;
+	}
+
+	@Override
+	public int dimension() {
+		return dimension;
+	}
+
+	// -------------------------------------------------------------
+	// الحفظ
+	// -------------------------------------------------------------
+
+	/**
+	* إذا كان file هو الملف الذي تطابق صفوفه أول المخزن (المربوط عبر open أو المحفوظ سابقًا)
+	* تُلحق الصفوف الجديدة فقط بنهايته، ثم يُحدَّث count في الترويسة بعد force، فالانقطاع في أي لحظة
+	* يترك ملفًا صالحًا بالعدد القديم أو الجديد. وإلا يُكتب ملف جديد كاملًا (المقاطع المربوطة كما هي
+	* دفعة واحدة لكل مقطع) ثم يستبدل القديم.
+	* لا يغير المتجهات في الذاكرة؛ الصفوف المحفوظة تُربط عند التحميل التالي عبر open.
+	*/
+	@Override
+	public void save(File file) throws IOException {
+		if (file.equals(savedFile) && file.exists() && appendRows(file)) {
+			return;
+		}
+		rewrite(file);
+		savedFile = file;
+		savedCount = size();
+	}
+
+	/**
+	* @return false إذا لم تعد الترويسة تطابق ما حُفظ (الملف استُبدل)، فيُكتب ملف جديد.
+	*/
+	private boolean appendRows(File file) throws IOException {
+		int count = size();
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		FileChannel channel = raf.getChannel()) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			if (channel.size() < HEADER_BYTES + (long) savedCount * rowBytes) return false;
+			readFully(channel, header, 0);
+			if (header.getInt(0) != FILE_MAGIC || header.getInt(4) != FILE_VERSION
+			|| header.getInt(8) != dimension || header.getInt(COUNT_OFFSET) != savedCount) {
+				return false;
+			}
+			if (count == savedCount) return true;
+
+			channel.position(HEADER_BYTES + (long) savedCount * rowBytes);
+			writePendingRows(channel, savedCount - mappedCount, pendingCount);
+			channel.force(false);
+			header.clear();
+			header.putInt(0, count);
+			header.limit(Integer.BYTES);
+			channel.write(header, COUNT_OFFSET);
+			channel.force(false);
+		}
+		savedCount = count;
+		return true;
+	}
+
+	private void rewrite(File file) throws IOException {
+		File tempFile = new File(file.getPath() + ".tmp");
+		try (FileOutputStream out = new FileOutputStream(tempFile);
+		FileChannel channel = out.getChannel()) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(FILE_MAGIC).putInt(FILE_VERSION).putInt(dimension).putInt(DTYPE_FLOAT32).putInt(size());
+			header.clear();
+			drain(channel, header);
+			for (Segment segment : segments) {
+				drain(channel, segment.bytes.duplicate());
+			}
+			writePendingRows(channel, 0, pendingCount);
+			channel.force(false);
+		}
+		if (!tempFile.renameTo(file)) {
+			throw new IOException("Failed to replace vector store file: " + file);
+		}
+	}
+
+	/**
+	* يكتب الصفوف المؤقتة [from, to) على دفعات: كل متجه بـ FloatBuffer.put واحد ثم معرفه.
+	*/
+	private void writePendingRows(FileChannel channel, int from, int to) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(Math.max(IndexFiles.IO_CHUNK_BYTES, rowBytes)).order(ByteOrder.LITTLE_ENDIAN);
+		FloatBuffer floats = buffer.asFloatBuffer();
+		for (int i = from; i < to; i++) {
+			if (buffer.remaining() < rowBytes) {
+				buffer.flip();
+				drain(channel, buffer);
+				buffer.clear();
+			}
+			int position = buffer.position();
+			floats.position(position / Float.BYTES);
+			floats.put(pendingVectors, i * dimension, dimension);
+			buffer.position(position + dimension * Float.BYTES);
+			buffer.putLong(pendingLabels[i]);
+		}
+		buffer.flip();
+		drain(channel, buffer);
+	}
+
+	private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of vector store file");
+			}
+		}
+	}
+
+	/**
+	* ضرب نقطي مباشرة على صفحات الملف المربوط (قراءة مطلقة، آمنة لعدة قراء في الوقت نفسه).
+	*/
+	private static float dot(float[] query, FloatBuffer data, int offset, int length) {
+		return SimilarityKernel.fastest().dot(query, data, offset, length);
+	}
+
+	/**
+	* مقطع مربوط من الملف: count صفًا متتاليًا يبدأ كل منها عند row * rowBytes.
+	*/
+	private static final class Segment {
+		final ByteBuffer bytes; // للمعرفات ولنسخ المقطع كما هو عند إعادة الكتابة
+		final FloatBuffer vectors; // الصف r يبدأ عند r * rowFloats
+		final int count;
+
+		Segment(MappedByteBuffer mapped, int count) {
+			this.bytes = mapped.order(ByteOrder.LITTLE_ENDIAN);
+			this.vectors = mapped.asFloatBuffer();
+			this.count = count;
+		}
+	}
+}
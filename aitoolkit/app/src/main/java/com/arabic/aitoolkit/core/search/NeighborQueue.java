@@ -0,0 +1,87 @@
+package com.arabic.aitoolkit.core.search;
+
+import java.util.Arrays;
+
+/**
+* NeighborQueue: كومة عظمى (Max-Heap) قابلة للنمو تعتمد على مصفوفات أولية،
+* تستخدم كقائمة المرشحين أثناء التنقل في الرسم البياني لفهرس HNSW
+* (الجذر دائمًا المرشح الأقرب للاستعلام).
+*/
+final class NeighborQueue {
+
+	private int[] ordinals;
+	private float[] scores;
+	private int size;
+
+	NeighborQueue(int initialCapacity) {
+		int capacity = Math.max(1, initialCapacity);
+		this.ordinals = new int[capacity];
+		this.scores = new float[capacity];
+	}
+
+	void push(int ordinal, float score) {
+		if (size == ordinals.length) {
+			ordinals = Arrays.copyOf(ordinals, size * 2);
+			scores = Arrays.copyOf(scores, size * 2);
+		}
+		int index = size++;
+		// رفع العنصر الجديد (Sift Up)
+		while (index > 0) {
+			int parent = (index - 1) >>> 1;
+			if (scores[parent] >= score) break;
+			ordinals[index] = ordinals[parent];
+			scores[index] = scores[parent];
+			index = parent;
+		}
+		ordinals[index] = ordinal;
+		scores[index] = score;
+	}
+
+	int topOrdinal() {
+		return ordinals[0];
+	}
+
+	float topScore() {
+		return scores[0];
+	}
+
+	/**
+	* يزيل المرشح الأقرب ويعيد ترتيبه.
+	*/
+	int pop() {
+		int top = ordinals[0];
+		size--;
+		if (size > 0) {
+			int ordinal = ordinals[size];
+			float score = scores[size];
+			int index = 0;
+			// إنزال العنصر الأخير من الجذر (Sift Down)
+			while (true) {
+				int child = (index << 1) + 1;
+				if (child >= size) break;
+				if (child + 1 < size && scores[child + 1] > scores[child]) {
+					child++;
+				}
+				if (score >= scores[child]) break;
+				ordinals[index] = ordinals[child];
+				scores[index] = scores[child];
+				index = child;
+			}
+			ordinals[index] = ordinal;
+			scores[index] = score;
+		}
+		return top;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	int size() {
+		return size;
+	}
+
+	void clear() {
+		size = 0;
+	}
+}
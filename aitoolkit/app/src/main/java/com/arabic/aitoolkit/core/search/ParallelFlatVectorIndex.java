@@ -0,0 +1,92 @@
+package com.arabic.aitoolkit.core.search;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+* ParallelFlatVectorIndex: بحث دقيق يقسم المصفوفة المتصلة إلى أجزاء (Shards) تُمسح على ForkJoinPool.
+* كل جزء يحتفظ بأفضل K نتيجة في كومة محلية، ثم تُدمج الكومات؛ النتيجة مطابقة تمامًا للمسح التسلسلي.
+* تحت parallelThreshold متجه يبقى المسح على خيط المستدعي لأن كلفة توزيع المهام تفوق المكسب.
+*/
+public class ParallelFlatVectorIndex extends FlatVectorIndex {
+
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 8192; // عدد المتجهات الأدنى للمسح المتوازي
+	private static final int MIN_SHARD_SIZE = 2048; // أصغر جزء يستحق مهمة مستقلة
+	private static final int SHARDS_PER_THREAD = 2; // أجزاء إضافية لموازنة الحمل بين الأنوية
+
+	private final ForkJoinPool pool;
+	private final int parallelThreshold;
+
+	public ParallelFlatVectorIndex(int dimension, int initialCapacity) {
+		this(dimension, initialCapacity, ForkJoinPool.commonPool(), DEFAULT_PARALLEL_THRESHOLD);
+	}
+
+	/**
+	* @param pool مجمع الخيوط المستخدم للمسح.
+	* @param parallelThreshold أقل عدد متجهات يُستخدم عنده المسح المتوازي.
+	*/
+	public ParallelFlatVectorIndex(int dimension, int initialCapacity, ForkJoinPool pool, int parallelThreshold) {
+		super(dimension, initialCapacity);
+		this.pool = pool;
+		this.parallelThreshold = parallelThreshold;
+	}
+
+	@Override
+	public void search(float[] unitQuery, TopKHeap results) {
+		int count = size();
+		int parallelism = pool.getParallelism();
+		if (count < parallelThreshold || parallelism <= 1) {
+			super.search(unitQuery, results);
+			return;
+		}
+		int shardSize = Math.max(MIN_SHARD_SIZE, (count + parallelism * SHARDS_PER_THREAD - 1) / (parallelism * SHARDS_PER_THREAD));
+		TopKHeap merged = pool.invoke(new ShardSearch(unitQuery, results.capacity(), 0, count, shardSize));
+		for (int i = 0, n = merged.size(); i < n; i++) {
+			results.offer(merged.ordinalAt(i), merged.scoreAt(i));
+		}
+	}
+
+	// -------------------------------------------------------------
+	// مهمة المسح المتوازي
+	// -------------------------------------------------------------
+
+	/**
+	* يقسم النطاق إلى نصفين حتى يصل إلى shardSize، ثم يدمج كومة النصف الأيسر في كومة النصف الأيمن.
+	*/
+	private final class ShardSearch extends RecursiveTask<TopKHeap> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final float[] unitQuery;
+		private final int k;
+		private final int from;
+		private final int to;
+		private final int shardSize;
+
+		ShardSearch(float[] unitQuery, int k, int from, int to, int shardSize) {
+			this.unitQuery = unitQuery;
+			this.k = k;
+			this.from = from;
+			this.to = to;
+			this.shardSize = shardSize;
+		}
+
+		@Override
+		protected TopKHeap compute() {
+			if (to - from <= shardSize) {
+				TopKHeap local = new TopKHeap(k);
+				searchRange(unitQuery, local, from, to);
+				return local;
+			}
+			int middle = (from + to) >>> 1;
+			ShardSearch left = new ShardSearch(unitQuery, k, from, middle, shardSize);
+			left.fork();
+			TopKHeap merged = new ShardSearch(unitQuery, k, middle, to, shardSize).compute();
+			TopKHeap leftResults = left.join();
+			for (int i = 0, n = leftResults.size(); i < n; i++) {
+				merged.offer(leftResults.ordinalAt(i), leftResults.scoreAt(i));
+			}
+			return merged;
+		}
+	}
+}
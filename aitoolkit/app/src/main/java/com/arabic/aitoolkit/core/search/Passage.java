@@ -0,0 +1,57 @@
+package com.arabic.aitoolkit.core.search;
+
+import com.arabic.aitoolkit.core.database.entities.ExtractedText;
+
+/**
+* Passage: وحدة الفهرسة الدلالية، مقطع [startOffset, endOffset) من نص مستخلص.
+* لا ينسخ المقطع نصه: كل مقاطع النص الواحد تشير إلى كيان ExtractedText نفسه في الذاكرة.
+*/
+public final class Passage {
+
+	private final long id; // معرف الصف في text_passages (0 لمقطع غير محفوظ)
+	private final ExtractedText text;
+	private final int startOffset;
+	private final int endOffset;
+
+	public Passage(long id, ExtractedText text, int startOffset, int endOffset) {
+		this.id = id;
+		this.text = text;
+		this.startOffset = startOffset;
+		this.endOffset = endOffset;
+	}
+
+	/**
+	* النص كاملًا كمقطع واحد (للنتائج النصية BM25 التي لا تحدد موضعًا).
+	*/
+	public static Passage whole(ExtractedText text) {
+		String content = text.getTextContent();
+		return new Passage(0, text, 0, content == null ? 0 : content.length());
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public ExtractedText getText() {
+		return text;
+	}
+
+	public int getStartOffset() {
+		return startOffset;
+	}
+
+	public int getEndOffset() {
+		return endOffset;
+	}
+
+	/**
+	* نص المقطع من النص الأصلي (المواضع تُقص على طوله، فالمقاطع المنقولة من الإصدارات السابقة آمنة).
+	*/
+	public String getContent() {
+		String content = text.getTextContent();
+		if (content == null) return "";
+		int end = Math.min(endOffset, content.length());
+		int start = Math.min(Math.max(startOffset, 0), end);
+		return content.substring(start, end);
+	}
+}
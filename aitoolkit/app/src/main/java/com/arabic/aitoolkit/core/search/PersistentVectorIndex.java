@@ -0,0 +1,24 @@
+package com.arabic.aitoolkit.core.search;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+* فهرس متجهات يحفظ معرفًا خارجيًا (Label) لكل متجه ويمكن حفظه في ملف وإعادة تحميله،
+* بحيث لا يُعاد بناؤه مع كل تشغيل للتطبيق.
+*/
+public interface PersistentVectorIndex extends VectorIndex {
+
+	/**
+	* يضيف متجهًا مع معرفه الخارجي (مثل ExtractedText.id).
+	* @return ترتيب المتجه داخل الفهرس.
+	*/
+	int add(float[] vector, long label);
+
+	/**
+	* المعرف الخارجي للمتجه ذي الترتيب المعطى.
+	*/
+	long label(int ordinal);
+
+	void save(File file) throws IOException;
+}
@@ -0,0 +1,191 @@
+package com.arabic.aitoolkit.core.search;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+* ProductQuantizedIndex: فهرس مضغوط بالتكميم الجزئي (PQ) يخزن لكل متجه subspaces بايت فقط
+* (مثلاً 32 بايت بدل 1536)، فتتسع الذاكرة لملايين المقاطع ضمن عشرات الميغابايت.
+* البحث مسح خطي على الأكواد باستخدام جداول المسافات غير المتناظرة (ADC)، والدرجات تقريبية
+* لذا يُعاد ترتيب القائمة المختصرة بالمتجهات الدقيقة.
+* دفاتر الرموز والأكواد والمعرفات تحفظ معًا في ملف جانبي واحد.
+*/
+public class ProductQuantizedIndex implements PersistentVectorIndex {
+
+	public static final int DEFAULT_SUBSPACES = 32; // 32 بايت لكل متجه 384 (أجزاء من 12 بُعدًا)
+
+	private static final int FILE_MAGIC = 0x50514958; // "PQIX"
+	private static final int FILE_VERSION = 1;
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private final ProductQuantizer quantizer;
+	private final int subspaces;
+	private final float[] scratch; // نسخة مطبعة من المتجه أثناء الترميز (كاتب واحد)
+	private byte[] codes;
+	private long[] labels;
+	private int size;
+
+	public ProductQuantizedIndex(ProductQuantizer quantizer) {
+		this.quantizer = quantizer;
+		this.subspaces = quantizer.subspaces();
+		this.scratch = new float[quantizer.dimension()];
+		this.codes = new byte[INITIAL_CAPACITY * subspaces];
+		this.labels = new long[INITIAL_CAPACITY];
+	}
+
+	// -------------------------------------------------------------
+	// الإضافة
+	// -------------------------------------------------------------
+
+	@Override
+	public int add(float[] vector) {
+		return add(vector, size);
+	}
+
+	@Override
+	public int add(float[] vector, long label) {
+		if (vector.length != scratch.length) {
+			throw new IllegalArgumentException("Expected dimension " + scratch.length + " but got " + vector.length);
+		}
+		ensureCapacity(size + 1);
+		System.arraycopy(vector, 0, scratch, 0, scratch.length);
+		FlatVectorIndex.normalize(scratch);
+		quantizer.encode(scratch, codes, size * subspaces);
+		labels[size] = label;
+		return size++;
+	}
+
+	// -------------------------------------------------------------
+	// البحث
+	// -------------------------------------------------------------
+
+	/**
+	* مسح الأكواد بجمع قيم جداول الضرب النقطي لكل جزء.
+	* @param unitQuery متجه الاستعلام بعد تطبيعه.
+	*/
+	@Override
+	public void search(float[] unitQuery, TopKHeap results) {
+		float[] table = new float[subspaces * ProductQuantizer.CENTROIDS];
+		quantizer.computeInnerProductTable(unitQuery, table);
+
+		final byte[] data = codes;
+		final int m = subspaces;
+		final int count = size;
+		for (int ordinal = 0, offset = 0; ordinal < count; ordinal++, offset += m) {
+			float score = 0f;
+			for (int s = 0, tableOffset = 0; s < m; s++, tableOffset += ProductQuantizer.CENTROIDS) {
+				score += table[tableOffset + (data[offset + s] & 0xFF)];
+			}
+			if (score > results.threshold()) {
+				results.offer(ordinal, score);
+			}
+		}
+	}
+
+	@Override
+	public void search(float[] unitQuery, TopKHeap results, SearchOptions options, BitSet accepted) {
+		float[] table = new float[subspaces * ProductQuantizer.CENTROIDS];
+		quantizer.computeInnerProductTable(unitQuery, table);
+
+		final byte[] data = codes;
+		final int m = subspaces;
+		final int count = size;
+		for (int ordinal = accepted.nextSetBit(0); ordinal >= 0 && ordinal < count; ordinal = accepted.nextSetBit(ordinal + 1)) {
+			float score = 0f;
+			for (int s = 0, offset = ordinal * m, tableOffset = 0; s < m; s++, tableOffset += ProductQuantizer.CENTROIDS) {
+				score += table[tableOffset + (data[offset + s] & 0xFF)];
+			}
+			if (score > results.threshold()) {
+				results.offer(ordinal, score);
+			}
+		}
+	}
+
+	@Override
+	public long label(int ordinal) {
+		return labels[ordinal];
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public int dimension() {
+		return quantizer.dimension();
+	}
+
+	/**
+	* حجم الأكواد والمعرفات في الذاكرة بالبايت.
+	*/
+	public long memoryBytes() {
+		return (long) size * (subspaces + Long.BYTES);
+	}
+
+	// -------------------------------------------------------------
+	// الحفظ والتحميل (ملف جانبي)
+	// -------------------------------------------------------------
+
+	@Override
+	public void save(File file) throws IOException {
+		File tempFile = new File(file.getPath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), IndexFiles.IO_CHUNK_BYTES))) {
+			out.writeInt(FILE_MAGIC);
+			out.writeInt(FILE_VERSION);
+			quantizer.writeTo(out);
+			out.writeInt(size);
+			for (int i = 0; i < size; i++) {
+				out.writeLong(labels[i]);
+			}
+			out.write(codes, 0, size * subspaces);
+		}
+		if (!tempFile.renameTo(file)) {
+			throw new IOException("Failed to replace index file: " + file);
+		}
+	}
+
+	/**
+	* يحمل فهرسًا محفوظًا مسبقًا بواسطة save. الأبعاد وعدد الأكواد يُتحقق منها مقابل طول الملف قبل التخصيص،
+	* فالملف التالف أو المقطوع يعطي IOException (فيُعاد التدريب). كل بايت كود صالح (256 مركزًا).
+	* @throws IOException إذا كان الملف تالفًا أو من إصدار غير مدعوم.
+	*/
+	public static ProductQuantizedIndex load(File file) throws IOException {
+		long remaining = file.length();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), IndexFiles.IO_CHUNK_BYTES))) {
+			if (remaining < 8 || in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+				throw new IOException("Unsupported PQ index file: " + file);
+			}
+			remaining -= 8;
+			ProductQuantizer quantizer = ProductQuantizer.readFrom(in, remaining);
+			remaining -= ProductQuantizer.serializedBytes(quantizer.dimension());
+			ProductQuantizedIndex index = new ProductQuantizedIndex(quantizer);
+			int size = in.readInt();
+			if (size < 0 || size * (8L + index.subspaces) > remaining - 4) {
+				throw new IOException("Corrupt PQ index size " + size + ": " + file);
+			}
+			index.ensureCapacity(size);
+			for (int i = 0; i < size; i++) {
+				index.labels[i] = in.readLong();
+			}
+			in.readFully(index.codes, 0, size * index.subspaces);
+			index.size = size;
+			return index;
+		}
+	}
+
+	private void ensureCapacity(int required) {
+		if (required <= labels.length) return;
+		int capacity = Math.max(labels.length * 2, required);
+		codes = Arrays.copyOf(codes, capacity * subspaces);
+		labels = Arrays.copyOf(labels, capacity);
+	}
+}
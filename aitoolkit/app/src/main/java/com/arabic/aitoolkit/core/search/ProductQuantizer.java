@@ -0,0 +1,134 @@
+package com.arabic.aitoolkit.core.search;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+* ProductQuantizer: يقسم المتجه إلى subspaces جزءًا متساويًا، ولكل جزء دفتر رموز (Codebook)
+* من 256 مركزًا مدربًا بـ k-means. يُرمَّز كل متجه ببايت واحد لكل جزء (16 إلى 48 بايت لمتجه 384).
+* عند الاستعلام تُبنى جداول بحث (Lookup Tables) لكل جزء تحوي الضرب النقطي بين جزء الاستعلام
+* وكل مركز، فيصبح تقدير التشابه مجموع subspaces قيمة من الجداول (Asymmetric Distance).
+*/
+public class ProductQuantizer {
+
+	public static final int CENTROIDS = 256; // مركز لكل جزء، يرمَّز ببايت واحد
+	private static final int TRAINING_ITERATIONS = 8;
+
+	private final int dimension;
+	private final int subspaces;
+	private final int subDimension;
+	// المراكز: [subspace][centroid][subDimension] في مصفوفة متصلة
+	private final float[] codebooks;
+
+	private ProductQuantizer(int dimension, int subspaces, float[] codebooks) {
+		this.dimension = dimension;
+		this.subspaces = subspaces;
+		this.subDimension = dimension / subspaces;
+		this.codebooks = codebooks;
+	}
+
+	/**
+	* يدرب دفاتر الرموز على عينة من المتجهات المطبعة.
+	* @param vectors العينة في مصفوفة متصلة.
+	* @param count عدد متجهات العينة.
+	* @param dimension أبعاد المتجه.
+	* @param subspaces عدد الأجزاء (يجب أن يقسم dimension).
+	*/
+	public static ProductQuantizer train(float[] vectors, int count, int dimension, int subspaces, long seed) {
+		if (subspaces <= 0 || dimension % subspaces != 0) {
+			throw new IllegalArgumentException("Subspaces " + subspaces + " must divide dimension " + dimension);
+		}
+		int subDimension = dimension / subspaces;
+		float[] codebooks = new float[subspaces * CENTROIDS * subDimension];
+		float[] subVectors = new float[count * subDimension];
+		Random random = new Random(seed);
+		for (int s = 0; s < subspaces; s++) {
+			// نسخ الجزء s من كل متجه إلى مصفوفة متصلة للتدريب
+			for (int i = 0; i < count; i++) {
+				System.arraycopy(vectors, i * dimension + s * subDimension, subVectors, i * subDimension, subDimension);
+			}
+			float[] centroids = KMeans.train(subVectors, count, subDimension, CENTROIDS, TRAINING_ITERATIONS, false, random);
+			System.arraycopy(centroids, 0, codebooks, s * CENTROIDS * subDimension, centroids.length);
+		}
+		return new ProductQuantizer(dimension, subspaces, codebooks);
+	}
+
+	/**
+	* يرمّز متجهًا إلى subspaces بايت (أقرب مركز في كل جزء).
+	*/
+	public void encode(float[] vector, byte[] out, int outOffset) {
+		for (int s = 0; s < subspaces; s++) {
+			int centroid = KMeans.nearest(codebooks, s * CENTROIDS * subDimension, CENTROIDS, subDimension,
+			vector, s * subDimension);
+			out[outOffset + s] = (byte) centroid;
+		}
+	}
+
+	/**
+	* يبني جدول الضرب النقطي بين أجزاء الاستعلام وكل المراكز.
+	* @param query الاستعلام المطبع.
+	* @param table جدول بطول subspaces * CENTROIDS؛ الخانة [s * 256 + c] = جزء_s(query) · مركز_c.
+	*/
+	public void computeInnerProductTable(float[] query, float[] table) {
+		for (int s = 0; s < subspaces; s++) {
+			int queryOffset = s * subDimension;
+			int codebookOffset = s * CENTROIDS * subDimension;
+			for (int c = 0; c < CENTROIDS; c++) {
+				int centroidOffset = codebookOffset + c * subDimension;
+				float sum = 0f;
+				for (int d = 0; d < subDimension; d++) {
+					sum += query[queryOffset + d] * codebooks[centroidOffset + d];
+				}
+				table[s * CENTROIDS + c] = sum;
+			}
+		}
+	}
+
+	public int dimension() {
+		return dimension;
+	}
+
+	public int subspaces() {
+		return subspaces;
+	}
+
+	// -------------------------------------------------------------
+	// الحفظ والتحميل
+	// -------------------------------------------------------------
+
+	void writeTo(DataOutputStream out) throws IOException {
+		out.writeInt(dimension);
+		out.writeInt(subspaces);
+		for (float value : codebooks) {
+			out.writeFloat(value);
+		}
+	}
+
+	/**
+	* @param remaining البايتات المتبقية في الملف، فلا تُخصص دفاتر رموز أكبر منه.
+	*/
+	static ProductQuantizer readFrom(DataInputStream in, long remaining) throws IOException {
+		int dimension = in.readInt();
+		int subspaces = in.readInt();
+		if (dimension <= 0 || subspaces <= 0 || dimension % subspaces != 0) {
+			throw new IOException("Corrupt product quantizer header: dim=" + dimension + ", subspaces=" + subspaces);
+		}
+		if (serializedBytes(dimension) > remaining) {
+			throw new IOException("Truncated product quantizer: dim=" + dimension);
+		}
+		float[] codebooks = new float[dimension * CENTROIDS];
+		for (int i = 0; i < codebooks.length; i++) {
+			codebooks[i] = in.readFloat();
+		}
+		return new ProductQuantizer(dimension, subspaces, codebooks);
+	}
+
+	/**
+	* حجم writeTo بالبايت: البعد وعدد الأجزاء ثم dimension * CENTROIDS قيمة float.
+	*/
+	static long serializedBytes(int dimension) {
+		return 8 + (long) dimension * CENTROIDS * 4;
+	}
+}
@@ -0,0 +1,111 @@
+package com.arabic.aitoolkit.core.search;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+* QueryCache: ذاكرة مؤقتة LRU محدودة للأسئلة المتكررة، مفتاحها نص السؤال بعد تطبيعه (انظر normalize).
+* لكل سؤال تحفظ:
+* - متجه السؤال: لا يتغير بتغير الفهرس، فيُعاد استخدامه دائمًا ويوفر الترميز والاستدلال.
+* - أفضل النتائج مع رقم جيل الفهرس (IndexSnapshot.generation) وإعدادات البحث التي أنتجتها:
+*   أي إضافة أو حذف يرفع الجيل، فلا تُعاد نتائج قديمة أبدًا.
+* آمنة للاستخدام من عدة خيوط.
+* @param <R> نوع النتائج المحفوظة (مثل List<SearchResult>)؛ يجب ألا تُعدل بعد حفظها.
+*/
+public class QueryCache<R> {
+
+	public static final int DEFAULT_CAPACITY = 64;
+
+	private final Map<String, CachedAnswer<R>> entries;
+
+	public QueryCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	* @param capacity أقصى عدد من الأسئلة المحفوظة؛ يُحذف الأقدم استخدامًا عند تجاوزه.
+	*/
+	public QueryCache(final int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Cache capacity must be positive: " + capacity);
+		}
+		this.entries = new LinkedHashMap<String, CachedAnswer<R>>(capacity * 2, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedAnswer<R>> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	* يطبّع السؤال ليصبح مفتاحًا: حذف التشكيل والتطويل، توحيد أشكال الألف والياء والتاء المربوطة،
+	* الأرقام اللاتينية، تصغير الحروف اللاتينية، ودمج المسافات وعلامات الترقيم المتتالية في مسافة واحدة.
+	*/
+	public static String normalize(String query) {
+		StringBuilder key = new StringBuilder(query.length());
+		boolean pendingSpace = false;
+		for (int i = 0, length = query.length(); i < length; i++) {
+			char c = LexicalAnalyzer.normalize(query.charAt(i));
+			if (c == 0) continue;
+			if (Character.isLetterOrDigit(c)) {
+				if (pendingSpace && key.length() > 0) {
+					key.append(' ');
+				}
+				key.append(c);
+				pendingSpace = false;
+			} else {
+				pendingSpace = true;
+			}
+		}
+		return key.toString();
+	}
+
+	/**
+	* @return النتائج المحفوظة إذا أُنتجت من الجيل نفسه وبالإعدادات نفسها، وإلا null.
+	*/
+	public synchronized R getResults(String key, long generation, SearchOptions options) {
+		CachedAnswer<R> entry = entries.get(key);
+		if (entry == null || entry.results == null || entry.generation != generation || !entry.options.equals(options)) {
+			return null;
+		}
+		return entry.results;
+	}
+
+	/**
+	* @return متجه السؤال المحفوظ (لا يُعدل)، أو null.
+	*/
+	public synchronized float[] getEmbedding(String key) {
+		CachedAnswer<R> entry = entries.get(key);
+		return entry == null ? null : entry.embedding;
+	}
+
+	/**
+	* يحفظ متجه السؤال ونتائجه.
+	* @param generation جيل الفهرس المقروء قبل البحث (قراءته قبل البحث تجعل أي تعديل متزامن يُبطل النتيجة).
+	*/
+	public synchronized void put(String key, float[] embedding, long generation, SearchOptions options, R results) {
+		entries.put(key, new CachedAnswer<>(embedding, generation, options, results));
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	private static final class CachedAnswer<R> {
+		final float[] embedding;
+		final long generation;
+		final SearchOptions options;
+		final R results;
+
+		CachedAnswer(float[] embedding, long generation, SearchOptions options, R results) {
+			this.embedding = embedding;
+			this.generation = generation;
+			this.options = options;
+			this.results = results;
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package com.arabic.aitoolkit.core.search;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+* ScalarQuantizedIndex: فهرس مضغوط يخزن كل متجه كأكواد int8 (بايت لكل بُعد) مع معامل قياس
+* واحد لكل متجه، أي ربع حجم float32 تقريبًا (384 + 4 بايت بدل 1536 بايت).
+* يحسب البحث الضرب النقطي بأعداد صحيحة ثم يضربه في معاملي القياس لتقدير تشابه جيب التمام.
+* الدرجات تقريبية، لذا يُفضَّل إعادة ترتيب القائمة المختصرة بالمتجهات الدقيقة.
+*/
+public class ScalarQuantizedIndex implements VectorIndex {
+
+	private static final int DEFAULT_INITIAL_CAPACITY = 1024;
+	private static final float CODE_RANGE = 127f; // أكواد متناظرة في المجال [-127, 127]
+
+	private final int dimension;
+	private byte[] codes;
+	private float[] scales;
+	private int size;
+
+	public ScalarQuantizedIndex(int dimension) {
+		this(dimension, DEFAULT_INITIAL_CAPACITY);
+	}
+
+	public ScalarQuantizedIndex(int dimension, int initialCapacity) {
+		if (dimension <= 0) {
+			throw new IllegalArgumentException("Dimension must be positive: " + dimension);
+		}
+		int capacity = Math.max(1, initialCapacity);
+		this.dimension = dimension;
+		this.codes = new byte[capacity * dimension];
+		this.scales = new float[capacity];
+	}
+
+	// -------------------------------------------------------------
+	// الإضافة
+	// -------------------------------------------------------------
+
+	@Override
+	public int add(float[] vector) {
+		if (vector.length != dimension) {
+			throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + vector.length);
+		}
+		return add(FloatBuffer.wrap(vector));
+	}
+
+	/**
+	* يكمّم متجهًا مباشرة من FloatBuffer (مثل BLOB قاعدة البيانات) دون نسخه إلى float[].
+	* @return ترتيب المتجه داخل الفهرس.
+	*/
+	public int add(FloatBuffer vector) {
+		if (vector.remaining() != dimension) {
+			throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + vector.remaining());
+		}
+		ensureCapacity(size + 1);
+		scales[size] = quantize(vector, codes, size * dimension);
+		return size++;
+	}
+
+	// -------------------------------------------------------------
+	// البحث
+	// -------------------------------------------------------------
+
+	/**
+	* مسح خطي بضرب نقطي صحيح (int8 x int8 -> int32).
+	* @param unitQuery متجه الاستعلام بعد تطبيعه.
+	*/
+	@Override
+	public void search(float[] unitQuery, TopKHeap results) {
+		byte[] queryCodes = new byte[dimension];
+		float queryScale = quantize(FloatBuffer.wrap(unitQuery), queryCodes, 0);
+		if (queryScale == 0f) return;
+
+		final SimilarityKernel kernel = SimilarityKernel.fastestInt8();
+		final byte[] data = codes;
+		final int dim = dimension;
+		final int count = size;
+		for (int ordinal = 0, offset = 0; ordinal < count; ordinal++, offset += dim) {
+			int dot = kernel.dot(queryCodes, data, offset, dim);
+			float score = dot * queryScale * scales[ordinal];
+			if (score > results.threshold()) {
+				results.offer(ordinal, score);
+			}
+		}
+	}
+
+	@Override
+	public void search(float[] unitQuery, TopKHeap results, SearchOptions options, BitSet accepted) {
+		byte[] queryCodes = new byte[dimension];
+		float queryScale = quantize(FloatBuffer.wrap(unitQuery), queryCodes, 0);
+		if (queryScale == 0f) return;
+
+		final SimilarityKernel kernel = SimilarityKernel.fastestInt8();
+		final byte[] data = codes;
+		final int dim = dimension;
+		final int count = size;
+		for (int ordinal = accepted.nextSetBit(0); ordinal >= 0 && ordinal < count; ordinal = accepted.nextSetBit(ordinal + 1)) {
+			float score = kernel.dot(queryCodes, data, ordinal * dim, dim) * queryScale * scales[ordinal];
+			if (score > results.threshold()) {
+				results.offer(ordinal, score);
+			}
+		}
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public int dimension() {
+		return dimension;
+	}
+
+	/**
+	* حجم الأكواد ومعاملات القياس في الذاكرة بالبايت (للمقارنة مع float32).
+	*/
+	public long memoryBytes() {
+		return (long) size * (dimension + Float.BYTES);
+	}
+
+	// -------------------------------------------------------------
+	// التكميم (Quantization)
+	// -------------------------------------------------------------
+
+	/**
+	* يطبّع المتجه ثم يكممه تكميمًا متناظرًا إلى int8 بمعامل قياس خاص به.
+	* لا يغير موضع (position) المخزن المؤقت.
+	* @param vector المتجه الأصلي (بأي طول).
+	* @param out مصفوفة الأكواد الهدف.
+	* @param offset موضع الكتابة داخل out.
+	* @return معامل القياس بحيث أن: القيمة المطبعة ≈ الكود × المعامل (0 للمتجه الصفري).
+	*/
+	public static float quantize(FloatBuffer vector, byte[] out, int offset) {
+		int start = vector.position();
+		int length = vector.remaining();
+		float sumSquares = 0f;
+		float maxAbs = 0f;
+		for (int i = 0; i < length; i++) {
+			float value = vector.get(start + i);
+			sumSquares += value * value;
+			maxAbs = Math.max(maxAbs, Math.abs(value));
+		}
+		if (sumSquares == 0f) {
+			Arrays.fill(out, offset, offset + length, (byte) 0);
+			return 0f;
+		}
+		float inverseNorm = (float) (1.0 / Math.sqrt(sumSquares));
+		float scale = maxAbs * inverseNorm / CODE_RANGE;
+		float toCode = inverseNorm / scale;
+		for (int i = 0; i < length; i++) {
+			out[offset + i] = (byte) Math.round(vector.get(start + i) * toCode);
+		}
+		return scale;
+	}
+
+	private void ensureCapacity(int required) {
+		if (required <= scales.length) return;
+		int capacity = Math.max(scales.length * 2, required);
+		codes = Arrays.copyOf(codes, capacity * dimension);
+		scales = Arrays.copyOf(scales, capacity);
+	}
+}
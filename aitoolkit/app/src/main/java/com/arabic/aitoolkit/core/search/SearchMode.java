@@ -0,0 +1,52 @@
+package com.arabic.aitoolkit.core.search;
+
+/**
+* أنماط الفهرسة والبحث التي يدعمها VectorSearchManager.
+*/
+public enum SearchMode {
+
+	/** مسح خطي دقيق لكل المتجهات (FlatVectorIndex). */
+	EXACT(0),
+
+	/** مسح دقيق مقسم على أنوية المعالج عبر ForkJoinPool للمجموعات الكبيرة (ParallelFlatVectorIndex). */
+	PARALLEL_EXACT(0),
+
+	/** مسح دقيق مباشرة على ملف متجهات مربوط بالذاكرة (FileChannel.map) دون تحميل المتجهات إلى الكومة (MappedVectorStore). */
+	MAPPED(0),
+
+	/** بحث تقريبي عبر رسم HNSW البياني مع حفظه في تخزين التطبيق (HnswIndex). */
+	HNSW(0),
+
+	/** مسح أقرب nprobe مجموعة k-means فقط بدرجات دقيقة، مع حفظ المراكز والمجموعات (IvfIndex). */
+	IVF(0),
+
+	/** مسح أكواد int8 المضغوطة ثم إعادة ترتيب القائمة المختصرة بالمتجهات الدقيقة (ScalarQuantizedIndex). */
+	INT8(4),
+
+	/** مسح أكواد الإشارة الثنائية (48 بايت لمتجه 384) بمسافة هامينغ ثم إعادة ترتيب قائمة مختصرة واسعة (BinaryQuantizedIndex). */
+	BINARY(40),
+
+	/** مسح أكواد التكميم الجزئي بجداول ADC مع حفظ دفاتر الرموز في ملف جانبي (ProductQuantizedIndex). */
+	PQ(20);
+
+	// حجم القائمة المختصرة لإعادة الترتيب كمضاعف لعدد النتائج (0 = الدرجات دقيقة)
+	private final int rerankFactor;
+
+	SearchMode(int rerankFactor) {
+		this.rerankFactor = rerankFactor;
+	}
+
+	/**
+	* @return true إذا كانت درجات الفهرس تقريبية وتحتاج إعادة ترتيب بالمتجهات الدقيقة.
+	*/
+	public boolean isRerankRequired() {
+		return rerankFactor > 0;
+	}
+
+	/**
+	* @return مضاعف عدد النتائج لحجم القائمة المختصرة قبل إعادة الترتيب.
+	*/
+	public int getRerankFactor() {
+		return rerankFactor;
+	}
+}
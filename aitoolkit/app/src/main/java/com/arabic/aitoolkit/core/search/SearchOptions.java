@@ -0,0 +1,178 @@
+package com.arabic.aitoolkit.core.search;
+
+import com.arabic.aitoolkit.core.database.entities.ExtractedText;
+
+/**
+* SearchOptions: إعدادات استعلام بحث واحد (عدد النتائج، عدد مجموعات IVF الممسوحة، efSearch لـ HNSW، الحد الأدنى للتشابه،
+* ودمج البحث النصي BM25 مع الدلالي، وتقييد البحث بمصدر أو فترة زمنية).
+* الكائن غير قابل للتعديل؛ دوال with تعيد نسخة جديدة.
+*/
+public final class SearchOptions {
+
+	public static final int DEFAULT_MAX_RESULTS = 5;
+
+	public static final SearchOptions DEFAULT =
+	new SearchOptions(DEFAULT_MAX_RESULTS, IvfIndex.DEFAULT_NPROBE, 0, Float.NEGATIVE_INFINITY, false,
+	null, Long.MIN_VALUE, Long.MAX_VALUE);
+
+	private final int maxResults;
+	private final int nprobe;
+	private final int efSearch; // 0 = قيمة الفهرس نفسه
+	private final float minScore;
+	private final boolean hybrid;
+	private final String sourceReference; // null = كل المصادر
+	private final long fromTimestamp; // شامل
+	private final long toTimestamp; // غير شامل
+
+	private SearchOptions(int maxResults, int nprobe, int efSearch, float minScore, boolean hybrid,
+	String sourceReference, long fromTimestamp, long toTimestamp) {
+		if (maxResults < 1 || nprobe < 1) {
+			throw new IllegalArgumentException("maxResults and nprobe must be positive.");
+		}
+		if (efSearch < 0) {
+			throw new IllegalArgumentException("efSearch must not be negative: " + efSearch);
+		}
+		if (fromTimestamp > toTimestamp) {
+			throw new IllegalArgumentException("Empty time range: " + fromTimestamp + " > " + toTimestamp);
+		}
+		this.maxResults = maxResults;
+		this.nprobe = nprobe;
+		this.efSearch = efSearch;
+		this.minScore = minScore;
+		this.hybrid = hybrid;
+		this.sourceReference = sourceReference;
+		this.fromTimestamp = fromTimestamp;
+		this.toTimestamp = toTimestamp;
+	}
+
+	/**
+	* @param maxResults عدد النتائج القصوى (K).
+	*/
+	public SearchOptions withMaxResults(int maxResults) {
+		return new SearchOptions(maxResults, nprobe, efSearch, minScore, hybrid, sourceReference, fromTimestamp, toTimestamp);
+	}
+
+	/**
+	* @param nprobe عدد مجموعات IVF الممسوحة: قيمة أكبر = استرجاع أعلى وزمن أطول.
+	*/
+	public SearchOptions withNprobe(int nprobe) {
+		return new SearchOptions(maxResults, nprobe, efSearch, minScore, hybrid, sourceReference, fromTimestamp, toTimestamp);
+	}
+
+	/**
+	* @param efSearch عرض قائمة مرشحي HNSW لهذا الاستعلام: قيمة أكبر = استرجاع أعلى وزمن أطول
+	* (0 = قيمة الفهرس، HnswIndex.getEfSearch()). لا تؤثر على الأنماط الأخرى.
+	*/
+	public SearchOptions withEfSearch(int efSearch) {
+		return new SearchOptions(maxResults, nprobe, efSearch, minScore, hybrid, sourceReference, fromTimestamp, toTimestamp);
+	}
+
+	/**
+	* @param minScore تُستبعد النتائج ذات التشابه الأقل من هذه القيمة.
+	*/
+	public SearchOptions withMinScore(float minScore) {
+		return new SearchOptions(maxResults, nprobe, efSearch, minScore, hybrid, sourceReference, fromTimestamp, toTimestamp);
+	}
+
+	/**
+	* @param hybrid true لدمج ترتيب BM25 للكلمات المطابقة حرفيًا (أرقام القطع، الأسماء) مع الترتيب الدلالي
+	* بالدمج بمقلوب الرتبة (RRF). الترتيب حينها بدرجة الدمج (SearchResult.getRankingScore)، ويبقى
+	* getSimilarityScore تشابهًا (NaN للنص المطابق حرفيًا فقط). minScore يُطبق على المرشحين الدلاليين،
+	* وإذا حُدد فلا يُقبل المرشح النصي إلا إذا حوى نصف مصطلحات الاستعلام على الأقل.
+	*/
+	public SearchOptions withHybrid(boolean hybrid) {
+		return new SearchOptions(maxResults, nprobe, efSearch, minScore, hybrid, sourceReference, fromTimestamp, toTimestamp);
+	}
+
+	/**
+	* يقصر البحث على نصوص مصدر واحد ("هذا المستند فقط").
+	* @param sourceReference مرجع المصدر كما في ExtractedText.getSourceReference()، أو null لكل المصادر.
+	*/
+	public SearchOptions withSourceReference(String sourceReference) {
+		return new SearchOptions(maxResults, nprobe, efSearch, minScore, hybrid, sourceReference, fromTimestamp, toTimestamp);
+	}
+
+	/**
+	* يقصر البحث على النصوص المدخلة في فترة زمنية ("مسوحات الأسبوع الماضي فقط").
+	* @param fromTimestamp بداية الفترة بالميلي ثانية (شاملة).
+	* @param toTimestamp نهاية الفترة بالميلي ثانية (غير شاملة).
+	*/
+	public SearchOptions withTimeRange(long fromTimestamp, long toTimestamp) {
+		return new SearchOptions(maxResults, nprobe, efSearch, minScore, hybrid, sourceReference, fromTimestamp, toTimestamp);
+	}
+
+	public int getMaxResults() {
+		return maxResults;
+	}
+
+	public int getNprobe() {
+		return nprobe;
+	}
+
+	public int getEfSearch() {
+		return efSearch;
+	}
+
+	public float getMinScore() {
+		return minScore;
+	}
+
+	public boolean isHybrid() {
+		return hybrid;
+	}
+
+	public String getSourceReference() {
+		return sourceReference;
+	}
+
+	public long getFromTimestamp() {
+		return fromTimestamp;
+	}
+
+	public long getToTimestamp() {
+		return toTimestamp;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) return true;
+		if (!(other instanceof SearchOptions)) return false;
+		SearchOptions that = (SearchOptions) other;
+		return maxResults == that.maxResults
+		&& nprobe == that.nprobe
+		&& efSearch == that.efSearch
+		&& Float.compare(minScore, that.minScore) == 0
+		&& hybrid == that.hybrid
+		&& fromTimestamp == that.fromTimestamp
+		&& toTimestamp == that.toTimestamp
+		&& (sourceReference == null ? that.sourceReference == null : sourceReference.equals(that.sourceReference));
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = maxResults;
+		hash = 31 * hash + nprobe;
+		hash = 31 * hash + efSearch;
+		hash = 31 * hash + Float.floatToIntBits(minScore);
+		hash = 31 * hash + (hybrid ? 1 : 0);
+		hash = 31 * hash + (sourceReference == null ? 0 : sourceReference.hashCode());
+		hash = 31 * hash + Long.hashCode(fromTimestamp);
+		hash = 31 * hash + Long.hashCode(toTimestamp);
+		return hash;
+	}
+
+	/**
+	* @return true إذا كان البحث مقيدًا بمصدر أو بفترة زمنية.
+	*/
+	public boolean hasFilter() {
+		return sourceReference != null || fromTimestamp != Long.MIN_VALUE || toTimestamp != Long.MAX_VALUE;
+	}
+
+	/**
+	* @return true إذا كان النص يحقق قيود المصدر والفترة الزمنية.
+	*/
+	public boolean matches(ExtractedText text) {
+		return (sourceReference == null || sourceReference.equals(text.getSourceReference()))
+		&& text.getTimestamp() >= fromTimestamp && text.getTimestamp() < toTimestamp;
+	}
+}
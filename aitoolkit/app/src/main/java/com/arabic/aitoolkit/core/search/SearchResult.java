@@ -4,12 +4,15 @@ import com.arabic.aitoolkit.core.database.entities.ExtractedText;
 
 /**
  * يمثل نتيجة فردية من عملية البحث الدلالي.
- * يجمع النص المطابق ودرجة تشابهه مع الاستعلام.
+ * يجمع النص المطابق ودرجة تشابهه مع الاستعلام، والمقطع الذي طابق داخله (getPassage).
  */
 public class SearchResult {
     
     private final ExtractedText extractedText;
-    private final float similarityScore; // درجة التشابه (بين 0.0 و 1.0)
+    private final Passage passage; // المقطع الأكثر صلة داخل النص (النص كاملًا إذا لم يحدد)
+    private final float similarityScore; // درجة التشابه (بين 0.0 و 1.0)، أو NaN إذا طابق النص حرفيًا فقط
+    private final float rankingScore; // الدرجة التي رُتبت بها النتائج (درجة الدمج RRF في البحث الهجين)
+    private final boolean partial; // true إذا جاءت النتيجة أثناء تحميل قاعدة المعرفة
 
     /**
      * منشئ لنتيجة البحث.
@@ -17,8 +20,34 @@ public class SearchResult {
      * @param similarityScore درجة التشابه بين متجه الاستعلام ومتجه النص.
      */
     public SearchResult(ExtractedText extractedText, float similarityScore) {
-        this.extractedText = extractedText;
+        this(extractedText, similarityScore, false);
+    }
+
+    /**
+     * @param partial true إذا كان تحميل قاعدة المعرفة ما زال جاريًا (قد تظهر نتائج أفضل لاحقًا).
+     */
+    public SearchResult(ExtractedText extractedText, float similarityScore, boolean partial) {
+        this(Passage.whole(extractedText), similarityScore, partial);
+    }
+
+    /**
+     * @param passage المقطع المطابق؛ النص الأصلي هو passage.getText().
+     */
+    public SearchResult(Passage passage, float similarityScore, boolean partial) {
+        this(passage, similarityScore, similarityScore, partial);
+    }
+
+    /**
+     * نتيجة بحث هجين: تُرتب بدرجة الدمج، ويبقى التشابه منفصلًا للعرض.
+     * @param similarityScore تشابه المقطع مع الاستعلام، أو Float.NaN إذا لم يطابق إلا نصيًا (BM25).
+     * @param rankingScore درجة الدمج بمقلوب الرتبة (RRF)؛ ليست تشابهًا ولا نسبة مئوية.
+     */
+    public SearchResult(Passage passage, float similarityScore, float rankingScore, boolean partial) {
+        this.extractedText = passage.getText();
+        this.passage = passage;
         this.similarityScore = similarityScore;
+        this.rankingScore = rankingScore;
+        this.partial = partial;
     }
 
     // المسندات (Getters)
@@ -27,7 +56,33 @@ public class SearchResult {
         return extractedText;
     }
 
+    public Passage getPassage() {
+        return passage;
+    }
+
+    /**
+     * نص المقطع المطابق فقط، وهو أقصر من النص كاملًا وأنسب لعرض الإجابة.
+     */
+    public String getPassageText() {
+        return passage.getContent();
+    }
+
     public float getSimilarityScore() {
         return similarityScore;
     }
+
+    /**
+     * @return false إذا جاءت النتيجة من المطابقة النصية وحدها، فلا تشابه يُعرض لها.
+     */
+    public boolean hasSimilarityScore() {
+        return !Float.isNaN(similarityScore);
+    }
+
+    public float getRankingScore() {
+        return rankingScore;
+    }
+
+    public boolean isPartial() {
+        return partial;
+    }
 }
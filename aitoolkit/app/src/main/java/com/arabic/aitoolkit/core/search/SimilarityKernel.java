@@ -0,0 +1,404 @@
+package com.arabic.aitoolkit.core.search;
+
+import java.nio.FloatBuffer;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+* SimilarityKernel: الحلقة الداخلية للضرب النقطي التي تتشاركها كل أنماط البحث.
+* التنفيذات متكافئة في النتيجة (مع فروق تقريب في ترتيب الجمع) وتختلف في شكل الحلقة:
+* - SCALAR: حلقة بسيطة بمجمّع واحد.
+* - UNROLLED_4 / UNROLLED_8: فك الحلقة مع عدة مجمّعات مستقلة، فتكسر سلسلة الاعتماد على مجمّع
+*   واحد ويستطيع المعالج تنفيذ عدة عمليات ضرب وجمع في الوقت نفسه.
+* أيها أسرع يعتمد على الجهاز ومترجم ART، لذلك يُقاس كل منها مرة واحدة عند أول استخدام، ويُختار
+* لكل نوع بيانات على حدة: fastest() لمتجهات float32 و fastestInt8() لأكواد int8.
+*/
+public enum SimilarityKernel {
+
+	SCALAR {
+		@Override
+		public float dot(float[] query, float[] data, int offset, int length) {
+			float sum = 0f;
+			for (int i = 0; i < length; i++) {
+				sum += query[i] * data[offset + i];
+			}
+			return sum;
+		}
+
+		@Override
+		public float dot(float[] query, FloatBuffer data, int offset, int length) {
+			float sum = 0f;
+			for (int i = 0; i < length; i++) {
+				sum += query[i] * data.get(offset + i);
+			}
+			return sum;
+		}
+
+		@Override
+		public int dot(byte[] query, byte[] data, int offset, int length) {
+			int sum = 0;
+			for (int i = 0; i < length; i++) {
+				sum += query[i] * data[offset + i];
+			}
+			return sum;
+		}
+	},
+
+	UNROLLED_4 {
+		@Override
+		public float dot(float[] query, float[] data, int offset, int length) {
+			float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+			int i = 0;
+			for (int end = length - 3; i < end; i += 4) {
+				int j = offset + i;
+				s0 += query[i] * data[j];
+				s1 += query[i + 1] * data[j + 1];
+				s2 += query[i + 2] * data[j + 2];
+				s3 += query[i + 3] * data[j + 3];
+			}
+			for (; i < length; i++) {
+				s0 += query[i] * data[offset + i];
+			}
+			return (s0 + s1) + (s2 + s3);
+		}
+
+		@Override
+		public float dot(float[] query, FloatBuffer data, int offset, int length) {
+			float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+			int i = 0;
+			for (int end = length - 3; i < end; i += 4) {
+				int j = offset + i;
+				s0 += query[i] * data.get(j);
+				s1 += query[i + 1] * data.get(j + 1);
+				s2 += query[i + 2] * data.get(j + 2);
+				s3 += query[i + 3] * data.get(j + 3);
+			}
+			for (; i < length; i++) {
+				s0 += query[i] * data.get(offset + i);
+			}
+			return (s0 + s1) + (s2 + s3);
+		}
+
+		@Override
+		public int dot(byte[] query, byte[] data, int offset, int length) {
+			int s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+			int i = 0;
+			for (int end = length - 3; i < end; i += 4) {
+				int j = offset + i;
+				s0 += query[i] * data[j];
+				s1 += query[i + 1] * data[j + 1];
+				s2 += query[i + 2] * data[j + 2];
+				s3 += query[i + 3] * data[j + 3];
+			}
+			for (; i < length; i++) {
+				s0 += query[i] * data[offset + i];
+			}
+			return s0 + s1 + s2 + s3;
+		}
+	},
+
+	UNROLLED_8 {
+		@Override
+		public float dot(float[] query, float[] data, int offset, int length) {
+			float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f, s4 = 0f, s5 = 0f, s6 = 0f, s7 = 0f;
+			int i = 0;
+			for (int end = length - 7; i < end; i += 8) {
+				int j = offset + i;
+				s0 += query[i] * data[j];
+				s1 += query[i + 1] * data[j + 1];
+				s2 += query[i + 2] * data[j + 2];
+				s3 += query[i + 3] * data[j + 3];
+				s4 += query[i + 4] * data[j + 4];
+				s5 += query[i + 5] * data[j + 5];
+				s6 += query[i + 6] * data[j + 6];
+				s7 += query[i + 7] * data[j + 7];
+			}
+			for (; i < length; i++) {
+				s0 += query[i] * data[offset + i];
+			}
+			return ((s0 + s1) + (s2 + s3)) + ((s4 + s5) + (s6 + s7));
+		}
+
+		@Override
+		public float dot(float[] query, FloatBuffer data, int offset, int length) {
+			float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f, s4 = 0f, s5 = 0f, s6 = 0f, s7 = 0f;
+			int i = 0;
+			for (int end = length - 7; i < end; i += 8) {
+				int j = offset + i;
+				s0 += query[i] * data.get(j);
+				s1 += query[i + 1] * data.get(j + 1);
+				s2 += query[i + 2] * data.get(j + 2);
+				s3 += query[i + 3] * data.get(j + 3);
+				s4 += query[i + 4] * data.get(j + 4);
+				s5 += query[i + 5] * data.get(j + 5);
+				s6 += query[i + 6] * data.get(j + 6);
+				s7 += query[i + 7] * data.get(j + 7);
+			}
+			for (; i < length; i++) {
+				s0 += query[i] * data.get(offset + i);
+			}
+			return ((s0 + s1) + (s2 + s3)) + ((s4 + s5) + (s6 + s7));
+		}
+
+		@Override
+		public int dot(byte[] query, byte[] data, int offset, int length) {
+			int s0 = 0, s1 = 0, s2 = 0, s3 = 0, s4 = 0, s5 = 0, s6 = 0, s7 = 0;
+			int i = 0;
+			for (int end = length - 7; i < end; i += 8) {
+				int j = offset + i;
+				s0 += query[i] * data[j];
+				s1 += query[i + 1] * data[j + 1];
+				s2 += query[i + 2] * data[j + 2];
+				s3 += query[i + 3] * data[j + 3];
+				s4 += query[i + 4] * data[j + 4];
+				s5 += query[i + 5] * data[j + 5];
+				s6 += query[i + 6] * data[j + 6];
+				s7 += query[i + 7] * data[j + 7];
+			}
+			for (; i < length; i++) {
+				s0 += query[i] * data[offset + i];
+			}
+			return s0 + s1 + s2 + s3 + s4 + s5 + s6 + s7;
+		}
+	};
+
+	private static final int BENCHMARK_DIMENSION = 384;
+	private static final int BENCHMARK_VECTORS = 1024;
+	private static final int BENCHMARK_CLUSTERS = 32; // بيانات متجمعة كي يكون لأقرب الجيران معنى
+	private static final int BENCHMARK_QUERIES = 8;
+	private static final int BENCHMARK_TOP_K = 10;
+	private static final int BENCHMARK_WARMUP_ROUNDS = 5; // كي يُترجم كل تنفيذ بالـ JIT قبل القياس
+	private static final int BENCHMARK_ROUNDS = 5;
+
+	private static volatile float benchmarkSink; // يمنع المترجم من حذف حلقات القياس
+
+	/**
+	* ضرب نقطي بين الاستعلام ومتجه داخل مصفوفة متصلة.
+	* @param offset موضع بداية المتجه داخل data.
+	*/
+	public abstract float dot(float[] query, float[] data, int offset, int length);
+
+	/**
+	* ضرب نقطي على مخزن مؤقت (مثل ملف مربوط بالذاكرة) بقراءة مطلقة لا تغير موضعه.
+	*/
+	public abstract float dot(float[] query, FloatBuffer data, int offset, int length);
+
+	/**
+	* ضرب نقطي صحيح لأكواد int8 (int8 x int8 -> int32).
+	*/
+	public abstract int dot(byte[] query, byte[] data, int offset, int length);
+
+	/**
+	* التنفيذ الأسرع لمتجهات float32 على هذا الجهاز؛ يُقاس مرة واحدة عند أول استدعاء (عشرات الميلي ثانية).
+	*/
+	public static SimilarityKernel fastest() {
+		return Selection.RESULT.floatKernel;
+	}
+
+	/**
+	* التنفيذ الأسرع لأكواد int8 (ScalarQuantizedIndex)، من القياس نفسه.
+	*/
+	public static SimilarityKernel fastestInt8() {
+		return Selection.RESULT.int8Kernel;
+	}
+
+	/**
+	* نتيجة القياس (الأزمنة والاستدعاء لكل تنفيذ) لتسجيلها؛ تطلق القياس إن لم يحدث بعد.
+	*/
+	static Benchmark selection() {
+		return Selection.RESULT;
+	}
+
+	/**
+	* يقيس كل التنفيذات على بيانات ثابتة: مسح float32 ومسح أكواد int8 للمتجهات نفسها، كلٌ بزمنه
+	* واستدعائه (Recall@10 مقابل الترتيب الدقيق بدقة double)، ويختار الأسرع لكل نوع على حدة.
+	*/
+	static Benchmark benchmark() {
+		Random random = new Random(42);
+		int dim = BENCHMARK_DIMENSION;
+		float[][] centers = new float[BENCHMARK_CLUSTERS][dim];
+		for (float[] center : centers) {
+			for (int i = 0; i < dim; i++) {
+				center[i] = (float) random.nextGaussian();
+			}
+		}
+		float[] vectors = new float[BENCHMARK_VECTORS * dim];
+		byte[] codes = new byte[vectors.length];
+		float[] scales = new float[BENCHMARK_VECTORS];
+		for (int v = 0; v < BENCHMARK_VECTORS; v++) {
+			float[] center = centers[random.nextInt(BENCHMARK_CLUSTERS)];
+			for (int i = 0; i < dim; i++) {
+				vectors[v * dim + i] = center[i] + 0.5f * (float) random.nextGaussian();
+			}
+			FlatVectorIndex.normalize(vectors, v * dim, dim);
+			scales[v] = ScalarQuantizedIndex.quantize(FloatBuffer.wrap(vectors, v * dim, dim), codes, v * dim);
+		}
+		float[][] queries = new float[BENCHMARK_QUERIES][dim];
+		byte[][] queryCodes = new byte[BENCHMARK_QUERIES][dim];
+		int[][] expected = new int[BENCHMARK_QUERIES][];
+		for (int q = 0; q < BENCHMARK_QUERIES; q++) {
+			int source = random.nextInt(BENCHMARK_VECTORS) * dim;
+			for (int i = 0; i < dim; i++) {
+				queries[q][i] = vectors[source + i] + 0.05f * (float) random.nextGaussian();
+			}
+			FlatVectorIndex.normalize(queries[q]);
+			ScalarQuantizedIndex.quantize(FloatBuffer.wrap(queries[q]), queryCodes[q], 0);
+			expected[q] = exactTopK(queries[q], vectors);
+		}
+
+		for (int round = 0; round < BENCHMARK_WARMUP_ROUNDS; round++) {
+			for (SimilarityKernel kernel : values()) {
+				benchmarkSink += scanFloat(kernel, queries, vectors, null);
+				benchmarkSink += scanInt8(kernel, queryCodes, codes, scales, null);
+			}
+		}
+
+		SimilarityKernel[] kernels = values();
+		long[] floatNanos = new long[kernels.length];
+		long[] int8Nanos = new long[kernels.length];
+		float[] floatRecall = new float[kernels.length];
+		float[] int8Recall = new float[kernels.length];
+		for (SimilarityKernel kernel : kernels) {
+			int k = kernel.ordinal();
+			floatNanos[k] = Long.MAX_VALUE;
+			int8Nanos[k] = Long.MAX_VALUE;
+			for (int round = 0; round < BENCHMARK_ROUNDS; round++) {
+				long start = System.nanoTime();
+				benchmarkSink += scanFloat(kernel, queries, vectors, null);
+				floatNanos[k] = Math.min(floatNanos[k], System.nanoTime() - start);
+				start = System.nanoTime();
+				benchmarkSink += scanInt8(kernel, queryCodes, codes, scales, null);
+				int8Nanos[k] = Math.min(int8Nanos[k], System.nanoTime() - start);
+			}
+			// الاستدعاء في تمريرة منفصلة كي لا تدخل الكومات في الأزمنة
+			TopKHeap[] found = new TopKHeap[BENCHMARK_QUERIES];
+			scanFloat(kernel, queries, vectors, found);
+			floatRecall[k] = recall(found, expected);
+			scanInt8(kernel, queryCodes, codes, scales, found);
+			int8Recall[k] = recall(found, expected);
+		}
+		Benchmark result = new Benchmark(kernels[argMin(floatNanos)], kernels[argMin(int8Nanos)],
+		floatNanos, int8Nanos, floatRecall, int8Recall);
+		return result;
+	}
+
+	/**
+	* مسح float32 لكل الاستعلامات.
+	* @param found إذا لم يكن null تُملأ بأفضل BENCHMARK_TOP_K لكل استعلام.
+	*/
+	private static float scanFloat(SimilarityKernel kernel, float[][] queries, float[] vectors, TopKHeap[] found) {
+		float checksum = 0f;
+		for (int q = 0; q < queries.length; q++) {
+			TopKHeap top = found == null ? null : (found[q] = new TopKHeap(BENCHMARK_TOP_K));
+			for (int v = 0, offset = 0; offset < vectors.length; v++, offset += BENCHMARK_DIMENSION) {
+				float score = kernel.dot(queries[q], vectors, offset, BENCHMARK_DIMENSION);
+				checksum += score;
+				if (top != null) top.offer(v, score);
+			}
+		}
+		return checksum;
+	}
+
+	/**
+	* مسح أكواد int8 كما في ScalarQuantizedIndex (ضرب صحيح ثم معامل قياس المتجه).
+	*/
+	private static float scanInt8(SimilarityKernel kernel, byte[][] queryCodes, byte[] codes, float[] scales,
+	TopKHeap[] found) {
+		float checksum = 0f;
+		for (int q = 0; q < queryCodes.length; q++) {
+			TopKHeap top = found == null ? null : (found[q] = new TopKHeap(BENCHMARK_TOP_K));
+			for (int v = 0, offset = 0; offset < codes.length; v++, offset += BENCHMARK_DIMENSION) {
+				float score = kernel.dot(queryCodes[q], codes, offset, BENCHMARK_DIMENSION) * scales[v];
+				checksum += score;
+				if (top != null) top.offer(v, score);
+			}
+		}
+		return checksum;
+	}
+
+	private static int[] exactTopK(float[] query, float[] vectors) {
+		TopKHeap top = new TopKHeap(BENCHMARK_TOP_K);
+		for (int v = 0, offset = 0; offset < vectors.length; v++, offset += BENCHMARK_DIMENSION) {
+			double sum = 0;
+			for (int i = 0; i < BENCHMARK_DIMENSION; i++) {
+				sum += (double) query[i] * vectors[offset + i];
+			}
+			top.offer(v, (float) sum);
+		}
+		int[] ordinals = new int[top.size()];
+		for (int i = 0; i < ordinals.length; i++) {
+			ordinals[i] = top.ordinalAt(i);
+		}
+		return ordinals;
+	}
+
+	private static float recall(TopKHeap[] found, int[][] expected) {
+		int hits = 0;
+		int total = 0;
+		for (int q = 0; q < expected.length; q++) {
+			for (int ordinal : expected[q]) {
+				for (int i = 0; i < found[q].size(); i++) {
+					if (found[q].ordinalAt(i) == ordinal) {
+						hits++;
+						break;
+					}
+				}
+			}
+			total += expected[q].length;
+		}
+		return total == 0 ? 1f : (float) hits / total;
+	}
+
+	private static int argMin(long[] values) {
+		int best = 0;
+		for (int i = 1; i < values.length; i++) {
+			if (values[i] < values[best]) best = i;
+		}
+		return best;
+	}
+
+	/**
+	* نتيجة القياس: الاختيار لكل نوع بيانات، والزمن والاستدعاء لكل تنفيذ (مفهرسة بـ ordinal()).
+	*/
+	static final class Benchmark {
+		final SimilarityKernel floatKernel;
+		final SimilarityKernel int8Kernel;
+		final long[] floatNanos;
+		final long[] int8Nanos;
+		final float[] floatRecall;
+		final float[] int8Recall;
+
+		Benchmark(SimilarityKernel floatKernel, SimilarityKernel int8Kernel, long[] floatNanos, long[] int8Nanos,
+		float[] floatRecall, float[] int8Recall) {
+			this.floatKernel = floatKernel;
+			this.int8Kernel = int8Kernel;
+			this.floatNanos = floatNanos;
+			this.int8Nanos = int8Nanos;
+			this.floatRecall = floatRecall;
+			this.int8Recall = int8Recall;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder report = new StringBuilder("float32 -> ").append(floatKernel).append(" (");
+			appendTimings(report, floatNanos, floatRecall);
+			report.append("); int8 -> ").append(int8Kernel).append(" (");
+			appendTimings(report, int8Nanos, int8Recall);
+			return report.append(')').toString();
+		}
+
+		private static void appendTimings(StringBuilder report, long[] nanos, float[] recall) {
+			for (SimilarityKernel kernel : values()) {
+				if (kernel.ordinal() > 0) report.append(", ");
+				report.append(kernel).append('=').append(nanos[kernel.ordinal()] / 1000).append("us")
+				.append(String.format(Locale.ROOT, " recall@%d=%.2f", BENCHMARK_TOP_K, recall[kernel.ordinal()]));
+			}
+		}
+	}
+
+	// تهيئة كسولة آمنة بين الخيوط (Holder): القياس يحدث عند أول بحث وليس عند تحميل الفئة.
+	// القياس دالة خالصة بلا واجهات أندرويد: أي استثناء هنا يجعل الفئة غير قابلة للاستخدام نهائيًا
+	private static final class Selection {
+		static final Benchmark RESULT = benchmark();
+	}
+}
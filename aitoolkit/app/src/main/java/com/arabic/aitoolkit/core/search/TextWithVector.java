@@ -4,7 +4,7 @@ import androidx.room.Embedded;
 import com.arabic.aitoolkit.core.database.entities.ExtractedText;
 
 /**
- * فئة POJO تجمع كيان ExtractedText مع متجه التضمين الخاص به.
+ * فئة POJO تجمع كيان ExtractedText مع أحد مقاطعه ومتجه التضمين الخاص به.
  * تستخدم في Room لجلب البيانات اللازمة لـ VectorSearchManager.
  */
 public class TextWithVector {
@@ -13,9 +13,13 @@ public class TextWithVector {
     @Embedded
     public ExtractedText text;
     
-    // يفترض أن هذا هو المتجه المخزن كـ JSON أو BLOB (في التطبيق الفعلي)
-    // أو كمرجع خارجي. هنا سنفترض أنه موجود كـ byte array (لأغراض Room/SQLite)
-    public byte[] embeddingVectorBytes; 
+    // موضع المقطع في textContent ومعرفه في text_passages
+    public long passageId;
+    public int startOffset;
+    public int endOffset;
+    
+    // المتجه المخزن كـ BLOB (مصفوفة بايت بترتيب الجهاز) في جدول text_passages
+    public byte[] embeddingVectorBytes;
     
     // المسندات (Getters) المطلوبة لعملية جلب البيانات (ليست ضرورية لـ Room POJO)
     // ولكن نتركها هنا لتوضيح كيفية استخدامها.
@@ -27,4 +31,8 @@ public class TextWithVector {
     public byte[] getEmbeddingVectorBytes() {
         return embeddingVectorBytes;
     }
+    
+    public Passage getPassage() {
+        return new Passage(passageId, text, startOffset, endOffset);
+    }
 }
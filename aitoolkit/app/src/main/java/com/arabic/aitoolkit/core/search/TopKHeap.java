@@ -0,0 +1,127 @@
+package com.arabic.aitoolkit.core.search;
+
+/**
+* TopKHeap: كومة صغرى (Min-Heap) محدودة السعة تحتفظ بأفضل K نتيجة أثناء المسح.
+* تعتمد على مصفوفتين أوليتين (int[] للمؤشرات و float[] للدرجات) لذلك لا تنشئ
+* أي كائن داخل حلقة البحث الساخنة، ويبقى جذر الكومة دائمًا أضعف نتيجة محتفظ بها.
+*/
+public final class TopKHeap {
+
+	private final int capacity;
+	private final int[] ordinals;
+	private final float[] scores;
+	private int size;
+
+	public TopKHeap(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Heap capacity must be positive: " + capacity);
+		}
+		this.capacity = capacity;
+		this.ordinals = new int[capacity];
+		this.scores = new float[capacity];
+	}
+
+	/**
+	* يعرض نتيجة على الكومة. تُقبل إذا لم تمتلئ الكومة بعد أو كانت أفضل من أضعف نتيجة فيها.
+	* @param ordinal ترتيب المتجه داخل الفهرس.
+	* @param score درجة التشابه.
+	* @return true إذا تم الاحتفاظ بالنتيجة.
+	*/
+	public boolean offer(int ordinal, float score) {
+		if (size < capacity) {
+			ordinals[size] = ordinal;
+			scores[size] = score;
+			siftUp(size++);
+			return true;
+		}
+		if (score <= scores[0]) {
+			return false;
+		}
+		ordinals[0] = ordinal;
+		scores[0] = score;
+		siftDown(0, size);
+		return true;
+	}
+
+	/**
+	* أضعف درجة محتفظ بها حاليًا، أو سالب ما لا نهاية إذا لم تمتلئ الكومة بعد.
+	* تستخدم كعتبة سريعة لتجاوز المرشحين قبل استدعاء offer.
+	*/
+	public float threshold() {
+		return size < capacity ? Float.NEGATIVE_INFINITY : scores[0];
+	}
+
+	public boolean isFull() {
+		return size == capacity;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	* يرتب محتوى الكومة تنازليًا حسب الدرجة (Heap Sort في المكان نفسه).
+	* بعد الاستدعاء تصبح ordinalAt(0) هي النتيجة الأفضل، ولا يجوز استدعاء offer قبل clear.
+	* @return عدد النتائج المرتبة.
+	*/
+	public int sortDescending() {
+		for (int end = size - 1; end > 0; end--) {
+			swap(0, end);
+			siftDown(0, end);
+		}
+		return size;
+	}
+
+	public int ordinalAt(int index) {
+		return ordinals[index];
+	}
+
+	public float scoreAt(int index) {
+		return scores[index];
+	}
+
+	// -------------------------------------------------------------
+	// عمليات الكومة الداخلية
+	// -------------------------------------------------------------
+
+	private void siftUp(int index) {
+		while (index > 0) {
+			int parent = (index - 1) >>> 1;
+			if (scores[parent] <= scores[index]) break;
+			swap(parent, index);
+			index = parent;
+		}
+	}
+
+	private void siftDown(int index, int limit) {
+		while (true) {
+			int left = (index << 1) + 1;
+			if (left >= limit) break;
+			int smallest = left;
+			int right = left + 1;
+			if (right < limit && scores[right] < scores[left]) {
+				smallest = right;
+			}
+			if (scores[index] <= scores[smallest]) break;
+			swap(index, smallest);
+			index = smallest;
+		}
+	}
+
+	private void swap(int a, int b) {
+		int ordinal = ordinals[a];
+		ordinals[a] = ordinals[b];
+		ordinals[b] = ordinal;
+		float score = scores[a];
+		scores[a] = scores[b];
+		scores[b] = score;
+	}
+}
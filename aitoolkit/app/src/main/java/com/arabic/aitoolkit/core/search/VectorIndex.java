@@ -0,0 +1,43 @@
+package com.arabic.aitoolkit.core.search;
+
+import java.util.BitSet;
+
+/**
+* واجهة موحدة لفهارس المتجهات التي يستخدمها VectorSearchManager.
+* كل متجه يضاف يحصل على ترتيب (Ordinal) متسلسل يبدأ من 0، ويُستخدم لربطه بالنص المقابل.
+* الدرجات المعادة هي تشابه جيب التمام، لذلك يجب تطبيع الاستعلام قبل البحث.
+*/
+public interface VectorIndex {
+
+	/**
+	* يضيف متجهًا إلى الفهرس.
+	* @return ترتيب المتجه داخل الفهرس.
+	*/
+	int add(float[] vector);
+
+	/**
+	* يبحث عن أقرب المتجهات إلى الاستعلام.
+	* @param unitQuery متجه الاستعلام بعد تطبيعه.
+	* @param results كومة النتائج؛ تحدد سعتها عدد النتائج K.
+	*/
+	void search(float[] unitQuery, TopKHeap results);
+
+	/**
+	* بحث مع إعدادات الاستعلام (مثل nprobe في IvfIndex). الفهارس التي لا تحتاج إعدادات
+	* إضافية تستخدم التنفيذ الافتراضي.
+	*/
+	default void search(float[] unitQuery, TopKHeap results, SearchOptions options) {
+		search(unitQuery, results);
+	}
+
+	/**
+	* بحث مقيد بمرشح مسبق: لا تُحسب درجة أي ترتيب غير موجود في accepted، والمرشح يُطبق داخل
+	* المسح أو التنقل في الرسم البياني (وليس على النتائج بعده)، فالمرشح الضيق أرخص من البحث الكامل.
+	* @param accepted الترتيبات المسموحة (لا تُعدل؛ الترتيبات خارج [0, size()) تُتجاهل).
+	*/
+	void search(float[] unitQuery, TopKHeap results, SearchOptions options, BitSet accepted);
+
+	int size();
+
+	int dimension();
+}
@@ -3,39 +3,115 @@ package com.arabic.aitoolkit.core.search;
 import android.util.Log;
 
 import com.arabic.aitoolkit.core.database.dao.SearchDao;
-import com.arabic.aitoolkit.core.embeddings.EmbeddingManager;
+import com.arabic.aitoolkit.core.database.entities.ExtractedText;
+import com.arabic.aitoolkit.core.database.entities.TextPassage;
+import com.arabic.aitoolkit.core.embedding.EmbeddingManager;
 
+import java.io.File;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 /**
 * VectorSearchManager: يدير فهرسة المتجهات والبحث الدلالي.
-* يحاكي وظيفة مكتبة البحث عن الأقرب (Nearest Neighbor Search).
+* يدعم البحث الدقيق (EXACT) والدقيق المتوازي على كل الأنوية (PARALLEL_EXACT) والدقيق على ملف مربوط بالذاكرة (MAPPED)، والتقريبي عبر فهرس HNSW محفوظ في تخزين التطبيق (HNSW) أو عبر مجموعات IVF (IVF)،
+* والمضغوط بأكواد int8 (INT8) أو بأكواد ثنائية (BINARY) أو بالتكميم الجزئي (PQ) مع إعادة ترتيب بالمتجهات الدقيقة من قاعدة البيانات.
+* في كل الأنماط يُبنى بجانب فهرس المتجهات فهرس نصي BM25، ويُدمج الترتيبان بمقلوب الرتبة (RRF) عند طلب البحث الهجين.
+* وحدة الفهرس الدلالي مقطع من النص (text_passages) لا النص كاملًا، فلا يضيع ما بعد نافذة النموذج في الصفحات الطويلة؛
+* النتائج تبقى على مستوى النص (أفضل مقطع لكل نص) مع موضع المقطع المطابق فيه.
 */
 public class VectorSearchManager {
 	
 	private static final String TAG = "VectorSearchManager";
 	private static final int EMBEDDING_DIMENSION = 384; // حجم متجه MiniLM
 	private static final int MAX_RESULTS = 5; // عدد النتائج القصوى المراد إرجاعها
+	private static final String HNSW_INDEX_FILE = "hnsw_index.bin"; // ملف فهرس HNSW داخل مجلد الفهارس
+	private static final String PQ_INDEX_FILE = "pq_index.bin"; // دفاتر رموز وأكواد PQ داخل مجلد الفهارس
+	private static final int PQ_TRAINING_SAMPLE = 8192; // الحد الأقصى لعينة تدريب دفاتر الرموز
+	private static final int PQ_MIN_TRAINING_VECTORS = ProductQuantizer.CENTROIDS * 4; // أقل من ذلك نستخدم المسح الدقيق
+	private static final String IVF_INDEX_FILE = "ivf_index.bin"; // مراكز ومجموعات IVF داخل مجلد الفهارس
+	private static final int IVF_TRAINING_SAMPLE = 8192; // الحد الأقصى لعينة تدريب مراكز IVF
+	private static final int IVF_MIN_TRAINING_VECTORS = 1024; // أقل من ذلك المسح الدقيق أسرع من اختيار المجموعات
+	private static final String VECTOR_STORE_FILE = "vectors.bin"; // مخزن المتجهات المربوط بالذاكرة (نمط MAPPED)
+	private static final String INDEX_VERSION_FILE = "index.version"; // إصدار الترميز الذي بُنيت به ملفات الفهارس
+	private static final int LOAD_PAGE_SIZE = 512; // عدد النصوص في كل دفعة تحميل من قاعدة البيانات
+	private static final int DELTA_COMPACTION_THRESHOLD = 256; // عدد الإضافات قبل دمجها في الفهرس الأساسي
+	private static final float STALE_REBUILD_FRACTION = 0.2f; // نسبة المقاطع المحذوفة في الفهرس المحفوظ قبل إعادة بنائه
+	private static final int RRF_K = 60; // ثابت الدمج بمقلوب الرتبة: 1 / (RRF_K + الرتبة)
+	private static final int HYBRID_CANDIDATE_FACTOR = 4; // عمق كل قائمة مرشحين قبل الدمج = K * هذا المعامل
+	private static final int PASSAGE_CANDIDATE_FACTOR = 3; // مقاطع النص الواحد المتجاورة تتنافس على خانات المرشحين
+	private static final int MAX_QUERY_IDS = 900; // أقل من حد متغيرات SQLite (999) لكل استعلام IN
+	private static final float LEXICAL_MIN_TERM_FRACTION = 0.5f; // مع minScore: نسبة مصطلحات السؤال التي يجب أن يحويها المرشح النصي
+	private static final SearchOptions DEFAULT_OPTIONS = SearchOptions.DEFAULT.withMaxResults(MAX_RESULTS);
 	
 	private final EmbeddingManager embeddingManager;
 	private final SearchDao searchDao;
 	private final ExecutorService backgroundExecutor;
+	private final SearchMode searchMode;
+	private final File indexDirectory;
+	private final int hnswM;
+	private final int hnswEfConstruction;
 	
-	// تمثيل مبسط لفهرس المتجهات (في التطبيق الحقيقي، سيكون هذا فهرس HNSWlib)
-	private List<TextWithVector> knowledgeBaseCache = new ArrayList<>();
+	// اللقطة الحالية: فهرس أساسي (FlatVectorIndex أو ParallelFlatVectorIndex أو MappedVectorStore أو HnswIndex
+	// أو IvfIndex أو ScalarQuantizedIndex أو BinaryQuantizedIndex أو ProductQuantizedIndex) مع نصوصه، ودلتا الإضافات والحذوفات اللاحقة.
+	// القراء يأخذون اللقطة دون قفل؛ الكتّاب ينشئون لقطة جديدة تحت writeLock وينشرونها دفعة واحدة.
+	private final AtomicReference<IndexSnapshot> snapshot =
+	new AtomicReference<>(IndexSnapshot.empty(new FlatVectorIndex(EMBEDDING_DIMENSION)));
+	private final Object writeLock = new Object();
+	private final AtomicBoolean reloadScheduled = new AtomicBoolean();
+	private volatile boolean indexLoaded;
 	
 	public VectorSearchManager(EmbeddingManager embeddingManager, SearchDao searchDao, ExecutorService backgroundExecutor) {
+		this(embeddingManager, searchDao, backgroundExecutor, SearchMode.EXACT, null);
+	}
+	
+	/**
+	* @param searchMode نمط الفهرس المستخدم.
+	* @param indexDirectory مجلد حفظ الفهرس (مطلوب لأنماط MAPPED و HNSW و IVF و PQ، مثل context.getFilesDir()).
+	*/
+	public VectorSearchManager(EmbeddingManager embeddingManager, SearchDao searchDao, ExecutorService backgroundExecutor,
+	SearchMode searchMode, File indexDirectory) {
+		this(embeddingManager, searchDao, backgroundExecutor, searchMode, indexDirectory,
+		HnswIndex.DEFAULT_M, HnswIndex.DEFAULT_EF_CONSTRUCTION);
+	}
+	
+	/**
+	* @param hnswM عدد روابط كل عقدة في فهرس HNSW (نمط HNSW فقط): قيمة أكبر = استرجاع أعلى وذاكرة أكثر.
+	* @param hnswEfConstruction عرض قائمة المرشحين عند البناء: قيمة أكبر = رسم بياني أدق وبناء أبطأ.
+	* الفهرس المحفوظ بقيم مختلفة يُعاد بناؤه بالقيم الجديدة؛ efSearch يُحدد لكل استعلام (SearchOptions.withEfSearch).
+	*/
+	public VectorSearchManager(EmbeddingManager embeddingManager, SearchDao searchDao, ExecutorService backgroundExecutor,
+	SearchMode searchMode, File indexDirectory, int hnswM, int hnswEfConstruction) {
+		if (hnswM < 2 || hnswEfConstruction < 1) {
+			throw new IllegalArgumentException("Invalid HNSW parameters: M=" + hnswM + ", efConstruction=" + hnswEfConstruction);
+		}
+		if ((searchMode == SearchMode.MAPPED || searchMode == SearchMode.HNSW || searchMode == SearchMode.IVF
+		|| searchMode == SearchMode.PQ) && indexDirectory == null) {
+			throw new IllegalArgumentException(searchMode + " mode requires an index directory.");
+		}
 		this.embeddingManager = embeddingManager;
 		this.searchDao = searchDao;
 		this.backgroundExecutor = backgroundExecutor;
+		this.searchMode = searchMode;
+		this.indexDirectory = indexDirectory;
+		this.hnswM = hnswM;
+		this.hnswEfConstruction = hnswEfConstruction;
 		
 		// تحميل قاعدة المعرفة عند التهيئة
-		loadKnowledgeBaseAsync();
+		scheduleReload();
 	}
 	
 	// -------------------------------------------------------------
@@ -43,25 +119,643 @@ public class VectorSearchManager {
 	// -------------------------------------------------------------
 	
 	/**
-	* تحميل جميع النصوص والمتجهات من قاعدة البيانات إلى الذاكرة/الفهرس في الخلفية.
+	* تحميل جميع النصوص والمتجهات من قاعدة البيانات إلى الذاكرة/الفهرس في الخلفية على دفعات.
+	* في التحميل الأول يصبح البحث متاحًا بعد الدفعة الأولى (على معاينة دقيقة لما حُمّل)،
+	* وتحمل النتائج علامة isPartial حتى نشر الفهرس الكامل.
 	*/
 	private void loadKnowledgeBaseAsync() {
 		backgroundExecutor.execute(() -> {
 			try {
-				// جلب النصوص والمتجهات معًا بفضل استعلام JOIN المحسن
-				List<TextWithVector> data = searchDao.getAllTextsWithVectors();
-				
-				// تحويل بيانات المتجهات الثنائية (byte[]) إلى مصفوفة float[] في الذاكرة
-				for (TextWithVector item : data) {
-					item.embeddingVector = convertBytesToFloats(item.getEmbeddingVectorBytes());
+				// اختيار أسرع نواة ضرب نقطي على الجهاز قبل أول بحث (مرة واحدة لكل عملية)
+				Log.i(TAG, "Similarity kernels: " + SimilarityKernel.selection());
+				if (indexDirectory != null) {
+					discardStaleIndexFiles();
 				}
+				List<Passage> passages = new ArrayList<>();
+				VectorIndex index;
+				if (searchMode == SearchMode.MAPPED) {
+					// المتجهات تُقرأ من الملف المربوط؛ لا تُجلب من قاعدة البيانات إلا الجديدة
+					index = buildMappedIndex(passages);
+					} else {
+					// جلب المقاطع والمتجهات مع نصوصها (JOIN) على دفعات بدل قائمة واحدة تحمل كل BLOB
+					LoadPreview preview = indexLoaded ? null : new LoadPreview();
+					index = buildIndex(databasePages(-1, preview), searchDao.countPassagesWithVectors(), passages);
+				}
+				
+				LexicalIndex lexical = buildLexicalIndex(passages);
 				
-				knowledgeBaseCache = data;
-				Log.i(TAG, "Knowledge base loaded successfully. Total documents: " + knowledgeBaseCache.size());
+				// إعادة تطبيق التعديلات التي وصلت أثناء البناء ثم نشر اللقطة
+				synchronized (writeLock) {
+					snapshot.set(snapshot.get().rebase(index, passages, lexical, false));
+				}
+				indexLoaded = true;
+				Log.i(TAG, "Knowledge base loaded successfully. Total passages: " + index.size());
 				} catch (Exception e) {
 				Log.e(TAG, "Failed to load knowledge base: " + e.getMessage());
+				} finally {
+				reloadScheduled.set(false);
+			}
+		});
+	}
+	
+	/**
+	* @return true بعد اكتمال التحميل الأول لقاعدة المعرفة.
+	*/
+	public boolean isIndexLoaded() {
+		return indexLoaded;
+	}
+	
+	/**
+	* رقم جيل الفهرس: يزيد مع كل إضافة أو تحديث أو حذف أو إعادة تحميل، فيصلح لإبطال النتائج المحفوظة (QueryCache).
+	*/
+	public long getIndexGeneration() {
+		return snapshot.get().generation();
+	}
+	
+	// -------------------------------------------------------------
+	// التحديث التدريجي (إضافة / تحديث / حذف)
+	// -------------------------------------------------------------
+	
+	/**
+	* يضيف نصًا إلى البحث فورًا دون إعادة التحميل كمقطع واحد يغطيه كاملًا. إذا كان معرف النص موجودًا تُستبدل مقاطعه.
+	* يجب أن يكون النص محفوظًا في قاعدة البيانات مسبقًا كي يبقى بعد إعادة البناء التالية.
+	* @param text النص المحفوظ (بمعرفه).
+	* @param vector متجه النص (لا يُعدل).
+	*/
+	public void addDocument(ExtractedText text, float[] vector) {
+		addDocument(text, Collections.singletonList(Passage.whole(text)), Collections.singletonList(vector));
+	}
+	
+	/**
+	* يضيف مقاطع نص إلى البحث فورًا دون إعادة التحميل، مستبدلًا كل مقاطعه السابقة إن وجدت.
+	* يجب أن تكون المقاطع محفوظة في text_passages مسبقًا كي تبقى بعد إعادة البناء التالية.
+	* @param passages مقاطع النص (بمعرفاتها في text_passages).
+	* @param vectors متجهات المقاطع بالترتيب نفسه (لا تُعدل).
+	*/
+	public void addDocument(ExtractedText text, List<Passage> passages, List<float[]> vectors) {
+		int pending;
+		synchronized (writeLock) {
+			IndexSnapshot next = snapshot.get().withDocument(text, passages, vectors);
+			snapshot.set(next);
+			pending = next.deltaSize();
+		}
+		if (pending >= DELTA_COMPACTION_THRESHOLD) {
+			scheduleReload();
+		}
+	}
+	
+	/**
+	* يستبدل متجه نص موجود (مثلاً بعد تعديل النص أو تغيير النموذج).
+	*/
+	public void updateDocument(ExtractedText text, float[] vector) {
+		addDocument(text, vector);
+	}
+	
+	/**
+	* يخفي النص من نتائج البحث فورًا.
+	*/
+	public void removeDocument(long textId) {
+		synchronized (writeLock) {
+			snapshot.set(snapshot.get().withoutDocument(textId));
+		}
+	}
+	
+	/**
+	* يضيف متجه نص محفوظ بمعرفه فقط (يُجلب النص من قاعدة البيانات). يُستدعى من خيط خلفي.
+	*/
+	public void addVectorToIndex(float[] vector, long textId) {
+		ExtractedText text = searchDao.getTextById(textId);
+		if (text == null) {
+			Log.w(TAG, "Cannot index missing text ID: " + textId);
+			return;
+		}
+		addDocument(text, vector);
+	}
+	
+	/**
+	* يضيف نصًا محفوظًا بكل مقاطعه المخزنة في text_passages (بعد تخزينها مباشرة). يُستدعى من خيط خلفي.
+	*/
+	public void addTextToIndex(long textId) {
+		ExtractedText text = searchDao.getTextById(textId);
+		if (text == null) {
+			Log.w(TAG, "Cannot index missing text ID: " + textId);
+			return;
+		}
+		List<Passage> passages = new ArrayList<>();
+		List<float[]> vectors = new ArrayList<>();
+		for (TextPassage stored : searchDao.getPassagesByTextId(textId)) {
+			FloatBuffer buffer = asFloatBuffer(stored.getVectorData());
+			if (buffer == null || buffer.remaining() != EMBEDDING_DIMENSION) continue;
+			float[] vector = new float[EMBEDDING_DIMENSION];
+			buffer.get(vector);
+			passages.add(new Passage(stored.getId(), text, stored.getStartOffset(), stored.getEndOffset()));
+			vectors.add(vector);
+		}
+		if (passages.isEmpty()) {
+			Log.w(TAG, "Text ID " + textId + " has no stored passages.");
+			return;
+		}
+		addDocument(text, passages, vectors);
+	}
+	
+	/**
+	* يدمج التعديلات المعلقة في ملف الفهرس (للأنماط المحفوظة) بإعادة تحميل تدريجية في الخلفية.
+	* البحث يستمر على اللقطة الحالية حتى نشر الجديدة. في الأنماط غير المحفوظة قاعدة البيانات
+	* هي المصدر الوحيد فلا حاجة للحفظ.
+	*/
+	public void saveIndex() {
+		if (indexDirectory != null && snapshot.get().hasPendingChanges()) {
+			scheduleReload();
+		}
+	}
+	
+	/**
+	* يبدأ إعادة تحميل واحدة في كل مرة، كي لا تنشر إعادة تحميل أقدم فوق أحدث.
+	*/
+	private void scheduleReload() {
+		if (reloadScheduled.compareAndSet(false, true)) {
+			loadKnowledgeBaseAsync();
+		}
+	}
+	
+	/**
+	* يفهرس محتوى نصوص المقاطع المحملة في فهرس BM25 جديد، كل نص مرة واحدة (مقاطعه متجاورة وتشاركه).
+	*/
+	private LexicalIndex buildLexicalIndex(List<Passage> passages) {
+		long start = System.currentTimeMillis();
+		LexicalIndex lexical = new LexicalIndex();
+		ExtractedText lastText = null;
+		for (Passage passage : passages) {
+			if (passage != null && passage.getText() != lastText) {
+				lastText = passage.getText();
+				lexical.add(lastText);
+			}
+		}
+		Log.i(TAG, "Lexical index built for " + lexical.size() + " documents in " + (System.currentTimeMillis() - start) + " ms.");
+		return lexical;
+	}
+	
+	private VectorIndex buildIndex(PageSource pages, int expectedCount, List<Passage> passages) {
+		switch (searchMode) {
+			case HNSW:
+			return buildHnswIndex(pages, passages);
+			case IVF:
+			return buildIvfIndex(pages, passages);
+			case INT8:
+			return buildQuantizedIndex(pages, expectedCount, passages);
+			case BINARY:
+			return buildBinaryIndex(pages, expectedCount, passages);
+			case PQ:
+			return buildProductQuantizedIndex(pages, passages);
+			default:
+			return buildFlatIndex(pages, expectedCount, passages);
+		}
+	}
+	
+	/**
+	* نسخ كل BLOB مباشرة إلى المصفوفة المتصلة دون إنشاء float[] لكل مستند.
+	*/
+	private VectorIndex buildFlatIndex(PageSource pages, int expectedCount, List<Passage> passages) {
+		FlatVectorIndex index = searchMode == SearchMode.PARALLEL_EXACT
+		? new ParallelFlatVectorIndex(EMBEDDING_DIMENSION, expectedCount)
+		: new FlatVectorIndex(EMBEDDING_DIMENSION, expectedCount);
+		pages.forEachPage(page -> {
+			for (TextWithVector item : page) {
+				FloatBuffer vector = asFloatBuffer(item.getEmbeddingVectorBytes());
+				if (vector == null || vector.remaining() != EMBEDDING_DIMENSION) continue;
+				index.add(vector);
+				passages.add(item.getPassage());
+			}
+		});
+		return index;
+	}
+	
+	/**
+	* يحذف ملفات الفهارس المحفوظة إذا بُنيت بإصدار ترميز سابق (أو قبل ختم الإصدار): متجهاتها ومراكزها ودفاتر رموزها
+	* من نموذج آخر، فيُعاد بناؤها من المقاطع الحالية.
+	*/
+	private void discardStaleIndexFiles() {
+		File stamp = new File(indexDirectory, INDEX_VERSION_FILE);
+		if (EmbeddingManager.isVersionStampCurrent(stamp)) return;
+		for (String name : new String[] { HNSW_INDEX_FILE, IVF_INDEX_FILE, PQ_INDEX_FILE, VECTOR_STORE_FILE }) {
+			File file = new File(indexDirectory, name);
+			if (file.exists() && !file.delete()) {
+				Log.w(TAG, "Failed to delete stale " + name);
+			}
+		}
+		try {
+			EmbeddingManager.writeVersionStamp(stamp);
+			} catch (IOException e) {
+			Log.w(TAG, "Failed to write " + INDEX_VERSION_FILE + ": " + e.getMessage());
+		}
+	}
+	
+	/**
+	* يربط مخزن المتجهات المحفوظ بالذاكرة، ويجلب من قاعدة البيانات مواضع المقاطع المحفوظة على دفعات
+	* (دون BLOB، وكل نص مرة واحدة) إضافة إلى المتجهات الأحدث من آخر معرف مقطع في المخزن، ثم يلحقها بنهاية الملف.
+	*/
+	private VectorIndex buildMappedIndex(List<Passage> passages) {
+		File storeFile = new File(indexDirectory, VECTOR_STORE_FILE);
+		MappedVectorStore store = null;
+		if (storeFile.exists()) {
+			try {
+				store = MappedVectorStore.open(storeFile);
+				} catch (IOException e) {
+				Log.w(TAG, "Vector store is unreadable, rebuilding: " + e.getMessage());
+			}
+		}
+		if (store == null || store.dimension() != EMBEDDING_DIMENSION) {
+			store = new MappedVectorStore(EMBEDDING_DIMENSION);
+		}
+		
+		int storedCount = store.size();
+		long lastPassageId = -1;
+		for (int ordinal = 0; ordinal < storedCount; ordinal++) {
+			lastPassageId = Math.max(lastPassageId, store.label(ordinal));
+		}
+		// لا معاينة هنا: نسخ المتجهات إلى الكومة ينافي غرض هذا النمط
+		VectorIndex index = syncPersistentIndex(store, storeFile, databasePages(lastPassageId, null), passages);
+		
+		// ربط المتجهات المحفوظة مسبقًا بمقاطعها (تبقى null للمقاطع المحذوفة)
+		if (storedCount == 0) return index;
+		Map<Long, Integer> ordinalsById = new HashMap<>(storedCount * 2);
+		for (int ordinal = 0; ordinal < storedCount; ordinal++) {
+			ordinalsById.put(store.label(ordinal), ordinal);
+		}
+		Map<Long, ExtractedText> textsById = new HashMap<>();
+		long afterPassageId = -1;
+		List<TextPassage> page;
+		do {
+			page = searchDao.getPassageRangesPage(afterPassageId, lastPassageId, LOAD_PAGE_SIZE);
+			if (page.isEmpty()) break;
+			fetchMissingTexts(page, textsById);
+			for (TextPassage stored : page) {
+				Integer ordinal = ordinalsById.get(stored.getId());
+				ExtractedText text = textsById.get(stored.getTextId());
+				if (ordinal == null || text == null) continue;
+				passages.set(ordinal, new Passage(stored.getId(), text, stored.getStartOffset(), stored.getEndOffset()));
+			}
+			afterPassageId = page.get(page.size() - 1).getId();
+		} while (page.size() == LOAD_PAGE_SIZE);
+		if (discardIfMostlyStale(storeFile, passages)) {
+			return buildMappedIndex(passages);
+		}
+		return index;
+	}
+	
+	/**
+	* يجلب نصوص مقاطع الدفعة التي لم تُجلب بعد، في استعلام واحد (الدفعة أصغر من حد متغيرات SQLite).
+	*/
+	private void fetchMissingTexts(List<TextPassage> page, Map<Long, ExtractedText> textsById) {
+		Set<Long> missing = new HashSet<>();
+		for (TextPassage stored : page) {
+			if (!textsById.containsKey(stored.getTextId())) missing.add(stored.getTextId());
+		}
+		if (missing.isEmpty()) return;
+		for (ExtractedText text : searchDao.getTextsByIds(new ArrayList<>(missing))) {
+			textsById.put(text.getId(), text);
+		}
+	}
+	
+	/**
+	* تكميم كل BLOB مباشرة إلى أكواد int8؛ لا يُحتفظ بأي متجه float32 في الذاكرة.
+	*/
+	private VectorIndex buildQuantizedIndex(PageSource pages, int expectedCount, List<Passage> passages) {
+		ScalarQuantizedIndex index = new ScalarQuantizedIndex(EMBEDDING_DIMENSION, expectedCount);
+		pages.forEachPage(page -> {
+			for (TextWithVector item : page) {
+				FloatBuffer vector = asFloatBuffer(item.getEmbeddingVectorBytes());
+				if (vector == null || vector.remaining() != EMBEDDING_DIMENSION) continue;
+				index.add(vector);
+				passages.add(item.getPassage());
+			}
+		});
+		Log.i(TAG, "Quantized index size: " + index.memoryBytes() / 1024 + " KB");
+		return index;
+	}
+	
+	/**
+	* ترميز إشارة كل BLOB مباشرة إلى 6 قيم long؛ المتجهات الدقيقة تبقى في قاعدة البيانات لإعادة الترتيب.
+	*/
+	private VectorIndex buildBinaryIndex(PageSource pages, int expectedCount, List<Passage> passages) {
+		BinaryQuantizedIndex index = new BinaryQuantizedIndex(EMBEDDING_DIMENSION, expectedCount);
+		pages.forEachPage(page -> {
+			for (TextWithVector item : page) {
+				FloatBuffer vector = asFloatBuffer(item.getEmbeddingVectorBytes());
+				if (vector == null || vector.remaining() != EMBEDDING_DIMENSION) continue;
+				index.add(vector);
+				passages.add(item.getPassage());
+			}
+		});
+		Log.i(TAG, "Binary index size: " + index.memoryBytes() / 1024 + " KB");
+		return index;
+	}
+	
+	/**
+	* يحمل فهرس HNSW المحفوظ (إن وجد) ويضيف إليه تدريجيًا النصوص الجديدة فقط،
+	* بدل إعادة بناء الرسم البياني بالكامل مع كل تشغيل.
+	*/
+	private VectorIndex buildHnswIndex(PageSource pages, List<Passage> passages) {
+		File indexFile = new File(indexDirectory, HNSW_INDEX_FILE);
+		HnswIndex index = null;
+		if (indexFile.exists()) {
+			try {
+				index = HnswIndex.load(indexFile);
+				} catch (IOException e) {
+				Log.w(TAG, "Saved HNSW index is unreadable, rebuilding: " + e.getMessage());
+			}
+		}
+		if (index != null && (index.getM() != hnswM || index.getEfConstruction() != hnswEfConstruction)) {
+			Log.i(TAG, "HNSW parameters changed (M=" + index.getM() + ", efConstruction=" + index.getEfConstruction()
+			+ "), rebuilding.");
+			index = null;
+		}
+		if (index == null || index.dimension() != EMBEDDING_DIMENSION) {
+			index = new HnswIndex(EMBEDDING_DIMENSION, hnswM, hnswEfConstruction, HnswIndex.DEFAULT_EF_SEARCH);
+		}
+		VectorIndex synced = syncPersistentIndex(index, indexFile, pages, passages);
+		if (discardIfMostlyStale(indexFile, passages)) {
+			return buildHnswIndex(databasePages(-1, null), passages);
+		}
+		return synced;
+	}
+	
+	/**
+	* يحمل مراكز ومجموعات IVF المحفوظة، أو يدرب المراكز بـ k-means على عينة من المتجهات
+	* عند أول تشغيل، ثم يسند النصوص الجديدة فقط إلى مجموعاتها.
+	* إذا تضاعفت المجموعة منذ التدريب أو اختل توازن المجموعات يُعاد تدريب المراكز في إعادة التحميل الكاملة هذه.
+	*/
+	private VectorIndex buildIvfIndex(PageSource pages, List<Passage> passages) {
+		File indexFile = new File(indexDirectory, IVF_INDEX_FILE);
+		IvfIndex index = null;
+		if (indexFile.exists()) {
+			try {
+				index = IvfIndex.load(indexFile);
+				} catch (IOException e) {
+				Log.w(TAG, "Saved IVF index is unreadable, retraining: " + e.getMessage());
+			}
+		}
+		if (index == null || index.dimension() != EMBEDDING_DIMENSION) {
+			// التدريب يحتاج عينة من كامل البيانات، فتُجمع الدفعات مرة واحدة عند أول تشغيل فقط
+			List<TextWithVector> data = collectPages(pages);
+			if (data.size() < IVF_MIN_TRAINING_VECTORS) {
+				Log.i(TAG, "Too few vectors to train IVF centroids (" + data.size() + "), using exact search.");
+				return buildFlatIndex(listPages(data), data.size(), passages);
+			}
+			float[] sample = sampleNormalizedVectors(data, IVF_TRAINING_SAMPLE);
+			int clusterCount = IvfIndex.suggestClusterCount(data.size());
+			long start = System.currentTimeMillis();
+			index = IvfIndex.train(sample, sample.length / EMBEDDING_DIMENSION, EMBEDDING_DIMENSION, clusterCount, data.size(), start);
+			Log.i(TAG, "IVF trained " + clusterCount + " centroids in " + (System.currentTimeMillis() - start) + " ms.");
+			pages = listPages(data);
+		}
+		IvfIndex synced = (IvfIndex) syncPersistentIndex(index, indexFile, pages, passages);
+		if (discardIfMostlyStale(indexFile, passages)) {
+			return buildIvfIndex(databasePages(-1, null), passages);
+		}
+		if (synced.needsRetraining()) {
+			// المتجهات المطبعة محفوظة في الفهرس نفسه، فلا حاجة لإعادة قراءتها من قاعدة البيانات
+			long start = System.currentTimeMillis();
+			int previousClusters = synced.clusterCount();
+			double imbalance = synced.imbalanceFactor();
+			synced = synced.retrain(IVF_TRAINING_SAMPLE, start);
+			Log.i(TAG, String.format("IVF retrained %d -> %d centroids (imbalance %.2f -> %.2f) in %d ms.",
+			previousClusters, synced.clusterCount(), imbalance, synced.imbalanceFactor(), System.currentTimeMillis() - start));
+			try {
+				synced.save(indexFile);
+				} catch (IOException e) {
+				Log.e(TAG, "Failed to save " + indexFile.getName() + ": " + e.getMessage());
+			}
+		}
+		return synced;
+	}
+	
+	/**
+	* يحمل دفاتر رموز وأكواد PQ المحفوظة، أو يدربها بـ k-means على عينة من متجهات
+	* text_passages عند أول تشغيل، ثم يرمّز المقاطع الجديدة فقط.
+	*/
+	private VectorIndex buildProductQuantizedIndex(PageSource pages, List<Passage> passages) {
+		File indexFile = new File(indexDirectory, PQ_INDEX_FILE);
+		ProductQuantizedIndex index = null;
+		if (indexFile.exists()) {
+			try {
+				index = ProductQuantizedIndex.load(indexFile);
+				} catch (IOException e) {
+				Log.w(TAG, "Saved PQ index is unreadable, retraining: " + e.getMessage());
+			}
+		}
+		if (index == null || index.dimension() != EMBEDDING_DIMENSION) {
+			List<TextWithVector> data = collectPages(pages);
+			if (data.size() < PQ_MIN_TRAINING_VECTORS) {
+				Log.i(TAG, "Too few vectors to train PQ codebooks (" + data.size() + "), using exact search.");
+				return buildFlatIndex(listPages(data), data.size(), passages);
+			}
+			index = new ProductQuantizedIndex(trainProductQuantizer(data));
+			pages = listPages(data);
+		}
+		ProductQuantizedIndex synced = (ProductQuantizedIndex) syncPersistentIndex(index, indexFile, pages, passages);
+		if (discardIfMostlyStale(indexFile, passages)) {
+			return buildProductQuantizedIndex(databasePages(-1, null), passages);
+		}
+		Log.i(TAG, "PQ index size: " + synced.memoryBytes() / 1024 + " KB");
+		return synced;
+	}
+	
+	/**
+	* يدرب دفاتر رموز PQ على عينة موزعة بانتظام من المتجهات المطبعة.
+	*/
+	private ProductQuantizer trainProductQuantizer(List<TextWithVector> data) {
+		float[] sample = sampleNormalizedVectors(data, PQ_TRAINING_SAMPLE);
+		int count = sample.length / EMBEDDING_DIMENSION;
+		long start = System.currentTimeMillis();
+		ProductQuantizer quantizer = ProductQuantizer.train(sample, count, EMBEDDING_DIMENSION,
+		ProductQuantizedIndex.DEFAULT_SUBSPACES, start);
+		Log.i(TAG, "PQ codebooks trained on " + count + " vectors in " + (System.currentTimeMillis() - start) + " ms.");
+		return quantizer;
+	}
+	
+	/**
+	* ينسخ عينة موزعة بانتظام من المتجهات بعد تطبيعها إلى مصفوفة متصلة بطول (عدد العينات * الأبعاد).
+	*/
+	private float[] sampleNormalizedVectors(List<TextWithVector> data, int maxSamples) {
+		int step = Math.max(1, data.size() / maxSamples);
+		float[] sample = new float[Math.min(data.size(), maxSamples) * EMBEDDING_DIMENSION];
+		int count = 0;
+		for (int i = 0; i < data.size() && count * EMBEDDING_DIMENSION < sample.length; i += step) {
+			FloatBuffer vector = asFloatBuffer(data.get(i).getEmbeddingVectorBytes());
+			if (vector == null || vector.remaining() != EMBEDDING_DIMENSION) continue;
+			int offset = count * EMBEDDING_DIMENSION;
+			vector.get(sample, offset, EMBEDDING_DIMENSION);
+			FlatVectorIndex.normalize(sample, offset, EMBEDDING_DIMENSION);
+			count++;
+		}
+		return count * EMBEDDING_DIMENSION == sample.length ? sample : Arrays.copyOf(sample, count * EMBEDDING_DIMENSION);
+	}
+	
+	/**
+	* يربط المقاطع المحفوظة مسبقًا في الفهرس بترتيبها (التسمية معرف المقطع)، ويضيف المقاطع الجديدة فقط،
+	* ثم يحفظ الفهرس إذا تغير.
+	*/
+	private VectorIndex syncPersistentIndex(PersistentVectorIndex index, File indexFile,
+	PageSource pages, List<Passage> passages) {
+		// ربط معرفات المقاطع المحفوظة في الفهرس بترتيبها
+		Map<Long, Integer> ordinalsById = new HashMap<>(index.size() * 2);
+		for (int ordinal = 0; ordinal < index.size(); ordinal++) {
+			ordinalsById.put(index.label(ordinal), ordinal);
+		}
+		passages.addAll(Collections.nCopies(index.size(), (Passage) null));
+		
+		float[] vector = new float[EMBEDDING_DIMENSION];
+		int[] added = new int[1];
+		pages.forEachPage(page -> {
+			for (TextWithVector item : page) {
+				Passage passage = item.getPassage();
+				Integer ordinal = ordinalsById.get(passage.getId());
+				if (ordinal != null) {
+					passages.set(ordinal, passage);
+					continue;
+				}
+				FloatBuffer buffer = asFloatBuffer(item.getEmbeddingVectorBytes());
+				if (buffer == null || buffer.remaining() != EMBEDDING_DIMENSION) continue;
+				buffer.get(vector);
+				index.add(vector, passage.getId());
+				passages.add(passage);
+				added[0]++;
 			}
 		});
+		
+		if (added[0] > 0) {
+			try {
+				index.save(indexFile);
+				Log.i(TAG, indexFile.getName() + " updated with " + added[0] + " new passages.");
+				} catch (IOException e) {
+				Log.e(TAG, "Failed to save " + indexFile.getName() + ": " + e.getMessage());
+			}
+		}
+		return index;
+	}
+	
+	/**
+	* المقاطع المحذوفة أو المستبدلة منذ حفظ الفهرس تبقى فيه بترتيب null تخفيه IndexSnapshot، فتكبر الملف
+	* وكومة المرشحين (k + hiddenBaseCount) مع كل حذف. إذا تجاوزت STALE_REBUILD_FRACTION من الفهرس يُحذف الملف
+	* وتُفرغ passages ليعيد المستدعي البناء من قاعدة البيانات (وتدريب المراكز أو دفاتر الرموز من جديد).
+	* @return true إذا حُذف الملف.
+	*/
+	private static boolean discardIfMostlyStale(File indexFile, List<Passage> passages) {
+		int stale = 0;
+		for (Passage passage : passages) {
+			if (passage == null) stale++;
+		}
+		if (stale <= passages.size() * STALE_REBUILD_FRACTION) return false;
+		if (!indexFile.delete()) {
+			Log.w(TAG, "Failed to delete " + indexFile.getName() + " with " + stale + " deleted passages.");
+			return false;
+		}
+		Log.i(TAG, indexFile.getName() + " holds " + stale + " deleted passages of " + passages.size() + ", rebuilding.");
+		passages.clear();
+		return true;
+	}
+	
+	// -------------------------------------------------------------
+	// التحميل على دفعات
+	// -------------------------------------------------------------
+	
+	/**
+	* مصدر دفعات (مقطع + نصه + متجهه) مرتبة حسب معرف المقطع.
+	*/
+	private interface PageSource {
+		void forEachPage(Consumer<List<TextWithVector>> consumer);
+	}
+	
+	/**
+	* دفعات من قاعدة البيانات بترقيم مفتاحي (WHERE id > آخر معرف) بدل OFFSET، فكل دفعة
+	* استعلام قصير على المفتاح الأساسي ولا تتراكم كل BLOB في الذاكرة.
+	* @param afterPassageId يبدأ بعد معرف المقطع هذا (-1 للبدء من الأول).
+	* @param preview معاينة تُغذى بكل دفعة بعد فهرستها (أو null).
+	*/
+	private PageSource databasePages(long afterPassageId, LoadPreview preview) {
+		return consumer -> {
+			long lastPassageId = afterPassageId;
+			ExtractedText lastText = null;
+			List<TextWithVector> page;
+			do {
+				page = searchDao.getPassagesWithVectorsPage(lastPassageId, LOAD_PAGE_SIZE);
+				if (page.isEmpty()) break;
+				lastText = shareTexts(page, lastText);
+				consumer.accept(page);
+				if (preview != null) {
+					preview.accept(page);
+				}
+				lastPassageId = page.get(page.size() - 1).passageId;
+			} while (page.size() == LOAD_PAGE_SIZE);
+		};
+	}
+	
+	/**
+	* كل صف مقطع يحمل نسخته من النص كاملًا؛ مقاطع النص الواحد متجاورة، فتشارك كلها الكيان الأول
+	* وتُترك النسخ الأخرى للتجميع (GC) بدل الاحتفاظ بالنص مرة لكل مقطع.
+	* @param previous آخر نص في الدفعة السابقة (أو null).
+	* @return آخر نص في هذه الدفعة.
+	*/
+	private static ExtractedText shareTexts(List<TextWithVector> page, ExtractedText previous) {
+		for (TextWithVector item : page) {
+			if (previous != null && previous.getId() == item.text.getId()) {
+				item.text = previous;
+			} else {
+				previous = item.text;
+			}
+		}
+		return previous;
+	}
+	
+	private static PageSource listPages(List<TextWithVector> data) {
+		return consumer -> consumer.accept(data);
+	}
+	
+	private static List<TextWithVector> collectPages(PageSource pages) {
+		List<TextWithVector> data = new ArrayList<>();
+		pages.forEachPage(data::addAll);
+		return data;
+	}
+	
+	/**
+	* معاينة قابلة للبحث أثناء التحميل الأول: مسح دقيق لما حُمّل حتى الآن.
+	* تُنشر بعد الدفعة الأولى ثم كلما تضاعف عدد النصوص، فتبقى كلفة النشر الإجمالية خطية.
+	* تُترك للتجميع (GC) بعد نشر الفهرس الكامل.
+	*/
+	private final class LoadPreview {
+		private final FlatVectorIndex vectors = new FlatVectorIndex(EMBEDDING_DIMENSION);
+		private final LexicalIndex lexical = new LexicalIndex();
+		private Passage[] previewPassages = new Passage[LOAD_PAGE_SIZE];
+		private ExtractedText lastText;
+		private int count;
+		private int nextPublishCount = 1;
+		
+		void accept(List<TextWithVector> page) {
+			for (TextWithVector item : page) {
+				FloatBuffer vector = asFloatBuffer(item.getEmbeddingVectorBytes());
+				if (vector == null || vector.remaining() != EMBEDDING_DIMENSION) continue;
+				vectors.add(vector);
+				if (count == previewPassages.length) {
+					previewPassages = Arrays.copyOf(previewPassages, count * 2);
+				}
+				previewPassages[count++] = item.getPassage();
+				if (item.getExtractedText() != lastText) {
+					lastText = item.getExtractedText();
+					lexical.add(lastText);
+				}
+			}
+			if (count < nextPublishCount) return;
+			
+			// العرض يشارك المصفوفتين؛ الإضافات اللاحقة تُكتب بعد نهايته أو في مصفوفات جديدة
+			VectorIndex view = vectors.view();
+			List<Passage> viewPassages = Arrays.asList(previewPassages).subList(0, count);
+			synchronized (writeLock) {
+				snapshot.set(snapshot.get().rebase(view, viewPassages, lexical, true));
+			}
+			nextPublishCount = count * 2;
+			Log.i(TAG, "Knowledge base partially loaded: " + count + " passages searchable.");
+		}
 	}
 	
 	// -------------------------------------------------------------
@@ -69,101 +763,207 @@ public class VectorSearchManager {
 	// -------------------------------------------------------------
 	
 	/**
-	* يبحث عن النصوص ذات الصلة دلاليًا بسؤال المستخدم.
+	* يبحث عن النصوص ذات الصلة دلاليًا بسؤال المستخدم (دلالي فقط؛ للبحث الهجين مع BM25 يُمرر
+	* options.withHybrid(true) إلى semanticSearch(queryText, options)).
 	* @param queryText سؤال المستخدم.
 	* @return قائمة بالنتائج ذات الصلة (Top K results).
 	*/
 	public List<SearchResult> semanticSearch(String queryText) {
-		if (knowledgeBaseCache.isEmpty()) {
+		return semanticSearch(queryText, DEFAULT_OPTIONS);
+	}
+	
+	/**
+	* @param options إعدادات الاستعلام (عدد النتائج، nprobe لنمط IVF، الحد الأدنى للتشابه، البحث الهجين،
+	* وتقييد البحث بمصدر أو فترة زمنية عبر withSourceReference و withTimeRange).
+	*/
+	public List<SearchResult> semanticSearch(String queryText, SearchOptions options) {
+		IndexSnapshot current = snapshot.get();
+		if (current.size() == 0) {
 			Log.w(TAG, "Knowledge base is empty. Cannot perform search.");
 			return new ArrayList<>();
 		}
 		
-		// 1. توليد متجه سؤال المستخدم
+		// 1. توليد متجه سؤال المستخدم وتطبيعه مرة واحدة
 		float[] queryVector = embeddingManager.generateEmbedding(queryText);
 		if (queryVector == null) {
 			return new ArrayList<>();
 		}
+		FlatVectorIndex.normalize(queryVector);
 		
-		// 2. محاكاة البحث عن أقرب جار (Nearest Neighbor Search)
-		List<SearchResult> results = new ArrayList<>();
-		
-		for (TextWithVector document : knowledgeBaseCache) {
-			float[] documentVector = document.embeddingVector;
-			
-			if (documentVector != null) {
-				// حساب تشابه جيب التمام (Cosine Similarity)
-				double similarity = calculateCosineSimilarity(queryVector, documentVector);
-				
-				// حفظ النتيجة إذا كانت ذات صلة
-				results.add(new SearchResult(document.text.getTextContent(), similarity, document.text.getSourceReference()));
-			}
-		}
-		
-		// 3. فرز النتائج وإرجاع أفضل K نتيجة
-		results.sort(Comparator.comparingDouble(SearchResult::getSimilarity).reversed());
-		
-		return results.subList(0, Math.min(results.size(), MAX_RESULTS));
+		// 2. البحث في الفهرس (ودمجه مع BM25 في الوضع الهجين)؛ كل نتيجة تحمل المقطع المطابق (getPassageText)
+		return rank(current, queryText, queryVector, options);
 	}
 	
-	// -------------------------------------------------------------
-	// وظائف مساعدة رياضية (Math & Conversion)
-	// -------------------------------------------------------------
+	/**
+	* يبحث بمتجه استعلام جاهز (مثل QAManager الذي يولد المتجه بنفسه)، دون البحث النصي.
+	* @param queryVector متجه الاستعلام (لا يُعدل؛ يُطبَّع نسخة منه).
+	* @param options إعدادات الاستعلام.
+	* @return النتائج مرتبة تنازليًا حسب التشابه، مع استبعاد ما دون options.getMinScore().
+	*/
+	public List<SearchResult> search(float[] queryVector, SearchOptions options) {
+		return search(null, queryVector, options);
+	}
 	
 	/**
-	* يحسب تشابه جيب التمام (Cosine Similarity) بين متجهين.
-	* Similarity = (A . B) / (||A|| * ||B||)
+	* يبحث بمتجه استعلام جاهز مع نص الاستعلام، فيُدمج ترتيب BM25 إذا كان options.isHybrid().
+	* @param queryText نص الاستعلام (أو null للبحث الدلالي فقط).
 	*/
-	private double calculateCosineSimilarity(float[] vectorA, float[] vectorB) {
-		if (vectorA.length != vectorB.length) return 0;
+	public List<SearchResult> search(String queryText, float[] queryVector, SearchOptions options) {
+		IndexSnapshot current = snapshot.get();
+		if (current.size() == 0 || queryVector == null || queryVector.length != EMBEDDING_DIMENSION) {
+			return new ArrayList<>();
+		}
 		
-		double dotProduct = 0.0;
-		double normA = 0.0;
-		double normB = 0.0;
+		float[] unitQuery = queryVector.clone();
+		FlatVectorIndex.normalize(unitQuery);
+		return rank(current, queryText, unitQuery, options);
+	}
+	
+	/**
+	* الترتيب الدلالي وحده، أو مدمجًا مع ترتيب BM25 بمقلوب الرتبة (RRF):
+	* درجة النص = مجموع 1 / (RRF_K + رتبته) في كل قائمة، مقسومًا على أعلى قيمة ممكنة كي تقع في (0, 1].
+	* RRF لا يحتاج معايرة بين درجات جيب التمام ودرجات BM25 لأنه يعتمد على الرتب فقط، لذلك تُحفظ
+	* درجة الدمج في getRankingScore ويبقى getSimilarityScore تشابه جيب التمام (NaN للمطابقة النصية وحدها).
+	* minScore لا معنى له لدرجات BM25، فيُستبدل بحد نصي: نصف مصطلحات السؤال على الأقل (LEXICAL_MIN_TERM_FRACTION).
+	* القائمة الدلالية تحوي أفضل مقطع لكل نص؛ النص الذي لم يطابق إلا نصيًا يُعاد كاملًا كمقطع واحد.
+	*/
+	private List<SearchResult> rank(IndexSnapshot current, String queryText,
+	float[] unitQuery, SearchOptions options) {
+		int k = options.getMaxResults();
+		boolean hybrid = options.isHybrid() && queryText != null;
+		boolean partial = current.isLoading();
 		
-		for (int i = 0; i < vectorA.length; i++) {
-			dotProduct += vectorA[i] * vectorB[i];
-			normA += vectorA[i] * vectorA[i];
-			normB += vectorB[i] * vectorB[i];
+		// المرشحون الدلاليون (بتشابه جيب التمام): مقاطع، يُبقى منها الأفضل لكل نص
+		int depth = hybrid ? k * HYBRID_CANDIDATE_FACTOR : k;
+		TopKHeap topK = searchIndex(current, unitQuery, options.withMaxResults(depth * PASSAGE_CANDIDATE_FACTOR));
+		int count = topK.sortDescending();
+		List<SearchResult> semantic = new ArrayList<>(Math.min(count, depth));
+		Set<Long> seenTextIds = new HashSet<>();
+		for (int i = 0; i < count && semantic.size() < depth; i++) {
+			Passage passage = current.passageAt(topK.ordinalAt(i));
+			if (passage == null) continue; // نص محذوف منذ حفظ الفهرس
+			if (topK.scoreAt(i) < options.getMinScore()) break;
+			if (!seenTextIds.add(passage.getText().getId())) continue; // مقطع أضعف من نص سبق
+			semantic.add(new SearchResult(passage, topK.scoreAt(i), partial));
+		}
+		if (!hybrid) {
+			return semantic;
 		}
 		
-		if (normA == 0.0 || normB == 0.0) return 0.0;
+		// المرشحون النصيون (BM25)
+		LexicalIndex lexical = current.lexical();
+		TopKHeap lexicalTopK = new TopKHeap(k * HYBRID_CANDIDATE_FACTOR);
+		float minTermFraction = options.getMinScore() > Float.NEGATIVE_INFINITY ? LEXICAL_MIN_TERM_FRACTION : 0f;
+		lexical.search(queryText, lexicalTopK, options, minTermFraction);
+		int lexicalCount = lexicalTopK.sortDescending();
 		
-		// تشابه جيب التمام
-		return dotProduct / (Math.sqrt(normA) * Math.sqrt(normB));
+		// الدمج بمعرف النص، مع الحفاظ على ترتيب الظهور الأول عند التساوي (والمقطع الدلالي إن وجد)
+		Map<Long, Passage> fusedPassages = new LinkedHashMap<>();
+		Map<Long, Float> fusedScores = new HashMap<>();
+		Map<Long, Float> similarities = new HashMap<>();
+		for (int rank = 0; rank < semantic.size(); rank++) {
+			SearchResult result = semantic.get(rank);
+			addRrfScore(result.getPassage(), rank, fusedPassages, fusedScores);
+			similarities.put(result.getExtractedText().getId(), result.getSimilarityScore());
+		}
+		for (int rank = 0, next = 0; next < lexicalCount; next++) {
+			ExtractedText text = lexical.documentAt(lexicalTopK.ordinalAt(next));
+			if (text == null) continue;
+			addRrfScore(Passage.whole(text), rank++, fusedPassages, fusedScores);
+		}
+		
+		List<SearchResult> fused = new ArrayList<>(fusedPassages.size());
+		float maxScore = 2f / (RRF_K + 1);
+		for (Map.Entry<Long, Passage> entry : fusedPassages.entrySet()) {
+			Float similarity = similarities.get(entry.getKey());
+			fused.add(new SearchResult(entry.getValue(), similarity == null ? Float.NaN : similarity,
+			fusedScores.get(entry.getKey()) / maxScore, partial));
+		}
+		Collections.sort(fused, (a, b) -> Float.compare(b.getRankingScore(), a.getRankingScore()));
+		return fused.size() > k ? new ArrayList<>(fused.subList(0, k)) : fused;
+	}
+	
+	private static void addRrfScore(Passage passage, int rank, Map<Long, Passage> passages, Map<Long, Float> scores) {
+		long textId = passage.getText().getId();
+		Float score = scores.get(textId);
+		passages.putIfAbsent(textId, passage);
+		scores.put(textId, (score == null ? 0f : score) + 1f / (RRF_K + rank + 1));
 	}
 	
 	/**
-	* يحول مصفوفة البايت (BLOB) إلى مصفوفة الأرقام العائمة (float[]).
+	* يبحث في الفهرس مع الاحتفاظ بأفضل K نتيجة في كومة محدودة (غير مرتبة).
 	*/
-	private float[] convertBytesToFloats(byte[] bytes) {
-		if (bytes == null || bytes.length == 0 || bytes.length % 4 != 0) return null;
+	private TopKHeap searchIndex(IndexSnapshot current, float[] unitQuery, SearchOptions options) {
+		int k = options.getMaxResults();
+		if (searchMode.isRerankRequired()) {
+			// الدرجات تقريبية: قائمة مختصرة أوسع ثم إعادة ترتيبها بالمتجهات الدقيقة
+			TopKHeap shortlist = new TopKHeap(k * searchMode.getRerankFactor());
+			current.search(unitQuery, shortlist, options);
+			return rerankWithExactVectors(unitQuery, shortlist, current, k);
+		}
+		TopKHeap topK = new TopKHeap(k);
+		current.search(unitQuery, topK, options);
+		return topK;
+	}
+	
+	/**
+	* يعيد حساب تشابه جيب التمام للقائمة المختصرة بالمتجهات الدقيقة (float32)
+	* المجلوبة من قاعدة البيانات على دفعات من MAX_QUERY_IDS معرفًا (القائمة قد تتجاوز حد متغيرات SQLite). المقاطع غير المحفوظة (المضافة بـ addDocument(text, vector))
+	* تبقى بدرجتها، وهي دقيقة أصلًا لأن الدلتا تُمسح بمتجهات float32.
+	*/
+	private TopKHeap rerankWithExactVectors(float[] unitQuery, TopKHeap shortlist, IndexSnapshot current, int k) {
+		int count = shortlist.size();
+		TopKHeap reranked = new TopKHeap(k);
+		List<Long> passageIds = new ArrayList<>(count);
+		Map<Long, Integer> ordinalsById = new HashMap<>(count * 2);
+		for (int i = 0; i < count; i++) {
+			int ordinal = shortlist.ordinalAt(i);
+			Passage passage = current.passageAt(ordinal);
+			if (passage == null) continue;
+			if (passage.getId() == 0) {
+				reranked.offer(ordinal, shortlist.scoreAt(i));
+				continue;
+			}
+			passageIds.add(passage.getId());
+			ordinalsById.put(passage.getId(), ordinal);
+		}
 		
-		FloatBuffer floatBuffer = ByteBuffer.wrap(bytes)
-		.order(java.nio.ByteOrder.nativeOrder())
-		.asFloatBuffer();
-		float[] floats = new float[floatBuffer.remaining()];
-		floatBuffer.get(floats);
-		return floats;
+		float[] scratch = new float[EMBEDDING_DIMENSION];
+		for (int from = 0; from < passageIds.size(); from += MAX_QUERY_IDS) {
+			List<Long> batch = passageIds.subList(from, Math.min(passageIds.size(), from + MAX_QUERY_IDS));
+			for (TextPassage stored : searchDao.getPassagesByIds(batch)) {
+				FloatBuffer buffer = asFloatBuffer(stored.getVectorData());
+				Integer ordinal = ordinalsById.get(stored.getId());
+				if (buffer == null || buffer.remaining() != EMBEDDING_DIMENSION || ordinal == null) continue;
+				buffer.get(scratch);
+				reranked.offer(ordinal, cosineSimilarity(unitQuery, scratch));
+			}
+		}
+		return reranked;
 	}
 	
 	// -------------------------------------------------------------
-	// فئة POJO للنتيجة
+	// وظائف مساعدة رياضية (Math & Conversion)
 	// -------------------------------------------------------------
 	
-	public static class SearchResult {
-		private final String textContent;
-		private final double similarity;
-		private final String sourceReference;
-		
-		public SearchResult(String textContent, double similarity, String sourceReference) {
-			this.textContent = textContent;
-			this.similarity = similarity;
-			this.sourceReference = sourceReference;
-		}
+	/**
+	* تشابه جيب التمام بين استعلام مطبع ومتجه خام غير مطبع (معيار الاستعلام 1 فلا يُعاد حسابه).
+	*/
+	private static float cosineSimilarity(float[] unitQuery, float[] vector) {
+		SimilarityKernel kernel = SimilarityKernel.fastest();
+		float norm = kernel.dot(vector, vector, 0, EMBEDDING_DIMENSION);
+		if (norm == 0f) return 0f;
+		return kernel.dot(unitQuery, vector, 0, EMBEDDING_DIMENSION) / (float) Math.sqrt(norm);
+	}
+	
+	/**
+	* يعرض مصفوفة البايت (BLOB) كـ FloatBuffer دون نسخ.
+	*/
+	private FloatBuffer asFloatBuffer(byte[] bytes) {
+		if (bytes == null || bytes.length == 0 || bytes.length % 4 != 0) return null;
 		
-		public String getTextContent() { return textContent; }
-		public double getSimilarity() { return similarity; }
-		public String getSourceReference() { return sourceReference; }
+		return ByteBuffer.wrap(bytes)
+		.order(java.nio.ByteOrder.nativeOrder())
+		.asFloatBuffer();
 	}
 }
\ No newline at end of file
@@ -17,8 +17,10 @@ import com.arabic.aitoolkit.core.database.AppDatabase;
 import com.arabic.aitoolkit.core.database.daos.SearchDao;
 import com.arabic.aitoolkit.core.embedding.EmbeddingManager;
 import com.arabic.aitoolkit.core.models.ModelLoader;
+import com.arabic.aitoolkit.core.search.SearchMode;
+import com.arabic.aitoolkit.core.search.SearchOptions;
+import com.arabic.aitoolkit.core.search.SearchResult;
 import com.arabic.aitoolkit.core.search.VectorSearchManager;
-import com.arabic.aitoolkit.core.search.VectorSearchManager.SearchResult;
 import com.arabic.aitoolkit.ui.main.MainActivity;
 
 import java.util.ArrayList;
@@ -33,6 +35,8 @@ import java.util.concurrent.Executors;
 public class ChatActivity extends AppCompatActivity {
 	
 	private static final String TAG = "ChatActivity";
+	// أسئلة المحادثة تحوي غالبًا أسماء وأرقامًا بعينها، فيُدمج الترتيب النصي (BM25) مع الدلالي
+	private static final SearchOptions SEARCH_OPTIONS = SearchOptions.DEFAULT.withMaxResults(5).withHybrid(true);
 	
 	private RecyclerView recyclerView;
 	private EditText messageInput;
@@ -79,7 +83,7 @@ public class ChatActivity extends AppCompatActivity {
 		if (backgroundExecutor != null) {
 			backgroundExecutor.shutdownNow();
 		}
-		// تفريغ موارد النماذج
+		// تحرير مرجع النموذج (يبقى في ModelRegistry للشاشة التالية حتى انتهاء مهلة الخمول)
 		if (embeddingManager != null) {
 			embeddingManager.unloadModel();
 		}
@@ -118,8 +122,9 @@ public class ChatActivity extends AppCompatActivity {
 		modelLoader
 		);
 		
-		// 4. تهيئة VectorSearchManager
-		searchManager = new VectorSearchManager(embeddingManager, searchDao, backgroundExecutor);
+		// 4. تهيئة VectorSearchManager (فهرس HNSW محفوظ في ملفات التطبيق)
+		searchManager = new VectorSearchManager(embeddingManager, searchDao, backgroundExecutor,
+		SearchMode.HNSW, getFilesDir());
 	}
 	
 	private void setupListeners() {
@@ -144,8 +149,8 @@ public class ChatActivity extends AppCompatActivity {
 		// 3. تشغيل البحث في الخلفية
 		backgroundExecutor.execute(() -> {
 			try {
-				// إجراء البحث الدلالي
-				final List<SearchResult> results = searchManager.semanticSearch(message);
+				// إجراء البحث الهجين (الدلالي مع BM25)
+				final List<SearchResult> results = searchManager.semanticSearch(message, SEARCH_OPTIONS);
 				
 				// بناء الإجابة
 				String botReply = buildBotResponse(message, results);
@@ -196,12 +201,15 @@ public class ChatActivity extends AppCompatActivity {
 			SearchResult result = results.get(i);
 			
 			// نأخذ جزءاً صغيراً من النص المعثر عليه (مثلاً أول 120 حرف)
-			String fullText = result.getTextContent();
+			String fullText = result.getPassageText();
 			String snippet = fullText.substring(0, Math.min(fullText.length(), 120)) + (fullText.length() > 120 ? "..." : "");
 			
-			response.append(String.format("📜 المصدر: %s (صلة: %.1f%%)\n",
-			result.getSourceReference(),
-			result.getSimilarity() * 100))
+			// التشابه فقط يُعرض كنسبة مئوية؛ نتيجة المطابقة النصية وحدها لا تشابه لها
+			String relevance = result.hasSimilarityScore()
+			? String.format("تشابه: %.1f%%", result.getSimilarityScore() * 100)
+			: "مطابقة نصية";
+			response.append(String.format("📜 المصدر: %s (%s)\n",
+			result.getExtractedText().getSourceReference(), relevance))
 			.append(">> ")
 			.append(snippet)
 			.append("\n\n---\n");
@@ -210,6 +218,9 @@ public class ChatActivity extends AppCompatActivity {
 			if (i >= 2) break;
 		}
 		
+		if (results.get(0).isPartial()) {
+			response.append("\n⏳ ما زال تحميل المستندات جاريًا، وقد تظهر نتائج أدق بعد اكتماله.\n");
+		}
 		response.append("\nالرجاء طرح أسئلة أكثر تحديدًا لتحسين النتائج.");
 		
 		return response.toString();
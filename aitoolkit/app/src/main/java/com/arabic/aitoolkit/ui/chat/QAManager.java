@@ -4,9 +4,12 @@ import android.content.Context;
 
 import com.arabic.aitoolkit.core.chat.ChatMessage;
 import com.arabic.aitoolkit.core.embedding.EmbeddingManager;
+import com.arabic.aitoolkit.core.search.QueryCache;
+import com.arabic.aitoolkit.core.search.SearchOptions;
 import com.arabic.aitoolkit.core.search.SearchResult;
 import com.arabic.aitoolkit.core.search.VectorSearchManager;
 
+import java.util.Collections;
 import java.util.List;
 
 public class QAManager {
@@ -14,6 +17,8 @@ public class QAManager {
     private final EmbeddingManager embeddingManager;
     private final VectorSearchManager vectorSearchManager;
     private final Context context;
+    // الأسئلة المتكررة: متجه السؤال ونتائجه، تُبطل النتائج بتغير جيل الفهرس
+    private final QueryCache<List<SearchResult>> queryCache = new QueryCache<>();
 
     // معامل البحث الأدنى (Search Threshold) - يمكن تعديله في الإعدادات لاحقًا
     private static final float SIMILARITY_THRESHOLD = 0.65f; 
@@ -39,22 +44,42 @@ public class QAManager {
      * @return ChatMessage تحتوي على الإجابة والإسناد، أو رسالة "لم يتم العثور" في حالة الفشل.
      */
     public ChatMessage processQuery(String queryText) {
-        try {
-            // 1. توليد متجه (Embedding) للاستعلام
-            float[] queryVector = embeddingManager.generateEmbedding(queryText);
+        return processQuery(queryText, SearchOptions.DEFAULT
+                .withMaxResults(MAX_RESULTS)
+                .withMinScore(SIMILARITY_THRESHOLD)
+                .withHybrid(true));
+    }
 
-            if (queryVector == null) {
-                return createErrorMessage("فشل في توليد متجه البحث. يرجى التحقق من نموذج MiniLM.");
+    /**
+     * معالجة الاستعلام بإعدادات بحث مخصصة، مثل nprobe أكبر لدقة أعلى في نمط IVF
+     * أو أصغر لاستجابة أسرع.
+     * @param queryText استعلام المستخدم باللغة العربية.
+     * @param options إعدادات البحث (عدد النتائج، nprobe، الحد الأدنى من التشابه، دمج البحث النصي BM25).
+     */
+    public ChatMessage processQuery(String queryText, SearchOptions options) {
+        try {
+            // 0. السؤال المتكرر على الجيل نفسه من الفهرس يُجاب من الذاكرة المؤقتة دون استدلال أو بحث
+            String cacheKey = QueryCache.normalize(queryText);
+            long generation = vectorSearchManager.getIndexGeneration();
+            List<SearchResult> results = queryCache.getResults(cacheKey, generation, options);
+
+            if (results == null) {
+                // 1. توليد متجه (Embedding) للاستعلام، أو إعادة استخدام متجه السؤال نفسه إن سبق
+                float[] queryVector = queryCache.getEmbedding(cacheKey);
+                if (queryVector == null) {
+                    queryVector = embeddingManager.generateEmbedding(queryText);
+                }
+
+                if (queryVector == null) {
+                    return createErrorMessage("فشل في توليد متجه البحث. يرجى التحقق من نموذج MiniLM.");
+                }
+
+                // 2. تنفيذ البحث الدلالي في قاعدة البيانات
+                // نجلب أفضل النتائج التي تطابق الحد الأدنى من التشابه، مدمجة مع المطابقة الحرفية للكلمات (BM25)
+                results = Collections.unmodifiableList(vectorSearchManager.search(queryText, queryVector, options));
+                queryCache.put(cacheKey, queryVector, generation, options, results);
             }
 
-            // 2. تنفيذ البحث الدلالي في قاعدة البيانات
-            // نجلب أفضل 3 نتائج تطابق الحد الأدنى من التشابه
-            List<SearchResult> results = vectorSearchManager.search(
-                    queryVector, 
-                    MAX_RESULTS, 
-                    SIMILARITY_THRESHOLD
-            );
-
             // 3. تحليل النتائج وتنسيق الإجابة
             if (results.isEmpty()) {
                 return createNoMatchMessage();
@@ -84,15 +109,23 @@ public class QAManager {
         answerBuilder.append("إليك المعلومات التي تم العثور عليها في المستندات:\n");
         int count = 1;
         for (SearchResult result : results) {
-            // نضيف النص المطابق مع معامل التشابه
+            // نضيف النص المطابق مع معامل التشابه (درجة الدمج الهجين ليست تشابهًا فلا تُعرض)
             answerBuilder.append("\n• ")
-                         .append(result.getExtractedText().getTextContent())
-                         .append(" (تشابه: ")
-                         .append(String.format("%.2f", result.getSimilarityScore()))
-                         .append(")");
+                         .append(result.getPassageText());
+            if (result.hasSimilarityScore()) {
+                answerBuilder.append(" (تشابه: ")
+                             .append(String.format("%.2f", result.getSimilarityScore()))
+                             .append(")");
+            } else {
+                answerBuilder.append(" (مطابقة نصية)");
+            }
             count++;
         }
 
+        if (primarySource.isPartial()) {
+            answerBuilder.append("\n\n⏳ ما زال تحميل المستندات جاريًا، وقد تظهر نتائج أدق بعد اكتماله.");
+        }
+
         String content = answerBuilder.toString();
         String reference = "المصدر الرئيسي: " + primarySource.getExtractedText().getSourceReference();
         String imagePath = primarySource.getExtractedText().getSourceImagePath();
@@ -24,8 +24,7 @@ import com.arabic.aitoolkit.ui.chat.ChatActivity;
 // استيرادات المكونات الأساسية (التي تم دمجها حديثًا)
 import com.arabic.aitoolkit.core.ocr.OCRManager;
 import com.arabic.aitoolkit.core.database.AppDatabase;
-import com.arabic.aitoolkit.core.database.dao.ExtractedTextDao; // يفترض وجوده
-import com.arabic.aitoolkit.core.embeddings.EmbeddingManager;
+import com.arabic.aitoolkit.core.embedding.EmbeddingManager;
 import com.arabic.aitoolkit.core.models.ModelLoader;
 import com.arabic.aitoolkit.utils.MemoryManager;
 
@@ -110,16 +109,13 @@ public class MainActivity extends AppCompatActivity {
 		
 		// 1. تهيئة الـ DAO وقاعدة البيانات
 		AppDatabase db = AppDatabase.getInstance(getApplicationContext());
-		// يفترض وجود extractedTextDao()
-		ExtractedTextDao textDao = db.extractedTextDao();
-		
 		// 2. تهيئة المدراء المرتبطة بالنماذج
 		modelLoader = new ModelLoader(getApplicationContext(), backgroundExecutor);
 		embeddingManager = new EmbeddingManager(getApplicationContext(), backgroundExecutor, modelLoader);
 		memoryManager = new MemoryManager(getApplicationContext());
 		
 		// 3. تهيئة OCRManager (يعتمد على EmbeddingManager)
-		ocrManager = new OCRManager(getApplicationContext(), backgroundExecutor, textDao, embeddingManager);
+		ocrManager = new OCRManager(getApplicationContext(), backgroundExecutor, db, embeddingManager);
 	}
 	
 	private void setupListeners() {
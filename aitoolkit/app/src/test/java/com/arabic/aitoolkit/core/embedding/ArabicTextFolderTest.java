@@ -0,0 +1,106 @@
+package com.arabic.aitoolkit.core.embedding;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+* قواعد ArabicTextFolder، وقياس سرعته على تفريغ OCR بحجم عدة ميغابايت (فقط مع -Daitoolkit.benchmarks=true).
+*/
+public class ArabicTextFolderTest {
+
+	private static final String BENCHMARK_PROPERTY = "aitoolkit.benchmarks";
+	private static final int DUMP_CHARS = 8 * 1024 * 1024;
+	private static final int WARMUP_PASSES = 3;
+	private static final int MEASURED_PASSES = 5;
+
+	@Test
+	public void searchPresetFoldsOcrNoise() {
+		assertEquals("احمد مدرسه 12", ArabicTextFolder.FOR_SEARCH.normalize(" أَحْمَـــدُ \n\t مدرسة ١٢ "));
+		assertEquals("مسوول علي", ArabicTextFolder.FOR_SEARCH.normalize("مسؤول على"));
+	}
+
+	@Test
+	public void embeddingPresetKeepsLetters() {
+		assertEquals("أحمد مدرسة ١٢", ArabicTextFolder.FOR_EMBEDDING.normalize("أَحْمَـدُ  مدرسة ١٢"));
+	}
+
+	@Test
+	public void customRulesAreCopyOnWrite() {
+		ArabicTextFolder persian = ArabicTextFolder.FOR_SEARCH.withMapping('ک', 'ك').withRemoval('!');
+		assertEquals("كتاب", persian.normalize("کتاب!"));
+		assertEquals("کتاب!", ArabicTextFolder.FOR_SEARCH.normalize("کتاب!"));
+	}
+
+	@Test
+	public void normalizesInPlace() {
+		char[] text = " أَحْمَـدُ   مدرسة ".toCharArray();
+		int written = ArabicTextFolder.FOR_SEARCH.normalize(text, 0, text.length, text, 0);
+		assertEquals("احمد مدرسه", new String(text, 0, written));
+	}
+
+	/**
+	* مرور واحد على تفريغ OCR اصطناعي (حركات، تطويل، أشكال عرض، أرقام هندية، أسطر) لكل إعداد،
+	* ويُكتب أفضل زمن وسرعته بالمليون حرف في الثانية إلى stderr.
+	*/
+	@Test
+	public void throughputOnMultiMegabyteOcrDump() {
+		assumeTrue("Benchmarks are disabled; run with -D" + BENCHMARK_PROPERTY + "=true", Boolean.getBoolean(BENCHMARK_PROPERTY));
+		char[] dump = syntheticOcrDump(DUMP_CHARS, new Random(19));
+		char[] target = new char[dump.length];
+		for (ArabicTextFolder folder : new ArabicTextFolder[] { ArabicTextFolder.FOR_EMBEDDING, ArabicTextFolder.FOR_SEARCH }) {
+			int written = 0;
+			for (int pass = 0; pass < WARMUP_PASSES; pass++) {
+				written = folder.normalize(dump, 0, dump.length, target, 0);
+			}
+			long bestNanos = Long.MAX_VALUE;
+			for (int pass = 0; pass < MEASURED_PASSES; pass++) {
+				long start = System.nanoTime();
+				written = folder.normalize(dump, 0, dump.length, target, 0);
+				bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+			}
+			System.err.println(String.format(Locale.ROOT, "ArabicTextFolder rules=0x%x: %d chars in %.1f ms (%.0f Mchars/s)",
+			folder.getRules(), dump.length, bestNanos / 1e6, dump.length * 1e3 / bestNanos));
+
+			assertTrue(written > 0 && written < dump.length);
+			for (int i = 0; i < written; i++) {
+				char c = target[i];
+				assertTrue("Unfolded char at " + i, (c < 'ً' || c > 'ٟ') && c != 'ـ' && c < 'ﭐ');
+			}
+		}
+	}
+
+	// -------------------------------------------------------------
+	// أدوات مساعدة
+	// -------------------------------------------------------------
+
+	private static char[] syntheticOcrDump(int length, Random random) {
+		String letters = "ابتثجحخدذرزسشصضطظعغفقكلمنهويأإآةىئؤ";
+		String noise = "ًَُِّْـ";
+		String forms = "ﺃﻛﻣﺎﻪ";
+		String digits = "٠١٢٣٤٥٦٧٨٩";
+		char[] dump = new char[length];
+		for (int i = 0; i < length; i++) {
+			int kind = random.nextInt(100);
+			if (kind < 60) {
+				dump[i] = letters.charAt(random.nextInt(letters.length()));
+			} else if (kind < 78) {
+				dump[i] = noise.charAt(random.nextInt(noise.length()));
+			} else if (kind < 83) {
+				dump[i] = forms.charAt(random.nextInt(forms.length()));
+			} else if (kind < 87) {
+				dump[i] = digits.charAt(random.nextInt(digits.length()));
+			} else if (kind < 97) {
+				dump[i] = ' ';
+			} else {
+				dump[i] = random.nextBoolean() ? '\n' : '\t';
+			}
+		}
+		return dump;
+	}
+}
@@ -0,0 +1,108 @@
+package com.arabic.aitoolkit.core.embedding;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+* تقسيم PassageChunker: كل مقطعين متتاليين يتقاطعان فعلًا، بجمل كاملة أو بآخر كلمات الجملة الطويلة.
+*/
+public class PassageChunkerTest {
+
+	private static final int MAX_TOKENS = 64;
+	private static final int OVERLAP_TOKENS = 24;
+
+	// كلمة واحدة = Token واحد
+	private static final PassageChunker.TokenCounter WORDS = text -> {
+		int count = 0;
+		boolean inWord = false;
+		for (int i = 0; i < text.length(); i++) {
+			boolean space = Character.isWhitespace(text.charAt(i));
+			if (!space && !inWord) count++;
+			inWord = !space;
+		}
+		return count;
+	};
+
+	private final PassageChunker chunker = new PassageChunker(WORDS, MAX_TOKENS, OVERLAP_TOKENS);
+
+	@Test
+	public void shortTextIsOnePassage() {
+		String text = sentences(2, 10);
+		List<PassageChunker.Span> spans = chunker.split(text);
+		assertEquals(1, spans.size());
+		assertEquals(0, spans.get(0).getStart());
+		assertEquals(text.length(), spans.get(0).getEnd());
+		assertTrue(chunker.split("").isEmpty());
+	}
+
+	@Test
+	public void shortSentencesOverlapByWholeSentences() {
+		String text = sentences(40, 8);
+		List<PassageChunker.Span> spans = chunker.split(text);
+		assertCoveredWithOverlap(text, spans);
+		for (int i = 1; i < spans.size(); i++) {
+			assertEquals('ج', text.charAt(spans.get(i).getStart())); // تبدأ بأول كلمة في جملة
+		}
+	}
+
+	@Test
+	public void longSentencesOverlapByTrailingWords() {
+		// كل جملة 40 كلمة: لا تتسع جملة كاملة في تداخل 24 Token
+		String text = sentences(12, 40);
+		List<PassageChunker.Span> spans = chunker.split(text);
+		assertCoveredWithOverlap(text, spans);
+		for (int i = 1; i < spans.size(); i++) {
+			PassageChunker.Span previous = spans.get(i - 1);
+			PassageChunker.Span span = spans.get(i);
+			int shared = WORDS.countTokens(text.substring(span.getStart(), previous.getEnd()));
+			assertTrue("Overlap of " + shared + " words", shared > 0 && shared <= OVERLAP_TOKENS);
+		}
+	}
+
+	@Test
+	public void passagesFitTheModelWindow() {
+		String text = sentences(6, 40) + " " + sentences(20, 5) + " " + sentences(3, 90);
+		List<PassageChunker.Span> spans = chunker.split(text);
+		assertCoveredWithOverlap(text, spans);
+		for (PassageChunker.Span span : spans) {
+			assertTrue(WORDS.countTokens(text.substring(span.getStart(), span.getEnd())) <= MAX_TOKENS);
+		}
+	}
+
+	// -------------------------------------------------------------
+	// أدوات مساعدة
+	// -------------------------------------------------------------
+
+	/**
+	* المقاطع تغطي النص كله، وتتقدم، وكل مقطعين متتاليين يتقاطعان.
+	*/
+	private static void assertCoveredWithOverlap(String text, List<PassageChunker.Span> spans) {
+		assertTrue(spans.size() > 1);
+		assertEquals(0, spans.get(0).getStart());
+		assertEquals(text.length(), spans.get(spans.size() - 1).getEnd());
+		for (int i = 1; i < spans.size(); i++) {
+			PassageChunker.Span previous = spans.get(i - 1);
+			PassageChunker.Span span = spans.get(i);
+			assertTrue("Span " + i + " does not advance", span.getStart() > previous.getStart()
+			&& span.getEnd() > previous.getEnd());
+			assertTrue("Spans " + (i - 1) + " and " + i + " do not intersect", span.getStart() < previous.getEnd());
+		}
+	}
+
+	private static String sentences(int count, int wordsPerSentence) {
+		StringBuilder text = new StringBuilder();
+		for (int s = 0; s < count; s++) {
+			if (s > 0) text.append(' ');
+			text.append("جملة");
+			for (int w = 1; w < wordsPerSentence; w++) {
+				text.append(" كلمة").append(s).append('_').append(w);
+			}
+			text.append('.');
+		}
+		return text.toString();
+	}
+}
@@ -0,0 +1,73 @@
+package com.arabic.aitoolkit.core.embedding;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+* ترجمة المفردات إلى VocabTrie وقراءتها، وترميز WordPiece فوقها بمفردات cased و uncased (التفكيك وحذف التشكيل).
+*/
+public class WordPieceTokenizerTest {
+
+	private static final List<String> VOCAB = Arrays.asList(
+	"[PAD]", "[UNK]", "[CLS]", "[SEP]", "احمد", "##ه", "مسوول", "ايمان", "cafe", "؟", "\u1112\u1161\u11AB"); // جامو هانغول مفككة
+	private static final int PAD = 0, UNK = 1, CLS = 2, SEP = 3;
+
+	@Test
+	public void compiledTrieFindsEveryToken() {
+		VocabTrie trie = trie(false);
+		assertFalse(trie.isLowerCase());
+		assertEquals(PAD, trie.padId());
+		assertEquals(UNK, trie.unkId());
+		assertEquals(CLS, trie.clsId());
+		assertEquals(SEP, trie.sepId());
+		for (int id = SEP + 1; id < VOCAB.size(); id++) {
+			String token = VOCAB.get(id);
+			int node = VocabTrie.ROOT;
+			for (int i = 0; i < token.length(); i++) {
+				node = trie.child(node, token.charAt(i));
+				assertTrue(token, node != VocabTrie.NO_NODE);
+			}
+			assertEquals(token, id, trie.tokenId(node));
+		}
+		assertEquals(VocabTrie.NO_NODE, trie.child(VocabTrie.ROOT, 'x'));
+		assertTrue(trie(true).isLowerCase());
+	}
+
+	@Test
+	public void casedSplitsWordPiecesAndPunctuation() {
+		WordPieceTokenizer tokenizer = new WordPieceTokenizer(trie(false));
+		assertArrayEquals(new int[] { CLS, 4, 5, 9, UNK, SEP }, encode(tokenizer, "احمده؟ xyz", 16));
+		// الحروف بهمزة والتشكيل تبقى كما هي في المفردات cased
+		assertArrayEquals(new int[] { CLS, UNK, UNK, SEP }, encode(tokenizer, "أحمد مسؤول", 16));
+		assertArrayEquals(new int[] { CLS, 4, SEP }, encode(tokenizer, "احمده احمد", 3));
+	}
+
+	@Test
+	public void uncasedDecomposesBeforeDroppingMarks() {
+		WordPieceTokenizer tokenizer = new WordPieceTokenizer(trie(true));
+		assertArrayEquals(new int[] { CLS, 4, 6, 7, 8, SEP }, encode(tokenizer, "أَحْمَد مسؤول إيمان Café", 16));
+		// مقطع هانغول يتفكك إلى ثلاثة حروف أساسية
+		assertArrayEquals(new int[] { CLS, 10, 9, SEP }, encode(tokenizer, "\uD55C؟", 16));
+	}
+
+	// -------------------------------------------------------------
+	// أدوات مساعدة
+	// -------------------------------------------------------------
+
+	private static VocabTrie trie(boolean lowerCase) {
+		return VocabTrie.map(ByteBuffer.wrap(VocabTrie.compile(VOCAB, lowerCase)));
+	}
+
+	private static int[] encode(WordPieceTokenizer tokenizer, String text, int maxTokens) {
+		int[] ids = new int[maxTokens];
+		return Arrays.copyOf(ids, tokenizer.encode(text, ids, maxTokens));
+	}
+}
@@ -0,0 +1,187 @@
+package com.arabic.aitoolkit.core.models;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNoException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.tensorflow.lite.TensorFlowLite;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * حفظ نتائج BackendAutotuner وإعادة استخدامها، وإبطالها عند تغير بصمة النموذج، دون تشغيل TFLite؛
+ * والقياس الفعلي على نموذج RELU صغير إذا توفرت مكتبة TFLite الأصلية لسطح المكتب (وإلا يُتخطى).
+ */
+public class BackendAutotunerTest {
+
+    private static final String MODEL = "model.tflite";
+    private static final String DEVICE = "test-device/cores-4";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void secondTuneOfSameModelIsCacheHit() throws IOException {
+        CountingMeasurer measurer = new CountingMeasurer();
+        BackendAutotuner autotuner = new BackendAutotuner(storeFile(), DEVICE, 4, measurer);
+        ByteBuffer model = model(1);
+
+        BackendAutotuner.Backend first = autotuner.tune(MODEL, model);
+        BackendAutotuner.Backend second = autotuner.tune(MODEL, model);
+        assertEquals(1, measurer.measurements);
+        assertEquals(first.getThreads(), second.getThreads());
+        assertTrue(first.isUseXnnpack());
+    }
+
+    @Test
+    public void storedResultSurvivesRestart() throws IOException {
+        File store = storeFile();
+        CountingMeasurer measurer = new CountingMeasurer();
+        new BackendAutotuner(store, DEVICE, 4, measurer).tune(MODEL, model(1));
+
+        BackendAutotuner restarted = new BackendAutotuner(store, DEVICE, 4, measurer);
+        BackendAutotuner.Backend backend = restarted.tune(MODEL, model(1));
+        assertEquals(1, measurer.measurements);
+        assertEquals(2, backend.getThreads());
+        assertEquals(1234L, backend.getLatencyNanos());
+    }
+
+    @Test
+    public void changedChecksumRetunes() throws IOException {
+        File store = storeFile();
+        CountingMeasurer measurer = new CountingMeasurer();
+        BackendAutotuner autotuner = new BackendAutotuner(store, DEVICE, 4, measurer);
+        autotuner.tune(MODEL, model(1));
+
+        // النموذج نفسه بالاسم والحجم نفسيهما ومحتوى مختلف (تحديث للملف)
+        autotuner.tune(MODEL, model(2));
+        assertEquals(2, measurer.measurements);
+        new BackendAutotuner(store, DEVICE, 4, measurer).tune(MODEL, model(2));
+        assertEquals(2, measurer.measurements);
+    }
+
+    @Test
+    public void changedDeviceOrRuntimeRetunes() throws IOException {
+        File store = storeFile();
+        CountingMeasurer measurer = new CountingMeasurer();
+        new BackendAutotuner(store, DEVICE, 4, measurer).tune(MODEL, model(1));
+        new BackendAutotuner(store, "other-device/cores-8", 4, measurer).tune(MODEL, model(1));
+        assertEquals(2, measurer.measurements);
+
+        measurer.runtimeVersion = "2.14.0";
+        new BackendAutotuner(store, DEVICE, 4, measurer).tune(MODEL, model(1));
+        assertEquals(3, measurer.measurements);
+    }
+
+    @Test
+    public void checksumIsComputedOncePerLoadedModel() throws IOException {
+        CountingMeasurer measurer = new CountingMeasurer();
+        BackendAutotuner autotuner = new BackendAutotuner(storeFile(), DEVICE, 4, measurer);
+        ByteBuffer model = model(1);
+        autotuner.tune(MODEL, model);
+
+        // المخزن نفسه لا يُعاد حساب بصمته: تغيير محتواه في مكانه لا يُرى، بخلاف مخزن جديد
+        model.put(0, (byte) 99);
+        autotuner.tune(MODEL, model);
+        assertEquals(1, measurer.measurements);
+        ByteBuffer reloaded = ByteBuffer.allocateDirect(model.capacity());
+        reloaded.put(model.duplicate());
+        autotuner.tune(MODEL, reloaded);
+        assertEquals(2, measurer.measurements);
+    }
+
+    @Test
+    public void referenceResultIsNotPersisted() throws IOException {
+        File store = storeFile();
+        CountingMeasurer measurer = new CountingMeasurer();
+        measurer.result = BackendAutotuner.Backend.REFERENCE;
+        assertTrue(new BackendAutotuner(store, DEVICE, 4, measurer).tune(MODEL, model(1)).isReference());
+        assertFalse(store.exists());
+    }
+
+    @Test
+    public void realRuntimeMeasuresAndStoresBackend() throws IOException {
+        assumeTfLiteRuntime();
+        File store = storeFile();
+        ByteBuffer model = resourceModel("/models/relu.tflite");
+
+        BackendAutotuner.Backend backend = new BackendAutotuner(store, DEVICE, 2).tune(MODEL, model);
+        assertTrue(backend.getLatencyNanos() > 0);
+        if (!backend.isReference()) {
+            assertTrue(backend.getThreads() >= 1 && backend.getThreads() <= 2);
+        }
+        assertTrue(store.isFile());
+
+        // الإعداد المحفوظ يُقرأ بعد إعادة التشغيل دون قياس جديد
+        CountingMeasurer measurer = new CountingMeasurer();
+        measurer.runtimeVersion = TensorFlowLite.runtimeVersion();
+        BackendAutotuner.Backend restored = new BackendAutotuner(store, DEVICE, 2, measurer).tune(MODEL, model);
+        assertEquals(0, measurer.measurements);
+        assertEquals(backend.toString(), restored.toString());
+    }
+
+    // -------------------------------------------------------------
+    // أدوات مساعدة
+    // -------------------------------------------------------------
+
+    private File storeFile() throws IOException {
+        return new File(folder.newFolder(), BackendAutotuner.DEFAULT_FILE_NAME);
+    }
+
+    // مكتبة TFLite لأندرويد لا تُحمَّل على JVM؛ الاختبار يعمل فقط مع مكتبة سطح المكتب في java.library.path
+    private static void assumeTfLiteRuntime() {
+        try {
+            TensorFlowLite.init();
+        } catch (LinkageError | RuntimeException e) {
+            assumeNoException("TFLite native runtime is not available", e);
+        }
+    }
+
+    private static ByteBuffer resourceModel(String name) throws IOException {
+        try (InputStream in = BackendAutotunerTest.class.getResourceAsStream(name)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] chunk = new byte[4096];
+            for (int read; (read = in.read(chunk)) != -1; ) {
+                bytes.write(chunk, 0, read);
+            }
+            ByteBuffer model = ByteBuffer.allocateDirect(bytes.size()).order(ByteOrder.nativeOrder());
+            model.put(bytes.toByteArray());
+            model.rewind();
+            return model;
+        }
+    }
+
+    private static ByteBuffer model(int seed) {
+        ByteBuffer model = ByteBuffer.allocateDirect(4096);
+        for (int i = 0; i < model.capacity(); i++) {
+            model.put(i, (byte) (i * 31 + seed));
+        }
+        return model;
+    }
+
+    private static final class CountingMeasurer implements BackendAutotuner.Measurer {
+        int measurements;
+        String runtimeVersion = "2.13.0";
+        BackendAutotuner.Backend result = new BackendAutotuner.Backend(2, true, false, 1234L);
+
+        @Override
+        public String runtimeVersion() {
+            return runtimeVersion;
+        }
+
+        @Override
+        public BackendAutotuner.Backend measure(ByteBuffer model, int threadLimit) {
+            measurements++;
+            return result;
+        }
+    }
+}
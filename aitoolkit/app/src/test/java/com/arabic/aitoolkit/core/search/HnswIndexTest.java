@@ -0,0 +1,192 @@
+package com.arabic.aitoolkit.core.search;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+* دقة HnswIndex مقابل المسح الدقيق (FlatVectorIndex) على JVM عادي، والحفظ والتحميل.
+*/
+public class HnswIndexTest {
+
+	private static final int COUNT = 5000;
+	private static final int DIMENSION = 64;
+	private static final int QUERIES = 200;
+	private static final int K = 10;
+
+	private static float[][] vectors;
+	private static float[][] queries;
+	private static HnswIndex hnsw;
+	private static FlatVectorIndex flat;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@BeforeClass
+	public static void buildIndexes() {
+		Random random = new Random(7);
+		vectors = randomVectors(random, COUNT);
+		queries = randomVectors(random, QUERIES);
+		hnsw = new HnswIndex(DIMENSION);
+		flat = new FlatVectorIndex(DIMENSION);
+		for (int i = 0; i < COUNT; i++) {
+			hnsw.add(vectors[i], 1000L + i);
+			flat.add(vectors[i]);
+		}
+	}
+
+	@Test
+	public void recallAtTenMatchesExactSearch() {
+		int hits = 0;
+		for (float[] query : queries) {
+			Set<Integer> expected = topK(flat, query, null);
+			for (int ordinal : ordinals(topK(hnsw, query, null))) {
+				if (expected.contains(ordinal)) hits++;
+			}
+		}
+		double recall = hits / (double) (QUERIES * K);
+		assertTrue("recall@10 = " + recall, recall >= 0.85);
+	}
+
+	@Test
+	public void perQueryEfSearchTradesRecallWithoutChangingTheIndex() {
+		double narrow = recall(SearchOptions.DEFAULT.withEfSearch(K));
+		double wide = recall(SearchOptions.DEFAULT.withEfSearch(400));
+		assertTrue("recall@10 with efSearch=400 = " + wide, wide >= 0.97);
+		assertTrue("narrow " + narrow + " >= wide " + wide, narrow < wide);
+		assertEquals(HnswIndex.DEFAULT_EF_SEARCH, hnsw.getEfSearch());
+	}
+
+	@Test
+	public void selectiveFilterReturnsExactFilteredResults() {
+		BitSet accepted = new BitSet(COUNT);
+		for (int i = 0; i < COUNT; i += 97) {
+			accepted.set(i);
+		}
+		for (int q = 0; q < 20; q++) {
+			assertEquals(topK(flat, queries[q], accepted), topK(hnsw, queries[q], accepted));
+		}
+	}
+
+	@Test
+	public void saveAndLoadRoundTrip() throws IOException {
+		File file = folder.newFile("hnsw.bin");
+		hnsw.save(file);
+		HnswIndex loaded = HnswIndex.load(file);
+
+		assertEquals(hnsw.size(), loaded.size());
+		assertEquals(hnsw.dimension(), loaded.dimension());
+		assertEquals(hnsw.getEfSearch(), loaded.getEfSearch());
+		for (int i = 0; i < COUNT; i += 211) {
+			assertEquals(hnsw.label(i), loaded.label(i));
+		}
+		for (int q = 0; q < 20; q++) {
+			assertArrayEquals(ordinals(topK(hnsw, queries[q], null)), ordinals(topK(loaded, queries[q], null)));
+		}
+	}
+
+	@Test
+	public void truncatedFileIsRejected() throws IOException {
+		File file = folder.newFile("truncated.bin");
+		hnsw.save(file);
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(raf.length() / 2);
+		}
+		assertLoadFails(file);
+	}
+
+	@Test
+	public void corruptHeaderIsRejected() throws IOException {
+		File file = folder.newFile("corrupt.bin");
+		hnsw.save(file);
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.seek(6 * 4); // size
+			raf.writeInt(Integer.MAX_VALUE);
+		}
+		assertLoadFails(file);
+	}
+
+	@Test
+	public void corruptNeighborIsRejected() throws IOException {
+		HnswIndex small = new HnswIndex(4);
+		small.add(new float[] {1, 0, 0, 0}, 1);
+		small.add(new float[] {0, 1, 0, 0}, 2);
+		File file = folder.newFile("neighbor.bin");
+		small.save(file);
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			// الترويسة، ثم المتجهان، ثم معرف العقدة 0 ومستواها وعدد روابطها في الطبقة 0
+			raf.seek(9 * 4 + 2 * 4 * 4 + 8 + 4 + 4);
+			raf.writeInt(99);
+		}
+		assertLoadFails(file);
+	}
+
+	// -------------------------------------------------------------
+	// وظائف مساعدة
+	// -------------------------------------------------------------
+
+	private static void assertLoadFails(File file) {
+		try {
+			HnswIndex.load(file);
+			fail("Expected IOException for " + file.getName());
+		} catch (IOException expected) {
+			// الملف التالف يُرفض قبل تخصيص أي مصفوفة بحجمه
+		}
+	}
+
+	private static double recall(SearchOptions options) {
+		int hits = 0;
+		for (float[] query : queries) {
+			Set<Integer> expected = topK(flat, query, null);
+			TopKHeap heap = new TopKHeap(K);
+			hnsw.search(query, heap, options);
+			for (int i = 0, n = heap.size(); i < n; i++) {
+				if (expected.contains(heap.ordinalAt(i))) hits++;
+			}
+		}
+		return hits / (double) (QUERIES * K);
+	}
+
+	private static Set<Integer> topK(VectorIndex index, float[] query, BitSet accepted) {
+		TopKHeap heap = new TopKHeap(K);
+		if (accepted == null) {
+			index.search(query, heap);
+		} else {
+			index.search(query, heap, SearchOptions.DEFAULT, accepted);
+		}
+		Set<Integer> result = new HashSet<>();
+		for (int i = 0, n = heap.size(); i < n; i++) {
+			result.add(heap.ordinalAt(i));
+		}
+		return result;
+	}
+
+	private static int[] ordinals(Set<Integer> set) {
+		return set.stream().mapToInt(Integer::intValue).sorted().toArray();
+	}
+
+	private static float[][] randomVectors(Random random, int count) {
+		float[][] result = new float[count][DIMENSION];
+		for (float[] vector : result) {
+			for (int d = 0; d < DIMENSION; d++) {
+				vector[d] = (float) random.nextGaussian();
+			}
+			FlatVectorIndex.normalize(vector);
+		}
+		return result;
+	}
+}
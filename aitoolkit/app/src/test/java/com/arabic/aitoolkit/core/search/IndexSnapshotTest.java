@@ -0,0 +1,139 @@
+package com.arabic.aitoolkit.core.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.arabic.aitoolkit.core.database.entities.ExtractedText;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+* دمج الدلتا وشواهد الحذف في الفهرس الأساسي عند إعادة البناء (IndexSnapshot.rebase).
+*/
+public class IndexSnapshotTest {
+
+	private static final int DIMENSION = 4;
+
+	@Test
+	public void rebaseDropsDeltaReflectedByNewBase() {
+		ExtractedText first = text(1, "نص أول");
+		ExtractedText second = text(2, "نص ثان");
+		Passage a = new Passage(10, first, 0, 2);
+		Passage b = new Passage(11, second, 0, 2);
+
+		IndexSnapshot snapshot = rebase(empty(), a);
+		snapshot = snapshot.withDocument(second, Collections.singletonList(b), Collections.singletonList(vector(1)));
+		assertEquals(1, snapshot.deltaSize());
+		assertTrue(snapshot.hasPendingChanges());
+
+		IndexSnapshot rebased = rebase(snapshot, a, b);
+		assertEquals(0, rebased.deltaSize());
+		assertFalse(rebased.hasPendingChanges());
+		assertEquals(2, rebased.size());
+		assertEquals(b, rebased.passageAt(1));
+	}
+
+	@Test
+	public void rebaseKeepsDeltaMissingFromNewBase() {
+		ExtractedText first = text(1, "نص أول");
+		Passage old = new Passage(10, first, 0, 2);
+		Passage updated = new Passage(12, first, 0, 3);
+
+		IndexSnapshot snapshot = rebase(empty(), old);
+		snapshot = snapshot.withDocument(first, Collections.singletonList(updated), Collections.singletonList(vector(1)));
+
+		// بُني الفهرس قبل حفظ التحديث: يبقى المقطع الجديد في الدلتا ويُخفى القديم
+		IndexSnapshot rebased = rebase(snapshot, old);
+		assertEquals(1, rebased.deltaSize());
+		assertNull(rebased.passageAt(0));
+		assertEquals(updated, rebased.passageAt(1));
+		assertEquals(1, rebased.size());
+
+		IndexSnapshot compacted = rebase(rebased, updated);
+		assertEquals(0, compacted.deltaSize());
+		assertFalse(compacted.hasPendingChanges());
+	}
+
+	@Test
+	public void rebaseClearsReflectedTombstones() {
+		ExtractedText first = text(1, "نص أول");
+		ExtractedText second = text(2, "نص ثان");
+		Passage a = new Passage(10, first, 0, 2);
+		Passage b = new Passage(11, second, 0, 2);
+
+		IndexSnapshot snapshot = rebase(empty(), a, b).withoutDocument(1);
+		assertEquals(1, snapshot.size());
+		assertTrue(snapshot.hasPendingChanges());
+
+		// الفهرس الجديد ما زال يحوي النص المحذوف: يُخفى ويبقى معلقًا
+		IndexSnapshot stale = rebase(snapshot, a, b);
+		assertEquals(1, stale.size());
+		assertNull(stale.passageAt(0));
+		assertTrue(stale.hasPendingChanges());
+
+		IndexSnapshot rebased = rebase(stale, b);
+		assertEquals(1, rebased.size());
+		assertFalse(rebased.hasPendingChanges());
+	}
+
+	@Test
+	public void readdedDocumentWinsOverEarlierDelete() {
+		ExtractedText first = text(1, "نص أول");
+		Passage a = new Passage(10, first, 0, 2);
+		Passage again = new Passage(13, first, 0, 2);
+
+		IndexSnapshot snapshot = rebase(empty(), a).withoutDocument(1);
+		snapshot = snapshot.withDocument(first, Collections.singletonList(again), Collections.singletonList(vector(2)));
+
+		IndexSnapshot rebased = rebase(snapshot, again);
+		assertEquals(1, rebased.size());
+		assertEquals(again, rebased.passageAt(0));
+		assertFalse(rebased.hasPendingChanges());
+	}
+
+	// -------------------------------------------------------------
+	// أدوات مساعدة
+	// -------------------------------------------------------------
+
+	private static IndexSnapshot empty() {
+		return IndexSnapshot.empty(new FlatVectorIndex(DIMENSION));
+	}
+
+	/**
+	* يعيد البناء كما يفعل VectorSearchManager: فهرس أساسي ونصي جديدان من المقاطع المحفوظة.
+	*/
+	private static IndexSnapshot rebase(IndexSnapshot snapshot, Passage... stored) {
+		FlatVectorIndex base = new FlatVectorIndex(DIMENSION);
+		LexicalIndex lexical = new LexicalIndex();
+		List<Passage> passages = new ArrayList<>(Arrays.asList(stored));
+		ExtractedText lastText = null;
+		for (Passage passage : passages) {
+			base.add(vector((int) passage.getId()));
+			if (passage.getText() != lastText) {
+				lastText = passage.getText();
+				lexical.add(lastText);
+			}
+		}
+		return snapshot.rebase(base, passages, lexical, false);
+	}
+
+	private static ExtractedText text(long id, String content) {
+		ExtractedText text = new ExtractedText(content, "/tmp/" + id + ".png", "صفحة " + id, id);
+		text.setId(id);
+		return text;
+	}
+
+	private static float[] vector(int seed) {
+		float[] vector = new float[DIMENSION];
+		vector[seed % DIMENSION] = 1f;
+		vector[(seed + 1) % DIMENSION] = 0.5f;
+		return vector;
+	}
+}
@@ -0,0 +1,155 @@
+package com.arabic.aitoolkit.core.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+/**
+* إعادة تدريب مراكز IvfIndex بعد نمو المجموعة أو اختلال توازنها، ورفض الملفات التالفة عند التحميل.
+*/
+public class IvfIndexTest {
+
+	private static final int DIMENSION = 32;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void growthAndImbalanceTriggerRetraining() {
+		Random random = new Random(3);
+		IvfIndex index = trainOn(randomVectors(random, 512, null), 512);
+		assertFalse(index.needsRetraining());
+
+		// المتجهات الجديدة كلها قرب اتجاه واحد، فتتكدس في مجموعات قليلة
+		float[] direction = randomVectors(random, 1, null)[0];
+		for (float[] vector : randomVectors(random, 2048, direction)) {
+			index.add(vector, index.size());
+		}
+		assertTrue(index.needsRetraining());
+
+		IvfIndex retrained = index.retrain(4096, 11);
+		assertFalse(retrained.needsRetraining());
+		assertTrue(retrained.imbalanceFactor() < index.imbalanceFactor());
+		assertEquals(IvfIndex.suggestClusterCount(index.size()), retrained.clusterCount());
+	}
+
+	@Test
+	public void retrainingKeepsOrdinalsAndLabels() {
+		Random random = new Random(5);
+		float[][] vectors = randomVectors(random, 1024, null);
+		IvfIndex index = trainOn(vectors, 256);
+		for (int i = 0; i < vectors.length; i++) {
+			index.add(vectors[i], 500L + i);
+		}
+		IvfIndex retrained = index.retrain(4096, 13);
+
+		assertEquals(index.size(), retrained.size());
+		for (int i = 0; i < vectors.length; i++) {
+			assertEquals(500L + i, retrained.label(i));
+		}
+		// مسح كل المجموعات يعطي أقرب جار دقيق بالترتيب نفسه
+		for (int q = 0; q < 20; q++) {
+			TopKHeap best = new TopKHeap(1);
+			retrained.search(vectors[q * 37], best, retrained.clusterCount());
+			assertEquals(q * 37, best.ordinalAt(0));
+		}
+	}
+
+	@Test
+	public void saveAndLoadKeepTrainedSize() throws IOException {
+		Random random = new Random(9);
+		IvfIndex index = trainOn(randomVectors(random, 256, null), 256);
+		for (float[] vector : randomVectors(random, 300, null)) {
+			index.add(vector, index.size());
+		}
+		File file = folder.newFile("ivf.bin");
+		index.save(file);
+		IvfIndex loaded = IvfIndex.load(file);
+
+		assertEquals(index.size(), loaded.size());
+		assertEquals(index.needsRetraining(), loaded.needsRetraining());
+		for (float[] vector : randomVectors(random, 300, null)) {
+			loaded.add(vector, loaded.size());
+		}
+		assertTrue(loaded.needsRetraining()); // 856 > 2 * 256
+	}
+
+	@Test
+	public void corruptCountsAndOrdinalsAreRejected() throws IOException {
+		// مجموعة واحدة: كل الترتيبات في المجموعة الأولى
+		float[][] vectors = randomVectors(new Random(21), 64, null);
+		IvfIndex index = trainOn(vectors, vectors.length, 1);
+		for (float[] vector : vectors) {
+			index.add(vector, index.size());
+		}
+		long sizeOffset = 5 * 4 + (long) DIMENSION * 4;
+		long firstClusterOffset = sizeOffset + 4 + index.size() * 8L;
+
+		assertLoadFails(corrupted(index, "size.bin", sizeOffset, Integer.MAX_VALUE));
+		assertLoadFails(corrupted(index, "negative.bin", sizeOffset, -1));
+		assertLoadFails(corrupted(index, "cluster.bin", firstClusterOffset, index.size() + 1));
+		assertLoadFails(corrupted(index, "short.bin", firstClusterOffset, index.size() - 1));
+		assertLoadFails(corrupted(index, "ordinal.bin", firstClusterOffset + 4, index.size()));
+		assertLoadFails(corrupted(index, "duplicate.bin", firstClusterOffset + 4, 1));
+		assertEquals(index.size(), IvfIndex.load(corrupted(index, "intact.bin", 0, 0x49564649)).size());
+	}
+
+	// -------------------------------------------------------------
+	// وظائف مساعدة
+	// -------------------------------------------------------------
+
+	private File corrupted(IvfIndex index, String name, long offset, int value) throws IOException {
+		File file = folder.newFile(name);
+		index.save(file);
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.seek(offset);
+			raf.writeInt(value);
+		}
+		return file;
+	}
+
+	private static void assertLoadFails(File file) {
+		try {
+			IvfIndex.load(file);
+			fail("Expected IOException for " + file.getName());
+		} catch (IOException expected) {
+			// الملف التالف يُرفض قبل تخصيص أي مصفوفة بحجمه
+		}
+	}
+
+	private static IvfIndex trainOn(float[][] vectors, int corpusSize) {
+		return trainOn(vectors, corpusSize, IvfIndex.suggestClusterCount(vectors.length));
+	}
+
+	private static IvfIndex trainOn(float[][] vectors, int corpusSize, int clusterCount) {
+		float[] sample = new float[vectors.length * DIMENSION];
+		for (int i = 0; i < vectors.length; i++) {
+			System.arraycopy(vectors[i], 0, sample, i * DIMENSION, DIMENSION);
+		}
+		return IvfIndex.train(sample, vectors.length, DIMENSION, clusterCount, corpusSize, 1);
+	}
+
+	/**
+	* @param center إذا لم يكن null تتجمع المتجهات حوله بدل توزيعها على كل الاتجاهات.
+	*/
+	private static float[][] randomVectors(Random random, int count, float[] center) {
+		float[][] result = new float[count][DIMENSION];
+		for (float[] vector : result) {
+			for (int d = 0; d < DIMENSION; d++) {
+				vector[d] = (float) random.nextGaussian() * (center == null ? 1f : 0.2f) + (center == null ? 0f : center[d]);
+			}
+			FlatVectorIndex.normalize(vector);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,67 @@
+package com.arabic.aitoolkit.core.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.arabic.aitoolkit.core.database.entities.ExtractedText;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+* قوائم LexicalIndex المضغوطة بـ VByte: فروق ترتيب كبيرة وتكرارات بلا حد أعلى تُقرأ كما كُتبت.
+*/
+public class LexicalIndexTest {
+
+	@Test
+	public void largeGapsDecodeToTheRightDocuments() {
+		LexicalIndex index = new LexicalIndex();
+		for (long id = 1; id <= 20_000; id++) {
+			index.add(text(id, id % 10_000 == 0 ? "كتاب نادر" : "قلم"));
+		}
+
+		TopKHeap results = new TopKHeap(10);
+		index.search("نادر", results);
+		assertEquals(2, results.sortDescending());
+		Set<Long> ids = new HashSet<>();
+		for (int i = 0; i < results.size(); i++) {
+			ids.add(index.documentAt(results.ordinalAt(i)).getId());
+		}
+		assertEquals(new HashSet<>(Arrays.asList(10_000L, 20_000L)), ids);
+	}
+
+	@Test
+	public void frequenciesAbove255AreKept() {
+		LexicalIndex index = new LexicalIndex();
+		index.add(text(1, repeat("كتاب", 256) + repeat("قلم", 44)));
+		index.add(text(2, repeat("كتاب", 300)));
+		index.add(text(3, "قلم"));
+
+		TopKHeap results = new TopKHeap(10);
+		index.search("كتاب", results);
+		assertEquals(2, results.sortDescending());
+		assertEquals(2L, index.documentAt(results.ordinalAt(0)).getId());
+		assertTrue(results.scoreAt(0) > results.scoreAt(1));
+	}
+
+	// -------------------------------------------------------------
+	// أدوات مساعدة
+	// -------------------------------------------------------------
+
+	private static ExtractedText text(long id, String content) {
+		ExtractedText text = new ExtractedText(content, "/tmp/" + id + ".png", "صفحة " + id, id);
+		text.setId(id);
+		return text;
+	}
+
+	private static String repeat(String word, int times) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < times; i++) {
+			builder.append(word).append(' ');
+		}
+		return builder.toString();
+	}
+}
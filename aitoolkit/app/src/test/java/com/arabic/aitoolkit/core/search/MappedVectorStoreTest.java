@@ -0,0 +1,122 @@
+package com.arabic.aitoolkit.core.search;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Random;
+
+/**
+* حفظ MappedVectorStore بالإلحاق، وربطه على مقاطع، ومطابقة بحثه للمسح الدقيق.
+*/
+public class MappedVectorStoreTest {
+
+	private static final int DIMENSION = 16;
+	private static final int ROW_BYTES = DIMENSION * 4 + 8;
+	private static final int HEADER_BYTES = 32;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void saveAppendsOnlyNewRows() throws IOException {
+		Random random = new Random(1);
+		File file = new File(folder.getRoot(), "vectors.bin");
+		MappedVectorStore store = new MappedVectorStore(DIMENSION);
+		for (int i = 0; i < 100; i++) {
+			store.add(randomVector(random), 1000L + i);
+		}
+		store.save(file);
+		assertEquals(HEADER_BYTES + 100L * ROW_BYTES, file.length());
+
+		MappedVectorStore reopened = MappedVectorStore.open(file);
+		Object fileKey = fileKey(file);
+		for (int i = 100; i < 130; i++) {
+			reopened.add(randomVector(random), 1000L + i);
+		}
+		reopened.save(file);
+		reopened.save(file); // لا شيء جديد: لا يُلحق مرتين
+		assertEquals(HEADER_BYTES + 130L * ROW_BYTES, file.length());
+		assertEquals(fileKey, fileKey(file)); // الملف نفسه، لا ملف جديد استبدله
+
+		MappedVectorStore loaded = MappedVectorStore.open(file);
+		assertEquals(130, loaded.size());
+		for (int i = 0; i < 130; i++) {
+			assertEquals(1000L + i, loaded.label(i));
+		}
+	}
+
+	@Test
+	public void segmentedMappingMatchesExactSearch() throws IOException {
+		Random random = new Random(2);
+		File file = new File(folder.getRoot(), "segments.bin");
+		MappedVectorStore store = new MappedVectorStore(DIMENSION);
+		FlatVectorIndex flat = new FlatVectorIndex(DIMENSION);
+		for (int i = 0; i < 1000; i++) {
+			float[] vector = randomVector(random);
+			store.add(vector, i);
+			flat.add(vector);
+		}
+		store.save(file);
+
+		// مقاطع من 7 صفوف، ثم صفوف مؤقتة بعدها
+		MappedVectorStore segmented = MappedVectorStore.open(file, 7L * ROW_BYTES + 3);
+		for (int i = 1000; i < 1010; i++) {
+			float[] vector = randomVector(random);
+			segmented.add(vector, i);
+			flat.add(vector);
+		}
+		for (int i = 0; i < segmented.size(); i++) {
+			assertEquals(i, segmented.label(i));
+		}
+		for (int q = 0; q < 20; q++) {
+			float[] query = randomVector(random);
+			TopKHeap expected = new TopKHeap(5);
+			TopKHeap actual = new TopKHeap(5);
+			flat.search(query, expected);
+			segmented.search(query, actual);
+			expected.sortDescending();
+			actual.sortDescending();
+			for (int i = 0; i < 5; i++) {
+				assertEquals(expected.ordinalAt(i), actual.ordinalAt(i));
+				assertEquals(expected.scoreAt(i), actual.scoreAt(i), 1e-5f);
+			}
+		}
+	}
+
+	@Test
+	public void interruptedAppendKeepsPreviousRows() throws IOException {
+		Random random = new Random(3);
+		File file = new File(folder.getRoot(), "partial.bin");
+		MappedVectorStore store = new MappedVectorStore(DIMENSION);
+		for (int i = 0; i < 10; i++) {
+			store.add(randomVector(random), i);
+		}
+		store.save(file);
+		// صف أُلحق دون تحديث الترويسة
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(raf.length() + ROW_BYTES);
+		}
+		assertEquals(10, MappedVectorStore.open(file).size());
+	}
+
+	private static Object fileKey(File file) throws IOException {
+		return Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+	}
+
+	private static float[] randomVector(Random random) {
+		float[] vector = new float[DIMENSION];
+		for (int d = 0; d < DIMENSION; d++) {
+			vector[d] = (float) random.nextGaussian();
+		}
+		FlatVectorIndex.normalize(vector);
+		return vector;
+	}
+}
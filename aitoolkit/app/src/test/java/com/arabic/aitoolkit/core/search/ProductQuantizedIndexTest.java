@@ -0,0 +1,95 @@
+package com.arabic.aitoolkit.core.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+/**
+* حفظ ProductQuantizedIndex وتحميله، ورفض الملفات التالفة قبل تخصيص مصفوفات بحجمها.
+*/
+public class ProductQuantizedIndexTest {
+
+	private static final int DIMENSION = 16;
+	private static final int SUBSPACES = 4;
+	private static final int COUNT = 300;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void saveAndLoadKeepCodesAndLabels() throws IOException {
+		ProductQuantizedIndex index = build();
+		File file = folder.newFile("pq.bin");
+		index.save(file);
+		ProductQuantizedIndex loaded = ProductQuantizedIndex.load(file);
+
+		assertEquals(COUNT, loaded.size());
+		assertEquals(DIMENSION, loaded.dimension());
+		for (int i = 0; i < COUNT; i++) {
+			assertEquals(1000L + i, loaded.label(i));
+		}
+	}
+
+	@Test
+	public void corruptSizesAreRejected() throws IOException {
+		ProductQuantizedIndex index = build();
+		long sizeOffset = 4 * 4 + (long) DIMENSION * ProductQuantizer.CENTROIDS * 4;
+
+		assertLoadFails(corrupted(index, "size.bin", sizeOffset, Integer.MAX_VALUE));
+		assertLoadFails(corrupted(index, "negative.bin", sizeOffset, -1));
+		assertLoadFails(corrupted(index, "dimension.bin", 2 * 4, 1 << 28));
+
+		File truncated = folder.newFile("truncated.bin");
+		index.save(truncated);
+		try (RandomAccessFile raf = new RandomAccessFile(truncated, "rw")) {
+			raf.setLength(raf.length() - 1);
+		}
+		assertLoadFails(truncated);
+	}
+
+	// -------------------------------------------------------------
+	// أدوات مساعدة
+	// -------------------------------------------------------------
+
+	private static ProductQuantizedIndex build() {
+		Random random = new Random(4);
+		float[] vectors = new float[COUNT * DIMENSION];
+		for (int i = 0; i < vectors.length; i++) {
+			vectors[i] = (float) random.nextGaussian();
+		}
+		ProductQuantizedIndex index = new ProductQuantizedIndex(ProductQuantizer.train(vectors, COUNT, DIMENSION, SUBSPACES, 1));
+		float[] vector = new float[DIMENSION];
+		for (int i = 0; i < COUNT; i++) {
+			System.arraycopy(vectors, i * DIMENSION, vector, 0, DIMENSION);
+			index.add(vector, 1000L + i);
+		}
+		return index;
+	}
+
+	private File corrupted(ProductQuantizedIndex index, String name, long offset, int value) throws IOException {
+		File file = folder.newFile(name);
+		index.save(file);
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.seek(offset);
+			raf.writeInt(value);
+		}
+		return file;
+	}
+
+	private static void assertLoadFails(File file) {
+		try {
+			ProductQuantizedIndex.load(file);
+			fail("Expected IOException for " + file.getName());
+		} catch (IOException expected) {
+			// الملف التالف يُرفض قبل تخصيص أي مصفوفة بحجمه
+		}
+	}
+}
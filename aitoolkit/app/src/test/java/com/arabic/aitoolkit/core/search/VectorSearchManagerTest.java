@@ -0,0 +1,229 @@
+package com.arabic.aitoolkit.core.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.arabic.aitoolkit.core.database.dao.SearchDao;
+import com.arabic.aitoolkit.core.database.entities.ExtractedText;
+import com.arabic.aitoolkit.core.database.entities.TextPassage;
+import com.arabic.aitoolkit.core.embedding.EmbeddingCache;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+* إعادة تحميل فهرس HNSW المحفوظ بعد حذف مقاطع من قاعدة البيانات: تُخفى المحذوفة، ويُعاد بناء الملف
+* إذا تجاوزت نسبتها STALE_REBUILD_FRACTION، أو إذا تغير M أو efConstruction الممرران إلى VectorSearchManager.
+*/
+public class VectorSearchManagerTest {
+
+	private static final int DIMENSION = 384;
+	private static final int TEXTS = 10;
+	private static final long LOAD_TIMEOUT_MS = 10_000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor();
+	private final FakeSearchDao dao = new FakeSearchDao();
+
+	@After
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void reloadRebuildsIndexWhenManyPassagesWereDeleted() throws Exception {
+		File directory = folder.getRoot();
+		Random random = new Random(8);
+		for (long id = 1; id <= TEXTS; id++) {
+			dao.put(id, randomVector(random));
+		}
+		assertEquals(TEXTS, visibleTextIds(load(directory)).size());
+		assertEquals(TEXTS, savedLabels(directory));
+
+		// حذف نصف المقاطع (> 20%): إعادة التحميل تكتب الملف من المقاطع الباقية فقط
+		for (long id = 1; id <= TEXTS / 2; id++) {
+			dao.remove(id);
+		}
+		Set<Long> visible = visibleTextIds(load(directory));
+		assertEquals(dao.textIds(), visible);
+		assertEquals(TEXTS / 2, savedLabels(directory));
+
+		// حذف مقطع واحد من خمسة (20%، ليس أكثر): يُخفى ويبقى الملف كما هو
+		dao.remove(TEXTS);
+		visible = visibleTextIds(load(directory));
+		assertEquals(dao.textIds(), visible);
+		assertEquals(TEXTS / 2, savedLabels(directory));
+	}
+
+	@Test
+	public void changedHnswParametersRebuildSavedIndex() throws Exception {
+		File directory = folder.getRoot();
+		Random random = new Random(9);
+		for (long id = 1; id <= TEXTS; id++) {
+			dao.put(id, randomVector(random));
+		}
+		load(directory);
+		assertEquals(HnswIndex.DEFAULT_M, HnswIndex.load(new File(directory, "hnsw_index.bin")).getM());
+
+		VectorSearchManager manager = load(new VectorSearchManager(null, dao, executor, SearchMode.HNSW, directory, 8, 40));
+		HnswIndex saved = HnswIndex.load(new File(directory, "hnsw_index.bin"));
+		assertEquals(8, saved.getM());
+		assertEquals(40, saved.getEfConstruction());
+		assertEquals(TEXTS, saved.size());
+		assertEquals(dao.textIds(), visibleTextIds(manager));
+	}
+
+	// -------------------------------------------------------------
+	// أدوات مساعدة
+	// -------------------------------------------------------------
+
+	/**
+	* نسخة جديدة كما عند تشغيل التطبيق من جديد، بعد اكتمال تحميلها.
+	*/
+	private VectorSearchManager load(File directory) throws InterruptedException {
+		return load(new VectorSearchManager(null, dao, executor, SearchMode.HNSW, directory));
+	}
+
+	private static VectorSearchManager load(VectorSearchManager manager) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + LOAD_TIMEOUT_MS;
+		while (!manager.isIndexLoaded()) {
+			assertTrue("Index did not load", System.currentTimeMillis() < deadline);
+			Thread.sleep(5);
+		}
+		return manager;
+	}
+
+	private static Set<Long> visibleTextIds(VectorSearchManager manager) {
+		float[] query = new float[DIMENSION];
+		query[0] = 1f;
+		Set<Long> ids = new HashSet<>();
+		for (SearchResult result : manager.search(query, SearchOptions.DEFAULT.withMaxResults(TEXTS * 2))) {
+			ids.add(result.getExtractedText().getId());
+		}
+		return ids;
+	}
+
+	private static int savedLabels(File directory) throws Exception {
+		return HnswIndex.load(new File(directory, "hnsw_index.bin")).size();
+	}
+
+	private static float[] randomVector(Random random) {
+		float[] vector = new float[DIMENSION];
+		for (int i = 0; i < DIMENSION; i++) {
+			vector[i] = (float) random.nextGaussian();
+		}
+		return vector;
+	}
+
+	/**
+	* مقطع واحد لكل نص بمعرف النص نفسه، في الذاكرة بدل Room.
+	*/
+	private static final class FakeSearchDao implements SearchDao {
+
+		private final Map<Long, ExtractedText> texts = new TreeMap<>();
+		private final Map<Long, float[]> vectors = new TreeMap<>();
+
+		synchronized void put(long id, float[] vector) {
+			ExtractedText text = new ExtractedText("نص " + id, "/tmp/" + id + ".png", "صفحة " + id, id);
+			text.setId(id);
+			texts.put(id, text);
+			vectors.put(id, vector);
+		}
+
+		synchronized void remove(long id) {
+			texts.remove(id);
+			vectors.remove(id);
+		}
+
+		synchronized Set<Long> textIds() {
+			return new HashSet<>(texts.keySet());
+		}
+
+		@Override
+		public synchronized List<TextWithVector> getAllTextsWithVectors() {
+			return getPassagesWithVectorsPage(-1, Integer.MAX_VALUE);
+		}
+
+		@Override
+		public synchronized ExtractedText getTextById(long textId) {
+			return texts.get(textId);
+		}
+
+		@Override
+		public synchronized List<TextPassage> getPassagesByTextId(long textId) {
+			return getPassagesByIds(Collections.singletonList(textId));
+		}
+
+		@Override
+		public synchronized List<TextPassage> getPassageRangesPage(long afterPassageId, long upToPassageId, int limit) {
+			List<TextPassage> page = new ArrayList<>();
+			for (long id : vectors.keySet()) {
+				if (id > afterPassageId && id <= upToPassageId && page.size() < limit) {
+					page.add(passage(id, null));
+				}
+			}
+			return page;
+		}
+
+		@Override
+		public synchronized List<ExtractedText> getTextsByIds(List<Long> textIds) {
+			List<ExtractedText> found = new ArrayList<>();
+			for (long id : textIds) {
+				if (texts.containsKey(id)) found.add(texts.get(id));
+			}
+			return found;
+		}
+
+		@Override
+		public synchronized List<TextWithVector> getPassagesWithVectorsPage(long afterPassageId, int limit) {
+			List<TextWithVector> page = new ArrayList<>();
+			for (Map.Entry<Long, float[]> entry : vectors.entrySet()) {
+				if (entry.getKey() <= afterPassageId || page.size() == limit) continue;
+				TextWithVector item = new TextWithVector();
+				item.text = texts.get(entry.getKey());
+				item.passageId = entry.getKey();
+				item.startOffset = 0;
+				item.endOffset = item.text.getTextContent().length();
+				item.embeddingVectorBytes = EmbeddingCache.toBytes(entry.getValue());
+				page.add(item);
+			}
+			return page;
+		}
+
+		@Override
+		public synchronized int countPassagesWithVectors() {
+			return vectors.size();
+		}
+
+		@Override
+		public synchronized List<TextPassage> getPassagesByIds(List<Long> passageIds) {
+			List<TextPassage> found = new ArrayList<>();
+			for (long id : passageIds) {
+				if (vectors.containsKey(id)) found.add(passage(id, EmbeddingCache.toBytes(vectors.get(id))));
+			}
+			return found;
+		}
+
+		private TextPassage passage(long id, byte[] vectorData) {
+			TextPassage passage = new TextPassage(id, 0, 0, texts.get(id).getTextContent().length(), vectorData, 0);
+			passage.setId(id);
+			return passage;
+		}
+	}
+}